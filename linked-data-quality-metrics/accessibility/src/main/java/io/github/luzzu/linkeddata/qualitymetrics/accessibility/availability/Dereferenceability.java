@@ -3,12 +3,8 @@
  */
 package io.github.luzzu.linkeddata.qualitymetrics.accessibility.availability;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Queue;
-import java.util.Set;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.EnumSet;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
@@ -22,7 +18,11 @@ import io.github.luzzu.exceptions.MetricProcessingException;
 import io.github.luzzu.linkeddata.qualitymetrics.accessibility.availability.helper.Dereferencer;
 import io.github.luzzu.linkeddata.qualitymetrics.commons.AbstractQualityMetric;
 import io.github.luzzu.linkeddata.qualitymetrics.commons.HTTPRetriever;
-import io.github.luzzu.linkeddata.qualitymetrics.commons.cache.LinkedDataMetricsCacheManager;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.FetchNeed;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.FetchPriority;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.FetchResult;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.FetchCoordinator;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.FetchStream;
 import io.github.luzzu.linkeddata.qualitymetrics.vocabulary.DQM;
 import io.github.luzzu.linkeddata.qualitymetrics.vocabulary.DQMPROB;
 import io.github.luzzu.operations.properties.EnvironmentProperties;
@@ -40,6 +40,11 @@ import io.github.luzzu.semantics.vocabularies.QPRO;
  * This metric calculates the number of valid redirects (303) or hashed links
  * according to LOD Principles
  * 
+ * Every distinct URI is assessed. URIs are submitted for dereferencing
+ * as soon as they are found (see FetchStream), with at most MAX_IN_FLIGHT 
+ * of them being dereferenced at a time; the others wait in a queue which 
+ * spills to disk beyond MAX_QUEUED_IN_MEMORY URIs.
+ * 
  * Based on: <a href="http://www.hyperthing.org/">Hyperthing - A linked data Validator</a>
  * 
  * @see <a href="http://dl.dropboxusercontent.com/u/4138729/paper/dereference_iswc2011.pdf">
@@ -52,15 +57,23 @@ public class Dereferenceability extends AbstractQualityMetric<Double> {
 
 	final static Logger logger = LoggerFactory.getLogger(Dereferenceability.class);
 	
+	/**
+	 * Maximum number of URIs submitted for dereferencing and not yet assessed
+	 */
+	public int MAX_IN_FLIGHT = 5000;
+	
+	/**
+	 * Maximum number of URIs waiting to be submitted which are held in memory, the others are spilled to disk
+	 */
+	public int MAX_QUEUED_IN_MEMORY = 100000;
+	
 	private double metricValue = 0.0;
-	private double totalURI = 0;
-	private double dereferencedURI = 0;
+	private AtomicLong totalURI = new AtomicLong(0);
+	private AtomicLong dereferencedURI = new AtomicLong(0);
 	private Long totalNumberOfTriplesAssessed = 0l;
 	
 	private HTTPRetriever httpRetreiver = new HTTPRetriever();
-	private LinkedDataMetricsCacheManager dcmgr = LinkedDataMetricsCacheManager.getInstance();
-	private Queue<String> notFetchedQueue = new ConcurrentLinkedQueue<String>();
-	private Set<String> uriSet = Collections.synchronizedSet(new HashSet<String>());
+	private FetchStream fetchStream = null;
 	private boolean metricCalculated = false;
 	
 	
@@ -75,12 +88,12 @@ public class Dereferenceability extends AbstractQualityMetric<Double> {
 			totalNumberOfTriplesAssessed++;
 			String subject = quad.getSubject().toString();
 			if (httpRetreiver.isPossibleURL(subject)){
-				uriSet.add(subject);
+				this.addURI(subject);
 			}
 			
 			String object = quad.getObject().toString();
 			if (httpRetreiver.isPossibleURL(object)){
-				uriSet.add(object);
+				this.addURI(object);
 			}
 		}
 	}
@@ -91,43 +104,54 @@ public class Dereferenceability extends AbstractQualityMetric<Double> {
 
 	public Double metricValue() {
 		if (!this.metricCalculated){
-			ArrayList<String> uriList = new ArrayList<String>();
-			uriList.addAll(uriSet);
-			httpRetreiver.addListOfResourceToQueue(uriList);
-			httpRetreiver.start(true);
-
-			do {
-				this.startDereferencingProcess();
-				uriSet.clear();
-				uriSet.addAll(this.notFetchedQueue);
-				this.notFetchedQueue.clear();
-			// Continue trying to dereference all URIs in uriSet, that is, those not fetched up to now
-			} while(!this.uriSet.isEmpty());
-			
+			// Most URIs were submitted (and possibly assessed) while the dataset was processed, wait for the rest
+			FetchStream stream = this.getFetchStream();
+			try {
+				if (!stream.await()) logger.warn("Not all the URIs were dereferenced, the metric value is computed on {} URIs", this.totalURI.get());
+			} catch (InterruptedException e) {
+				logger.warn("Interrupted while waiting for URIs to be dereferenced, the metric value is computed on {} URIs", this.totalURI.get());
+				Thread.currentThread().interrupt();
+			} finally {
+				stream.close();
+				FetchCoordinator.getInstance().endRun(this.getDatasetURI());
+				FetchCoordinator.getInstance().shutdownIfIdle();
+			}
 			this.metricCalculated = true;
 		}
-		this.metricValue = this.dereferencedURI / this.totalURI;
+		this.metricValue = (double) this.dereferencedURI.get() / (double) this.totalURI.get();
 		
 		return this.metricValue;
 	}
 	
-	private void startDereferencingProcess() {
-		for(String uri : uriSet){
-			CachedHTTPResource httpResource = (CachedHTTPResource) dcmgr.getFromCache(LinkedDataMetricsCacheManager.HTTP_RESOURCE_CACHE, uri);			
-			if (httpResource == null || httpResource.getStatusLines() == null) {
-				this.notFetchedQueue.add(uri);
-			} else {
-				this.totalURI++;
-				
-				if (Dereferencer.hasValidDereferencability(httpResource)) {
-					dereferencedURI++;
-				}
-				
-				if (requireProblemReport) createProblemReport(httpResource);
-				
-				logger.trace("{} - {} - {}", uri, httpResource.getStatusLines(), httpResource.getDereferencabilityStatusCode());
-			}
+	/**
+	 * Submits a URI for dereferencing, unless it was already seen. The URIs are dereferenced once for all the 
+	 * metrics asking for them, each URI being assessed as soon as its outcome is known
+	 * @param uri URI found in the dataset
+	 */
+	private void addURI(String uri) {
+		this.getFetchStream().add(uri);
+	}
+	
+	private synchronized FetchStream getFetchStream() {
+		if (this.fetchStream == null) {
+			FetchCoordinator.getInstance().beginRun(this.getDatasetURI());
+			this.fetchStream = new FetchStream(EnumSet.of(FetchNeed.STATUS, FetchNeed.PARSED_BODY), FetchPriority.NEEDED_FOR_METRIC, 
+					MAX_IN_FLIGHT, MAX_QUEUED_IN_MEMORY, this::assessDereferencedURI);
+		}
+		return this.fetchStream;
+	}
+	
+	private void assessDereferencedURI(FetchResult result) {
+		CachedHTTPResource httpResource = result.getResource();
+		this.totalURI.incrementAndGet();
+		
+		if (Dereferencer.hasValidDereferencability(httpResource)) {
+			dereferencedURI.incrementAndGet();
 		}
+		
+		if (requireProblemReport) createProblemReport(httpResource);
+		
+		logger.trace("{} - {} - {}", result.getURI(), httpResource.getStatusLines(), httpResource.getDereferencabilityStatusCode());
 	}
 	
 	private void createProblemReport(CachedHTTPResource httpResource){
@@ -148,7 +172,9 @@ public class Dereferenceability extends AbstractQualityMetric<Double> {
 	
 	private void createProblemQuad(String resource, Resource problem){
 		Quad q = new Quad(null, ModelFactory.createDefaultModel().createResource(resource).asNode(), QPRO.exceptionDescription.asNode(), problem.asNode());
-		this.problemCollection.addProblem(q);
+		synchronized(this.problemCollection) {
+			this.problemCollection.addProblem(q);
+		}
 	}
 
 	@Override
@@ -174,8 +200,8 @@ public class Dereferenceability extends AbstractQualityMetric<Double> {
 		activity.add(mp, RDF.type, DAQ.MetricProfile);
 		
 		activity.add(mp, DAQ.totalDatasetTriplesAssessed, ResourceCommons.generateTypeLiteral((long)this.totalNumberOfTriplesAssessed));
-		activity.add(mp, DQM.totalNumberOfResources, ResourceCommons.generateTypeLiteral((long)this.totalURI));
-		activity.add(mp, DQM.totalValidDereferenceableURIs, ResourceCommons.generateTypeLiteral((int)this.dereferencedURI));
+		activity.add(mp, DQM.totalNumberOfResources, ResourceCommons.generateTypeLiteral(this.totalURI.get()));
+		activity.add(mp, DQM.totalValidDereferenceableURIs, ResourceCommons.generateTypeLiteral((int)this.dereferencedURI.get()));
 
 		return activity;
 	}
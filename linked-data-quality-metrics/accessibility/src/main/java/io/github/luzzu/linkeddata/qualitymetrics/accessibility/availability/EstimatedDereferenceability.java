@@ -12,10 +12,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import io.github.luzzu.exceptions.MetricProcessingException;
-import io.github.luzzu.linkeddata.qualitymetrics.accessibility.availability.helper.Dereferencer;
+import io.github.luzzu.linkeddata.qualitymetrics.accessibility.availability.helper.SequentialDereferencer;
 import io.github.luzzu.linkeddata.qualitymetrics.commons.AbstractQualityMetric;
 import io.github.luzzu.linkeddata.qualitymetrics.commons.HTTPRetriever;
-import io.github.luzzu.linkeddata.qualitymetrics.commons.cache.LinkedDataMetricsCacheManager;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.FetchCoordinator;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.sampling.SequentialProportionEstimator;
 import io.github.luzzu.linkeddata.qualitymetrics.vocabulary.DQM;
 import io.github.luzzu.linkeddata.qualitymetrics.vocabulary.DQMPROB;
 import io.github.luzzu.operations.properties.EnvironmentProperties;
@@ -53,6 +54,15 @@ public class EstimatedDereferenceability extends AbstractQualityMetric<Double> {
 	 */
 	public int MAX_FQURIS = 100000; //static
 	
+	/**
+	 * Sequential early stopping: if enabled, the sample is dereferenced in rounds of EARLY_STOPPING_ROUND_SIZE URIs
+	 * and no further rounds are started once the 95% confidence interval of the dereferenceable ratio
+	 * is narrower than +/- EARLY_STOPPING_HALF_WIDTH
+	 */
+	public boolean EARLY_STOPPING = false;
+	public double EARLY_STOPPING_HALF_WIDTH = 0.02;
+	public int EARLY_STOPPING_ROUND_SIZE = 200;
+	
 	/**
 	 * Performs HTTP requests, used to try to fetch identified URIs
 	 */
@@ -66,9 +76,9 @@ public class EstimatedDereferenceability extends AbstractQualityMetric<Double> {
 	 */
 	private ReservoirSampler<String> fqUrisReservoir = new ReservoirSampler<String>(MAX_FQURIS, true);
 
-	private LinkedDataMetricsCacheManager dcmgr = LinkedDataMetricsCacheManager.getInstance();
 
 	private long totalUris = 0;
+	private long totalAssessedUris = 0;
 	private long totalDerefUris = 0;
 	private double metricValue = 0.0;
 	private boolean metricCalculated = false;
@@ -129,7 +139,7 @@ public class EstimatedDereferenceability extends AbstractQualityMetric<Double> {
 			this.totalUris = lstUrisToDeref.size();
 			this.totalDerefUris = this.deReferenceUris(lstUrisToDeref);
 
-			this.metricValue = (double)totalDerefUris / (double)totalUris;
+			this.metricValue = (double)totalDerefUris / (double)totalAssessedUris;
 		}
 				
 		return this.metricValue;
@@ -142,42 +152,26 @@ public class EstimatedDereferenceability extends AbstractQualityMetric<Double> {
 	
 	
 	/**
-	 * Tries to dereference all the URIs contained in the parameter, by retrieving them from the cache. URIs
-	 * not found in the cache are added to the queue containing the URIs to be fetched by the async HTTP retrieval process
-	 * @param uriSet Set of URIs to be dereferenced
-	 * @return total number of URIs that were successfully dereferenced
+	 * Dereferences the URIs contained in the parameter through the fetch coordinator, possibly stopping early 
+	 * (see EARLY_STOPPING). The number of URIs actually dereferenced is kept in totalAssessedUris
+	 * @param uriSet Sample of URIs to be dereferenced
+	 * @return number of URIs successfully dereferenced
 	 */
 	private long deReferenceUris(List<String> uriSet) {
-		// Start the dereferenciation process, which will be run in parallel
-		httpRetriever.addListOfResourceToQueue(uriSet);
-		httpRetriever.start(true);
-		
-		List<String> lstToDerefUris = new ArrayList<String>(uriSet);
-		long totalDerefUris = 0;
-				
-		// Dereference each and every one of the URIs contained in the specified set
-		while(lstToDerefUris.size() > 0) {
-			// Remove the URI at the head of the queue of URIs to be dereferenced                
-			String headUri = lstToDerefUris.remove(0);
-			
-			// First, search for the URI in the cache
-			CachedHTTPResource httpResource = (CachedHTTPResource)dcmgr.getFromCache(LinkedDataMetricsCacheManager.HTTP_RESOURCE_CACHE, headUri);
-			
-			if (httpResource == null || httpResource.getStatusLines() == null) {
-				// URIs not found in the cache, is still to be fetched via HTTP, add it to the end of the list
-				lstToDerefUris.add(headUri);
-			} else {
-				// URI found in the cache (which means that was fetched at some point), check if successfully dereferenced
-				if (Dereferencer.hasValidDereferencability(httpResource)) {
-					totalDerefUris++;
-				}
-				
+		FetchCoordinator.getInstance().beginRun(this.getDatasetURI());
+		SequentialProportionEstimator estimate;
+		try {
+			SequentialDereferencer dereferencer = new SequentialDereferencer(EARLY_STOPPING, EARLY_STOPPING_HALF_WIDTH, EARLY_STOPPING_ROUND_SIZE);
+			estimate = dereferencer.dereference(uriSet, null, httpResource -> {
 				if (requireProblemReport) createProblemReport(httpResource);
-				logger.trace("{} - {} - {}", headUri, httpResource.getStatusLines(), httpResource.getDereferencabilityStatusCode());
-			}
+				logger.trace("{} - {} - {}", httpResource.getUri(), httpResource.getStatusLines(), httpResource.getDereferencabilityStatusCode());
+			});
+		} finally {
+			FetchCoordinator.getInstance().endRun(this.getDatasetURI());
 		}
 		
-		return totalDerefUris;
+		this.totalAssessedUris = estimate.getObservations();
+		return estimate.getSuccesses();
 	}
 	
 	private void createProblemReport(CachedHTTPResource httpResource){
@@ -198,7 +192,9 @@ public class EstimatedDereferenceability extends AbstractQualityMetric<Double> {
 	
 	private void createProblemQuad(String resource, Resource problem){
 		Quad q = new Quad(null, ModelFactory.createDefaultModel().createResource(resource).asNode(), QPRO.exceptionDescription.asNode(), problem.asNode());
-		this.problemCollection.addProblem(q);
+		synchronized(this.problemCollection) {
+			this.problemCollection.addProblem(q);
+		}
 	}
 	
 	public int getMAX_FQURIS() {
@@ -234,7 +230,7 @@ public class EstimatedDereferenceability extends AbstractQualityMetric<Double> {
 		
 		//TODO: Add profiling information, including what estimation technique used. See Extensional Conciseness metric
 		activity.add(mp, DAQ.totalDatasetTriplesAssessed, ResourceCommons.generateTypeLiteral((long)this.totalNumberOfTriples));
-		activity.add(mp, DQM.totalNumberOfResourcesAssessed, ResourceCommons.generateTypeLiteral((long)this.totalUris));
+		activity.add(mp, DQM.totalNumberOfResourcesAssessed, ResourceCommons.generateTypeLiteral((long)this.totalAssessedUris));
 		activity.add(mp, DQM.totalNumberOfResources, ResourceCommons.generateTypeLiteral((long)this.totalNumberOfResources));
 		activity.add(mp, DQM.totalValidDereferenceableURIs, ResourceCommons.generateTypeLiteral((int)this.totalDerefUris));
 		activity.add(mp, DAQ.estimationTechniqueUsed, ModelFactory.createDefaultModel().createResource("http://dbpedia.org/resource/Reservoir_sampling"));
@@ -1,9 +1,6 @@
 package io.github.luzzu.linkeddata.qualitymetrics.accessibility.availability;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
@@ -15,15 +12,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import io.github.luzzu.exceptions.MetricProcessingException;
-import io.github.luzzu.linkeddata.qualitymetrics.accessibility.availability.helper.Dereferencer;
-import io.github.luzzu.linkeddata.qualitymetrics.accessibility.availability.helper.Tld;
+import io.github.luzzu.linkeddata.qualitymetrics.accessibility.availability.helper.SequentialDereferencer;
 import io.github.luzzu.linkeddata.qualitymetrics.commons.AbstractQualityMetric;
 import io.github.luzzu.linkeddata.qualitymetrics.commons.HTTPRetriever;
-import io.github.luzzu.linkeddata.qualitymetrics.commons.cache.LinkedDataMetricsCacheManager;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.FetchCoordinator;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.sampling.SequentialProportionEstimator;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.sampling.StratifiedSampler;
 import io.github.luzzu.linkeddata.qualitymetrics.vocabulary.DQM;
 import io.github.luzzu.linkeddata.qualitymetrics.vocabulary.DQMPROB;
 import io.github.luzzu.operations.properties.EnvironmentProperties;
-import io.github.luzzu.qualitymetrics.algorithms.ReservoirSampler;
 import io.github.luzzu.qualitymetrics.commons.cache.CachedHTTPResource;
 import io.github.luzzu.qualitymetrics.commons.datatypes.HTTPDereference.StatusCode;
 import io.github.luzzu.qualityproblems.ProblemCollection;
@@ -60,22 +57,38 @@ public class EstimatedDereferenceabilityByStratified extends AbstractQualityMetr
 	final static Logger logger = LoggerFactory.getLogger(EstimatedDereferenceability.class);
 	
 	/**
-	 * Constants controlling the maximum number of elements in the reservoir of Top-level Domains and 
-	 * Fully Qualified URIs of each TLD, respectively
+	 * Constants controlling the maximum number of URIs sampled over all Top-level Domains and 
+	 * the maximum number of Fully Qualified URIs sampled (and dereferenced) for the dataset, respectively
 	 */
-	public int MAX_TLDS = 500;
+	public int MAX_SAMPLED_URIS = 100000;
 	public int MAX_FQURIS_PER_TLD = 1000;
 	
+	/**
+	 * @deprecated The number of TLDs is no longer bounded, rather the number of URIs sampled is (MAX_SAMPLED_URIS). 
+	 * Kept for existing configurations: if greater than 0, at most MAX_TLDS * MAX_FQURIS_PER_TLD URIs are sampled
+	 */
+	@Deprecated
+	public int MAX_TLDS = 0;
+	
+	/**
+	 * Sequential early stopping: if enabled, the sample is dereferenced in rounds of EARLY_STOPPING_ROUND_SIZE URIs
+	 * and no further rounds are started once the 95% confidence interval of the dereferenceable ratio (overall and for each TLD)
+	 * is narrower than +/- EARLY_STOPPING_HALF_WIDTH
+	 */
+	public boolean EARLY_STOPPING = false;
+	public double EARLY_STOPPING_HALF_WIDTH = 0.02;
+	public int EARLY_STOPPING_ROUND_SIZE = 200;
+	
 	private long totalDerefUris = 0;
 	private long totalNumberOfTriples = 0;
 	private long totalNumberOfURIs = 0;
+	private long totalAssessedUris = 0;
 	
 	/**
 	 * Stratified Sampling parameters
 	 */
 	private static double POPULATION_PERCENTAGE = 0.2d;
 	private Integer totalSampleSize = 0;
-	private Map<String,Long> tldCount = new ConcurrentHashMap<String,Long>(); 
 	private Long totalURIs = 0l;
 	
 	/**
@@ -84,13 +97,10 @@ public class EstimatedDereferenceabilityByStratified extends AbstractQualityMetr
 	private HTTPRetriever httpRetriever = new HTTPRetriever();
 	
 	/**
-	 * Holds the set of dereferenceable top-level domains found among the subjects and objects of the triples,
-	 * as a reservoir sampler, if its number of items grows beyond the limit (MAX_TLDS) items will be replaced 
-	 * randomly upon forthcoming insertions. Moreover, the items will be indexed so that search operations are O(1)
+	 * Samples the URIs found among the subjects and objects of the triples, stratified by their top-level domain, 
+	 * keeping at most MAX_SAMPLED_URIS of them in memory
 	 */
-	private ReservoirSampler<Tld> tldsReservoir = new ReservoirSampler<Tld>(MAX_TLDS, true);
-
-	private LinkedDataMetricsCacheManager dcmgr = LinkedDataMetricsCacheManager.getInstance();
+	private StratifiedSampler<String> tldsSampler = null;
 
 	private double metricValue = 0.0;
 	private boolean metricCalculated = false;
@@ -116,28 +126,14 @@ public class EstimatedDereferenceabilityByStratified extends AbstractQualityMetr
 			if (httpRetriever.isPossibleURL(subject)) {
 				logger.trace("URI found on subject: {}", subject);
 				addUriToDereference(subject);
-				String uriTLD = HTTPRetriever.extractTopLevelDomainURI(subject);
 				totalURIs++;
-				if (tldCount.containsKey(uriTLD)){
-					Long cur = tldCount.get(uriTLD) + 1;
-					tldCount.put(uriTLD, cur);
-				} else {
-					tldCount.put(uriTLD, 1l);
-				}
 			} 
 
 			String object = quad.getObject().toString();
 			if (httpRetriever.isPossibleURL(object)) {
 				logger.trace("URI found on object: {}", object);
 				addUriToDereference(object);
-				String uriTLD = HTTPRetriever.extractTopLevelDomainURI(object);
 				totalURIs++;
-				if (tldCount.containsKey(uriTLD)){
-					Long cur = tldCount.get(uriTLD) + 1;
-					tldCount.put(uriTLD, cur);
-				} else {
-					tldCount.put(uriTLD, 1l);
-				}
 			}
 		}
 	}
@@ -150,31 +146,14 @@ public class EstimatedDereferenceabilityByStratified extends AbstractQualityMetr
 	public Double metricValue() {
 		// Collect the list of URIs of the TLDs, to be dereferenced
 		this.totalSampleSize = (int) Math.min(MAX_FQURIS_PER_TLD, (Math.round((double) totalURIs * POPULATION_PERCENTAGE)));
-		List<String> lstUrisToDeref = new ArrayList<String>(totalSampleSize);	
 		
 		if(!this.metricCalculated) {
-			for(Tld tld : this.tldsReservoir.getItems()){
-				//Work out ratio for the number of maximum TLDs in Reservior
-//				double totalRatio = ((double) tldCount.get(tld.getUri())) * POPULATION_PERCENTAGE;  // ratio between the total number of URIs of a TLD in a dataset against the overall total number of URIs
-//				double representativeRatio = totalRatio / ((double) totalURIs * POPULATION_PERCENTAGE); // the ratio of the URIs of a TLD against the population sample for all URIs in a dataset
-//				long maxRepresentativeSample = Math.round(representativeRatio * (double) MAX_FQURIS_PER_TLD); // how big should the final reservior for a TLD be wrt the representative ratio
-
-				long maxRepresentativeSample = Math.round(((double) this.totalSampleSize / (double) totalURIs) * ((double) tldCount.get(tld.getUri())));
-				// Re-sample the sample to have the final representative sample
-				if (maxRepresentativeSample > 0){
-					ReservoirSampler<String> _tmpRes = new ReservoirSampler<String>((int)maxRepresentativeSample, true);
-				
-					for(String uri : tld.getfqUris().getItems()){
-						_tmpRes.add(uri);
-					}
-					
-					lstUrisToDeref.addAll(_tmpRes.getItems());
-				}
-				logger.debug(tld.getUri() + " - " + tldCount.get(tld.getUri()) + " - " + maxRepresentativeSample);
-			}
+			// Proportionate allocation: each TLD is represented in the sample with respect to its number of URIs in the dataset
+			List<String> lstUrisToDeref = this.getSampler().sample(this.totalSampleSize);
+			logger.debug("Sampled {} URIs out of {}, from {} TLDs", lstUrisToDeref.size(), totalURIs, this.getSampler().getStrata().size());
 			
 			this.totalDerefUris = this.deReferenceUris(lstUrisToDeref);
-			this.totalNumberOfURIs = lstUrisToDeref.size();
+			this.totalNumberOfURIs = this.totalAssessedUris;
 			this.metricValue = (double)totalDerefUris / (double)totalNumberOfURIs;
 		}
 		
@@ -189,65 +168,46 @@ public class EstimatedDereferenceabilityByStratified extends AbstractQualityMetr
 	
 	/**
 	 * Checks and properly processes an URI found as subject or object of a triple, adding it to the
-	 * set of TLDs and fully-qualified URIs 
+	 * sample of fully-qualified URIs of its TLD
 	 * @param uri URI to be processed
 	 */
 	private void addUriToDereference(String uri) {
-		// Extract the top-level domain and look for it within the reservoir 
-		String uriTLD = HTTPRetriever.extractTopLevelDomainURI(uri);
-		Tld newTld = new Tld(uriTLD, MAX_FQURIS_PER_TLD);		
-		Tld foundTld = this.tldsReservoir.findItem(newTld);
-		
-		if(foundTld == null) {
-			logger.trace("New TLD found and recorded: {}...", uriTLD);
-			// Add the new TLD to the reservoir
-			this.tldsReservoir.add(newTld);
-			// Add new fully qualified URI to those of the new TLD
-			newTld.addFqUri(uri);
-		} else {
-			// The identified TLD was found, it already exists on the reservoir, just add the fqdn to it
-			foundTld.addFqUri(uri);
+		this.getSampler().add(HTTPRetriever.extractTopLevelDomainURI(uri), uri);
+	}
+	
+	/**
+	 * @return The sampler of the URIs, created on first use so that the configuration set after the metric is created is honoured
+	 */
+	private StratifiedSampler<String> getSampler() {
+		if (this.tldsSampler == null) {
+			int capacity = MAX_SAMPLED_URIS;
+			if (MAX_TLDS > 0) capacity = (int) Math.min(capacity, (long) MAX_TLDS * MAX_FQURIS_PER_TLD);
+			this.tldsSampler = new StratifiedSampler<String>(capacity);
 		}
+		return this.tldsSampler;
 	}
 	
 	/**
-	 * Tries to dereference all the URIs contained in the parameter, by retrieving them from the cache. URIs
-	 * not found in the cache are added to the queue containing the URIs to be fetched by the async HTTP retrieval process
-	 * @param uriSet Set of URIs to be dereferenced
-	 * @return list with the results of the dereferenceability operations, for those URIs that were found in the cache 
+	 * Dereferences the URIs contained in the parameter through the fetch coordinator, possibly stopping early 
+	 * (see EARLY_STOPPING). The number of URIs actually dereferenced is kept in totalAssessedUris
+	 * @param uriSet Sample of URIs to be dereferenced
+	 * @return number of URIs successfully dereferenced
 	 */
 	private long deReferenceUris(List<String> uriSet) {
-		// Start the dereferenciation process, which will be run in parallel
-		httpRetriever.addListOfResourceToQueue(uriSet);
-		httpRetriever.start(true);
-		
-		List<String> lstToDerefUris = new ArrayList<String>(uriSet);
-		long totalDerefUris = 0;
-				
-		// Dereference each and every one of the URIs contained in the specified set
-		while(lstToDerefUris.size() > 0) {
-			// Remove the URI at the head of the queue of URIs to be dereferenced                
-			String headUri = lstToDerefUris.remove(0);
-			
-			// First, search for the URI in the cache
-			CachedHTTPResource httpResource = (CachedHTTPResource)dcmgr.getFromCache(LinkedDataMetricsCacheManager.HTTP_RESOURCE_CACHE, headUri);
-			
-			if (httpResource == null || httpResource.getStatusLines() == null) {
-				// URIs not found in the cache, is still to be fetched via HTTP, add it to the end of the list
-				lstToDerefUris.add(headUri);
-			} else {
-				// URI found in the cache (which means that was fetched at some point), check if successfully dereferenced
-				if (Dereferencer.hasValidDereferencability(httpResource)) {
-					totalDerefUris++;
-				}
-				
+		FetchCoordinator.getInstance().beginRun(this.getDatasetURI());
+		SequentialProportionEstimator estimate;
+		try {
+			SequentialDereferencer dereferencer = new SequentialDereferencer(EARLY_STOPPING, EARLY_STOPPING_HALF_WIDTH, EARLY_STOPPING_ROUND_SIZE);
+			estimate = dereferencer.dereference(uriSet, HTTPRetriever::extractTopLevelDomainURI, httpResource -> {
 				if (requireProblemReport) createProblemReport(httpResource);
-				
-				logger.trace("{} - {} - {}", headUri, httpResource.getStatusLines(), httpResource.getDereferencabilityStatusCode());
-			}
+				logger.trace("{} - {} - {}", httpResource.getUri(), httpResource.getStatusLines(), httpResource.getDereferencabilityStatusCode());
+			});
+		} finally {
+			FetchCoordinator.getInstance().endRun(this.getDatasetURI());
 		}
 		
-		return totalDerefUris;
+		this.totalAssessedUris = estimate.getObservations();
+		return estimate.getSuccesses();
 	}
 	
 	private void createProblemReport(CachedHTTPResource httpResource){
@@ -269,7 +229,9 @@ public class EstimatedDereferenceabilityByStratified extends AbstractQualityMetr
 	
 	private void createProblemQuad(String resource, Resource problem){
 		Quad q = new Quad(null, ModelFactory.createDefaultModel().createResource(resource).asNode(), QPRO.exceptionDescription.asNode(), problem.asNode());
-		this.problemCollection.addProblem(q);
+		synchronized(this.problemCollection) {
+			this.problemCollection.addProblem(q);
+		}
 	}
 			
 	@Override
@@ -282,9 +244,18 @@ public class EstimatedDereferenceabilityByStratified extends AbstractQualityMetr
 		return 	DQM.LuzzuProvenanceAgent;
 	}	
 	
+	public void setMaxSampledURIs(int maxSampledURIs){
+		this.MAX_SAMPLED_URIS = maxSampledURIs;
+		tldsSampler = null;
+	}
+	
+	/**
+	 * @deprecated Use setMaxSampledURIs(int), see MAX_TLDS
+	 */
+	@Deprecated
 	public void setMaxTLDS(int maxTLDS){
 		this.MAX_TLDS = maxTLDS;
-		tldsReservoir = new ReservoirSampler<Tld>(maxTLDS, true);
+		tldsSampler = null;
 	}
 
 	@Override
@@ -1,6 +1,5 @@
 package io.github.luzzu.linkeddata.qualitymetrics.accessibility.availability;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.jena.rdf.model.Model;
@@ -13,15 +12,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import io.github.luzzu.exceptions.MetricProcessingException;
-import io.github.luzzu.linkeddata.qualitymetrics.accessibility.availability.helper.Dereferencer;
-import io.github.luzzu.linkeddata.qualitymetrics.accessibility.availability.helper.Tld;
+import io.github.luzzu.linkeddata.qualitymetrics.accessibility.availability.helper.SequentialDereferencer;
 import io.github.luzzu.linkeddata.qualitymetrics.commons.AbstractQualityMetric;
 import io.github.luzzu.linkeddata.qualitymetrics.commons.HTTPRetriever;
-import io.github.luzzu.linkeddata.qualitymetrics.commons.cache.LinkedDataMetricsCacheManager;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.FetchCoordinator;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.sampling.SequentialProportionEstimator;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.sampling.StratifiedSampler;
 import io.github.luzzu.linkeddata.qualitymetrics.vocabulary.DQM;
 import io.github.luzzu.linkeddata.qualitymetrics.vocabulary.DQMPROB;
 import io.github.luzzu.operations.properties.EnvironmentProperties;
-import io.github.luzzu.qualitymetrics.algorithms.ReservoirSampler;
 import io.github.luzzu.qualitymetrics.commons.cache.CachedHTTPResource;
 import io.github.luzzu.qualitymetrics.commons.datatypes.HTTPDereference.StatusCode;
 import io.github.luzzu.qualityproblems.ProblemCollection;
@@ -50,12 +49,28 @@ public class EstimatedDereferenceabilityByTld extends AbstractQualityMetric<Doub
 	final static Logger logger = LoggerFactory.getLogger(EstimatedDereferenceability.class);
 	
 	/**
-	 * Constants controlling the maximum number of elements in the reservoir of Top-level Domains and 
-	 * Fully Qualified URIs of each TLD, respectively
+	 * Constants controlling the maximum number of URIs sampled over all Top-level Domains and 
+	 * the maximum number of Fully Qualified URIs sampled for each TLD, respectively
 	 */
-	public int MAX_TLDS = 500;
+	public int MAX_SAMPLED_URIS = 100000;
 	public int MAX_FQURIS_PER_TLD = 100000;
 	
+	/**
+	 * @deprecated The number of TLDs is no longer bounded, rather the number of URIs sampled is (MAX_SAMPLED_URIS). 
+	 * Kept for existing configurations: if greater than 0, at most MAX_TLDS * MAX_FQURIS_PER_TLD URIs are sampled
+	 */
+	@Deprecated
+	public int MAX_TLDS = 0;
+	
+	/**
+	 * Sequential early stopping: if enabled, the sample is dereferenced in rounds of EARLY_STOPPING_ROUND_SIZE URIs
+	 * and no further rounds are started once the 95% confidence interval of the dereferenceable ratio (overall and for each TLD)
+	 * is narrower than +/- EARLY_STOPPING_HALF_WIDTH
+	 */
+	public boolean EARLY_STOPPING = false;
+	public double EARLY_STOPPING_HALF_WIDTH = 0.02;
+	public int EARLY_STOPPING_ROUND_SIZE = 200;
+	
 	private Long totalURIs = 0l;
 
 	/**
@@ -64,19 +79,18 @@ public class EstimatedDereferenceabilityByTld extends AbstractQualityMetric<Doub
 	private HTTPRetriever httpRetriever = new HTTPRetriever();
 	
 	/**
-	 * Holds the set of dereferenceable top-level domains found among the subjects and objects of the triples,
-	 * as a reservoir sampler, if its number of items grows beyond the limit (MAX_TLDS) items will be replaced 
-	 * randomly upon forthcoming insertions. Moreover, the items will be indexed so that search operations are O(1)
+	 * Samples the URIs found among the subjects and objects of the triples, stratified by their top-level domain, 
+	 * keeping at most MAX_SAMPLED_URIS of them in memory (and at most MAX_FQURIS_PER_TLD for each TLD)
 	 */
-	private ReservoirSampler<Tld> tldsReservoir = new ReservoirSampler<Tld>(MAX_TLDS, true);
+	private StratifiedSampler<String> tldsSampler = null;
 
-	private LinkedDataMetricsCacheManager dcmgr = LinkedDataMetricsCacheManager.getInstance();
 
 	private double metricValue = 0.0;
 	private boolean metricCalculated = false;
 	
 	private long totalDerefUris = 0;
 	private long totalNumberOfResources = 0;
+	private long totalAssessedUris = 0;
 
 	
 
@@ -123,14 +137,10 @@ public class EstimatedDereferenceabilityByTld extends AbstractQualityMetric<Doub
 	public Double metricValue() {
 		
 		if(!this.metricCalculated) {
-			List<String> lstUrisToDeref = new ArrayList<String>();			
-			
-			for(Tld tld : this.tldsReservoir.getItems()){
-				lstUrisToDeref.addAll(tld.getfqUris().getItems());
-			}
+			List<String> lstUrisToDeref = this.getSampler().getItems();
 			this.totalURIs = (long) lstUrisToDeref.size();
 			this.totalDerefUris = this.deReferenceUris(lstUrisToDeref);
-			this.metricValue = (double)this.totalDerefUris / (double)lstUrisToDeref.size();
+			this.metricValue = (double)this.totalDerefUris / (double)this.totalAssessedUris;
 		}
 		
 		return this.metricValue;
@@ -145,64 +155,46 @@ public class EstimatedDereferenceabilityByTld extends AbstractQualityMetric<Doub
 	
 	/**
 	 * Checks and properly processes an URI found as subject or object of a triple, adding it to the
-	 * set of TLDs and fully-qualified URIs 
+	 * sample of fully-qualified URIs of its TLD
 	 * @param uri URI to be processed
 	 */
 	private void addUriToDereference(String uri) {
-		// Extract the top-level domain and look for it within the reservoir 
-		String uriTLD = HTTPRetriever.extractTopLevelDomainURI(uri);
-		Tld newTld = new Tld(uriTLD, MAX_FQURIS_PER_TLD);		
-		Tld foundTld = this.tldsReservoir.findItem(newTld);
-		
-		if(foundTld == null) {
-			logger.trace("New TLD found and recorded: {}...", uriTLD);
-			// Add the new TLD to the reservoir
-			this.tldsReservoir.add(newTld);
-			// Add new fully qualified URI to those of the new TLD
-			newTld.addFqUri(uri);
-		} else {
-			// The identified TLD was found, it already exists on the reservoir, just add the fqdn to it
-			foundTld.addFqUri(uri);
+		this.getSampler().add(HTTPRetriever.extractTopLevelDomainURI(uri), uri);
+	}
+	
+	/**
+	 * @return The sampler of the URIs, created on first use so that the configuration set after the metric is created is honoured
+	 */
+	private StratifiedSampler<String> getSampler() {
+		if (this.tldsSampler == null) {
+			int capacity = MAX_SAMPLED_URIS;
+			if (MAX_TLDS > 0) capacity = (int) Math.min(capacity, (long) MAX_TLDS * MAX_FQURIS_PER_TLD);
+			this.tldsSampler = new StratifiedSampler<String>(capacity, MAX_FQURIS_PER_TLD);
 		}
+		return this.tldsSampler;
 	}
 	
 	/**
-	 * Tries to dereference all the URIs contained in the parameter, by retrieving them from the cache. URIs
-	 * not found in the cache are added to the queue containing the URIs to be fetched by the async HTTP retrieval process
-	 * @param uriSet Set of URIs to be dereferenced
-	 * @return list with the results of the dereferenceability operations, for those URIs that were found in the cache 
+	 * Dereferences the URIs contained in the parameter through the fetch coordinator, possibly stopping early 
+	 * (see EARLY_STOPPING). The number of URIs actually dereferenced is kept in totalAssessedUris
+	 * @param uriSet Sample of URIs to be dereferenced
+	 * @return number of URIs successfully dereferenced
 	 */
 	private long deReferenceUris(List<String> uriSet) {
-		// Start the dereferenciation process, which will be run in parallel
-		httpRetriever.addListOfResourceToQueue(uriSet);
-		httpRetriever.start(true);
-		
-		List<String> lstToDerefUris = new ArrayList<String>(uriSet);
-		long totalDerefUris = 0;
-				
-		// Dereference each and every one of the URIs contained in the specified set
-		while(lstToDerefUris.size() > 0) {
-			// Remove the URI at the head of the queue of URIs to be dereferenced                
-			String headUri = lstToDerefUris.remove(0);
-			
-			// First, search for the URI in the cache
-			CachedHTTPResource httpResource = (CachedHTTPResource)dcmgr.getFromCache(LinkedDataMetricsCacheManager.HTTP_RESOURCE_CACHE, headUri);
-			
-			if (httpResource == null || httpResource.getStatusLines() == null) {
-				// URIs not found in the cache, is still to be fetched via HTTP, add it to the end of the list
-				lstToDerefUris.add(headUri);
-			} else {
-				// URI found in the cache (which means that was fetched at some point), check if successfully dereferenced
-				if (Dereferencer.hasValidDereferencability(httpResource)) {
-					totalDerefUris++;
-				}
-				
+		FetchCoordinator.getInstance().beginRun(this.getDatasetURI());
+		SequentialProportionEstimator estimate;
+		try {
+			SequentialDereferencer dereferencer = new SequentialDereferencer(EARLY_STOPPING, EARLY_STOPPING_HALF_WIDTH, EARLY_STOPPING_ROUND_SIZE);
+			estimate = dereferencer.dereference(uriSet, HTTPRetriever::extractTopLevelDomainURI, httpResource -> {
 				if (requireProblemReport) createProblemReport(httpResource);
-				logger.trace("{} - {} - {}", headUri, httpResource.getStatusLines(), httpResource.getDereferencabilityStatusCode());
-			}
+				logger.trace("{} - {} - {}", httpResource.getUri(), httpResource.getStatusLines(), httpResource.getDereferencabilityStatusCode());
+			});
+		} finally {
+			FetchCoordinator.getInstance().endRun(this.getDatasetURI());
 		}
 		
-		return totalDerefUris;
+		this.totalAssessedUris = estimate.getObservations();
+		return estimate.getSuccesses();
 	}
 	
 	private void createProblemReport(CachedHTTPResource httpResource){
@@ -224,7 +216,9 @@ public class EstimatedDereferenceabilityByTld extends AbstractQualityMetric<Doub
 	
 	private void createProblemQuad(String resource, Resource problem){
 		Quad q = new Quad(null, ModelFactory.createDefaultModel().createResource(resource).asNode(), QPRO.exceptionDescription.asNode(), problem.asNode());
-		this.problemCollection.addProblem(q);
+		synchronized(this.problemCollection) {
+			this.problemCollection.addProblem(q);
+		}
 	}
 	
 	@Override
@@ -270,9 +264,9 @@ public class EstimatedDereferenceabilityByTld extends AbstractQualityMetric<Doub
 		Resource ep2 = ResourceCommons.generateURI();
 		activity.add(mp, DAQ.estimationParameter, ep2);
 		activity.add(ep2, RDF.type, DAQ.EstimationParameter);
-		activity.add(ep2, DAQ.estimationParameterValue, ResourceCommons.generateTypeLiteral(MAX_TLDS));
-		activity.add(ep2, DAQ.estimationParameterKey, ResourceCommons.generateTypeLiteral("plds-k"));
-		activity.add(ep2, RDFS.comment, activity.createLiteral("The size of the global reservior holding the pay-level domains (pld).", "en"));
+		activity.add(ep2, DAQ.estimationParameterValue, ResourceCommons.generateTypeLiteral(MAX_SAMPLED_URIS));
+		activity.add(ep2, DAQ.estimationParameterKey, ResourceCommons.generateTypeLiteral("global-k"));
+		activity.add(ep2, RDFS.comment, activity.createLiteral("The maximum number of resources sampled over all pay-level domains (pld).", "en"));
 
 		return activity;
 	}
@@ -4,7 +4,9 @@
 package io.github.luzzu.linkeddata.qualitymetrics.accessibility.availability;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
@@ -25,13 +27,15 @@ import io.github.luzzu.linkeddata.qualitymetrics.accessibility.availability.help
 import io.github.luzzu.linkeddata.qualitymetrics.commons.AbstractQualityMetric;
 import io.github.luzzu.linkeddata.qualitymetrics.commons.HTTPResourceUtils;
 import io.github.luzzu.linkeddata.qualitymetrics.commons.HTTPRetriever;
-import io.github.luzzu.linkeddata.qualitymetrics.commons.cache.LinkedDataMetricsCacheManager;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.FetchCoordinator;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.FetchNeed;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.FetchPriority;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.FetchResult;
 import io.github.luzzu.linkeddata.qualitymetrics.vocabulary.DQM;
 import io.github.luzzu.linkeddata.qualitymetrics.vocabulary.DQMPROB;
 import io.github.luzzu.operations.properties.EnvironmentProperties;
 import io.github.luzzu.qualitymetrics.algorithms.ReservoirSampler;
 import io.github.luzzu.qualitymetrics.commons.cache.CachedHTTPResource;
-import io.github.luzzu.qualitymetrics.commons.datatypes.HTTPDereference.StatusCode;
 import io.github.luzzu.qualitymetrics.commons.serialisation.SerialisableHttpResponse;
 import io.github.luzzu.qualityproblems.ProblemCollection;
 import io.github.luzzu.qualityproblems.ProblemCollectionModel;
@@ -53,8 +57,8 @@ import io.github.luzzu.semantics.vocabularies.QPRO;
 public class EstimatedMisreportedContentType extends AbstractQualityMetric<Double> {
 	private final Resource METRIC_URI = DQM.MisreportedContentTypesMetric;
 
-	private double misReportedType=0;
-	private double correctReportedType=0;
+	private AtomicLong misReportedType = new AtomicLong(0);
+	private AtomicLong correctReportedType = new AtomicLong(0);
 	private double notOkResponses=0;
 	
 
@@ -80,7 +84,6 @@ public class EstimatedMisreportedContentType extends AbstractQualityMetric<Doubl
 	private static int MAX_TLDS = 50;
 	private static int MAX_FQURIS_PER_TLD = 100000;
 	private ReservoirSampler<Tld> tldsReservoir = new ReservoirSampler<Tld>(MAX_TLDS, true);
-	private List<String> uriSet = new ArrayList<String>();
 
 
 	public void compute(Quad quad) throws MetricProcessingException {
@@ -107,25 +110,37 @@ public class EstimatedMisreportedContentType extends AbstractQualityMetric<Doubl
 	@Override
 	public Double metricValue() {
 		if (!this.metricCalculated){
+			List<String> uriSet = new ArrayList<String>();
 			for(Tld tld : this.tldsReservoir.getItems()){
 				uriSet.addAll(tld.getfqUris().getItems()); 
 			}
 			
-			httpRetreiver.addListOfResourceToQueue(uriSet);
-			
-			httpRetreiver.start(true);
-
-			this.checkForMisreportedContentType();
+			// Each URI is checked once, as soon as its response is received
+			FetchCoordinator coordinator = FetchCoordinator.getInstance();
+			coordinator.beginRun(this.getDatasetURI());
+			try {
+				if (!coordinator.await(coordinator.requestAll(uriSet, EnumSet.of(FetchNeed.CONTENT_TYPE, FetchNeed.PARSED_BODY), 
+						FetchPriority.NEEDED_FOR_METRIC, this::checkForMisreportedContentType))) {
+					logger.warn("Not all the URIs were dereferenced, the metric value is computed on the URIs checked so far");
+				}
+			} catch (InterruptedException e) {
+				logger.warn("Interrupted while waiting for URIs to be dereferenced, the metric value is computed on the URIs checked so far");
+				Thread.currentThread().interrupt();
+			} finally {
+				coordinator.endRun(this.getDatasetURI());
+				coordinator.shutdownIfIdle();
+			}
 			this.metricCalculated = true;
-			httpRetreiver.stop();
 		}
 		
 		double metricValue = 0.0;
-		logger.debug(String.format("Computing metric. Correct: %.0f. Misreported: %.0f. Not OK: %.0f", correctReportedType, misReportedType, notOkResponses));
+		double misreported = misReportedType.get();
+		double correct = correctReportedType.get();
+		logger.debug(String.format("Computing metric. Correct: %.0f. Misreported: %.0f. Not OK: %.0f", correct, misreported, notOkResponses));
 		
 		
-		if((misReportedType + correctReportedType) != 0.0) {
-			metricValue = correctReportedType / (misReportedType + correctReportedType);
+		if((misreported + correct) != 0.0) {
+			metricValue = correct / (misreported + correct);
 		}
 
 		return metricValue;
@@ -151,63 +166,51 @@ public class EstimatedMisreportedContentType extends AbstractQualityMetric<Doubl
 	}
 	
 	
-	private void checkForMisreportedContentType(){
-		while(uriSet.size() > 0){
-			// Get the next URI to be processed and remove it from the set (i.e. the uriSet is used as a queue, the next element is poped)
-			String uri = uriSet.remove(0);	
-			
-			// Check if the URI has already been dereferenced, in which case, it would be part of the Cache
-			CachedHTTPResource httpResource = (CachedHTTPResource) LinkedDataMetricsCacheManager.getInstance().getFromCache(LinkedDataMetricsCacheManager.HTTP_RESOURCE_CACHE, uri);
-			
-			if (httpResource == null || (httpResource.getResponses() == null && httpResource.getDereferencabilityStatusCode() != StatusCode.BAD)) {
-				// If the URI is not part of the cache, add it back in to the uriSet, so that it's tried to be dereferenced by the HTTP Retriever
-				if(!uriSet.contains(uri)) {
-					uriSet.add(uri);
-				}
-				continue;
-			}
+	/**
+	 * Checks the content type of a dereferenced URI, invoked (possibly concurrently) once its response is received
+	 * @param result Outcome of the dereferencing
+	 */
+	private void checkForMisreportedContentType(FetchResult result){
+		CachedHTTPResource httpResource = result.getResource();
+		if (Dereferencer.hasOKStatus(httpResource)){
+			logger.info("Checking "+httpResource.getUri()+ " for misreported content type");
 			
-			if (Dereferencer.hasOKStatus(httpResource)){
-				logger.info("Checking "+httpResource.getUri()+ " for misreported content type");
+			SerialisableHttpResponse res = HTTPResourceUtils.getSemanticResponse(httpResource);
+			if (res != null){
+				String ct = res.getHeaders("Content-Type");
+				Lang lang = RDFLanguages.contentTypeToLang(ct);
 				
-				SerialisableHttpResponse res = HTTPResourceUtils.getSemanticResponse(httpResource);
-				if (res != null){
-					String ct = res.getHeaders("Content-Type");
-					Lang lang = RDFLanguages.contentTypeToLang(ct);
-					
-					//should the resource be dereferencable?
-					if (lang != null){
-						//the resource might be a semantic resource
-						if (ModelParser.hasRDFContent(httpResource, lang)){
-							correctReportedType++;
-						} else {
-							misReportedType++;
-							
-							String actualCT = HTTPResourceUtils.determineActualContentType(httpResource) ;
-							this.createProblemModel(httpResource.getUri(), ct, actualCT);
-						}
+				//should the resource be dereferencable?
+				if (lang != null){
+					//the resource might be a semantic resource
+					if (ModelParser.hasRDFContent(httpResource, lang)){
+						correctReportedType.incrementAndGet();
+					} else {
+						misReportedType.incrementAndGet();
+						
+						String actualCT = HTTPResourceUtils.determineActualContentType(httpResource) ;
+						this.createProblemModel(httpResource.getUri(), ct, actualCT);
 					}
-				} else {
-					logger.info("No semantic content type for {}. Trying to parse the content.", httpResource.getUri());
-					SerialisableHttpResponse possible = HTTPResourceUtils.getPossibleSemanticResponse(httpResource); //we are doing this to get more statistical detail for the problem report
-					if (possible != null){
-						String location = HTTPResourceUtils.getResourceLocation(possible);
-						if (location != null){
-							Lang language = RDFLanguages.filenameToLang(location); // if the attachment has an non semantic file type, it is skipped
-							if (language != null){
-								misReportedType++;
-								
-								String actualCT = HTTPResourceUtils.determineActualContentType(httpResource);
-								this.createProblemModel(httpResource.getUri(), possible.getHeaders("Content-Type"), actualCT);
-							} else 
-								logger.info("Not possible to parse {}. Not a recognised file extension", location);	
-						}
+				}
+			} else {
+				logger.info("No semantic content type for {}. Trying to parse the content.", httpResource.getUri());
+				SerialisableHttpResponse possible = HTTPResourceUtils.getPossibleSemanticResponse(httpResource); //we are doing this to get more statistical detail for the problem report
+				if (possible != null){
+					String location = HTTPResourceUtils.getResourceLocation(possible);
+					if (location != null){
+						Lang language = RDFLanguages.filenameToLang(location); // if the attachment has an non semantic file type, it is skipped
+						if (language != null){
+							misReportedType.incrementAndGet();
+							
+							String actualCT = HTTPResourceUtils.determineActualContentType(httpResource);
+							this.createProblemModel(httpResource.getUri(), possible.getHeaders("Content-Type"), actualCT);
+						} else 
+							logger.info("Not possible to parse {}. Not a recognised file extension", location);	
 					}
-					else logger.info("Not possible to parse {}.", httpResource.getUri());
 				}
+				else logger.info("Not possible to parse {}.", httpResource.getUri());
 			}
 		}
-			
 	}
 	
 	
@@ -225,7 +228,9 @@ public class EstimatedMisreportedContentType extends AbstractQualityMetric<Doubl
 				m.add(new StatementImpl(subject, DQMPROB.actualContentType, m.createLiteral("Unknown Content Type")));
 			else 
 				m.add(new StatementImpl(subject, DQMPROB.actualContentType, m.createLiteral(actualContentType)));
-			this.problemCollection.addProblem(m);
+			synchronized(this.problemCollection) {
+				this.problemCollection.addProblem(m);
+			}
 		}
 	}
 	
@@ -255,8 +260,8 @@ public class EstimatedMisreportedContentType extends AbstractQualityMetric<Doubl
 		
 //		correctReportedType, misReportedType, notOkResponses
 		activity.add(mp, DAQ.totalDatasetTriplesAssessed, ResourceCommons.generateTypeLiteral((long)this.totalNumberOfTriples));
-		activity.add(mp, DQM.totalNumberOfResourcesAssessed, ResourceCommons.generateTypeLiteral((misReportedType + correctReportedType)));
-		activity.add(mp, DQM.totalValidContentType, ResourceCommons.generateTypeLiteral((int)correctReportedType));
+		activity.add(mp, DQM.totalNumberOfResourcesAssessed, ResourceCommons.generateTypeLiteral((double)(misReportedType.get() + correctReportedType.get())));
+		activity.add(mp, DQM.totalValidContentType, ResourceCommons.generateTypeLiteral((int)correctReportedType.get()));
 		activity.add(mp, DQM.totalNumberOfResources, ResourceCommons.generateTypeLiteral(this.totalNumberOfResources));
 		activity.add(mp, DAQ.estimationTechniqueUsed, ModelFactory.createDefaultModel().createResource("https://dblp.uni-trier.de/rec/conf/esws/DebattistaL0A15"));
 
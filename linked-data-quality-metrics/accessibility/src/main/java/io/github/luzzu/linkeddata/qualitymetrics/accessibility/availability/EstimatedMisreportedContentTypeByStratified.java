@@ -3,10 +3,9 @@
  */
 package io.github.luzzu.linkeddata.qualitymetrics.accessibility.availability;
 
-import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
@@ -22,15 +21,17 @@ import org.slf4j.LoggerFactory;
 
 import io.github.luzzu.exceptions.MetricProcessingException;
 import io.github.luzzu.linkeddata.qualitymetrics.accessibility.availability.helper.ModelParser;
-import io.github.luzzu.linkeddata.qualitymetrics.accessibility.availability.helper.Tld;
 import io.github.luzzu.linkeddata.qualitymetrics.commons.AbstractQualityMetric;
 import io.github.luzzu.linkeddata.qualitymetrics.commons.HTTPResourceUtils;
 import io.github.luzzu.linkeddata.qualitymetrics.commons.HTTPRetriever;
-import io.github.luzzu.linkeddata.qualitymetrics.commons.cache.LinkedDataMetricsCacheManager;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.FetchCoordinator;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.FetchNeed;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.FetchPriority;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.FetchResult;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.sampling.StratifiedSampler;
 import io.github.luzzu.linkeddata.qualitymetrics.vocabulary.DQM;
 import io.github.luzzu.linkeddata.qualitymetrics.vocabulary.DQMPROB;
 import io.github.luzzu.operations.properties.EnvironmentProperties;
-import io.github.luzzu.qualitymetrics.algorithms.ReservoirSampler;
 import io.github.luzzu.qualitymetrics.commons.cache.CachedHTTPResource;
 import io.github.luzzu.qualitymetrics.commons.serialisation.SerialisableHttpResponse;
 import io.github.luzzu.qualityproblems.ProblemCollection;
@@ -67,17 +68,24 @@ public class EstimatedMisreportedContentTypeByStratified extends AbstractQuality
 
 
 	/**
-	 * Constants controlling the maximum number of elements in the reservoir of Top-level Domains and 
-	 * Fully Qualified URIs of each TLD, respectively
+	 * Constants controlling the maximum number of URIs sampled over all Top-level Domains and 
+	 * the maximum number of Fully Qualified URIs sampled (and checked) for the dataset, respectively
 	 */
-	public int MAX_TLDS = 500;
+	public int MAX_SAMPLED_URIS = 100000;
 	public int MAX_FQURIS_PER_TLD = 1000;
 	
+	/**
+	 * @deprecated The number of TLDs is no longer bounded, rather the number of URIs sampled is (MAX_SAMPLED_URIS). 
+	 * Kept for existing configurations: if greater than 0, at most MAX_TLDS * MAX_FQURIS_PER_TLD URIs are sampled
+	 */
+	@Deprecated
+	public int MAX_TLDS = 0;
+	
 	private long totalNumberOfTriples = 0;
 	private long totalNumberOfURIs = 0;
 	private long totalCorrectReportedTypes = 0;
 
-	private ReservoirSampler<Tld> tldsReservoir = new ReservoirSampler<Tld>(MAX_TLDS, true);
+	private StratifiedSampler<String> tldsSampler = null;
 	
 	
 	/**
@@ -85,9 +93,8 @@ public class EstimatedMisreportedContentTypeByStratified extends AbstractQuality
 	 */
 	private static double POPULATION_PERCENTAGE = 0.2d;
 	private Integer totalSampleSize = 0;
-	private Map<String,Long> tldCount = new ConcurrentHashMap<String,Long>(); 
 	private Long totalURIs = 0l;
-	private Long nonSemanticResources = 0l;
+	private AtomicLong nonSemanticResources = new AtomicLong(0);
 
 
 	public void compute(Quad quad) throws MetricProcessingException {
@@ -100,28 +107,14 @@ public class EstimatedMisreportedContentTypeByStratified extends AbstractQuality
 			if (httpRetriever.isPossibleURL(subject)) {
 				logger.trace("URI found on subject: {}", subject);
 				addURIToReservoir(subject);
-				String uriTLD = HTTPRetriever.extractTopLevelDomainURI(subject);
 				totalURIs++;
-				if (tldCount.containsKey(uriTLD)){
-					Long cur = tldCount.get(uriTLD) + 1;
-					tldCount.put(uriTLD, cur);
-				} else {
-					tldCount.put(uriTLD, 0l);
-				}
 			}
 
 			String object = quad.getObject().toString();
 			if (httpRetriever.isPossibleURL(object)) {
 				logger.trace("URI found on object: {}", object);
 				addURIToReservoir(object);
-				String uriTLD = HTTPRetriever.extractTopLevelDomainURI(object);
 				totalURIs++;
-				if (tldCount.containsKey(uriTLD)){
-					Long cur = tldCount.get(uriTLD) + 1;
-					tldCount.put(uriTLD, cur);
-				} else {
-					tldCount.put(uriTLD, 0l);
-				}
 			}
 		}
 	}
@@ -135,30 +128,11 @@ public class EstimatedMisreportedContentTypeByStratified extends AbstractQuality
 		// Collect the list of URIs of the TLDs, to be dereferenced
 //		List<String> lstUrisToDeref = new ArrayList<String>(MAX_FQURIS_PER_TLD);			
 		this.totalSampleSize = (int) Math.min(MAX_FQURIS_PER_TLD, (Math.round((double) totalURIs * POPULATION_PERCENTAGE)));
-		List<String> lstUrisToDeref = new ArrayList<String>(totalSampleSize);	
-
-		
-		for(Tld tld : this.tldsReservoir.getItems()){
-			//Work out ratio for the number of maximum TLDs in Reservior
-//			double totalRatio = ((double) tldCount.get(tld.getUri())) * POPULATION_PERCENTAGE;  // ratio between the total number of URIs of a TLD in a dataset against the overall total number of URIs
-//			double representativeRatio = totalRatio / ((double) totalURIs * POPULATION_PERCENTAGE); // the ratio of the URIs of a TLD against the population sample for all URIs in a dataset
-//			long maxRepresentativeSample = Math.round(representativeRatio * (double) MAX_FQURIS_PER_TLD); // how big should the final reservior for a TLD be wrt the representative ratio
-			
-			long maxRepresentativeSample = Math.round(((double) this.totalSampleSize / (double) totalURIs) * ((double) tldCount.get(tld.getUri())));
-			// Re-sample the sample to have the final representative sample
-			if (maxRepresentativeSample > 0){
-				ReservoirSampler<String> _tmpRes = new ReservoirSampler<String>((int)maxRepresentativeSample, true);
-			
-				for(String uri : tld.getfqUris().getItems()){
-					_tmpRes.add(uri);
-				}
-				
-				lstUrisToDeref.addAll(_tmpRes.getItems());
-			}
-		}
+		// Proportionate allocation: each TLD is represented in the sample with respect to its number of URIs in the dataset
+		List<String> lstUrisToDeref = this.getSampler().sample(this.totalSampleSize);
 		double metricValue = 0.0;
 		
-		this.totalNumberOfURIs = (lstUrisToDeref.size() + this.nonSemanticResources);
+		this.totalNumberOfURIs = (lstUrisToDeref.size() + this.nonSemanticResources.get());
 		
 		this.totalCorrectReportedTypes = this.checkForMisreportedContentType(lstUrisToDeref);
 		metricValue = (double)this.totalCorrectReportedTypes / this.totalNumberOfURIs;
@@ -167,82 +141,89 @@ public class EstimatedMisreportedContentTypeByStratified extends AbstractQuality
 	}
 
 	private void addURIToReservoir(String uri) {
-		// Extract the top-level domain (a.k.a pay level domain) and look for it in the reservoir 
-		String uriTLD = HTTPRetriever.extractTopLevelDomainURI(uri);
-		Tld newTld = new Tld(uriTLD, MAX_FQURIS_PER_TLD);		
-		Tld foundTld = this.tldsReservoir.findItem(newTld);
-		
-		if(foundTld == null) {
-			logger.trace("New TLD found and recorded: {}...", uriTLD);
-			// Add the new TLD to the reservoir
-			// Add new fully qualified URI to those of the new TLD
-			
-			this.tldsReservoir.add(newTld); 
-			newTld.addFqUri(uri);
-		} else {
-			// The identified TLD was found, it already exists on the reservoir, just add the fqdn to it
-			foundTld.addFqUri(uri);
+		// Stratify by the top-level domain (a.k.a pay level domain)
+		this.getSampler().add(HTTPRetriever.extractTopLevelDomainURI(uri), uri);
+	}
+	
+	/**
+	 * @return The sampler of the URIs, created on first use so that the configuration set after the metric is created is honoured
+	 */
+	private StratifiedSampler<String> getSampler() {
+		if (this.tldsSampler == null) {
+			int capacity = MAX_SAMPLED_URIS;
+			if (MAX_TLDS > 0) capacity = (int) Math.min(capacity, (long) MAX_TLDS * MAX_FQURIS_PER_TLD);
+			this.tldsSampler = new StratifiedSampler<String>(capacity);
 		}
+		return this.tldsSampler;
 	}
 	
 	private long checkForMisreportedContentType(List<String> uriSet) {
-		// Start the dereferenciation process, which will be run in parallel
-		httpRetriever.addListOfResourceToQueue(uriSet);
-		httpRetriever.start(true);
+		final AtomicLong totalCorrect = new AtomicLong(0);
 		
-		List<String> lstURIs = new ArrayList<String>(uriSet);
-		long totalCorrect = 0;
-				
-		// Dereference each and every one of the URIs contained in the specified set
-		while(lstURIs.size() > 0) {
-			// Remove the URI at the head of the queue of URIs to be dereferenced                
-
-			String headUri = lstURIs.remove(0);
-			
-			// First, search for the URI in the cache
-			CachedHTTPResource httpResource = (CachedHTTPResource)LinkedDataMetricsCacheManager.getInstance().getFromCache(LinkedDataMetricsCacheManager.HTTP_RESOURCE_CACHE, headUri);
+		// Each URI is checked once, as soon as its response is received
+		FetchCoordinator coordinator = FetchCoordinator.getInstance();
+		coordinator.beginRun(this.getDatasetURI());
+		try {
+			if (!coordinator.await(coordinator.requestAll(uriSet, EnumSet.of(FetchNeed.CONTENT_TYPE, FetchNeed.PARSED_BODY), 
+					FetchPriority.NEEDED_FOR_METRIC, result -> {
+						if (this.isCorrectlyReported(result)) totalCorrect.incrementAndGet();
+					}))) {
+				logger.warn("Not all the URIs were dereferenced, the metric value is computed on the URIs checked so far");
+			}
+		} catch (InterruptedException e) {
+			logger.warn("Interrupted while waiting for URIs to be dereferenced, the metric value is computed on the URIs checked so far");
+			Thread.currentThread().interrupt();
+		} finally {
+			coordinator.endRun(this.getDatasetURI());
+			coordinator.shutdownIfIdle();
+		}
+		
+		return totalCorrect.get();
+	}
+	
+	/**
+	 * Checks the content type of a dereferenced URI, invoked (possibly concurrently) once its response is received
+	 * @param result Outcome of the dereferencing
+	 * @return True if the URI returned semantic content with its correct content type
+	 */
+	private boolean isCorrectlyReported(FetchResult result) {
+		CachedHTTPResource httpResource = result.getResource();
+		
+		// Check whether semantic content was returned, and with which content type
+		SerialisableHttpResponse res = HTTPResourceUtils.getSemanticResponse(httpResource);
+		if (res != null){
+			String ct = res.getHeaders("Content-Type").split(";")[0];
+			Lang lang = RDFLanguages.contentTypeToLang(ct);
 			
-			if (httpResource == null || httpResource.getStatusLines() == null) {
-				// URIs not found in the cache, is still to be fetched via HTTP, add it to the end of the list
-				lstURIs.add(headUri);
-			} else {
-				// URI found in the cache (which means that was fetched at some point), check if successfully dereferenced
-				SerialisableHttpResponse res = HTTPResourceUtils.getSemanticResponse(httpResource);
-				if (res != null){
-					String ct = res.getHeaders("Content-Type").split(";")[0];
-					Lang lang = RDFLanguages.contentTypeToLang(ct);
-					
-					//should the resource be dereferencable?
-					if (lang != null){
-						//the resource might be a semantic resource
-						if (ModelParser.hasRDFContent(httpResource, lang)){
-							totalCorrect++;
-						} else {
-							String expectedCT = HTTPResourceUtils.determineActualContentType(httpResource) ;
-							this.createProblemModel(httpResource.getUri(), expectedCT, ct);
-						}
-					} else {
-						System.out.println("lang is null");
-						String expectedCT = HTTPResourceUtils.determineActualContentType(httpResource) ;
-						this.createProblemModel(httpResource.getUri(), expectedCT, "none");
-					}
+			//should the resource be dereferencable?
+			if (lang != null){
+				//the resource might be a semantic resource
+				if (ModelParser.hasRDFContent(httpResource, lang)){
+					return true;
 				} else {
-					if (HTTPResourceUtils.isTextXML(httpResource)){
-						Lang lang = Lang.RDFXML;
-						if (ModelParser.hasRDFContent(httpResource, lang)){
-							this.createProblemModel(httpResource.getUri(),  "application/rdf+xml", "text/xml");
-						}
-						else {
-							this.nonSemanticResources++;
-						}
-					} else {
-						this.nonSemanticResources++;
-					}
+					String expectedCT = HTTPResourceUtils.determineActualContentType(httpResource) ;
+					this.createProblemModel(httpResource.getUri(), expectedCT, ct);
+				}
+			} else {
+				logger.debug("No language for content type {} of {}", ct, httpResource.getUri());
+				String expectedCT = HTTPResourceUtils.determineActualContentType(httpResource) ;
+				this.createProblemModel(httpResource.getUri(), expectedCT, "none");
+			}
+		} else {
+			if (HTTPResourceUtils.isTextXML(httpResource)){
+				Lang lang = Lang.RDFXML;
+				if (ModelParser.hasRDFContent(httpResource, lang)){
+					this.createProblemModel(httpResource.getUri(),  "application/rdf+xml", "text/xml");
 				}
+				else {
+					this.nonSemanticResources.incrementAndGet();
+				}
+			} else {
+				this.nonSemanticResources.incrementAndGet();
 			}
 		}
-		
-		return totalCorrect;
+
+		return false;
 	}
 	
 	
@@ -260,7 +241,9 @@ public class EstimatedMisreportedContentTypeByStratified extends AbstractQuality
 				m.add(new StatementImpl(subject, DQMPROB.actualContentType, m.createLiteral("Unknown Content Type")));
 			else 
 				m.add(new StatementImpl(subject, DQMPROB.actualContentType, m.createLiteral(actualContentType)));
-			this.problemCollection.addProblem(m);
+			synchronized(this.problemCollection) {
+				this.problemCollection.addProblem(m);
+			}
 		}
 	}
 	
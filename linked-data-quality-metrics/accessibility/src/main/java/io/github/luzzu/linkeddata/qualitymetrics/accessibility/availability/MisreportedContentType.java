@@ -1,8 +1,7 @@
 package io.github.luzzu.linkeddata.qualitymetrics.accessibility.availability;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.EnumSet;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
@@ -21,12 +20,15 @@ import io.github.luzzu.linkeddata.qualitymetrics.accessibility.availability.help
 import io.github.luzzu.linkeddata.qualitymetrics.commons.AbstractQualityMetric;
 import io.github.luzzu.linkeddata.qualitymetrics.commons.HTTPResourceUtils;
 import io.github.luzzu.linkeddata.qualitymetrics.commons.HTTPRetriever;
-import io.github.luzzu.linkeddata.qualitymetrics.commons.cache.LinkedDataMetricsCacheManager;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.FetchNeed;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.FetchPriority;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.FetchResult;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.FetchCoordinator;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.FetchStream;
 import io.github.luzzu.linkeddata.qualitymetrics.vocabulary.DQM;
 import io.github.luzzu.linkeddata.qualitymetrics.vocabulary.DQMPROB;
 import io.github.luzzu.operations.properties.EnvironmentProperties;
 import io.github.luzzu.qualitymetrics.commons.cache.CachedHTTPResource;
-import io.github.luzzu.qualitymetrics.commons.datatypes.HTTPDereference.StatusCode;
 import io.github.luzzu.qualitymetrics.commons.serialisation.SerialisableHttpResponse;
 import io.github.luzzu.qualityproblems.ProblemCollection;
 import io.github.luzzu.qualityproblems.ProblemCollectionModel;
@@ -45,17 +47,30 @@ import io.github.luzzu.semantics.vocabularies.QPRO;
  *         can parse it. If it is parsible and not of application/rdf+xml then
  *         it is a misreported content type.
  * 
+ *         Each distinct URI is checked once, as soon as its response is
+ *         received (see FetchStream).
+ * 
  */
 public class MisreportedContentType extends AbstractQualityMetric<Double> {
 
 	private final Resource METRIC_URI = DQM.MisreportedContentTypesMetric;
 
-	private double misReportedType=0;
-	private double correctReportedType=0;
+	/**
+	 * Maximum number of URIs submitted for dereferencing and not yet checked
+	 */
+	public int MAX_IN_FLIGHT = 5000;
+	
+	/**
+	 * Maximum number of URIs waiting to be submitted which are held in memory, the others are spilled to disk
+	 */
+	public int MAX_QUEUED_IN_MEMORY = 100000;
+
+	private AtomicLong misReportedType = new AtomicLong(0);
+	private AtomicLong correctReportedType = new AtomicLong(0);
 	
 	private HTTPRetriever httpRetreiver = new HTTPRetriever();
 	private boolean metricCalculated = false;
-	private List<String> uriSet = Collections.synchronizedList(new ArrayList<String>());
+	private FetchStream fetchStream = null;
 	
 
 	static Logger logger = LoggerFactory.getLogger(MisreportedContentType.class);
@@ -73,22 +88,12 @@ public class MisreportedContentType extends AbstractQualityMetric<Double> {
 		
 		String subject = quad.getSubject().toString();
 		if (httpRetreiver.isPossibleURL(subject)){
-			httpRetreiver.addResourceToQueue(subject);
-			
-			if(!uriSet.contains(subject)) {
-				uriSet.add(subject);
-				this.totalNumberOfResources++;
-			}
+			this.addURI(subject);
 		}
 		
 		String object = quad.getObject().toString();
 		if (httpRetreiver.isPossibleURL(object)){
-			httpRetreiver.addResourceToQueue(object);
-			
-			if(!uriSet.contains(object)) {
-				uriSet.add(object);
-				this.totalNumberOfResources++;
-			}
+			this.addURI(object);
 		}
 	}
 
@@ -99,77 +104,93 @@ public class MisreportedContentType extends AbstractQualityMetric<Double> {
 	@Override
 	public Double metricValue() {
 		if (!this.metricCalculated){
-			httpRetreiver.start(true);
-
-			this.checkForMisreportedContentType();
+			// Most URIs were checked while the dataset was processed, wait for the rest
+			FetchStream stream = this.getFetchStream();
+			try {
+				if (!stream.await()) logger.warn("Not all the URIs were dereferenced, the metric value is computed on the URIs checked so far");
+			} catch (InterruptedException e) {
+				logger.warn("Interrupted while waiting for URIs to be dereferenced, the metric value is computed on the URIs checked so far");
+				Thread.currentThread().interrupt();
+			} finally {
+				this.totalNumberOfResources = stream.getAdded();
+				stream.close();
+				FetchCoordinator.getInstance().endRun(this.getDatasetURI());
+				FetchCoordinator.getInstance().shutdownIfIdle();
+			}
 			this.metricCalculated = true;
-			httpRetreiver.stop();
 		}
 		
 		double metricValue = 0.0;
+		double misreported = misReportedType.get();
+		double correct = correctReportedType.get();
 						
-		if((misReportedType + correctReportedType) != 0.0) {
-			metricValue = correctReportedType / (misReportedType + correctReportedType);
+		if((misreported + correct) != 0.0) {
+			metricValue = correct / (misreported + correct);
 		}
 		
 		return metricValue;
 	}
 	
-	private void checkForMisreportedContentType(){		
-		httpRetreiver.addListOfResourceToQueue(uriSet);
-		while(uriSet.size() > 0){
-			// Get the next URI to be processed and remove it from the set (i.e. the uriSet is used as a queue, the next element is poped)
-			String uri = uriSet.remove(0);	
-			
-			// Check if the URI has already been dereferenced, in which case, it would be part of the Cache
-			CachedHTTPResource httpResource = (CachedHTTPResource) LinkedDataMetricsCacheManager.getInstance().getFromCache(LinkedDataMetricsCacheManager.HTTP_RESOURCE_CACHE, uri);
-			
-			if (httpResource == null || (httpResource.getResponses() == null && httpResource.getDereferencabilityStatusCode() != StatusCode.BAD)) {
-				// If the URI is not part of the cache, add it back in to the uriSet, so that it's tried to be dereferenced by the HTTP Retriever
-				if(!uriSet.contains(uri)) {
-					uriSet.add(uri);
-				}
-				continue;
-			}
+	/**
+	 * Submits a URI for dereferencing, unless it was already seen
+	 * @param uri URI found in the dataset
+	 */
+	private void addURI(String uri) {
+		this.getFetchStream().add(uri);
+	}
+	
+	private synchronized FetchStream getFetchStream() {
+		if (this.fetchStream == null) {
+			FetchCoordinator.getInstance().beginRun(this.getDatasetURI());
+			this.fetchStream = new FetchStream(EnumSet.of(FetchNeed.CONTENT_TYPE, FetchNeed.PARSED_BODY), FetchPriority.NEEDED_FOR_METRIC, 
+					MAX_IN_FLIGHT, MAX_QUEUED_IN_MEMORY, this::checkForMisreportedContentType);
+		}
+		return this.fetchStream;
+	}
+	
+	/**
+	 * Checks the content type of a dereferenced URI, invoked (possibly concurrently) once its response is received
+	 * @param result Outcome of the dereferencing
+	 */
+	private void checkForMisreportedContentType(FetchResult result){
+		CachedHTTPResource httpResource = result.getResource();
+		if (Dereferencer.hasOKStatus(httpResource)){
+			logger.info("Checking "+httpResource.getUri()+ " for misreported content type");
 			
-			if (Dereferencer.hasOKStatus(httpResource)){
-				logger.info("Checking "+httpResource.getUri()+ " for misreported content type");
+			SerialisableHttpResponse res = HTTPResourceUtils.getSemanticResponse(httpResource);
+			if (res != null){
+				String ct = res.getHeaders("Content-Type");
+				Lang lang = RDFLanguages.contentTypeToLang(ct);
 				
-				SerialisableHttpResponse res = HTTPResourceUtils.getSemanticResponse(httpResource);
-				if (res != null){
-					String ct = res.getHeaders("Content-Type");
-					Lang lang = RDFLanguages.contentTypeToLang(ct);
-					
-					//should the resource be dereferencable?
-					if (lang != null){
-						//the resource might be a semantic resource
-						if (ModelParser.hasRDFContent(httpResource, lang)){
-							correctReportedType++;
-						} else {
-							misReportedType++;
-							
-							String actualCT = HTTPResourceUtils.determineActualContentType(httpResource) ;
-							this.createProblemModel(httpResource.getUri(), ct, actualCT);
-						}
+				//should the resource be dereferencable?
+				if (lang != null){
+					//the resource might be a semantic resource
+					if (ModelParser.hasRDFContent(httpResource, lang)){
+						correctReportedType.incrementAndGet();
+					} else {
+						misReportedType.incrementAndGet();
+						
+						String actualCT = HTTPResourceUtils.determineActualContentType(httpResource) ;
+						this.createProblemModel(httpResource.getUri(), ct, actualCT);
 					}
-				} else {
-					logger.info("No semantic content type for {}. Trying to parse the content.", httpResource.getUri());
-					SerialisableHttpResponse possible = HTTPResourceUtils.getPossibleSemanticResponse(httpResource); //we are doing this to get more statistical detail for the problem report
-					if (possible != null){
-						String location = HTTPResourceUtils.getResourceLocation(possible);
-						if (location != null){
-							Lang language = RDFLanguages.filenameToLang(location); // if the attachment has an non semantic file type, it is skipped
-							if (language != null){
-								misReportedType++;
-								
-								String actualCT = HTTPResourceUtils.determineActualContentType(httpResource);
-								this.createProblemModel(httpResource.getUri(), possible.getHeaders("Content-Type"), actualCT);
-							} else 
-								logger.info("Not possible to parse {}. Not a recognised file extension", location);	
-						}
+				}
+			} else {
+				logger.info("No semantic content type for {}. Trying to parse the content.", httpResource.getUri());
+				SerialisableHttpResponse possible = HTTPResourceUtils.getPossibleSemanticResponse(httpResource); //we are doing this to get more statistical detail for the problem report
+				if (possible != null){
+					String location = HTTPResourceUtils.getResourceLocation(possible);
+					if (location != null){
+						Lang language = RDFLanguages.filenameToLang(location); // if the attachment has an non semantic file type, it is skipped
+						if (language != null){
+							misReportedType.incrementAndGet();
+							
+							String actualCT = HTTPResourceUtils.determineActualContentType(httpResource);
+							this.createProblemModel(httpResource.getUri(), possible.getHeaders("Content-Type"), actualCT);
+						} else 
+							logger.info("Not possible to parse {}. Not a recognised file extension", location);	
 					}
-					else logger.info("Not possible to parse {}.", httpResource.getUri());
 				}
+				else logger.info("Not possible to parse {}.", httpResource.getUri());
 			}
 		}
 	}
@@ -198,7 +219,9 @@ public class MisreportedContentType extends AbstractQualityMetric<Double> {
 			m.add(new StatementImpl(subject, DQMPROB.expectedContentType, m.createLiteral(expectedContentType)));
 			m.add(new StatementImpl(subject, DQMPROB.actualContentType, m.createLiteral(actualContentType)));
 			
-			this.problemCollection.addProblem(m);
+			synchronized(this.problemCollection) {
+				this.problemCollection.addProblem(m);
+			}
 //			this._problemList.add(m);
 		}
 	}
@@ -230,8 +253,8 @@ public class MisreportedContentType extends AbstractQualityMetric<Double> {
 		
 		//TODO: Change
 		activity.add(mp, DAQ.totalDatasetTriplesAssessed, ResourceCommons.generateTypeLiteral(this.totalNumberOfTriples));
-		activity.add(mp, DQM.totalNumberOfResourcesAssessed, ResourceCommons.generateTypeLiteral((misReportedType + correctReportedType)));
-		activity.add(mp, DQM.totalValidContentType, ResourceCommons.generateTypeLiteral((int)correctReportedType));
+		activity.add(mp, DQM.totalNumberOfResourcesAssessed, ResourceCommons.generateTypeLiteral((double)(misReportedType.get() + correctReportedType.get())));
+		activity.add(mp, DQM.totalValidContentType, ResourceCommons.generateTypeLiteral((int)correctReportedType.get()));
 		activity.add(mp, DQM.totalNumberOfResources, ResourceCommons.generateTypeLiteral(this.totalNumberOfResources));
 
 		
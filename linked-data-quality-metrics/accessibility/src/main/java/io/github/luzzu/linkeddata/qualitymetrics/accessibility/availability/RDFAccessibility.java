@@ -3,6 +3,14 @@
  */
 package io.github.luzzu.linkeddata.qualitymetrics.accessibility.availability;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.jena.graph.Node;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.Resource;
@@ -13,7 +21,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import io.github.luzzu.exceptions.MetricProcessingException;
+import io.github.luzzu.linkeddata.qualitymetrics.accessibility.availability.helper.DataDumpVerifier;
+import io.github.luzzu.linkeddata.qualitymetrics.accessibility.availability.helper.DataDumpVerifier.Outcome;
 import io.github.luzzu.linkeddata.qualitymetrics.commons.AbstractQualityMetric;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.TimeLimitedExecutor;
 import io.github.luzzu.linkeddata.qualitymetrics.vocabulary.DQM;
 import io.github.luzzu.linkeddata.qualitymetrics.vocabulary.DQMPROB;
 import io.github.luzzu.operations.properties.EnvironmentProperties;
@@ -28,6 +39,11 @@ import io.github.luzzu.semantics.vocabularies.QPRO;
  * @author Jeremy Debattista
  * 
  * Check if ALL data dumps (void:dataDump) exist, are reachable and parsable.
+ * 
+ * By default only the existence of data dumps is checked. In verification mode
+ * (VERIFY_DUMPS), the beginning of each dump is also retrieved and parsed, in
+ * the background (on the TimeLimitedExecutor), by a DataDumpVerifier. Dumps
+ * which are retrieved but too large to be verified count as accessible.
  *     
  */
 public class RDFAccessibility extends AbstractQualityMetric<Boolean> {
@@ -41,6 +57,20 @@ public class RDFAccessibility extends AbstractQualityMetric<Boolean> {
 	private ProblemCollection<Quad> problemCollection = new ProblemCollectionQuad(DQM.RDFAvailabilityMetric);
 	private boolean requireProblemReport = EnvironmentProperties.getInstance().requiresQualityProblemReport();
 	
+	/**
+	 * If true, data dumps are retrieved (partially) and parsed, rather than only checked for existence
+	 */
+	public boolean VERIFY_DUMPS = false;
+	
+	/**
+	 * Maximum time (milliseconds) to wait for the verification of all the data dumps once the metric value is requested
+	 */
+	public long DUMP_VERIFICATION_TIMEOUT = 120000;
+	
+	private DataDumpVerifier verifier = new DataDumpVerifier();
+	private Map<Node, Future<Outcome>> dumpVerifications = new LinkedHashMap<Node, Future<Outcome>>();
+	private boolean verified = false;
+	
 
 	public void compute(Quad quad) throws MetricProcessingException {
 		logger.debug("Computing : {} ", quad.asTriple().toString());
@@ -48,11 +78,49 @@ public class RDFAccessibility extends AbstractQualityMetric<Boolean> {
 		if ((quad.getSubject().getURI().equals(super.getDatasetURI()))
 				&& (quad.getPredicate().getURI().equals(VOID.dataDump.getURI()))) {
 			this.hasRDFDump = true;
+			
+			Node dump = quad.getObject();
+			if ((VERIFY_DUMPS) && (!(dumpVerifications.containsKey(dump)))) {
+				String dumpURL = dump.isURI() ? dump.getURI() : dump.toString();
+				dumpVerifications.put(dump, TimeLimitedExecutor.getInstance().submit(() -> verifier.verify(dumpURL), DUMP_VERIFICATION_TIMEOUT, TimeUnit.MILLISECONDS));
+			}
+		}
+	}
+	
+	/**
+	 * Waits for the verification of the data dumps, all of which have to be verified for the dataset to have an accessible RDF dump
+	 */
+	private void awaitDumpVerifications() {
+		if (verified) return;
+		verified = true;
+		if (dumpVerifications.isEmpty()) return;
+		
+		long deadline = System.currentTimeMillis() + DUMP_VERIFICATION_TIMEOUT;
+		for (Map.Entry<Node, Future<Outcome>> verification : dumpVerifications.entrySet()) {
+			Outcome outcome = Outcome.UNREACHABLE;
+			try {
+				long remaining = Math.max(0, deadline - System.currentTimeMillis());
+				outcome = verification.getValue().get(remaining, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException | TimeoutException e) {
+				verification.getValue().cancel(true);
+			}
+			
+			logger.info("Data dump {} : {}", verification.getKey(), outcome);
+			if ((outcome != Outcome.VERIFIED) && (outcome != Outcome.UNVERIFIED)) {
+				this.hasRDFDump = false;
+				if (requireProblemReport) {
+					Quad q = new Quad(null, verification.getKey(), QPRO.exceptionDescription.asNode(), DQMPROB.InvalidDataDumpURI.asNode());
+					problemCollection.addProblem(q);
+				}
+			}
 		}
 	}
 
 	@Override
 	public Boolean metricValue() {
+		this.awaitDumpVerifications();
 		return this.hasRDFDump;
 	}
 
@@ -75,6 +143,7 @@ public class RDFAccessibility extends AbstractQualityMetric<Boolean> {
 
 	@Override
 	public ProblemCollection<?> getProblemCollection() {
+		this.awaitDumpVerifications();
 
 		if (requireProblemReport) {
 			if (!this.hasRDFDump) {
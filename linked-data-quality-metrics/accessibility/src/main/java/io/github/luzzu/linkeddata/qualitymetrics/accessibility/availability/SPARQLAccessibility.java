@@ -1,13 +1,15 @@
 package io.github.luzzu.linkeddata.qualitymetrics.accessibility.availability;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
-import org.apache.jena.query.Query;
-import org.apache.jena.query.QueryException;
-import org.apache.jena.query.QueryExecution;
-import org.apache.jena.query.QueryExecutionFactory;
-import org.apache.jena.query.QueryFactory;
+import org.apache.jena.graph.Node;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.Resource;
@@ -18,6 +20,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import io.github.luzzu.exceptions.MetricProcessingException;
+import io.github.luzzu.linkeddata.qualitymetrics.accessibility.availability.helper.SPARQLEndpointProber;
 import io.github.luzzu.linkeddata.qualitymetrics.commons.AbstractQualityMetric;
 import io.github.luzzu.linkeddata.qualitymetrics.vocabulary.DQM;
 import io.github.luzzu.linkeddata.qualitymetrics.vocabulary.DQMPROB;
@@ -43,6 +46,17 @@ public class SPARQLAccessibility extends AbstractQualityMetric<Boolean> {
 	
 	boolean hasAccessibleEndpoint = false;
 	
+	/**
+	 * Endpoints being probed in the background, awaited once the metric value is requested
+	 */
+	private Map<Node, CompletableFuture<Boolean>> endpointProbes = new LinkedHashMap<Node, CompletableFuture<Boolean>>();
+	
+	/**
+	 * Time (milliseconds) to wait for a probe beyond its deadline
+	 */
+	private static final long PROBE_GRACE = 1000;
+	private boolean probed = false;
+	
 	private ProblemCollection<Quad> problemCollection = new ProblemCollectionQuad(DQM.EndPointAvailabilityMetric);
 	private boolean requireProblemReport = EnvironmentProperties.getInstance().requiresQualityProblemReport();
 
@@ -60,27 +74,49 @@ public class SPARQLAccessibility extends AbstractQualityMetric<Boolean> {
 		if (!(quad.getSubject().isBlank())) {
 			if ((quad.getSubject().getURI().equals(super.getDatasetURI()))
 					&& (endpointProperty.contains(quad.getPredicate().getURI()))) {
-	
-				String sparqlQuerystring = "ASK {?s ?p ?o}";
-				Query query = QueryFactory.create(sparqlQuerystring);
-				
-	
-				QueryExecution qexec = QueryExecutionFactory.sparqlService(quad.getObject().toString(), query);
-	
-				try{
-					this.hasAccessibleEndpoint = qexec.execAsk();
-					qexec.close();
-				} catch (QueryException e){
-					logger.error("Endpoint " + quad.getObject().toString() + " responded with : " + e.getMessage());
-					// TODO: problem reporting
-					// Quad q = new Quad(null, quad.getSubject() , QPRO.exceptionDescription.asNode(), DQMPROB.InvalidSPARQLEndPoint.asNode());
+				Node endpoint = quad.getObject();
+				if (!(endpointProbes.containsKey(endpoint))) {
+					endpointProbes.put(endpoint, SPARQLEndpointProber.getInstance().probe(endpoint.toString()));
 				}
 			}
 		}
 	}
 	
+	/**
+	 * Waits for the endpoints being probed, the dataset has an accessible endpoint if any of them is accessible.
+	 * Each endpoint which is not accessible is reported as a problem
+	 */
+	private void awaitEndpointProbes() {
+		if (probed) return;
+		probed = true;
+		
+		// A probe gives up on its own by its deadline, counted from when it was submitted; waiting a while
+		// longer only guards against waiting forever
+		SPARQLEndpointProber prober = SPARQLEndpointProber.getInstance();
+		for (Map.Entry<Node, CompletableFuture<Boolean>> probe : endpointProbes.entrySet()) {
+			boolean accessible = false;
+			try {
+				long deadline = prober.getDeadline(probe.getKey().toString()) + PROBE_GRACE;
+				long remaining = Math.max(0, deadline - System.currentTimeMillis());
+				accessible = probe.getValue().get(remaining, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException | TimeoutException e) {
+				logger.warn("Endpoint {} could not be probed : {}", probe.getKey(), e.getMessage());
+			}
+			
+			if (accessible) {
+				this.hasAccessibleEndpoint = true;
+			} else if (requireProblemReport) {
+				Quad q = new Quad(null, probe.getKey(), QPRO.exceptionDescription.asNode(), DQMPROB.InvalidSPARQLEndPoint.asNode());
+				problemCollection.addProblem(q);
+			}
+		}
+	}
+	
 	@Override
 	public Boolean metricValue() {
+		this.awaitEndpointProbes();
 		return this.hasAccessibleEndpoint;
 	}
 
@@ -102,6 +138,7 @@ public class SPARQLAccessibility extends AbstractQualityMetric<Boolean> {
 
 	@Override
 	public ProblemCollection<?> getProblemCollection() {
+		this.awaitEndpointProbes();
 		if (requireProblemReport) {
 			if (!this.hasAccessibleEndpoint) {
 				Quad q = new Quad(null, ResourceCommons.toResource(super.getDatasetURI()).asNode() , QPRO.exceptionDescription.asNode(), DQMPROB.NoEndPointAccessibility.asNode());
@@ -0,0 +1,241 @@
+/**
+ *
+ */
+package io.github.luzzu.linkeddata.qualitymetrics.accessibility.availability.helper;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.sparql.core.Quad;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.github.luzzu.linkeddata.qualitymetrics.commons.RDFFormatSniffer;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.CachingDnsResolver;
+
+/**
+ * Verifies that a data dump (void:dataDump) is retrievable and parsable
+ * without downloading it: only its first MAX_BYTES bytes are requested
+ * (with a byte range, and read no further if the server ignores it),
+ * decompressed on the fly if the dump is gzipped or bzipped, and parsed
+ * as a stream until MAX_TRIPLES triples are read.
+ *
+ * A dump which fails to parse where it was cut short is deemed parsable,
+ * as long as some triples were read before the cut. Serialisations which
+ * are only parsed as a whole document (JSON-LD, RDF/JSON) cannot be
+ * verified once cut short, such dumps are left unverified.
+ */
+public class DataDumpVerifier {
+
+	final static Logger logger = LoggerFactory.getLogger(DataDumpVerifier.class);
+
+	public enum Outcome {
+		/** Triples were parsed from the dump */
+		VERIFIED,
+		/** The dump could not be retrieved */
+		UNREACHABLE,
+		/** The dump was retrieved, but no triples could be parsed from it */
+		UNPARSEABLE,
+		/** The dump was retrieved, but it is too large to be parsed from its beginning */
+		UNVERIFIED
+	}
+
+	/**
+	 * Maximum number of bytes retrieved from a dump (before decompressing it)
+	 */
+	public long MAX_BYTES = 4 * 1024 * 1024;
+
+	/**
+	 * Number of triples (or quads) after which parsing stops
+	 */
+	public int MAX_TRIPLES = 100;
+
+	/**
+	 * Time (milliseconds) to connect to the server, and to wait for data, respectively
+	 */
+	public int CONNECT_TIMEOUT = 10000;
+	public int READ_TIMEOUT = 30000;
+
+	/**
+	 * Retrieves the beginning of a dump and parses it
+	 * @param dumpURL URL of the data dump
+	 * @return The outcome of the verification
+	 */
+	public Outcome verify(String dumpURL) {
+		RequestConfig config = RequestConfig.custom()
+				.setConnectTimeout(CONNECT_TIMEOUT)
+				.setConnectionRequestTimeout(CONNECT_TIMEOUT)
+				.setSocketTimeout(READ_TIMEOUT)
+				.build();
+
+		HttpGet get;
+		try {
+			get = new HttpGet(dumpURL);
+		} catch (IllegalArgumentException e) {
+			logger.debug("Data dump {} is not a valid URL", dumpURL);
+			return Outcome.UNREACHABLE;
+		}
+		get.setHeader(HttpHeaders.RANGE, "bytes=0-" + (MAX_BYTES - 1));
+
+		try (CloseableHttpClient httpclient = HttpClientBuilder.create().setDnsResolver(CachingDnsResolver.getInstance()).setDefaultRequestConfig(config).build()) {
+			CloseableHttpResponse response = httpclient.execute(get);
+			try {
+				int status = response.getStatusLine().getStatusCode();
+				HttpEntity entity = response.getEntity();
+				if (((status != 200) && (status != 206)) || (entity == null)) {
+					logger.debug("Data dump {} responded with status {}", dumpURL, status);
+					return Outcome.UNREACHABLE;
+				}
+
+				String contentType = (entity.getContentType() == null) ? null : ContentType.getOrDefault(entity).getMimeType();
+				CountingInputStream wire = new CountingInputStream(new BoundedInputStream(entity.getContent(), MAX_BYTES));
+				return this.parsePrefix(dumpURL, contentType, wire);
+			} finally {
+				// The rest of the dump is never read, the connection is dropped rather than drained
+				get.abort();
+				response.close();
+			}
+		} catch (IOException e) {
+			logger.debug("Data dump {} could not be retrieved. Error: {}", dumpURL, e.getMessage());
+			return Outcome.UNREACHABLE;
+		}
+	}
+
+	private Outcome parsePrefix(String dumpURL, String contentType, CountingInputStream wire) {
+		String name = dumpURL.toLowerCase(Locale.ROOT);
+		int query = name.indexOf('?');
+		if (query >= 0) name = name.substring(0, query);
+
+		InputStream in;
+		try {
+			if (name.endsWith(".gz") || "application/gzip".equals(contentType) || "application/x-gzip".equals(contentType)) {
+				in = new GZIPInputStream(wire);
+				if (name.endsWith(".gz")) name = name.substring(0, name.length() - ".gz".length());
+			} else if (name.endsWith(".bz2") || "application/x-bzip2".equals(contentType)) {
+				in = new BZip2CompressorInputStream(wire);
+				if (name.endsWith(".bz2")) name = name.substring(0, name.length() - ".bz2".length());
+			} else {
+				in = wire;
+			}
+		} catch (IOException e) {
+			logger.debug("Data dump {} could not be decompressed. Error: {}", dumpURL, e.getMessage());
+			return Outcome.UNPARSEABLE;
+		}
+
+		BufferedInputStream buffered = new BufferedInputStream(in);
+		Lang lang = this.detectLang(name, contentType, buffered);
+		if (lang == null) {
+			logger.debug("The serialisation of data dump {} could not be determined", dumpURL);
+			return Outcome.UNPARSEABLE;
+		}
+
+		TripleCounter counter = new TripleCounter(MAX_TRIPLES);
+		try {
+			RDFDataMgr.parse(counter, buffered, lang);
+		} catch (RuntimeException e) {
+			// Parsing is stopped on purpose once enough triples are read
+			if (counter.isFull()) return Outcome.VERIFIED;
+			// A dump cut short fails to parse at the cut, what came before it was parsable
+			if ((counter.count > 0) && (wire.getByteCount() >= MAX_BYTES)) return Outcome.VERIFIED;
+			// A whole document cut short cannot be parsed, which says nothing about the dump
+			if ((counter.count == 0) && (wire.getByteCount() >= MAX_BYTES) && (isWholeDocument(lang))) {
+				logger.debug("Data dump {} is larger than {} bytes and cannot be verified as {}", dumpURL, MAX_BYTES, lang.getName());
+				return Outcome.UNVERIFIED;
+			}
+
+			logger.debug("Data dump {} could not be parsed as {}. Error: {}", dumpURL, lang.getName(), e.getMessage());
+			return Outcome.UNPARSEABLE;
+		}
+		return (counter.count > 0) ? Outcome.VERIFIED : Outcome.UNPARSEABLE;
+	}
+
+	/**
+	 * Determines the serialisation of the dump from its file extension, failing that from
+	 * its first bytes, and failing that from the content type it was served with
+	 */
+	private Lang detectLang(String name, String contentType, BufferedInputStream in) {
+		Lang lang = RDFLanguages.filenameToLang(name);
+		if (lang != null) return lang;
+
+		byte[] head = new byte[(RDFFormatSniffer.SNIFF_LENGTH * 4) + 1];
+		int length = 0;
+		in.mark(head.length);
+		try {
+			int read;
+			while ((length < head.length) && ((read = in.read(head, length, head.length - length)) > 0)) {
+				length += read;
+			}
+			in.reset();
+		} catch (IOException e) {
+			return null;
+		}
+
+		switch (RDFFormatSniffer.sniff(Arrays.copyOf(head, length), null)) {
+			case RDFXML: return Lang.RDFXML;
+			case TURTLE: return Lang.TURTLE;
+			case NTRIPLES: return Lang.NTRIPLES;
+			case NQUADS: return Lang.NQUADS;
+			case TRIG: return Lang.TRIG;
+			case JSONLD: return Lang.JSONLD;
+			default: return (contentType == null) ? null : RDFLanguages.contentTypeToLang(contentType);
+		}
+	}
+
+	/**
+	 * @return True if triples are only parsed once the whole document is read
+	 */
+	private static boolean isWholeDocument(Lang lang) {
+		return (Lang.JSONLD.equals(lang)) || (Lang.RDFJSON.equals(lang));
+	}
+
+	/**
+	 * Counts the triples and quads parsed, stopping the parser once enough are read
+	 */
+	private static class TripleCounter extends StreamRDFBase {
+		private final int limit;
+		private int count = 0;
+
+		TripleCounter(int limit) {
+			this.limit = limit;
+		}
+
+		boolean isFull() {
+			return count >= limit;
+		}
+
+		@Override
+		public void triple(Triple triple) {
+			this.count();
+		}
+
+		@Override
+		public void quad(Quad quad) {
+			this.count();
+		}
+
+		private void count() {
+			count++;
+			if (isFull()) throw new IllegalStateException("Parsed enough triples");
+		}
+	}
+}
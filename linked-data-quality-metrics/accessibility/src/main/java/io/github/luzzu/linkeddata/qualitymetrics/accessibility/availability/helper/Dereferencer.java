@@ -18,6 +18,8 @@ import org.apache.jena.riot.RiotException;
 
 import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
 
+import io.github.luzzu.linkeddata.qualitymetrics.commons.cache.ParsedContentCache;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.datatypes.ParsedContentSummary;
 import io.github.luzzu.qualitymetrics.commons.cache.CachedHTTPResource;
 import io.github.luzzu.qualitymetrics.commons.datatypes.HTTPDereference.StatusCode;
 import io.github.luzzu.qualitymetrics.commons.serialisation.SerialisableHttpResponse;
@@ -170,6 +172,8 @@ public class Dereferencer {
 	public static void parsable(CachedHTTPResource resource){
 		if (resource.isContentParsable() == null) {
 			String ns = ModelFactory.createDefaultModel().createResource(resource.getUri()).getNameSpace();
+			// The content was already parsed when retrieved
+			if (fromSummary(resource, null, ns)) return;
 			if (!(failSafeMap.containsKey(ns))){
 				Lang tryLang = null;
 				double len = -1.0d;
@@ -185,7 +189,8 @@ public class Dereferencer {
 				}
 				
 				len = len/1000000;
-				if ((len > 0) && (len < 10)){
+				// The content kept when retrieved is parsed in memory, whatever its length, rather than fetched again
+				if ((resource.getContent() != null) || ((len > 0) && (len < 10))){
 					// Load model in memory if file is under 10 MB
 					try{
 						//Model m = RDFDataMgr.loadModel(resource.getUri(), (tryLang == null) ? Lang.RDFXML : tryLang);
@@ -239,10 +244,30 @@ public class Dereferencer {
 	}
 
 
+	/**
+	 * Decides whether the resource is parsable from the summary of its content, if it was parsed
+	 * (with the given language, if any) when retrieved
+	 * @return True if the decision was taken
+	 */
+	private static boolean fromSummary(CachedHTTPResource resource, Lang lang, String ns){
+		ParsedContentSummary summary = ParsedContentCache.getInstance().get(resource.getUri());
+		if ((summary == null) || ((lang != null) && (!lang.equals(summary.getLang())))) return false;
+
+		if (summary.hasRDF()) {
+			resource.setParsableContent(true);
+			failSafeCounter.remove(ns);
+		} else {
+			addToFailSafeDecision(ns);
+			resource.setParsableContent(false);
+		}
+		return true;
+	}
+
 	// Parse with the given language only an nothing else
 	public static void parsable(CachedHTTPResource resource, Lang lang){
 		if (resource.isContentParsable() == null) {
 			String ns = ModelFactory.createDefaultModel().createResource(resource.getUri()).getNameSpace();
+			if (fromSummary(resource, lang, ns)) return;
 			if (!(failSafeMap.containsKey(ns))){
 				double len = -1.0d;
 				for (SerialisableHttpResponse shr : resource.getResponses()){
@@ -254,7 +279,7 @@ public class Dereferencer {
 				}
 				
 				len = len/1000000;
-				if ((len > 0) && (len < 10)) {
+				if ((resource.getContent() != null) || ((len > 0) && (len < 10))) {
 					// Load model in memory if file is under 10 MB
 					try{
 						Model m = ModelFactory.createDefaultModel();
@@ -3,17 +3,15 @@
  */
 package io.github.luzzu.linkeddata.qualitymetrics.accessibility.availability.helper;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.jena.graph.Triple;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
-import org.apache.jena.rdf.model.RDFReader;
 import org.apache.jena.riot.Lang;
-import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFLanguages;
 import org.apache.jena.riot.lang.PipedQuadsStream;
 import org.apache.jena.riot.lang.PipedRDFIterator;
 import org.apache.jena.riot.lang.PipedRDFStream;
@@ -23,6 +21,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import io.github.luzzu.datatypes.Object2Quad;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.RDFFormatSniffer;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.TimeLimitedExecutor;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.cache.ParsedContentCache;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.BoundedHttpClient;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.datatypes.ParsedContentSummary;
 import io.github.luzzu.qualitymetrics.commons.cache.CachedHTTPResource;
 import io.github.luzzu.qualitymetrics.commons.datatypes.HTTPDereference.StatusCode;
 import io.github.luzzu.qualitymetrics.commons.serialisation.SerialisableHttpResponse;
@@ -39,15 +42,18 @@ public class ModelParser {
 			
 	final static Logger logger = LoggerFactory.getLogger(ModelParser.class);
 	
+	/**
+	 * Maximum time (milliseconds) for a snapshot parser to get a worker thread
+	 */
+	private static final long PARSER_START_TIMEOUT = 10000;
+	
 	public static boolean timeoutModel(final String uri){
     	final Model m = ModelFactory.createDefaultModel();	
 		try {
 		      TimeLimitedCodeBlock.runWithTimeout(new Runnable() {
 		        @Override
 		        public void run() {
-		        	RDFReader arp = m.getReader("RDF/XML");
-					arp.setProperty("WARN_REDEFINITION_OF_ID","EM_IGNORE");
-					arp.read(m, uri);
+		        	BoundedHttpClient.getInstance().parser(uri).forceLang(Lang.RDFXML).parse(m.getGraph());
 		        }
 		      }, 3, TimeUnit.SECONDS);
 		    }
@@ -65,12 +71,10 @@ public class ModelParser {
 	public static boolean timeoutModel(final String uri, final Lang tryLang){
     	final Model m = ModelFactory.createDefaultModel();	
 		try {
-				final RDFReader arp = m.getReader(tryLang.getName());
 				TimeLimitedCodeBlock.runWithTimeout(new Runnable() {
 					@Override
 				    public void run() {
-						arp.setProperty("WARN_REDEFINITION_OF_ID","EM_IGNORE");
-						arp.read(m, uri);
+						BoundedHttpClient.getInstance().parser(uri).forceLang(tryLang).parse(m.getGraph());
 				//		m.read(uri, tryLang.getName());
 				    }
 				}, 3, TimeUnit.SECONDS);
@@ -103,14 +107,12 @@ public class ModelParser {
 			rdfStream = new PipedTriplesStream((PipedRDFIterator<Triple>)iterator);
 		}
 		
-		ExecutorService executor = Executors.newSingleThreadExecutor();
-		
 		Runnable parser = new Runnable(){
 			@Override
 			public void run() {
 				try{
 					logger.debug("Trying to parse resource {}.", uri);
-					RDFDataMgr.parse(rdfStream, uri, lang);
+					BoundedHttpClient.getInstance().parser(uri).lang(lang).parse(rdfStream);
 				} catch (Exception e){
 					logger.debug("Resource {} could not be parsed.", uri);
 					rdfStream.finish();
@@ -118,8 +120,8 @@ public class ModelParser {
 			}			
 		};
 
-		Future<?> future = executor.submit(parser);
-		executor.shutdown();
+		Future<?> future = startParser(parser);
+		if (future == null) return false;
 		boolean tripleParsed = false;
 	
 		try {
@@ -135,6 +137,8 @@ public class ModelParser {
 			future.cancel(true);
 			iterator.close();
 		} catch (Exception e) {
+			// The parser must not keep holding a shared worker
+			future.cancel(true);
 			tripleParsed = false;
 		}
 		
@@ -156,6 +160,12 @@ public class ModelParser {
 			return false;
 		}
 		
+		// The content was already parsed when retrieved
+		ParsedContentSummary summary = ParsedContentCache.getInstance().get(httpResource.getUri());
+		if ((summary != null) && ((givenLang == null) || (givenLang.equals(summary.getLang())))) {
+			return summary.hasRDF();
+		}
+		
 		logger.debug("Initiating Streams and Iterators");
 		final PipedRDFIterator<?> iterator;
 		final PipedRDFStream<?> rdfStream;
@@ -168,14 +178,12 @@ public class ModelParser {
 			rdfStream = new PipedTriplesStream((PipedRDFIterator<Triple>)iterator);
 		}
 		
-		ExecutorService executor = Executors.newSingleThreadExecutor();
-		
 		Runnable parser = new Runnable() {
 			public void run() {
 				try{
 					logger.debug("Trying to parse resource {}.", httpResource.getUri());
-					if (givenLang == null) RDFDataMgr.parse(rdfStream, httpResource.getUri());
-					else RDFDataMgr.parse(rdfStream, httpResource.getUri(), givenLang);
+					if (givenLang == null) BoundedHttpClient.getInstance().parser(httpResource.getUri()).parse(rdfStream);
+					else BoundedHttpClient.getInstance().parser(httpResource.getUri()).lang(givenLang).parse(rdfStream);
 				} catch (Exception e){
 					logger.debug("Resource {} could not be parsed. Exception {}", httpResource.getUri(), e.getMessage());
 					rdfStream.finish();
@@ -183,8 +191,8 @@ public class ModelParser {
 			}
 		};
 
-		Future<?> future = executor.submit(parser);
-		executor.shutdown();
+		Future<?> future = startParser(parser);
+		if (future == null) return false;
 		boolean tripleParsed = false;
 	
 		try {
@@ -199,6 +207,8 @@ public class ModelParser {
 			future.cancel(true);
 			iterator.close();
 		} catch (Exception e) {
+			// The parser must not keep holding a shared worker
+			future.cancel(true);
 			tripleParsed = false;
 		}
 		
@@ -221,6 +231,12 @@ public class ModelParser {
 			return false;
 		}
 		
+		// The content was already parsed when retrieved, noting whether the resource occurs as a subject
+		ParsedContentSummary summary = ParsedContentCache.getInstance().get(httpResource.getUri());
+		if ((summary != null) && (subjectURI.equals(summary.getUri())) && ((givenLang == null) || (givenLang.equals(summary.getLang())))) {
+			return summary.isSubjectFound();
+		}
+		
 		logger.debug("Initiating Streams and Iterators");
 		final PipedRDFIterator<?> iterator;
 		final PipedRDFStream<?> rdfStream;
@@ -233,14 +249,12 @@ public class ModelParser {
 			rdfStream = new PipedTriplesStream((PipedRDFIterator<Triple>)iterator);
 		}
 		
-		ExecutorService executor = Executors.newSingleThreadExecutor();
-		
 		Runnable parser = new Runnable() {
 			public void run() {
 				try{
 					logger.debug("Trying to parse resource {}.", httpResource.getUri());
-					if (givenLang == null) RDFDataMgr.parse(rdfStream, httpResource.getUri());
-					else RDFDataMgr.parse(rdfStream, httpResource.getUri(), givenLang);
+					if (givenLang == null) BoundedHttpClient.getInstance().parser(httpResource.getUri()).parse(rdfStream);
+					else BoundedHttpClient.getInstance().parser(httpResource.getUri()).lang(givenLang).parse(rdfStream);
 				} catch (Exception e){
 					logger.debug("Resource {} could not be parsed. Exception {}", httpResource.getUri(), e.getMessage());
 					rdfStream.finish();
@@ -248,8 +262,8 @@ public class ModelParser {
 			}
 		};
 
-		Future<?> future = executor.submit(parser);
-		executor.shutdown();
+		Future<?> future = startParser(parser);
+		if (future == null) return false;
 		boolean tripleParsed = false;
 		
 	
@@ -265,12 +279,32 @@ public class ModelParser {
 			future.cancel(true);
 			iterator.close();
 		} catch (Exception e) {
+			// The parser must not keep holding a shared worker
+			future.cancel(true);
 			tripleParsed = false;
 		}
 		
 		return tripleParsed;
 	}
 		
+	/**
+	 * Starts a parser feeding a piped iterator, once it gets a worker thread. The iterator gives up
+	 * if nothing is fed in time, thus a parser still waiting for a thread would be taken as not parseable
+	 * @return The future of the parser, or null if it did not get a thread within PARSER_START_TIMEOUT
+	 * 			(or if interrupted whilst waiting for it to start)
+	 */
+	private static Future<?> startParser(Runnable parser) {
+		try {
+			return TimeLimitedExecutor.getInstance().submitAndAwaitStart(parser, PARSER_START_TIMEOUT, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			logger.debug("Parser did not start in time: {}", e.getMessage());
+			return null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+	}
+	
 	private static Lang tryGetLang(CachedHTTPResource resource){
 		Lang lang = null;
 		for (SerialisableHttpResponse shr : resource.getResponses()){
@@ -288,8 +322,24 @@ public class ModelParser {
 		return lang;
 	}
 	
+	/**
+	 * Decides whether the content retrieved for a resource is RDF, without parsing nor fetching it again, such that
+	 * it can be called by the threads notifying retrieved resources: from the summary of the content parsed when it
+	 * was retrieved (see ParsedContentCache), or else by sniffing the beginning of the content (see RDFFormatSniffer),
+	 * e.g. if it was not parsed as it was not served as RDF
+	 * @param httpResource Dereferenced resource
+	 * @param lang Serialisation the content is declared as, against which sniffed content is checked
+	 * @return True if the content is RDF (of the given serialisation, if sniffed). False if nothing was retrieved
+	 */
 	public static boolean hasRDFContent(CachedHTTPResource httpResource, Lang lang){
-		Dereferencer.parsable(httpResource, lang);
-		return httpResource.isContentParsable();
+		ParsedContentSummary summary = ParsedContentCache.getInstance().get(httpResource.getUri());
+		if ((summary != null) && (summary.getLang() != null)) return summary.hasRDF();
+
+		String content = ParsedContentCache.getInstance().getPrefix(httpResource.getUri());
+		if (content == null) content = httpResource.getContent();
+		RDFFormatSniffer.Format format = RDFFormatSniffer.sniff(content);
+		if (!(format.isRDF())) return false;
+
+		return (lang == null) || lang.equals(RDFLanguages.contentTypeToLang(format.getContentType()));
 	}
 }
\ No newline at end of file
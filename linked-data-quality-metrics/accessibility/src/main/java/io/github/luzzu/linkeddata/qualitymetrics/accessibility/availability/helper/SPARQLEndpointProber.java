@@ -0,0 +1,150 @@
+/**
+ *
+ */
+package io.github.luzzu.linkeddata.qualitymetrics.accessibility.availability.helper;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.query.QueryFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+
+import io.github.luzzu.linkeddata.qualitymetrics.commons.TimeLimitedExecutor;
+
+/**
+ * Probes SPARQL endpoints with an ASK query in the background, so that
+ * an endpoint which hangs cannot hold up the assessment. A probe gives up
+ * if the endpoint does not accept the connection within CONNECT_TIMEOUT,
+ * or does not answer within PROBE_TIMEOUT overall, from the moment the
+ * probe is submitted to the TimeLimitedExecutor.
+ *
+ * Probes are shared by all the metrics: an endpoint which is being probed
+ * is not probed again, and its outcome is kept for RESULT_TTL milliseconds,
+ * across assessments. A probe which timed out before even getting a thread
+ * tells nothing about the endpoint, hence it is not kept.
+ */
+public class SPARQLEndpointProber {
+
+	final static Logger logger = LoggerFactory.getLogger(SPARQLEndpointProber.class);
+
+	/**
+	 * Time (milliseconds) to connect to an endpoint, and to get its answer, respectively
+	 */
+	public long CONNECT_TIMEOUT = 10000;
+	public long PROBE_TIMEOUT = 30000;
+
+	/**
+	 * Time (milliseconds) for which the outcome of a probe is kept
+	 */
+	public long RESULT_TTL = 3600000;
+
+	private static SPARQLEndpointProber instance = null;
+
+	private static final Query ASK_QUERY = QueryFactory.create("ASK {?s ?p ?o}");
+
+	private final ConcurrentMap<String, Probe> probes = new ConcurrentLinkedHashMap.Builder<String, Probe>().maximumWeightedCapacity(1000).build();
+
+	protected SPARQLEndpointProber(){}
+
+	public static synchronized SPARQLEndpointProber getInstance(){
+		if (instance == null) {
+			instance = new SPARQLEndpointProber();
+		}
+		return instance;
+	}
+
+	/**
+	 * Starts probing an endpoint, unless it is being probed or its outcome is known
+	 * @param endpoint URL of the SPARQL endpoint
+	 * @return True, once probed, if the endpoint answered the ASK query positively.
+	 * 			False if it answered negatively, failed, or timed out.
+	 */
+	public CompletableFuture<Boolean> probe(String endpoint) {
+		while (true) {
+			Probe probe = probes.get(endpoint);
+			if ((probe != null) && (!probe.hasExpired(RESULT_TTL))) return probe.outcome;
+
+			Probe created = new Probe(System.currentTimeMillis() + PROBE_TIMEOUT);
+			boolean started = (probe == null) ? (probes.putIfAbsent(endpoint, created) == null) : probes.replace(endpoint, probe, created);
+			if (started) {
+				this.start(endpoint, created);
+				return created.outcome;
+			}
+		}
+	}
+
+	/**
+	 * @param endpoint URL of the SPARQL endpoint
+	 * @return Time (milliseconds since the epoch) by which the probe of the endpoint completes on its own,
+	 * 			or the current time if the endpoint is not being probed
+	 */
+	public long getDeadline(String endpoint) {
+		Probe probe = probes.get(endpoint);
+		return (probe == null) ? System.currentTimeMillis() : probe.deadline;
+	}
+
+	/**
+	 * Forgets the outcome of all the probes
+	 */
+	public void clear() {
+		probes.clear();
+	}
+
+	private void start(String endpoint, Probe probe) {
+		final QueryExecution qexec = QueryExecutionFactory.sparqlService(endpoint, ASK_QUERY);
+		// For remote query executions, the first timeout is for reading the response, the second for connecting
+		qexec.setTimeout(PROBE_TIMEOUT, CONNECT_TIMEOUT);
+
+		// The read timeout does not bound an endpoint which keeps trickling its answer, hence the overall time limit
+		TimeLimitedExecutor.getInstance().submit(() -> {
+			probe.started = true;
+			try {
+				return qexec.execAsk();
+			} finally {
+				qexec.close();
+			}
+		}, PROBE_TIMEOUT, TimeUnit.MILLISECONDS).whenComplete((accessible, error) -> {
+			if ((error instanceof TimeoutException) && (!probe.started)) {
+				logger.warn("Endpoint {} could not be probed within {} ms, as the probe did not get a thread", endpoint, PROBE_TIMEOUT);
+				// the next request for the endpoint probes it once again
+				probes.remove(endpoint, probe);
+			} else if (error instanceof TimeoutException) {
+				logger.warn("Endpoint {} did not respond within {} ms", endpoint, PROBE_TIMEOUT);
+				qexec.abort();
+			} else if (error != null) {
+				logger.debug("Endpoint {} responded with : {}", endpoint, error.getMessage());
+			}
+			probe.complete((error == null) && (Boolean.TRUE.equals(accessible)));
+		});
+	}
+
+	private static class Probe {
+		final CompletableFuture<Boolean> outcome = new CompletableFuture<Boolean>();
+		volatile long completedAt = Long.MAX_VALUE;
+		final long deadline;
+		volatile boolean started = false;
+
+		Probe(long deadline) {
+			this.deadline = deadline;
+		}
+
+		boolean complete(boolean accessible) {
+			if (!outcome.complete(accessible)) return false;
+			completedAt = System.currentTimeMillis();
+			return true;
+		}
+
+		boolean hasExpired(long ttl) {
+			long completed = completedAt;
+			return (completed != Long.MAX_VALUE) && ((System.currentTimeMillis() - completed) > ttl);
+		}
+	}
+}
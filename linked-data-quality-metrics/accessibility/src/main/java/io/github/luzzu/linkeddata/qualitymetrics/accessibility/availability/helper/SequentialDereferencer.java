@@ -0,0 +1,125 @@
+package io.github.luzzu.linkeddata.qualitymetrics.accessibility.availability.helper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.FetchCoordinator;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.FetchNeed;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.FetchPriority;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.sampling.SequentialProportionEstimator;
+import io.github.luzzu.qualitymetrics.commons.cache.CachedHTTPResource;
+
+/**
+ * Dereferences a sample of URIs for the estimated dereferenceability metrics.
+ * With early stopping, the URIs are dereferenced in rounds, in random order, and
+ * no further rounds are started once the confidence interval of the dereferenceable
+ * ratio (overall and per stratum) is tighter than the target half-width.
+ * Without early stopping, the whole sample is dereferenced in a single round.
+ */
+public class SequentialDereferencer {
+
+	final static Logger logger = LoggerFactory.getLogger(SequentialDereferencer.class);
+
+	private final boolean earlyStopping;
+	private final double targetHalfWidth;
+	private final int roundSize;
+
+	/**
+	 * Standard score of the confidence level (95%)
+	 */
+	public double CONFIDENCE_Z = 1.96;
+
+	/**
+	 * Minimum share of the sample a stratum must account for, for its own interval to be required to be tight
+	 */
+	public double MIN_STRATUM_WEIGHT = 0.05;
+
+	/**
+	 * @param earlyStopping Whether to stop once the estimate is precise enough
+	 * @param targetHalfWidth Target half-width of the confidence intervals
+	 * @param roundSize Number of URIs dereferenced in each round
+	 */
+	public SequentialDereferencer(boolean earlyStopping, double targetHalfWidth, int roundSize) {
+		this.earlyStopping = earlyStopping;
+		this.targetHalfWidth = targetHalfWidth;
+		this.roundSize = Math.max(1, roundSize);
+	}
+
+	/**
+	 * Dereferences the sample, or part of it if the estimate becomes precise enough
+	 * @param sample URIs to dereference
+	 * @param stratumOf Stratum of each URI (e.g. its TLD), or null if no strata are used
+	 * @param onResource Invoked (possibly concurrently) with every dereferenced resource
+	 * @return The estimate, whose observations are the URIs dereferenced and whose successes are those successfully dereferenced
+	 */
+	public SequentialProportionEstimator dereference(List<String> sample, Function<String, String> stratumOf, Consumer<CachedHTTPResource> onResource) {
+		final SequentialProportionEstimator estimator = new SequentialProportionEstimator(CONFIDENCE_Z);
+		final Map<String, String> strata = new HashMap<String, String>();
+
+		if (stratumOf != null) {
+			Map<String, Long> sizes = new HashMap<String, Long>();
+			for (String uri : sample) {
+				String stratum = stratumOf.apply(uri);
+				strata.put(uri, stratum);
+				sizes.merge(stratum, 1l, Long::sum);
+			}
+			for (Map.Entry<String, Long> size : sizes.entrySet()) estimator.expect(size.getKey(), size.getValue());
+		}
+
+		List<String> ordered = new ArrayList<String>(sample);
+		int round = ordered.size();
+		if (earlyStopping) {
+			// A random prefix of a (stratified) random sample is itself a (roughly proportionate) random sample
+			Collections.shuffle(ordered);
+			round = roundSize;
+		}
+
+		final FetchCoordinator coordinator = FetchCoordinator.getInstance();
+		// Results arriving after the dereferencer gave up waiting must not change the estimate returned
+		final AtomicBoolean open = new AtomicBoolean(true);
+		for (int from = 0; from < ordered.size(); from += round) {
+			List<String> uris = ordered.subList(from, Math.min(ordered.size(), from + round));
+			try {
+				boolean complete = coordinator.await(coordinator.requestAll(uris, EnumSet.of(FetchNeed.STATUS, FetchNeed.PARSED_BODY), FetchPriority.NEEDED_FOR_METRIC, result -> {
+					synchronized (open) {
+						if (!open.get()) return;
+						CachedHTTPResource httpResource = result.getResource();
+						estimator.record(strata.get(result.getURI()), Dereferencer.hasValidDereferencability(httpResource));
+						onResource.accept(httpResource);
+					}
+				}));
+				if (!complete) {
+					logger.warn("Not all the URIs were dereferenced, the estimate is based on {} URIs", estimator.getObservations());
+					break;
+				}
+			} catch (InterruptedException e) {
+				logger.warn("Interrupted while waiting for URIs to be dereferenced, the estimate is based on {} URIs", estimator.getObservations());
+				Thread.currentThread().interrupt();
+				break;
+			}
+
+			if (earlyStopping && estimator.isPrecise(targetHalfWidth, MIN_STRATUM_WEIGHT)) {
+				double[] interval = estimator.getInterval();
+				logger.info("Stopping after {} of {} URIs, dereferenceable ratio {} within [{}, {}]", estimator.getObservations(),
+						ordered.size(), estimator.getProportion(), interval[0], interval[1]);
+				break;
+			}
+		}
+		synchronized (open) {
+			open.set(false);
+		}
+		coordinator.shutdownIfIdle();
+
+		return estimator;
+	}
+}
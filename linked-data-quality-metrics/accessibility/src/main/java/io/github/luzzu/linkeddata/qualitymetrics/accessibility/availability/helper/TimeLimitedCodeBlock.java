@@ -5,12 +5,9 @@ package io.github.luzzu.linkeddata.qualitymetrics.accessibility.availability.hel
 
 
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+
+import io.github.luzzu.linkeddata.qualitymetrics.commons.TimeLimitedExecutor;
 
 /**
  * Taken From: http://stackoverflow.com/questions/5715235/java-set-timeout-on-a-certain-block-of-code
@@ -29,29 +26,8 @@ public class TimeLimitedCodeBlock {
 	}
 
 	public static <T> T runWithTimeout(Callable<T> callable, long timeout, TimeUnit timeUnit) throws Exception {
-		final ExecutorService executor = Executors.newSingleThreadExecutor();
-		final Future<T> future = executor.submit(callable);
-		executor.shutdown(); // This does not cancel the already-scheduled task.
-		try {
-			return future.get(timeout, timeUnit);
-		}
-		catch (TimeoutException e) {
-			//remove this if you do not want to cancel the job in progress
-			//or set the argument to 'false' if you do not want to interrupt the thread
-			future.cancel(true);
-			throw e;
-		}
-		catch (ExecutionException e) {
-			//unwrap the root cause
-			Throwable t = e.getCause();
-			if (t instanceof Error) {
-				throw (Error) t;
-			} else if (t instanceof Exception) {
-				throw (Exception) e;
-			} else {
-				throw new IllegalStateException(t);
-			}
-		}
+		// The operation runs on the shared pool, and is cancelled (interrupted) if it times out
+		return TimeLimitedExecutor.getInstance().runWithTimeout(callable, timeout, timeUnit);
 	}
 
 }
\ No newline at end of file
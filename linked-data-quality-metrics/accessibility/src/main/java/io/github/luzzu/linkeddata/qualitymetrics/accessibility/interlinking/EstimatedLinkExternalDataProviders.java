@@ -1,14 +1,5 @@
 package io.github.luzzu.linkeddata.qualitymetrics.accessibility.interlinking;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
-
 import org.apache.jena.graph.Node;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
@@ -19,17 +10,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import io.github.luzzu.exceptions.MetricProcessingException;
-import io.github.luzzu.linkeddata.qualitymetrics.commons.HTTPRetriever;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.URITokenizer;
 import io.github.luzzu.linkeddata.qualitymetrics.commons.Utils;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.PersistentURLResolver;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.sampling.StratifiedSampler;
 import io.github.luzzu.linkeddata.qualitymetrics.vocabulary.DQM;
-import io.github.luzzu.linkeddata.qualitymetrics.vocabulary.DQMPROB;
-import io.github.luzzu.operations.properties.EnvironmentProperties;
-import io.github.luzzu.qualitymetrics.algorithms.ReservoirSampler;
-import io.github.luzzu.qualityproblems.ProblemCollection;
-import io.github.luzzu.qualityproblems.ProblemCollectionModel;
 import io.github.luzzu.semantics.commons.ResourceCommons;
 import io.github.luzzu.semantics.vocabularies.DAQ;
-import io.github.luzzu.semantics.vocabularies.QPRO;
 
 
 /**
@@ -41,18 +28,21 @@ public class EstimatedLinkExternalDataProviders extends LinkExternalDataProvider
 	
 	final static Logger logger = LoggerFactory.getLogger(EstimatedLinkExternalDataProviders.class);
 	
-    private ProblemCollection<Model> problemCollection = new ProblemCollectionModel(DQM.LinksToExternalDataProvidersMetric);	
-	private boolean requireProblemReport = EnvironmentProperties.getInstance().requiresQualityProblemReport();
-
 	
+	/**
+	 * Maximum number of resources sampled for each PLD, and over all PLDs, respectively
+	 */
 	public int reservoirsize = 10000;
+	public int MAX_SAMPLED_URIS = 100000;
 	
 	private long totalLocalPLDs = 0;
 	private long totalTriplesAssessed = 0;
 
 	
-	// A set that holds all unique PLDs together with a sampled set of resources
-	private Map<String, ReservoirSampler<String>> mapPLDs =  new HashMap<String, ReservoirSampler<String>>();
+	// Holds all unique PLDs together with a sampled set of resources of each
+	private StratifiedSampler<String> pldsSampler = null;
+	
+	private final URITokenizer tokenizer = new URITokenizer();
 	
 	/**
 	 * Processes a single quad making part of the dataset. Determines whether the subject and/or object of the quad 
@@ -69,19 +59,17 @@ public class EstimatedLinkExternalDataProviders extends LinkExternalDataProvider
 		if (!(predicate.getURI().equals(RDF.type.getURI()))) {
 			totalTriplesAssessed++;
 			if (object.isURI()) {
-				String objectURL = Utils.removeProtocol(object.getURI());
+				// The object URI is tokenized once, for both its protocol-less form and its PLD
+				URITokenizer tokens = tokenizer.tokenize(object.getURI());
+				String objectURL = (tokens.hasAuthority()) ? tokens.getWithoutScheme() : object.getURI();
 				if (!(objectURL.startsWith(localPLD))) { // then it must be an external link
+					String pld = (tokens.hasPLD()) ? tokens.getPLD() : tokens.getHost();
+					this.addUriToSampler((pld == null) ? Utils.extractDatasetNS(object.getURI()) : pld, object.getURI());
 
-					if ((objectURL.contains("purl.org")) || (objectURL.contains("w3id.org"))) {
-						// we need to resolve the persistance URI
-						String datasetNS = Utils.extractDatasetNS(objectURL);
-
-						if (!(resolver.containsKey(datasetNS))) {
-							String targetURL = HTTPRetriever.decodePersistantURLS(objectURL);
-							resolver.put(datasetNS, Utils.extractDatasetNS(targetURL));
-						}
+					if (PersistentURLResolver.getInstance().isPersistentURL(objectURL)) {
+						// we need to resolve the persistance URI, which is done in the background until the links are checked
+						PersistentURLResolver.getInstance().resolve(object.getURI());
 					} 
-					this.addUriToSampler(objectURL);
 				} else {
 					totalLocalPLDs++;
 				}
@@ -90,65 +78,26 @@ public class EstimatedLinkExternalDataProviders extends LinkExternalDataProvider
 	}
 	
 	
-	private void addUriToSampler(String uri) {
-		String pld = Utils.extractDatasetNS(uri);
-		
+	private void addUriToSampler(String pld, String uri) {
 		if(pld != null) {
-			if (this.mapPLDs.containsKey(pld)){
-				ReservoirSampler<String> res = this.mapPLDs.get(pld);
-				if (res.findItem(uri) == null) res.add(uri);
-				mapPLDs.put(pld, res);
-			} else {
-				ReservoirSampler<String> res = new ReservoirSampler<String>(reservoirsize, true);
-				res.add(uri);
-				mapPLDs.put(pld, res);
-			}
+			this.getSampler().add(pld, uri);
 		}
 	}
+	
+	/**
+	 * @return The sampler of the links, created on first use so that the configuration set after the metric is created is honoured
+	 */
+	private StratifiedSampler<String> getSampler() {
+		if (this.pldsSampler == null) this.pldsSampler = new StratifiedSampler<String>(MAX_SAMPLED_URIS, reservoirsize);
+		return this.pldsSampler;
+	}
 
 	@Override
-	protected void checkForRDFLinks() {	
-		ExecutorService service = Executors.newCachedThreadPool();
- 		for (ReservoirSampler<String> curPldUris : this.mapPLDs.values()) {
-			for (String s : curPldUris.getItems()){
-				
-				String targetDatasetNS = Utils.extractDatasetNS(s);
-				if ((s.contains("purl.org")) || (s.contains("w3id.org"))) {
-					targetDatasetNS = resolver.get(Utils.extractDatasetNS(s));
-				}
-				
-				if (setPLDsRDF.contains(targetDatasetNS)) continue; // If we resolved data from that domain already, we do not need to recheck
-				
-				Future<Boolean> future = service.submit(new ParsableContentChecker(s));
-				try {
-				
-					boolean isParsable = future.get(3, TimeUnit.SECONDS);
-					if (isParsable) {
-						setPLDsRDF.add(targetDatasetNS);						
-						break;
-					} else {
-						// error
-						if (requireProblemReport) {
-							Quad q = new Quad(null, ResourceCommons.toResource(s).asNode(), QPRO.exceptionDescription.asNode(), DQMPROB.NoValidRDFDataForExternalLink.asNode());
-							((ProblemCollectionModel)problemCollection).addProblem(createProblemModel(q), ResourceCommons.toResource(s));
-						}
-					}
-				} catch (InterruptedException | ExecutionException | TimeoutException e) {
-					// error
-					if (requireProblemReport) {
-						Quad q = new Quad(null, ResourceCommons.toResource(s).asNode(), QPRO.exceptionDescription.asNode(), DQMPROB.NoValidRDFDataForExternalLink.asNode());
-						((ProblemCollectionModel)problemCollection).addProblem(createProblemModel(q), ResourceCommons.toResource(s));
-					}
-//					logger.debug(e.getMessage());
-				}
-			}
-		}
- 		service.shutdown();
- 		System.gc();
+	protected void checkForRDFLinks() {
+		// Once a link of a PLD is found to return RDF data, the remaining sampled links of that PLD are skipped
+		this.checkForRDFLinks(this.getSampler().getItems());
 	}
 	
-
-	
 	@Override
 	public boolean isEstimate() {
 		return true;
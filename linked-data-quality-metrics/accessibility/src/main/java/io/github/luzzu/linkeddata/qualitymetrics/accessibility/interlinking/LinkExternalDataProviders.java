@@ -3,27 +3,30 @@
  */
 package io.github.luzzu.linkeddata.qualitymetrics.accessibility.interlinking;
 
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.Callable;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 
-import org.apache.jena.atlas.web.HttpException;
+import org.apache.http.StatusLine;
 import org.apache.jena.graph.Node;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.rdf.model.impl.StatementImpl;
-import org.apache.jena.riot.RDFDataMgr;
 import org.apache.jena.sparql.core.Quad;
 import org.apache.jena.vocabulary.RDF;
 import org.mapdb.DB;
@@ -32,12 +35,20 @@ import org.slf4j.LoggerFactory;
 
 import io.github.luzzu.exceptions.MetricProcessingException;
 import io.github.luzzu.linkeddata.qualitymetrics.commons.AbstractQualityMetric;
-import io.github.luzzu.linkeddata.qualitymetrics.commons.HTTPRetriever;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.TimeLimitedExecutor;
 import io.github.luzzu.linkeddata.qualitymetrics.commons.Utils;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.cache.ParsedContentCache;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.datatypes.ParsedContentSummary;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.FetchCoordinator;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.FetchNeed;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.FetchPriority;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.FetchResult;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.PersistentURLResolver;
 import io.github.luzzu.linkeddata.qualitymetrics.commons.mapdb.MapDbFactory;
 import io.github.luzzu.linkeddata.qualitymetrics.vocabulary.DQM;
 import io.github.luzzu.linkeddata.qualitymetrics.vocabulary.DQMPROB;
 import io.github.luzzu.operations.properties.EnvironmentProperties;
+import io.github.luzzu.qualitymetrics.commons.cache.CachedHTTPResource;
 import io.github.luzzu.qualityproblems.ProblemCollection;
 import io.github.luzzu.qualityproblems.ProblemCollectionModel;
 import io.github.luzzu.semantics.commons.ResourceCommons;
@@ -74,7 +85,22 @@ public class LinkExternalDataProviders extends AbstractQualityMetric<Integer> {
 	/**
 	 * A set that holds all unique PLDs that return RDF data
 	 */
-	protected Set<String> setPLDsRDF = new HashSet<String>();
+	protected Set<String> setPLDsRDF = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	
+	/**
+	 * Maximum time (milliseconds) to verify all the external links, the checks still pending afterwards are cancelled
+	 */
+	public long CHECK_DEADLINE = 60000;
+	
+	/**
+	 * Maximum time (milliseconds) to verify a single external link, from when it is requested
+	 */
+	public long CHECK_TIMEOUT = 10000;
+	
+	/**
+	 * Maximum number of checks submitted and not yet collected
+	 */
+	public int MAX_PENDING_CHECKS = 1000;
 	
 	final static Logger logger = LoggerFactory.getLogger(LinkExternalDataProviders.class);
 
@@ -83,8 +109,7 @@ public class LinkExternalDataProviders extends AbstractQualityMetric<Integer> {
 	protected boolean computed = false;
 	protected String localPLD = Utils.removeProtocol(this.getDatasetURI());
 
-	protected Map<String,String> resolver = new HashMap<String,String>();
-	protected Set<String> ns404 = new HashSet<String>();
+	protected Set<String> ns404 = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
 	
 	private long totalLocalPLDs = 0;
@@ -102,16 +127,12 @@ public class LinkExternalDataProviders extends AbstractQualityMetric<Integer> {
 			if (object.isURI()) {
 				String objectURL = Utils.removeProtocol(object.getURI());
 				if (!(objectURL.startsWith(localPLD))) { // then it must be an external link
-					if ((objectURL.contains("purl.org")) || (objectURL.contains("w3id.org"))) {
-						// we need to resolve the persistance URI
-						String datasetNS = Utils.extractDatasetNS(objectURL);
-
-						if (!(resolver.containsKey(datasetNS))) {
-							String targetURL = HTTPRetriever.decodePersistantURLS(objectURL);
-							resolver.put(datasetNS, Utils.extractDatasetNS(targetURL));
-						}
+					// the link keeps its protocol, for its namespace to be extracted and for it to be dereferenced
+					if (PersistentURLResolver.getInstance().isPersistentURL(objectURL)) {
+						// we need to resolve the persistance URI, which is done in the background until the links are checked
+						PersistentURLResolver.getInstance().resolve(object.getURI());
 					} 
-					setResources.add(objectURL);
+					setResources.add(object.getURI());
 				} else {
 					totalLocalPLDs++;
 				}
@@ -146,40 +167,134 @@ public class LinkExternalDataProviders extends AbstractQualityMetric<Integer> {
 	}
 	
 	protected void checkForRDFLinks() {
-		ExecutorService service = Executors.newCachedThreadPool();
-		for (String s : setResources){
+		this.checkForRDFLinks(setResources);
+	}
+	
+	/**
+	 * Verifies whether the external links return RDF data, requesting them through the FetchCoordinator,
+	 * which parses each response once when retrieved. Persistent URLs are checked once their target
+	 * namespace is resolved. The outcome of each check is collected as soon as it completes, until all
+	 * links are verified or the CHECK_DEADLINE expires.
+	 * @param resources External links to verify
+	 */
+	protected void checkForRDFLinks(Iterable<String> resources) {
+		try {
+			this.checkLinks(resources);
+		} finally {
+			FetchCoordinator.getInstance().shutdownIfIdle();
+		}
+	}
+	
+	private void checkLinks(Iterable<String> resources) {
+		long deadline = System.currentTimeMillis() + CHECK_DEADLINE;
+		
+		BlockingQueue<Future<Boolean>> completion = new LinkedBlockingQueue<Future<Boolean>>();
+		Map<Future<Boolean>, String> pending = new HashMap<Future<Boolean>, String>();
+		
+		boolean expired = false;
+		for (String s : resources){
+			// If we resolved data from that domain already, we do not need to recheck
+			if (!(PersistentURLResolver.getInstance().isPersistentURL(s)) && (setPLDsRDF.contains(Utils.extractDatasetNS(s)))) continue;
 			
-			String targetDatasetNS = Utils.extractDatasetNS(s);
-			if ((s.contains("purl.org")) || (s.contains("w3id.org"))) {
-				targetDatasetNS = resolver.get(Utils.extractDatasetNS(s));
+			while ((!expired) && (pending.size() >= MAX_PENDING_CHECKS)) {
+				expired = !(this.collectCheck(completion, pending, deadline));
 			}
+			if (expired) break;
 			
-			if (setPLDsRDF.contains(targetDatasetNS)) continue; // If we resolved data from that domain already, we do not need to recheck
-
-			Future<Boolean> future = service.submit(new ParsableContentChecker(s));
-			try {
-				boolean isParsable = future.get(3, TimeUnit.SECONDS);
-				if (isParsable) {
-					setPLDsRDF.add(targetDatasetNS);
-					break;
-				} else {
-					// error
-					if (requireProblemReport) {
-						Quad q = new Quad(null, ResourceCommons.toResource(s).asNode(), QPRO.exceptionDescription.asNode(), DQMPROB.NoValidRDFDataForExternalLink.asNode());
-						((ProblemCollectionModel)problemCollection).addProblem(createProblemModel(q), ResourceCommons.toResource(s));
-					}
-				}
-			} catch (InterruptedException | ExecutionException | TimeoutException e) {
-				// error
-				if (requireProblemReport) {
-					Quad q = new Quad(null, ResourceCommons.toResource(s).asNode(), QPRO.exceptionDescription.asNode(), DQMPROB.NoValidRDFDataForExternalLink.asNode());
-					((ProblemCollectionModel)problemCollection).addProblem(createProblemModel(q), ResourceCommons.toResource(s));
-				}
-//				logger.debug(e.getMessage());
+			CompletableFuture<Boolean> check;
+			if (PersistentURLResolver.getInstance().isPersistentURL(s)) {
+				check = PersistentURLResolver.getInstance().resolve(s).thenCompose(targetDatasetNS -> this.submitCheck(s, targetDatasetNS));
+			} else {
+				check = this.submitCheck(s, Utils.extractDatasetNS(s));
 			}
+			pending.put(check, s);
+			check.whenComplete((result, error) -> completion.add(check));
+		}
+		
+		while ((!expired) && (!pending.isEmpty())) {
+			expired = !(this.collectCheck(completion, pending, deadline));
+		}
+		
+		if (expired) {
+			logger.warn("External links could not be verified within {} ms, {} pending checks were cancelled", CHECK_DEADLINE, pending.size());
+			for (Map.Entry<Future<Boolean>, String> check : pending.entrySet()) {
+				check.getKey().cancel(true);
+				this.addProblem(check.getValue());
+			}
+		}
+	}
+	
+	/**
+	 * Requests an external link, unless its domain was already found to return RDF data (or to be missing)
+	 * @param uri External link
+	 * @param targetDatasetNS Namespace of the dataset the link belongs to, once any persistent URL is resolved
+	 * @return The outcome of the check, true if the link returns RDF data. False if no response is notified
+	 * 			within CHECK_TIMEOUT
+	 */
+	private CompletableFuture<Boolean> submitCheck(String uri, String targetDatasetNS) {
+		if ((targetDatasetNS != null) && (setPLDsRDF.contains(targetDatasetNS))) return CompletableFuture.completedFuture(true);
+		
+		final String datasetNS = Utils.extractDatasetNS(uri);
+		if (ns404.contains(datasetNS)) return CompletableFuture.completedFuture(false);
+		
+		CompletableFuture<Boolean> check = new CompletableFuture<Boolean>();
+		ScheduledFuture<?> timeout = TimeLimitedExecutor.getInstance().schedule(() -> check.complete(false), CHECK_TIMEOUT, TimeUnit.MILLISECONDS);
+		check.whenComplete((result, error) -> timeout.cancel(false));
+		
+		FetchCoordinator.getInstance().request(uri, EnumSet.of(FetchNeed.PARSED_BODY), FetchPriority.NEEDED_FOR_METRIC,
+				result -> check.complete(this.returnsRDF(result, targetDatasetNS, datasetNS)));
+		return check;
+	}
+	
+	/**
+	 * Decides from the summary of the content parsed when the link was retrieved (see ParsedContentCache)
+	 * @return True if the link returns RDF data
+	 */
+	private boolean returnsRDF(FetchResult result, String targetDatasetNS, String datasetNS) {
+		ParsedContentSummary summary = ParsedContentCache.getInstance().get(result.getURI());
+		if ((summary != null) && (summary.hasRDF())) {
+			if (targetDatasetNS != null) setPLDsRDF.add(targetDatasetNS);
+			return true;
+		}
+		
+		CachedHTTPResource resource = result.getResource();
+		List<StatusLine> statusLines = (resource == null) ? null : resource.getStatusLines();
+		if ((statusLines != null) && (!statusLines.isEmpty()) && (statusLines.get(statusLines.size() - 1).getStatusCode() == 404)) ns404.add(datasetNS);
+		return false;
+	}
+	
+	/**
+	 * Waits for the next check to complete and collects its outcome
+	 * @return False if no check completed before the deadline
+	 */
+	private boolean collectCheck(BlockingQueue<Future<Boolean>> completion, Map<Future<Boolean>, String> pending, long deadline) {
+		long remaining = deadline - System.currentTimeMillis();
+		if (remaining <= 0) return false;
+		
+		Future<Boolean> future;
+		try {
+			future = completion.poll(remaining, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		if (future == null) return false;
+		
+		String s = pending.remove(future);
+		if (s == null) return true; // cancelled once expired
+		try {
+			if (!(future.get())) this.addProblem(s);
+		} catch (InterruptedException | ExecutionException | CancellationException e) {
+			this.addProblem(s);
+		}
+		return true;
+	}
+	
+	private void addProblem(String s) {
+		if (requireProblemReport) {
+			Quad q = new Quad(null, ResourceCommons.toResource(s).asNode(), QPRO.exceptionDescription.asNode(), DQMPROB.NoValidRDFDataForExternalLink.asNode());
+			((ProblemCollectionModel)problemCollection).addProblem(createProblemModel(q), ResourceCommons.toResource(s));
 		}
- 		service.shutdown();
- 		System.gc();
 	}
 	
 	@Override
@@ -207,28 +322,4 @@ public class LinkExternalDataProviders extends AbstractQualityMetric<Integer> {
 		
 		return ModelFactory.createDefaultModel().add(s);
 	}
-
-	
-	class ParsableContentChecker implements Callable<Boolean> {
-		String uri = "";
-		
-		public ParsableContentChecker(String uri){
-			this.uri = uri;
-		}
-
-		@Override
-		public Boolean call() throws Exception {
-			final String targetDatasetNS = Utils.extractDatasetNS(uri);
-			if (ns404.contains(targetDatasetNS)) return false;
-			
-			try{
-				return (RDFDataMgr.loadModel(uri).size() > 0);
-			} catch (HttpException httpE){
-				if (httpE.getResponseCode() == 404) ns404.add(targetDatasetNS);
-				return false;
-			} catch (Exception e){
-				return false;
-			}
-		}
-	}
 }
@@ -0,0 +1,106 @@
+package io.github.luzzu.linkeddata.qualitymetrics.accessibility.licensing;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ResIterator;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDF;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.github.luzzu.linkeddata.qualitymetrics.commons.cache.ResolutionCache;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.BoundedHttpClient;
+
+/**
+ * Resolves license documents in the background, caching by license URI whether
+ * the document provides a machine-readable description of the license. The cache
+ * is shared by all the metrics and seeded with a bundled set of well-known licenses
+ * (licenses/well-known-licenses.ttl), so that the licenses most datasets point to
+ * are never dereferenced. Documents which could not be loaded, or are not
+ * machine-readable, are only kept for a while (see ResolutionCache).
+ */
+public class LicenseDocumentCache {
+
+	private static Logger logger = LoggerFactory.getLogger(LicenseDocumentCache.class);
+
+	/**
+	 * Location (in the classpath) of the bundled license descriptions
+	 */
+	public static final String WELL_KNOWN_LICENSES = "licenses/well-known-licenses.ttl";
+
+	/**
+	 * Maximum time (milliseconds) to load a license document, after which it is taken as not machine-readable
+	 */
+	public long RESOLUTION_TIMEOUT = 30000;
+
+	private static LicenseDocumentCache instance = null;
+
+	private final LicensingModelClassifier licenseClassifier = new LicensingModelClassifier();
+
+	// A document found not to be machine-readable may have been unreachable, and is loaded once again later on
+	private final ResolutionCache<Boolean> documents = new ResolutionCache<Boolean>((license, readable) -> !(Boolean.TRUE.equals(readable)));
+
+	protected LicenseDocumentCache() {
+		this.seed(WELL_KNOWN_LICENSES);
+	}
+
+	public static synchronized LicenseDocumentCache getInstance() {
+		if (instance == null) {
+			instance = new LicenseDocumentCache();
+		}
+		return instance;
+	}
+
+	/**
+	 * Starts resolving the document of a license, unless it was already resolved (or is being resolved)
+	 * @param licenseURI URI of the license
+	 * @return True, once resolved, if the license document is machine-readable
+	 */
+	public CompletableFuture<Boolean> resolve(String licenseURI) {
+		return documents.resolve(normalise(licenseURI), () -> {
+			Model licenseModel = BoundedHttpClient.getInstance().loadModel(licenseURI, null);
+			return licenseClassifier.containsMachineReadableLicense(licenseModel);
+		}, RESOLUTION_TIMEOUT, false);
+	}
+
+	/**
+	 * @return Number of license documents resolved (or being resolved), including the bundled ones
+	 */
+	public int size() {
+		return documents.size();
+	}
+
+	/**
+	 * Adds the licenses described in an RDF document to the cache, as machine-readable
+	 * @param location Location of the document, in the classpath or filesystem, or a URL
+	 */
+	public void seed(String location) {
+		try {
+			Model licenses = BoundedHttpClient.getInstance().loadModel(location, null);
+
+			int seeded = 0;
+			ResIterator iter = licenses.listSubjectsWithProperty(RDF.type);
+			while (iter.hasNext()) {
+				Resource license = iter.next();
+				if (license.isURIResource()) {
+					documents.put(normalise(license.getURI()), true);
+					seeded++;
+				}
+			}
+			logger.debug("Seeded the license document cache with {} licenses from {}", seeded, location);
+		} catch (Exception e) {
+			logger.warn("Cannot seed the license document cache from {}. Error: {}", location, e.getMessage());
+		}
+	}
+
+	/**
+	 * License URIs are commonly written with or without a trailing slash, and over http or https
+	 */
+	private static String normalise(String licenseURI) {
+		String key = licenseURI;
+		if (key.startsWith("https://")) key = "http://" + key.substring("https://".length());
+		if (key.endsWith("/")) key = key.substring(0, key.length() - 1);
+		return key;
+	}
+}
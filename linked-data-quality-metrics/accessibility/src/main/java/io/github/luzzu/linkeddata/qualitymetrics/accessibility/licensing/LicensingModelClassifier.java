@@ -2,8 +2,6 @@ package io.github.luzzu.linkeddata.qualitymetrics.accessibility.licensing;
 
 import java.util.HashSet;
 import java.util.Optional;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.apache.jena.graph.Node;
 import org.apache.jena.rdf.model.Model;
@@ -12,6 +10,8 @@ import org.apache.jena.vocabulary.DC;
 import org.apache.jena.vocabulary.DCTerms;
 import org.apache.jena.vocabulary.RDF;
 
+import io.github.luzzu.linkeddata.qualitymetrics.commons.datatypes.KeywordAutomaton;
+
 /**
  * @author Santiago Londono
  * 
@@ -33,20 +33,33 @@ public class LicensingModelClassifier {
 	
 	
 	/**
-	 * Set of all the URIs of properties known to provide licensing information
+	 * Prefixes of the URIs of licenses known to be CopyLeft
 	 */
-	private static Pattern[] arrCopyLeftURIPatterns;
+	private static String[] arrCopyLeftURIPrefixes;
 	
 	/**
-	 * Set of all the URIs of properties known to provide licensing information but not recommended to use
-	 * according to the voID vocabulary
+	 * Prefixes of the URIs of CopyLeft licenses not recommended to use according to the voID vocabulary
 	 */
-	private static Pattern[] arrNotRecommendedCopyLeftURIPatterns;
+	private static String[] arrNotRecommendedCopyLeftURIPrefixes;
 	
 	/**
-	 * Regular expressions represeting the patterns of the text deemed to be a licensing statement
+	 * Terms of a licensing statement: a text is deemed to be a licensing statement if a LICENSE_TERM 
+	 * (e.g. licensed, copyright) is followed by a GRANT_TERM (e.g. under, granted, rights)
 	 */
-	private static Pattern[] arrLicenseTextPatterns;
+	private static String[] arrLicenseTerms;
+	private static String[] arrGrantTerms;
+	
+	private static final int COPYLEFT = 0;
+	private static final int NOT_RECOMMENDED_COPYLEFT = 1;
+	private static final int LICENSE_TERM = 0;
+	private static final int GRANT_TERM = 1;
+	
+	/**
+	 * All the license URI prefixes, and all the licensing statement terms, compiled in one automaton each 
+	 * so that a URI or text is scanned once, however many patterns are known
+	 */
+	private static KeywordAutomaton licenseURIPrefixes;
+	private static KeywordAutomaton licenseTextTerms;
 	
 	static {
 		// Initialize set of properties known to provide licensing information
@@ -71,33 +84,44 @@ public class LicensingModelClassifier {
 		setClassProperties.add("http://schema.theodi.org/odrs#License"); 	
 		setClassProperties.add("http://purl.oclc.org/NET/ldr/ns#License"); 
 
-		// Initialize set of regex patterns corresponding to CopyLeft license URIs
-		arrCopyLeftURIPatterns = new Pattern[15];
-		arrCopyLeftURIPatterns[0] = Pattern.compile("^http://www\\.opendatacommons\\.org/licenses/odbl.*", Pattern.CASE_INSENSITIVE);
-		arrCopyLeftURIPatterns[1] = Pattern.compile("^http://www\\.opendatacommons\\.org/licenses/pddl/.*", Pattern.CASE_INSENSITIVE);
-		arrCopyLeftURIPatterns[2] = Pattern.compile("^http://www\\.opendatacommons\\.org/licenses/by/.*", Pattern.CASE_INSENSITIVE);
-		arrCopyLeftURIPatterns[3] = Pattern.compile("^http://creativecommons\\.org/publicdomain/zero/.*", Pattern.CASE_INSENSITIVE);
-		arrCopyLeftURIPatterns[4] = Pattern.compile("^http://creativecommons\\.org/licenses/by/.*", Pattern.CASE_INSENSITIVE);
-		arrCopyLeftURIPatterns[5] = Pattern.compile("^http://purl\\.org/NET/rdflicense/.*", Pattern.CASE_INSENSITIVE);
-		arrCopyLeftURIPatterns[6] = Pattern.compile("^http://www\\.gnu\\.org/licenses/.*", Pattern.CASE_INSENSITIVE);
-		arrCopyLeftURIPatterns[7] = Pattern.compile("^http://opendatacommons\\.org/licenses/odbl.*", Pattern.CASE_INSENSITIVE);
-		arrCopyLeftURIPatterns[8] = Pattern.compile("^http://opendatacommons\\.org/licenses/pddl/.*", Pattern.CASE_INSENSITIVE);
-		arrCopyLeftURIPatterns[9] = Pattern.compile("^http://opendatacommons\\.org/licenses/by/.*", Pattern.CASE_INSENSITIVE);
-		arrCopyLeftURIPatterns[10] = Pattern.compile("^http://gnu\\.org/licenses/.*", Pattern.CASE_INSENSITIVE);
-		arrCopyLeftURIPatterns[11] = Pattern.compile("^http://www\\.creativecommons\\.org/publicdomain/zero/.*", Pattern.CASE_INSENSITIVE);
-		arrCopyLeftURIPatterns[12] = Pattern.compile("^http://www\\.creativecommons\\.org/licenses/by/.*", Pattern.CASE_INSENSITIVE);
-		arrCopyLeftURIPatterns[13] = Pattern.compile("^http://www\\.purl\\.org/NET/rdflicense/.*", Pattern.CASE_INSENSITIVE);
-		arrCopyLeftURIPatterns[14] = Pattern.compile("^http://creativecommons\\.org/publicdomain/.*", Pattern.CASE_INSENSITIVE);
-
-		arrNotRecommendedCopyLeftURIPatterns = new Pattern[3];
-		arrNotRecommendedCopyLeftURIPatterns[0] = Pattern.compile("^http://creativecommons\\.org/licenses/by-sa/.*", Pattern.CASE_INSENSITIVE);
-		arrNotRecommendedCopyLeftURIPatterns[1] = Pattern.compile("^http://www\\.gnu\\.org/copyleft/.*", Pattern.CASE_INSENSITIVE);
-		arrNotRecommendedCopyLeftURIPatterns[2] = Pattern.compile("^http://creativecommons\\.org/licenses/by-nc/.*", Pattern.CASE_INSENSITIVE);
+		// Initialize set of prefixes corresponding to CopyLeft license URIs (matched ignoring case)
+		arrCopyLeftURIPrefixes = new String[] {
+			"http://www.opendatacommons.org/licenses/odbl",
+			"http://www.opendatacommons.org/licenses/pddl/",
+			"http://www.opendatacommons.org/licenses/by/",
+			"http://creativecommons.org/publicdomain/zero/",
+			"http://creativecommons.org/licenses/by/",
+			"http://purl.org/NET/rdflicense/",
+			"http://www.gnu.org/licenses/",
+			"http://opendatacommons.org/licenses/odbl",
+			"http://opendatacommons.org/licenses/pddl/",
+			"http://opendatacommons.org/licenses/by/",
+			"http://gnu.org/licenses/",
+			"http://www.creativecommons.org/publicdomain/zero/",
+			"http://www.creativecommons.org/licenses/by/",
+			"http://www.purl.org/NET/rdflicense/",
+			"http://creativecommons.org/publicdomain/"
+		};
 
+		arrNotRecommendedCopyLeftURIPrefixes = new String[] {
+			"http://creativecommons.org/licenses/by-sa/",
+			"http://www.gnu.org/copyleft/",
+			"http://creativecommons.org/licenses/by-nc/"
+		};
+		
+		licenseURIPrefixes = new KeywordAutomaton();
+		for (String prefix : arrCopyLeftURIPrefixes) licenseURIPrefixes.add(prefix, COPYLEFT);
+		for (String prefix : arrNotRecommendedCopyLeftURIPrefixes) licenseURIPrefixes.add(prefix, NOT_RECOMMENDED_COPYLEFT);
+		licenseURIPrefixes.compile();
+		
+		// Initialize the licensing text terms (licensed?|copyrighte?d?) followed by (under|grante?d?|rights?), the shortest form of each suffices
+		arrLicenseTerms = new String[] { "license", "copyright" };
+		arrGrantTerms = new String[] { "under", "grant", "right" };
 		
-		// Initialize the licensing text pattern
-		arrLicenseTextPatterns = new Pattern[1];
-		arrLicenseTextPatterns[0] = Pattern.compile(".*(licensed?|copyrighte?d?).*(under|grante?d?|rights?).*", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE);
+		licenseTextTerms = new KeywordAutomaton();
+		for (String term : arrLicenseTerms) licenseTextTerms.add(term, LICENSE_TERM);
+		for (String term : arrGrantTerms) licenseTextTerms.add(term, GRANT_TERM);
+		licenseTextTerms.compile();
 	}
 
 	/**
@@ -127,7 +151,7 @@ public class LicensingModelClassifier {
 		
 		if(licenseObj != null && licenseObj.isURI()) {
 			// Compare the license URI with all the licenses known to be CopyLeft
-			return matchesAnyPattern(licenseObj.getURI(), arrCopyLeftURIPatterns);
+			return matchesAnyPrefix(licenseObj.getURI(), COPYLEFT);
 		}
 		return false;
 	}
@@ -141,7 +165,7 @@ public class LicensingModelClassifier {
 		
 		if(licenseObj != null && licenseObj.isURI()) {
 			// Compare the license URI with all the licenses known to be CopyLeft
-			return matchesAnyPattern(licenseObj.getURI(), arrNotRecommendedCopyLeftURIPatterns);
+			return matchesAnyPrefix(licenseObj.getURI(), NOT_RECOMMENDED_COPYLEFT);
 		}
 		return false;
 	}
@@ -156,7 +180,7 @@ public class LicensingModelClassifier {
 		
 		if(licenseLiteralObj != null && licenseLiteralObj.isLiteral()) {
 			// Check whether the contents of the object match any of the license patterns
-			return matchesAnyPattern(licenseLiteralObj.toString(), arrLicenseTextPatterns);
+			return containsLicenseTerms(licenseLiteralObj.toString());
 		}
 		return false;
 	}
@@ -171,29 +195,53 @@ public class LicensingModelClassifier {
 		
 		if(licenseLiteralObj != null && licenseLiteralObj.isLiteral()) {
 			// Check whether the contents of the object match any of the license patterns
-			return matchesAnyPattern(licenseLiteralObj.toString(), arrNotRecommendedCopyLeftURIPatterns);
+			return matchesAnyPrefix(licenseLiteralObj.toString(), NOT_RECOMMENDED_COPYLEFT);
 		}
 		return false;
 	}
 	
 	/**
-	 * Matches the text against all the patterns provided in the second argument, 
-	 * to determine if the text matches any of them.
+	 * Matches the text against all the known license URI prefixes, 
+	 * to determine if it starts with any of those of the given kind.
 	 * @param text Text to be matched 
-	 * @return true if the text matches any pattern in arrPatterns, false otherwise
+	 * @param kind Kind of license, COPYLEFT or NOT_RECOMMENDED_COPYLEFT
+	 * @return true if the text starts with a prefix of the given kind, false otherwise
 	 */
-	private boolean matchesAnyPattern(String text, Pattern[] arrPatterns) {
+	private boolean matchesAnyPrefix(String text, int kind) {
+		// The text has to be a single line, as any text matched by a regular expression such as prefix.*
+		if (hasLineTerminator(text)) return false;
 		
-		Matcher matcher = null;
+		return (licenseURIPrefixes.matchPrefixes(text) & (1 << kind)) != 0;
+	}
+	
+	/**
+	 * Scans the text once, to determine whether a license term is followed by a grant term.
+	 * @param text Text to be matched 
+	 * @return true if the text is deemed to be a licensing statement, false otherwise
+	 */
+	private boolean containsLicenseTerms(String text) {
+		// The text has to be a single line, as any text matched by a regular expression such as .*(license).*(under).*
+		if (hasLineTerminator(text)) return false;
 		
-		for(Pattern pattern : arrPatterns) {
-			
-			matcher = pattern.matcher(text);
-			
-			if(matcher.matches()) {
-				return true;
+		// Terms are visited in the order in which they end, the first license term is the one leaving most room for a grant term
+		final int[] licenseTermEnd = { -1 };
+		final boolean[] statement = { false };
+		licenseTextTerms.scan(text, (kind, start, end) -> {
+			if (kind == LICENSE_TERM) {
+				if (licenseTermEnd[0] < 0) licenseTermEnd[0] = end;
+			} else if ((licenseTermEnd[0] >= 0) && (start >= licenseTermEnd[0])) {
+				statement[0] = true;
+				return false;
 			}
-
+			return true;
+		});
+		return statement[0];
+	}
+	
+	private static boolean hasLineTerminator(String text) {
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if ((c == '\n') || (c == '\r') || (c == '\u0085') || (c == '\u2028') || (c == '\u2029')) return true;
 		}
 		return false;
 	}
@@ -1,12 +1,18 @@
 package io.github.luzzu.linkeddata.qualitymetrics.accessibility.licensing;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 import org.apache.jena.graph.Node;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.rdf.model.impl.StatementImpl;
-import org.apache.jena.riot.RDFDataMgr;
 import org.apache.jena.sparql.core.Quad;
 import org.apache.jena.vocabulary.RDF;
 import org.slf4j.Logger;
@@ -49,6 +55,17 @@ public class MachineReadableLicense extends AbstractQualityMetric<Boolean> {
 	
 	private boolean hasValidMachineReadableLicense = false;
 	
+	/**
+	 * Maximum time (milliseconds) to wait for the license documents still being resolved once the metric value is requested
+	 */
+	public long LICENSE_RESOLUTION_TIMEOUT = 30000;
+	
+	/**
+	 * License documents being resolved, by license URI, joined before the metric value is returned
+	 */
+	private Map<Node, CompletableFuture<Boolean>> licenseDocuments = new LinkedHashMap<Node, CompletableFuture<Boolean>>();
+	private boolean joined = false;
+	
 	
 	/**
 	 * Processes a single quad being part of the dataset. Firstly, tries to figure out the URI of the dataset whence the quads come. 
@@ -72,23 +89,9 @@ public class MachineReadableLicense extends AbstractQualityMetric<Boolean> {
 				
 				if (object.isURI()) {
 					if ((licenseClassifier.isCopyLeftLicenseURI(object)) || (licenseClassifier.isNotRecommendedCopyLeftLicenseURI(object))) {
-						// We have a license and we have to check if it is machine readable
-						try{
-							Model licenseModel = RDFDataMgr.loadModel(object.getURI());
-							if (licenseClassifier.containsMachineReadableLicense(licenseModel)) this.hasValidMachineReadableLicense = true;
-							else {
-								// add to problem report as DQMPROB.NotMachineReadableLicense
-								if (requireProblemReport) {
-									Quad q = new Quad(null, object, QPRO.exceptionDescription.asNode(), DQMPROB.NotMachineReadableLicense.asNode());
-									((ProblemCollectionModel)problemCollection).addProblem(createProblemModel(q), ResourceCommons.asRDFNode(object).asResource());
-								}
-							}
-						} catch (Exception e) {
-							// add to problem report as DQMPROB.NotMachineReadableLicense
-							if (requireProblemReport) {
-								Quad q = new Quad(null, object, QPRO.exceptionDescription.asNode(), DQMPROB.NotMachineReadableLicense.asNode());
-								((ProblemCollectionModel)problemCollection).addProblem(createProblemModel(q), ResourceCommons.asRDFNode(object).asResource());
-							}
+						// We have a license and we have to check if it is machine readable, which is resolved in the background
+						if (!(licenseDocuments.containsKey(object))) {
+							licenseDocuments.put(object, LicenseDocumentCache.getInstance().resolve(object.getURI()));
 						}
 						if (licenseClassifier.isNotRecommendedCopyLeftLicenseURI(object)) {
 							if (requireProblemReport) {
@@ -110,10 +113,41 @@ public class MachineReadableLicense extends AbstractQualityMetric<Boolean> {
 		
 		return ModelFactory.createDefaultModel().add(s);
 	}
-
+	
+	/**
+	 * Waits for the license documents still being resolved, at most LICENSE_RESOLUTION_TIMEOUT milliseconds 
+	 * altogether, and reports those which are not machine readable (or could not be resolved in time)
+	 */
+	private void joinLicenseDocuments() {
+		if (joined) return;
+		joined = true;
+		
+		long deadline = System.currentTimeMillis() + LICENSE_RESOLUTION_TIMEOUT;
+		for (Map.Entry<Node, CompletableFuture<Boolean>> document : licenseDocuments.entrySet()) {
+			boolean machineReadable = false;
+			try {
+				long remaining = Math.max(0, deadline - System.currentTimeMillis());
+				machineReadable = document.getValue().get(remaining, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException | TimeoutException e) {
+				logger.debug("License document {} could not be resolved. Error: {}", document.getKey().getURI(), e.getMessage());
+			}
+			
+			if (machineReadable) this.hasValidMachineReadableLicense = true;
+			else {
+				// add to problem report as DQMPROB.NotMachineReadableLicense
+				if (requireProblemReport) {
+					Quad q = new Quad(null, document.getKey(), QPRO.exceptionDescription.asNode(), DQMPROB.NotMachineReadableLicense.asNode());
+					((ProblemCollectionModel)problemCollection).addProblem(createProblemModel(q), ResourceCommons.asRDFNode(document.getKey()).asResource());
+				}
+			}
+		}
+	}
 		
 	@Override
 	public Boolean metricValue() {
+		this.joinLicenseDocuments();
 		return this.hasValidMachineReadableLicense;
 	}
 
@@ -137,6 +171,7 @@ public class MachineReadableLicense extends AbstractQualityMetric<Boolean> {
 
 	@Override
 	public ProblemCollection<?> getProblemCollection() {
+		this.joinLicenseDocuments();
 		if (!this.hasValidMachineReadableLicense) {
 			if (requireProblemReport) {
 				Quad q = new Quad(null, ResourceCommons.toResource(this.getDatasetURI()).asNode(), QPRO.exceptionDescription.asNode(), DQMPROB.NoValidLicenseInDataset.asNode());
@@ -10,7 +10,8 @@ import org.slf4j.LoggerFactory;
 
 import io.github.luzzu.exceptions.MetricProcessingException;
 import io.github.luzzu.linkeddata.qualitymetrics.commons.AbstractQualityMetric;
-import io.github.luzzu.linkeddata.qualitymetrics.commons.HTTPRetriever;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.ProbeEngine;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.ProbeResult;
 import io.github.luzzu.linkeddata.qualitymetrics.vocabulary.DQM;
 import io.github.luzzu.qualitymetrics.algorithms.ReservoirSampler;
 import io.github.luzzu.qualityproblems.ProblemCollection;
@@ -29,11 +30,6 @@ public class HighThroughput extends AbstractQualityMetric<Double> {
 	
 	private static Logger logger = LoggerFactory.getLogger(HighThroughput.class);
 	
-	/**
-	 * Amount of HTTP requests that will be sent to the data source in order to estimate how many requests are served per second. 
-	 */
-	private static final int NUM_HTTP_REQUESTS = 5;
-	
 	/**
 	 * Number of requests per second that ideally, should be served by a data source. In other words, its the amount of served requests 
 	 * per second above of which a resource will get a perfect score of 1.0. 
@@ -41,9 +37,9 @@ public class HighThroughput extends AbstractQualityMetric<Double> {
 	private static final double NORM_SERVED_REQS_PER_MILLISEC = 0.0020;
 	
 	/**
-	 * Holds the total delay as currently calculated by the compute method
+	 * Holds the latencies measured by the probe pass over the dataset's resources
 	 */
-	private long totalDelay = -1;
+	private ProbeResult probeResult = null;
 	
 	/**
 	 * Holds the metric value
@@ -59,7 +55,7 @@ public class HighThroughput extends AbstractQualityMetric<Double> {
 	 * @param quad Quad to be processed and examined to try to extract the dataset's URI
 	 */
 	
-	private int k = 100;
+	private int k = ProbeEngine.getInstance().DATASET_SAMPLE_SIZE;
 	ReservoirSampler<String> resSamp = new ReservoirSampler<String>(k,true);
 
 	public void compute(Quad quad) throws MetricProcessingException {
@@ -76,19 +72,17 @@ public class HighThroughput extends AbstractQualityMetric<Double> {
 	/**
 	 * Returns the current value of the High Throughput Metric as a ranking in the range [0, 1], with 1.0 the top ranking. 
 	 * First estimates the number of served requests per second, computed as the ration between the total number of requests 
-	 * sent to the dataset's endpoint and the sum of their response times. Then this estimate is normalized by dividing it 
+	 * sent (one after the other) to each sampled resource of the dataset and the sum of their response times. The probe pass is shared with LowLatency. Then this estimate is normalized by dividing it 
 	 * by NORM_SERVED_REQS_PER_SEC, the ideal amount of requests a resource is expected to serve per second, to get a raking of 1.0
 	 * @return Current value of the High Throughput metric, measured with respect to the dataset's URI
 	 */
 	@Override
 	public Double metricValue() {
 		if (this.metricValue == null){
-			for(String s : resSamp.getItems()){
-				totalDelay += HTTPRetriever.measureReqsBurstDelay(s, NUM_HTTP_REQUESTS);
-				logger.trace("Total delay for dataset {} was {}", s, totalDelay);	
-			}
+			this.probeResult = ProbeEngine.getInstance().probeDataset(this.getDatasetURI(), resSamp.getItems());
+			logger.trace("Probe pass for dataset {}: {}", this.getDatasetURI(), probeResult);
 
-			double servedReqsPerMilliSec = ((double)NUM_HTTP_REQUESTS)/((double)totalDelay / (double)resSamp.getItems().size());
+			double servedReqsPerMilliSec = probeResult.getServedPerMillisecond();
 			this.metricValue = Math.min(1.0, Math.max(0, servedReqsPerMilliSec / NORM_SERVED_REQS_PER_MILLISEC));
 		}	
 				
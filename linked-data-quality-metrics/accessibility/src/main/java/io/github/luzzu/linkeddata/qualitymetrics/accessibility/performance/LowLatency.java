@@ -10,7 +10,8 @@ import org.slf4j.LoggerFactory;
 
 import io.github.luzzu.exceptions.MetricProcessingException;
 import io.github.luzzu.linkeddata.qualitymetrics.commons.AbstractQualityMetric;
-import io.github.luzzu.linkeddata.qualitymetrics.commons.HTTPRetriever;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.ProbeEngine;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.ProbeResult;
 import io.github.luzzu.linkeddata.qualitymetrics.vocabulary.DQM;
 import io.github.luzzu.qualitymetrics.algorithms.ReservoirSampler;
 import io.github.luzzu.qualityproblems.ProblemCollection;
@@ -30,16 +31,9 @@ public class LowLatency extends AbstractQualityMetric<Double> {
 	private static Logger logger = LoggerFactory.getLogger(LowLatency.class);
 	
 	/**
-	 * Amount of HTTP requests that will be sent to the data source in order to determine its latency, the 
-	 * resulting delays of all of these requests will be averaged to obtain the final latency measure
+	 * Holds the latencies measured by the probe pass over the dataset's resources
 	 */
-	private static final int NUM_HTTP_SAMPLES = 1;
-	
-	/**
-	 * Holds the total delay as currently calculated by the compute method
-	 */
-	private long totalDelay = -1;
-	
+	private ProbeResult probeResult = null;
 	
 	/**
 	 * Holds the metric value
@@ -52,7 +46,10 @@ public class LowLatency extends AbstractQualityMetric<Double> {
 	 */
 	private static final double NORM_TOTAL_RESPONSE_TIME = 1000.0;
 	
-	ReservoirSampler<String> resSamp = new ReservoirSampler<String>(15,true);
+	/**
+	 * The sample is as large as the one of HighThroughput, so that both metrics are computed from the same probe pass
+	 */
+	ReservoirSampler<String> resSamp = new ReservoirSampler<String>(ProbeEngine.getInstance().DATASET_SAMPLE_SIZE,true);
 
 	public void compute(Quad quad) throws MetricProcessingException {
 		if (quad.getSubject().isURI()){
@@ -67,27 +64,25 @@ public class LowLatency extends AbstractQualityMetric<Double> {
 	
 	/**
 	 * Returns the current value of the Low Latency Metric as a ranking in the range [0, 1], with 1.0 the top ranking. 
-	 * It does so by computing the average of the time elapsed between the instant when a request is sent to the URI 
-	 * of the dataset and the instant when any response is received. Then this average response time is normalized by dividing 
-	 * NORM_TOTAL_RESPONSE_TIME, the ideal response time, by it
+	 * It does so by computing the average of the time elapsed between the instant when a request is sent to the sampled 
+	 * resources of the dataset and the instant when any response is received. Then this average response time is normalized by dividing 
+	 * NORM_TOTAL_RESPONSE_TIME, the ideal response time, by it. The probe pass is shared with HighThroughput
 	 * @return Current value of the Low Latency metric, measured with respect to the dataset's URI
 	 */
 	@Override
 	public Double metricValue() {
 		
 		if (this.metricValue == null){
-			for (String s : resSamp.getItems()){
-				totalDelay += HTTPRetriever.measureReqsBurstDelay(s, NUM_HTTP_SAMPLES);
-				logger.trace("Total delay for dataset {} was {}", s, totalDelay);
-			}
+			this.probeResult = ProbeEngine.getInstance().probeDataset(this.getDatasetURI(), resSamp.getItems());
+			logger.trace("Probe pass for dataset {}: {}", this.getDatasetURI(), probeResult);
 
-			double avgRespTime = ((double)totalDelay / resSamp.getItems().size()) / ((double)NUM_HTTP_SAMPLES);
-			this.metricValue = Math.min(1.0, Math.max(0, NORM_TOTAL_RESPONSE_TIME / avgRespTime));
+			double avgRespTime = probeResult.getMeanLatency();
+			this.metricValue = (Double.isNaN(avgRespTime)) ? 0.0 : Math.min(1.0, Math.max(0, NORM_TOTAL_RESPONSE_TIME / avgRespTime));
 			
-			statsLogger.info("LowLatency. Dataset: {}; - Total Delay (millisecs) : {}; " +
-					"# HTTP Samples : {}; Norm Total Response Milliseconds : {};", 
-					this.getDatasetURI(), 
-					totalDelay, NUM_HTTP_SAMPLES, NORM_TOTAL_RESPONSE_TIME);
+			statsLogger.info("LowLatency. Dataset: {}; - Mean Delay (millisecs) : {}; p50 : {}; p95 : {}; p99 : {}; " +
+					"# HTTP Samples : {}; # Failed : {}; Norm Total Response Milliseconds : {};", 
+					this.getDatasetURI(), avgRespTime, probeResult.getLatencyAtPercentile(50), probeResult.getLatencyAtPercentile(95), 
+					probeResult.getLatencyAtPercentile(99), probeResult.getSuccessful(), probeResult.getFailed(), NORM_TOTAL_RESPONSE_TIME);
 		}
 		return this.metricValue;
 	}
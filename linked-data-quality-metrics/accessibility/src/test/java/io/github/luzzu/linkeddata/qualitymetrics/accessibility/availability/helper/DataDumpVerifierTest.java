@@ -0,0 +1,90 @@
+package io.github.luzzu.linkeddata.qualitymetrics.accessibility.availability.helper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.github.luzzu.linkeddata.qualitymetrics.accessibility.availability.helper.DataDumpVerifier.Outcome;
+
+public class DataDumpVerifierTest extends Assert {
+
+	private HttpServer server;
+	private String base;
+
+	@Before
+	public void setUp() throws Exception {
+		StringBuilder nTriples = new StringBuilder();
+		StringBuilder jsonLD = new StringBuilder("{ \"@graph\" : [");
+		for (int i = 0; i < 1000; i++) {
+			nTriples.append("<http://example.org/s").append(i).append("> <http://example.org/p> \"o\" .\n");
+			jsonLD.append((i == 0) ? "" : ",").append("{ \"@id\" : \"http://example.org/s").append(i).append("\", \"http://example.org/p\" : \"o\" }");
+		}
+		jsonLD.append("] }");
+
+		ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+		try (GZIPOutputStream out = new GZIPOutputStream(gzipped)) {
+			out.write(nTriples.toString().getBytes(StandardCharsets.UTF_8));
+		}
+
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		// neither honours the byte range requested
+		server.createContext("/dump.nt.gz", http -> this.serve(http, "application/gzip", gzipped.toByteArray()));
+		server.createContext("/dump.jsonld", http -> this.serve(http, "application/ld+json", jsonLD.toString().getBytes(StandardCharsets.UTF_8)));
+		server.createContext("/garbage.nt", http -> this.serve(http, "application/n-triples", "not triples at all".getBytes(StandardCharsets.UTF_8)));
+		server.start();
+		base = "http://localhost:" + server.getAddress().getPort();
+	}
+
+	private void serve(HttpExchange http, String contentType, byte[] body) throws IOException {
+		http.getResponseHeaders().add("Content-Type", contentType);
+		http.sendResponseHeaders(200, body.length);
+		try (OutputStream out = http.getResponseBody()) {
+			out.write(body);
+		} catch (IOException e) {
+			// the verifier drops the connection once it read enough
+		}
+	}
+
+	@After
+	public void tearDown() {
+		server.stop(0);
+	}
+
+	@Test
+	public void gzippedDumpIsVerified() {
+		DataDumpVerifier verifier = new DataDumpVerifier();
+		assertEquals(Outcome.VERIFIED, verifier.verify(base + "/dump.nt.gz"));
+
+		// cut short, what comes before the cut is parsed
+		verifier.MAX_BYTES = 1024;
+		assertEquals(Outcome.VERIFIED, verifier.verify(base + "/dump.nt.gz"));
+	}
+
+	@Test
+	public void largeJsonLDDumpIsUnverified() {
+		DataDumpVerifier verifier = new DataDumpVerifier();
+		assertEquals(Outcome.VERIFIED, verifier.verify(base + "/dump.jsonld"));
+
+		verifier.MAX_BYTES = 1024;
+		assertEquals(Outcome.UNVERIFIED, verifier.verify(base + "/dump.jsonld"));
+	}
+
+	@Test
+	public void brokenDumpsAreReported() {
+		DataDumpVerifier verifier = new DataDumpVerifier();
+		assertEquals(Outcome.UNPARSEABLE, verifier.verify(base + "/garbage.nt"));
+		assertEquals(Outcome.UNREACHABLE, verifier.verify(base + "/missing.nt"));
+		assertEquals(Outcome.UNREACHABLE, verifier.verify("not a url"));
+	}
+}
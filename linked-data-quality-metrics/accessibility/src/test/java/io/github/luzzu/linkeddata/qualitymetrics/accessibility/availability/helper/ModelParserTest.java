@@ -0,0 +1,56 @@
+package io.github.luzzu.linkeddata.qualitymetrics.accessibility.availability.helper;
+
+import org.apache.jena.riot.Lang;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.github.luzzu.linkeddata.qualitymetrics.commons.cache.ParsedContentCache;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.datatypes.ParsedContentSummary;
+import io.github.luzzu.qualitymetrics.commons.cache.CachedHTTPResource;
+
+public class ModelParserTest extends Assert {
+
+	private static final String URI = "http://example.org/unreachable/resource";
+
+	private CachedHTTPResource resource;
+
+	@Before
+	public void setUp() {
+		ParsedContentCache.getInstance().clear();
+		resource = new CachedHTTPResource();
+		resource.setUri(URI);
+	}
+
+	@After
+	public void tearDown() {
+		ParsedContentCache.getInstance().clear();
+	}
+
+	@Test
+	public void summaryOfTheParsedContentDecides() {
+		ParsedContentCache.getInstance().put(ParsedContentSummary.summarise(URI, null, "<" + URI + "> <http://example.org/p> \"o\" .", Lang.TURTLE));
+		assertTrue(ModelParser.hasRDFContent(resource, Lang.TURTLE));
+
+		ParsedContentCache.getInstance().put(ParsedContentSummary.summarise(URI, null, "<" + URI + "> <broken", Lang.TURTLE));
+		assertFalse(ModelParser.hasRDFContent(resource, Lang.TURTLE));
+	}
+
+	@Test
+	public void contentWhichWasNotParsedIsSniffed() {
+		ParsedContentCache.getInstance().put(ParsedContentSummary.notRDF(URI));
+		ParsedContentCache.getInstance().putPrefix(URI, "<?xml version=\"1.0\"?>\n<rdf:RDF xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\">");
+		assertTrue(ModelParser.hasRDFContent(resource, Lang.RDFXML));
+		assertFalse(ModelParser.hasRDFContent(resource, Lang.TURTLE));
+
+		ParsedContentCache.getInstance().putPrefix(URI, "<!DOCTYPE html>\n<html><body>Not found</body></html>");
+		assertFalse(ModelParser.hasRDFContent(resource, Lang.RDFXML));
+	}
+
+	@Test
+	public void resourceWithoutContentIsNotFetched() {
+		// nothing was retrieved, and the URI is not dereferenced to find out
+		assertFalse(ModelParser.hasRDFContent(resource, Lang.TURTLE));
+	}
+}
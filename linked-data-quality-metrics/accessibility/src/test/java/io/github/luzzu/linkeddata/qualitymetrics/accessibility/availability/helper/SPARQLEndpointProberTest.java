@@ -0,0 +1,106 @@
+package io.github.luzzu.linkeddata.qualitymetrics.accessibility.availability.helper;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+import io.github.luzzu.linkeddata.qualitymetrics.commons.TimeLimitedExecutor;
+
+public class SPARQLEndpointProberTest extends Assert {
+
+	private HttpServer server;
+	private ExecutorService handlers;
+	private String base;
+	private final AtomicInteger asked = new AtomicInteger(0);
+
+	@Before
+	public void setUp() throws Exception {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/sparql", http -> {
+			asked.incrementAndGet();
+			byte[] body = "{ \"head\" : { }, \"boolean\" : true }".getBytes(StandardCharsets.UTF_8);
+			http.getResponseHeaders().add("Content-Type", "application/sparql-results+json");
+			http.sendResponseHeaders(200, body.length);
+			try (OutputStream out = http.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		server.createContext("/hanging", http -> {
+			try {
+				Thread.sleep(10000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			http.close();
+		});
+		handlers = Executors.newCachedThreadPool();
+		server.setExecutor(handlers);
+		server.start();
+		base = "http://localhost:" + server.getAddress().getPort();
+	}
+
+	@After
+	public void tearDown() {
+		server.stop(0);
+		handlers.shutdownNow();
+	}
+
+	@Test
+	public void accessibleEndpointIsProbedOnce() throws Exception {
+		SPARQLEndpointProber prober = new SPARQLEndpointProber();
+
+		assertTrue(prober.probe(base + "/sparql").get(10, TimeUnit.SECONDS));
+		assertTrue(prober.probe(base + "/sparql").get(10, TimeUnit.SECONDS));
+		assertEquals(1, asked.get());
+	}
+
+	@Test
+	public void hangingEndpointTimesOut() throws Exception {
+		SPARQLEndpointProber prober = new SPARQLEndpointProber();
+		prober.PROBE_TIMEOUT = 500;
+
+		long start = System.currentTimeMillis();
+		assertFalse(prober.probe(base + "/hanging").get(10, TimeUnit.SECONDS));
+		assertTrue(System.currentTimeMillis() - start < 5000);
+	}
+
+	@Test
+	public void probeTimedOutWhilstQueuedIsNotKept() throws Exception {
+		SPARQLEndpointProber prober = new SPARQLEndpointProber();
+		prober.PROBE_TIMEOUT = 200;
+
+		// every worker of the shared pool is busy
+		TimeLimitedExecutor executor = TimeLimitedExecutor.getInstance();
+		CountDownLatch release = new CountDownLatch(1);
+		for (int i = 0; i < executor.WORKER_THREADS; i++) executor.submit(() -> release.await(10, TimeUnit.SECONDS));
+		try {
+			assertFalse(prober.probe(base + "/sparql").get(10, TimeUnit.SECONDS));
+		} finally {
+			release.countDown();
+		}
+		assertEquals(0, asked.get());
+
+		prober.PROBE_TIMEOUT = 10000;
+		assertTrue(prober.probe(base + "/sparql").get(10, TimeUnit.SECONDS));
+		assertEquals(1, asked.get());
+	}
+
+	@Test
+	public void missingEndpointIsNotAccessible() throws Exception {
+		SPARQLEndpointProber prober = new SPARQLEndpointProber();
+
+		assertFalse(prober.probe(base + "/missing").get(10, TimeUnit.SECONDS));
+	}
+}
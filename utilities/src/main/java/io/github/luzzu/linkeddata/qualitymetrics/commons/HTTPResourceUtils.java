@@ -2,9 +2,7 @@ package io.github.luzzu.linkeddata.qualitymetrics.commons;
 
 import java.util.regex.Pattern;
 
-import org.apache.jena.atlas.web.TypedInputStream;
-import org.apache.jena.riot.RDFDataMgr;
-
+import io.github.luzzu.linkeddata.qualitymetrics.commons.cache.ParsedContentCache;
 import io.github.luzzu.qualitymetrics.commons.cache.CachedHTTPResource;
 import io.github.luzzu.qualitymetrics.commons.serialisation.SerialisableHttpResponse;
 
@@ -58,26 +56,23 @@ public class HTTPResourceUtils {
 		return "";
 	}
 	
+	/**
+	 * Determines the actual serialisation of a resource by sniffing the content fetched with it (see RDFFormatSniffer),
+	 * without fetching it again. The beginning of the content is kept for every resource, even if the content did not
+	 * parse as the declared content type (see ParsedContentCache). If no content was fetched, or its serialisation is
+	 * not recognised, the content type is guessed from the file extension of the URI
+	 * @param httpResource Dereferenced resource
+	 * @return The content type of the actual serialisation, or "Unknown"
+	 */
 	public static String determineActualContentType(CachedHTTPResource httpResource)
     {
-        String ct = "Unknown" ;
-        try{
-        	TypedInputStream in = RDFDataMgr.open(httpResource.getUri());
-        	String target = httpResource.getUri();
-        	String ctStr = in.getContentType();
-		
-        	boolean isTextPlain = (ctStr.equals("text/plain")) ? true : false ;
-
-        	if (ctStr != null) ctStr = LinkedDataContent.contentTypeCanonical(ctStr) ;
-
-        	if (!isTextPlain ) ct = (ctStr==null) ? null : ctStr ;
+        String content = ParsedContentCache.getInstance().getPrefix(httpResource.getUri());
+        if (content == null) content = httpResource.getContent();
+        RDFFormatSniffer.Format format = RDFFormatSniffer.sniff(content);
+        if (format != RDFFormatSniffer.Format.UNKNOWN) return format.getContentType();
         
-        	if ( ct == null ) ct = LinkedDataContent.guessContentType(target) ;
-        } catch (Exception e){
-        	//some error occured
-        	System.out.println(e);
-        }
-        return ct ;
+        String ct = LinkedDataContent.guessContentType(httpResource.getUri());
+        return (ct == null) ? "Unknown" : ct;
     }
 	
 	public static SerialisableHttpResponse getPossibleSemanticResponse(CachedHTTPResource httpResponse){
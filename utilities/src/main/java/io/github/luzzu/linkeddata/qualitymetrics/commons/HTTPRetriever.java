@@ -1,31 +1,25 @@
 package io.github.luzzu.linkeddata.qualitymetrics.commons;
 
-import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
 import java.net.URI;
-import java.net.URL;
+import java.net.URISyntaxException;
 import java.nio.CharBuffer;
-import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.Function;
 
-import org.apache.commons.validator.routines.UrlValidator;
 import org.apache.http.Header;
 import org.apache.http.HttpException;
 import org.apache.http.HttpHeaders;
@@ -39,23 +33,30 @@ import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpHead;
 import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
 import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.entity.ContentType;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
 import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.ManagedNHttpClientConnectionFactory;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
 import org.apache.http.message.BasicHeader;
 import org.apache.http.message.BasicHttpResponse;
 import org.apache.http.message.BasicStatusLine;
 import org.apache.http.nio.IOControl;
 import org.apache.http.nio.client.methods.AsyncCharConsumer;
-import org.apache.http.nio.client.methods.HttpAsyncMethods;
-import org.apache.http.nio.protocol.HttpAsyncRequestProducer;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.protocol.BasicAsyncRequestProducer;
+import org.apache.http.nio.reactor.IOReactorException;
 import org.apache.http.protocol.HttpContext;
-import org.apache.jena.rdf.model.Model;
-import org.apache.jena.rdf.model.ModelFactory;
-import org.apache.jena.rdf.model.RDFReader;
 import org.apache.jena.riot.Lang;
 import org.apache.jena.riot.RDFLanguages;
 import org.slf4j.Logger;
@@ -63,7 +64,21 @@ import org.slf4j.LoggerFactory;
 
 import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
 
+import io.github.luzzu.linkeddata.qualitymetrics.commons.cache.DereferenceCheckpoint;
 import io.github.luzzu.linkeddata.qualitymetrics.commons.cache.LinkedDataMetricsCacheManager;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.cache.ParsedContentCache;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.datatypes.ParsedContentSummary;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.AdaptiveTimeouts;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.CachingDnsResolver;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.FetchNeed;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.FetchPriority;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.FetchScheduler;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.HttpRecorder;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.PersistentURLCache;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.ProbeEngine;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.ProbeResult;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.URIWorkQueue;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.URLPlausibilityChecker;
 import io.github.luzzu.qualitymetrics.commons.cache.CachedHTTPResource;
 import io.github.luzzu.qualitymetrics.commons.datatypes.HTTPDereference.StatusCode;
 
@@ -84,7 +99,22 @@ public class HTTPRetriever {
 	 */
 	private static final int MAX_PARALLEL_REQS = 15;
 	
+	/**
+	 * Default timeout (milliseconds) of requests. The socket and connect timeouts of requests to hosts whose latency
+	 * is known are derived from their observed latencies instead (see AdaptiveTimeouts)
+	 */
 	private static final int TIMEOUT = 10000;
+	
+	/**
+	 * Maximum number of redirections followed when dereferencing a resource. Chains longer than this
+	 * are recorded up to the limit and not followed any further
+	 */
+	private static final int MAX_REDIRECT_HOPS = 10;
+	
+	/**
+	 * Maximum number of characters of the content of a response kept in memory (3MB)
+	 */
+	private static final int MAX_CONTENT_LENGTH = 3000000;
 
 	private static final String ACCEPT_TYPE = "application/rdf+xml, text/n3, text/turtle, application/rdf+json, application/n-triples, application/ld+json, application/n-quads, application/trig, text/rdf+n3, application/n3, text/trig, text/xml" ;
 	
@@ -95,12 +125,15 @@ public class HTTPRetriever {
 	private static Integer webProxyPort = null;
 	
 	/**
-	 * Indicates whether redirections obtained after successfully completing an HTTP request shold be followed
-	 * Note that Apache HTTP Client automatically follows most redirect responses (3xx), hence following redirections
-	 * is not necessary and redundant in most cases
+	 * Indicates whether redirections obtained after successfully completing an HTTP request shold be followed.
+	 * Redirections are followed hop by hop within the retriever's pipeline, recording every response of the chain
 	 */
 	private static boolean followRedirections = true;
-
+	
+	/**
+	 * Records the responses received, if set to null nothing is recorded
+	 */
+	private static HttpRecorder recorder = null;
 
 	/**
 	 * A fail-safe mechanism in order to ensure that web URLs are not visited again if they are not responding after a number of maximum retries
@@ -110,19 +143,122 @@ public class HTTPRetriever {
     private final Integer NS_MAX_RETRIES = 3;
 
 	
-	private Queue<String> httpQueue = new ConcurrentLinkedQueue<String>();
-	private Queue<String> httpGetQueue = new ConcurrentLinkedQueue<String>();
+	/**
+	 * Number of URIs waiting to be dereferenced which are kept in memory, further URIs are spilled to disk
+	 */
+	private static final int QUEUE_MEMORY_CAPACITY = 100000;
+	
+	/**
+	 * Maximum number of URIs waiting to be dereferenced, after which adding URIs to the queue blocks
+	 */
+	private static final long QUEUE_MAX_SIZE = 10000000;
+	
+	/**
+	 * Maximum number of requests sent and not yet completed (including the hops of their redirection chains)
+	 */
+	private static final int MAX_IN_FLIGHT = MAX_PARALLEL_REQS * 10;
+	
+	/**
+	 * URIs to dereference again although cached, until dereferenced (see refetchResource())
+	 */
+	private final Set<String> stale = ConcurrentHashMap.newKeySet();
+	
+	/**
+	 * URIs waiting to be dereferenced. URIs which are already queued, being dereferenced or cached are not queued again
+	 */
+	private URIWorkQueue httpQueue = new URIWorkQueue(QUEUE_MEMORY_CAPACITY, QUEUE_MAX_SIZE, 
+			uri -> (!stale.contains(uri)) && LinkedDataMetricsCacheManager.getInstance().existsInCache(LinkedDataMetricsCacheManager.HTTP_RESOURCE_CACHE, uri));
 	
 	private ExecutorService executor = null;
+	
+	{
+		// URIs cached by other retrievers while queued are not dereferenced again, but still reported to the listeners
+		this.httpQueue.setDoneListener(uri -> {
+			if (!this.retrievalListeners.isEmpty()) {
+				CachedHTTPResource cached = (CachedHTTPResource) LinkedDataMetricsCacheManager.getInstance().getFromCache(LinkedDataMetricsCacheManager.HTTP_RESOURCE_CACHE, uri);
+				if (cached != null) notifyRetrieval(cached, -1);
+			}
+		});
+	}
 				
 	public void addResourceToQueue(String resourceURI) {
-		this.httpQueue.add(resourceURI);
+		addResourceToQueue(resourceURI, FetchPriority.NEEDED_FOR_METRIC);
 	}
 
 	public void addListOfResourceToQueue(List<String> resourceURIs) {
-		this.httpQueue.addAll(resourceURIs);
+		addListOfResourceToQueue(resourceURIs, FetchPriority.NEEDED_FOR_METRIC);
 	}
 	
+	/**
+	 * Queues a resource to be dereferenced. Resources queued with a higher priority are dereferenced first,
+	 * also with respect to the resources queued in other retrievers
+	 * @param resourceURI URI of the resource
+	 * @param priority Priority class of the resource
+	 */
+	public void addResourceToQueue(String resourceURI, FetchPriority priority) {
+		this.queue(resourceURI, priority);
+	}
+
+	/**
+	 * Queues a resource to be dereferenced again, although it is cached, e.g. as more is needed about it than its
+	 * request was shaped by (see setRequestNeeds()). The cached resource is replaced once dereferenced
+	 * @param resourceURI URI of the resource
+	 * @param priority Priority class of the request
+	 */
+	public void refetchResource(String resourceURI, FetchPriority priority) {
+		this.stale.add(resourceURI);
+		this.queue(resourceURI, priority);
+	}
+
+	/**
+	 * @return True if the resource was queued, false if it was cached or queued already, or if interrupted while waiting
+	 */
+	private boolean queue(String resourceURI, FetchPriority priority) {
+		// Until start() is called nothing consumes the queue, thus once full it is drained rather than blocking forever
+		if ((this.httpQueue.size() >= QUEUE_MAX_SIZE) && (!this.isConsuming())) {
+			logger.debug("HTTP queue is full before the retriever was started, starting it");
+			this.start(this.useContentType);
+		}
+
+		try {
+			if (this.httpQueue.offer(resourceURI, priority)) {
+				DereferenceCheckpoint checkpoint = LinkedDataMetricsCacheManager.getInstance().getCheckpoint();
+				if (checkpoint != null) checkpoint.queued(resourceURI, priority);
+				return true;
+			}
+		} catch (InterruptedException e) {
+			logger.warn("Interrupted while waiting to queue {}", resourceURI);
+			Thread.currentThread().interrupt();
+		}
+		return false;
+	}
+
+	public void addListOfResourceToQueue(List<String> resourceURIs, FetchPriority priority) {
+		for (String resourceURI : resourceURIs) {
+			this.addResourceToQueue(resourceURI, priority);
+			if (Thread.currentThread().isInterrupted()) break;
+		}
+	}
+	
+
+	/**
+	 * Queues the URIs which were queued and not yet dereferenced when the checkpoint of the current run
+	 * (see LinkedDataMetricsCacheManager.setCheckpoint) was last committed, with their priority. URIs
+	 * dereferenced before the run was interrupted are not dereferenced again, as they are in the checkpoint
+	 * @return Number of URIs queued
+	 */
+	public int resumeFromCheckpoint() {
+		DereferenceCheckpoint checkpoint = LinkedDataMetricsCacheManager.getInstance().getCheckpoint();
+		if (checkpoint == null) return 0;
+
+		int resumed = 0;
+		for (Map.Entry<String, FetchPriority> entry : checkpoint.getPending().entrySet()) {
+			if (this.queue(entry.getKey(), entry.getValue())) resumed++;
+			if (Thread.currentThread().isInterrupted()) break;
+		}
+		logger.info("Resumed {} URIs pending in the checkpoint", resumed);
+		return resumed;
+	}
 
 	public void start(){
 		start(false);
@@ -134,7 +270,14 @@ public class HTTPRetriever {
 		this.useContentType = true;
 	}
 	
-	public void start(final boolean requiresContentType) {
+	/**
+	 * @return True if a retriever started by start() or startStreaming() is still consuming the queue
+	 */
+	private synchronized boolean isConsuming() {
+		return (executor != null) && (!executor.isTerminated());
+	}
+	
+	public synchronized void start(final boolean requiresContentType) {
 		// Dereference all the URIs stored in the queue, asynchronously. Wait until all have been resolved
 		if(!httpQueue.isEmpty()) {
 			executor = Executors.newSingleThreadExecutor();
@@ -142,7 +285,7 @@ public class HTTPRetriever {
 			Runnable retreiver = new Runnable() {
 				public void run() {
 					try {
-						runHTTPAsyncRetreiver(requiresContentType, true);
+						runHTTPAsyncRetreiver(requiresContentType, true, false);
 					} catch (InterruptedException e) {
 						// The thread being interrupted for whatever reason, is severe enough to report a runtime exception
 						logger.error("HTTP async request thread interrupted", e);
@@ -155,6 +298,81 @@ public class HTTPRetriever {
 			System.gc(); // Added to remove closed connections
 		}
 	}
+	
+	/**
+	 * Starts dereferencing the URIs in the queue, and keeps on dereferencing URIs as they are queued until 
+	 * stopStreaming() is called. Dereferenced resources are passed to the retrieval listeners
+	 * @param requiresContentType True if the resources should be requested with RDF content types in the Accept header
+	 */
+	public void startStreaming(final boolean requiresContentType) {
+		executor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "http-retriever-stream");
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.submit(() -> {
+			try {
+				runHTTPAsyncRetreiver(requiresContentType, true, true);
+			} catch (InterruptedException e) {
+				logger.warn("HTTP async streaming request thread interrupted");
+				Thread.currentThread().interrupt();
+			}
+			return null;
+		});
+		executor.shutdown();
+	}
+	
+	/**
+	 * Stops a retriever started with startStreaming(), once the URIs queued so far are dereferenced
+	 */
+	public void stopStreaming() {
+		this.httpQueue.close();
+	}
+	
+	/**
+	 * Receives the resources dereferenced by a retriever, as soon as each one is cached
+	 */
+	public interface RetrievalListener {
+		/**
+		 * Invoked from the threads of the HTTP client, thus listeners should not block
+		 * @param resource The dereferenced resource
+		 * @param latency Time elapsed (milliseconds) until the first response of the resource was received, -1 if none was
+		 */
+		void retrieved(CachedHTTPResource resource, long latency);
+	}
+	
+	private final List<RetrievalListener> retrievalListeners = new CopyOnWriteArrayList<RetrievalListener>();
+	
+	public void addRetrievalListener(RetrievalListener listener) {
+		this.retrievalListeners.add(listener);
+	}
+	
+	/**
+	 * Tells, for each URI about to be requested, what is needed about it, if known
+	 */
+	private volatile Function<String, Set<FetchNeed>> requestNeeds = null;
+	
+	/**
+	 * Sets what is needed about each URI, which shapes its request as it is sent: RDF content types are only
+	 * requested in the Accept header if the content type (CONTENT_TYPE) or the body (PARSED_BODY) is needed, and
+	 * the body is only parsed if it is needed (PARSED_BODY). URIs for which null is returned are requested
+	 * as if everything was needed
+	 * @param needs Function returning the needs of a URI, or null to request every URI in full
+	 */
+	public void setRequestNeeds(Function<String, Set<FetchNeed>> needs) {
+		this.requestNeeds = needs;
+	}
+	
+	private void notifyRetrieval(CachedHTTPResource resource, long latency) {
+		for (RetrievalListener listener : this.retrievalListeners) {
+			try {
+				listener.retrieved(resource, latency);
+			} catch (Exception e) {
+				logger.warn("Retrieval listener failed for {}. Error: {}", resource.getUri(), e.getMessage());
+			}
+		}
+	}
+	
 	/**
 	 * Stops the HTTPRetreiver Process
 	 */
@@ -167,7 +385,7 @@ public class HTTPRetriever {
 	private synchronized void addToFailSafeDecision(String domainTLD){
 		if (this.failSafeCounter.containsKey(domainTLD)){
 			Integer current = this.failSafeCounter.get(domainTLD) + 1;
-			if (current == NS_MAX_RETRIES){
+			if (current >= NS_MAX_RETRIES){
 				this.failSafeMap.put(domainTLD, true);
 				this.failSafeCounter.put(domainTLD, 0);
 			} else {
@@ -186,258 +404,84 @@ public class HTTPRetriever {
 		}	
 	}
 	
-	@SuppressWarnings("unused")
-	private void runHTTPAsyncRetreiver(final boolean requiresContentType) throws InterruptedException {
-		runHTTPAsyncRetreiver(requiresContentType,true);
-	}
-	
-	private void addToGetQueue(String url){
-		httpGetQueue.add(url);
-	}
-	
-	private String contentToString(InputStream is, ContentType contentType){
-		BufferedReader br = null;
-		StringBuilder sb = new StringBuilder();
-		
-		String line;
-		try {
-			br = new BufferedReader(new InputStreamReader(is));
-			while ((line = br.readLine()) != null) {
-				sb.append(line);
-			}
-		} catch (IOException e) {
-			e.printStackTrace();
-		} finally {
-			if (br != null) {
-				try {
-					br.close();
-				} catch (IOException e){
-					e.printStackTrace();
-				}
-			}
-		}
-		if (sb.toString().contains("</html>")) 
-			return "";
-		else {
-			try{
-				Lang tryLang = RDFLanguages.contentTypeToLang(contentType.toString());
-				Model m = ModelFactory.createDefaultModel();
-				RDFReader arp = m.getReader(tryLang.getName());
-				arp.setProperty("WARN_REDEFINITION_OF_ID","EM_IGNORE");
-				arp.read(m,new ByteArrayInputStream(sb.toString().getBytes()),"");
-				return sb.toString();
-			} catch (Exception e) {
-				return "";
-			}
-		}
+	/**
+	 * Parses the content retrieved for a resource, once, keeping its summary for the checks which follow
+	 * @param uri URI of the resource
+	 * @param location Location the content was retrieved from, once redirections are followed
+	 * @return The summary of the content, which is not parseable if the content is not RDF (e.g. an HTML page, or an
+	 * 			unknown content type), such that no check fetches it again to find out
+	 */
+	private ParsedContentSummary summariseContent(String uri, String location, String content, ContentType contentType){
+		Lang tryLang = (content.contains("</html>")) ? null : RDFLanguages.contentTypeToLang(contentType.getMimeType());
+
+		ParsedContentSummary summary = (tryLang == null) ? ParsedContentSummary.notRDF(uri) : ParsedContentSummary.summarise(uri, location, content, tryLang);
+		ParsedContentCache.getInstance().put(summary);
+		return summary;
 	}
-	
-	private void runHTTPAsyncRetreiver(final boolean requiresContentType, boolean useGet) throws InterruptedException {
-		
-		RequestConfig requestConfig = this.getRequestConfig(true);
+
+	private void runHTTPAsyncRetreiver(final boolean requiresContentType, boolean useGet, boolean streaming) throws InterruptedException {
+
+		// Redirections are not left to the client, they are followed hop by hop by each RedirectionChain
+		RequestConfig requestConfig = this.getRequestConfig(false);
 		logger.trace("Starting HTTP retriever, HTTP queue size: {}", httpQueue.size());
-		
+
 		CloseableHttpAsyncClient httpclient = HttpAsyncClients.custom().
 				useSystemProperties().
 				setDefaultRequestConfig(requestConfig).
-				setMaxConnTotal(MAX_PARALLEL_REQS).
-				setMaxConnPerRoute(MAX_PARALLEL_REQS/5).
+				setConnectionManager(createConnectionManager()).
 				build();
-		
-		final CountDownLatch mainHTTPRetreiverLatch = new CountDownLatch(httpQueue.size());
-				
+
+		// Each chain holds a permit until it terminates, thus the number of pending requests is bounded
+		final Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+
 		try {
 			httpclient.start();
-			
-//			for(final String queuePeek : this.httpQueue) {
-			
-			while(!this.httpQueue.isEmpty()){
-				final String queuePeek = this.httpQueue.poll();
+
+			URIWorkQueue.Entry entry;
+			while((entry = (streaming) ? this.httpQueue.take() : this.httpQueue.poll()) != null){
+				final String queuePeek = entry.getURI();
 				final String peekTLD = extractTopLevelDomainURI(queuePeek);
-				
-				// TODO: Remove artificial delay!!!! There must be a way to get rid of this
+
 				logger.debug("Retrieving "+queuePeek);
-				
-				if (this.failSafeMap.containsKey(queuePeek)){
-					this.failSafeMap.get(peekTLD);
-					continue;
-				}
-				
-				Thread.sleep(100);
-				
-				if (LinkedDataMetricsCacheManager.getInstance().existsInCache(LinkedDataMetricsCacheManager.HTTP_RESOURCE_CACHE, queuePeek)) {
-					// Request won't be sent, thus one pending request ought to be discounted from the latch
-					mainHTTPRetreiverLatch.countDown();
+
+				// The fail-safe decisions are taken per domain
+				if (this.failSafeMap.containsKey(peekTLD)){
+					this.stale.remove(queuePeek);
+					this.httpQueue.complete(queuePeek);
+					// Not to be sent again when the run is resumed either
+					DereferenceCheckpoint checkpoint = LinkedDataMetricsCacheManager.getInstance().getCheckpoint();
+					if (checkpoint != null) checkpoint.skipped(queuePeek);
+					if (!this.retrievalListeners.isEmpty()) {
+						CachedHTTPResource skipped = new CachedHTTPResource();
+						skipped.setUri(queuePeek);
+						skipped.setDereferencabilityStatusCode(StatusCode.BAD);
+						skipped.addStatusLines(new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), 0, "Request not sent: fail-safe"));
+						notifyRetrieval(skipped, -1);
+					}
 					continue;
 				}
-				
-				
+
+				// URIs already cached are not returned by the queue
+				inFlight.acquire();
+				FetchScheduler.getInstance().acquire(entry.getPriority());
+
 				final CachedHTTPResource newResource = new CachedHTTPResource();
-				final HttpClientContext localContext = HttpClientContext.create(); // Each request must have it's own context
 				newResource.setUri(queuePeek);
-				
-				try {
-					final HttpRequestBase request;
-					if (useGet) 
-						request = new HttpGet(queuePeek);	
-					else
-						request = new HttpHead(queuePeek);	
-
-					if (requiresContentType || this.useContentType)
-					{
-						Header accept = new BasicHeader(HttpHeaders.ACCEPT, ACCEPT_TYPE);
-						request.addHeader(accept);
-					}
-					HttpAsyncRequestProducer httpProd = HttpAsyncMethods.create(request);
-		            
-					AsyncCharConsumer<HttpResponse> consumer = new AsyncCharConsumer<HttpResponse>() {
-		            	HttpResponse response = null;
-		            	
-						@Override
-						protected void onCharReceived(CharBuffer buf, IOControl ioctrl) throws IOException {
-							while (buf.hasRemaining()) {
-								buf.get();
-				            }
-						}
-
-						@Override
-						protected void onResponseReceived(HttpResponse response) throws HttpException, IOException {
-							this.response = response;
-							logger.debug("Response received!", response.getStatusLine());
-						}
-
-						@Override
-						protected HttpResponse buildResult(HttpContext context) throws Exception {
-							return response;
-						}
-		            };
-					
-					httpclient.execute(httpProd, consumer, localContext, 
-							new FutureCallback<HttpResponse>() {
-								
-								public void completed(final HttpResponse response) {
-									if ((response.getStatusLine().getStatusCode() == 405)) {
-										// if it was an HTTP Head with at 405 Method Not Allowed then we have to do it again with a GET :(
-										addToGetQueue(request.getURI().toString());
-									} else {
-//										newResource.addResponse(response);
-										try {
-											if (followRedirections && localContext != null && localContext.getRedirectLocations() != null && localContext.getRedirectLocations().size() >= 1) {
-												List<URI> uriRoute = new ArrayList<URI>();
-												uriRoute.add(request.getURI());
-												uriRoute.addAll(localContext.getRedirectLocations());
-												try {
-													logger.trace("Initiating redirection set for URI: {}. Num. requests: {}", queuePeek, uriRoute.size());
-													
-													List<HttpResponse> lst = followAsyncRedirection(uriRoute);
-													for (HttpResponse res : lst){
-														newResource.addResponse(res);
-														if (((res.getEntity().getContent() != null) && (Double.valueOf(res.getHeaders("Content-Length")[0].getValue()) / 1000000) < 3)) {
-															String cnt = contentToString(res.getEntity().getContent(),ContentType.getOrDefault(res.getEntity()));
-															if (cnt.length() > 0) {
-																newResource.setParsableContent(true);
-																newResource.setContent(cnt);
-															}
-														}
-													}
-													logger.debug("Request completed with redirection set for URI: {}. {} pending requests", queuePeek, mainHTTPRetreiverLatch.getCount());
-												} catch (IOException e) {
-													logger.warn("Error following redirection: {}. Error: {}", uriRoute, e);
-												}
-											} else {
-												logger.debug("Request for URI: {} successful. {}. {} redirs. {} pending requests", queuePeek, response.getStatusLine(), ((localContext.getRedirectLocations() != null)?(localContext.getRedirectLocations().size()):(0)), mainHTTPRetreiverLatch.getCount());
-												newResource.addStatusLines(response.getStatusLine());
-												newResource.addResponse(response);
-												try{
-													newResource.setContent(contentToString(response.getEntity().getContent(),ContentType.getOrDefault(response.getEntity())));
-												} catch (Exception e1){
-													logger.debug(e1.getLocalizedMessage());
-												}
-											}
-										} catch (Exception e) {
-											logger.debug("Exception during the request for redirect locations whith the following exception : {}", e.getLocalizedMessage());
-											newResource.addStatusLines(response.getStatusLine());
-										} finally {
-											logger.trace("Adding resource to cache URI: {}", queuePeek);
-											LinkedDataMetricsCacheManager.getInstance().addToCache(LinkedDataMetricsCacheManager.HTTP_RESOURCE_CACHE, queuePeek, newResource);
-											mainHTTPRetreiverLatch.countDown();
-											updateFailSafeCache(peekTLD);
-										}
-									}
-								}
-		
-								public void failed(final Exception ex) {
-									BasicStatusLine statusLine = null;
-									BasicHttpResponse response = null;
-									// Properly set the status line
-									if(ex instanceof TimeoutException) {
-										statusLine = new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), HttpStatus.SC_REQUEST_TIMEOUT, "Request failed: timed out");
-									} else {
-										statusLine = new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), 0, "Request could not be processed");
-									}
-									
-									response = new BasicHttpResponse(statusLine);
-									newResource.setDereferencabilityStatusCode(StatusCode.BAD);
-									newResource.addStatusLines(statusLine);
-									// If response could be inferred from the exception, set it
-									if(response != null) {
-										newResource.addResponse(response);
-									}
-									
-									LinkedDataMetricsCacheManager.getInstance().addToCache(LinkedDataMetricsCacheManager.HTTP_RESOURCE_CACHE, queuePeek, newResource);
-
-									logger.debug("Failed in retreiving request : {}, with the following exception : {}. {} pending requests", request.getURI().toString(), ex, mainHTTPRetreiverLatch.getCount());
-									mainHTTPRetreiverLatch.countDown();
-									addToFailSafeDecision(peekTLD);
-								}
-		
-								public void cancelled() {
-									// Some unexpected, nasty problems, such as bad URIs can occur when trying to build or process the request, all of which must be handled
-									BasicStatusLine statusLine = null;
-									BasicHttpResponse response = null;
-									// Properly set the status line
-									statusLine = new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), 0, "Request could not be processed: Cancelled");
-									response = new BasicHttpResponse(statusLine);
-									
-									newResource.setDereferencabilityStatusCode(StatusCode.BAD);
-									newResource.addStatusLines(statusLine);
-									// If response could be inferred from the exception, set it
-									if(response != null) {
-										newResource.addResponse(response);
-									}
-									
-									LinkedDataMetricsCacheManager.getInstance().addToCache(LinkedDataMetricsCacheManager.HTTP_RESOURCE_CACHE, queuePeek, newResource);
-									logger.debug("The retreival for {} was cancelled. {} pending requests",request.getURI().toString(), mainHTTPRetreiverLatch.getCount());
-									mainHTTPRetreiverLatch.countDown();
-									addToFailSafeDecision(peekTLD);
-								}
-							});
-					logger.trace("Request launched: {}", queuePeek);
-				} catch(Throwable tex) {
-					// Some unexpected, nasty problems, such as bad URIs can occur when trying to build or process the request, all of which must be handled
-					BasicStatusLine statusLine = null;
-					BasicHttpResponse response = null;
-					// Properly set the status line
-					statusLine = new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), 0, "Request could not be processed: Exception detected");
-					response = new BasicHttpResponse(statusLine);
-					
-					newResource.setDereferencabilityStatusCode(StatusCode.BAD);
-					newResource.addStatusLines(statusLine);
-					// If response could be inferred from the exception, set it
-					if(response != null) {
-						newResource.addResponse(response);
-					}
-					
-					this.addToFailSafeDecision(peekTLD);
-					
-					LinkedDataMetricsCacheManager.getInstance().addToCache(LinkedDataMetricsCacheManager.HTTP_RESOURCE_CACHE, queuePeek, newResource);
-
-					logger.warn("Unexpected error building or processing request : " + queuePeek, tex);
-					mainHTTPRetreiverLatch.countDown();
-				} 
+
+				Function<String, Set<FetchNeed>> needsOf = this.requestNeeds;
+				Set<FetchNeed> needs = (needsOf == null) ? null : needsOf.apply(queuePeek);
+				boolean acceptRDF = requiresContentType || this.useContentType 
+						|| (needs == null) || needs.contains(FetchNeed.CONTENT_TYPE) || needs.contains(FetchNeed.PARSED_BODY);
+				boolean parseBody = (needs == null) || needs.contains(FetchNeed.PARSED_BODY);
+
+				RedirectionChain chain = new RedirectionChain(httpclient, requestConfig, newResource, peekTLD, acceptRDF, parseBody, useGet, inFlight);
+				chain.follow(queuePeek);
+				logger.trace("Request launched: {}", queuePeek);
 			}
-			
-			mainHTTPRetreiverLatch.await();
+
+			// Wait for all the chains to terminate
+			inFlight.acquire(MAX_IN_FLIGHT);
+			inFlight.release(MAX_IN_FLIGHT);
 			logger.trace("Completed HTTP retriever task");
 		} finally {
 			try {
@@ -448,54 +492,327 @@ public class HTTPRetriever {
 			}
 		}
 	}
-	
-	protected List<HttpResponse> followAsyncRedirection(List<URI> uriRoute) throws IOException, InterruptedException {
-		final List<HttpResponse> httpResponses = Collections.synchronizedList(new LinkedList<HttpResponse>());
-		RequestConfig requestConfig = this.getRequestConfig(false);
-		CloseableHttpAsyncClient httpclient = HttpAsyncClients.custom().setDefaultRequestConfig(requestConfig).build();
+
+	/**
+	 * Creates the connection manager of the asynchronous client, resolving hosts through the shared DNS cache
+	 * @return A pooling connection manager with at most MAX_PARALLEL_REQS connections
+	 */
+	private static PoolingNHttpClientConnectionManager createConnectionManager() {
+		PoolingNHttpClientConnectionManager connManager;
 		try {
-			final HttpClientContext localContext = HttpClientContext.create();
-			httpclient.start();
-			final List<HttpGet> requests = this.toHttpGetList(uriRoute);
-
-			final CountDownLatch redirectionLatch = new CountDownLatch(requests.size());			
-			
-			for (final HttpGet request : requests) {
-				httpclient.execute(request, localContext, new FutureCallback<HttpResponse>() {
-
-							public void completed(final HttpResponse response) {
-								logger.debug("---> Redirection completed: {}, {} pending requests", request.getURI().toString(), redirectionLatch.getCount());
-								redirectionLatch.countDown();
-								httpResponses.add(response);
-							}
-
-							public void failed(final Exception ex) {
-								logger.debug("---> Failed in retreiving follow redirection request : {}, with the following exception : {}. {} pending requests", request.getURI().toString(), ex.getLocalizedMessage(), redirectionLatch.getCount());
-								redirectionLatch.countDown();
-							}
-
-							public void cancelled() {
-								logger.debug("---> The retreival for {} was cancelled. {} pending requests", request.getURI().toString(), redirectionLatch.getCount());
-								redirectionLatch.countDown();
-							}
-						});
+			Registry<SchemeIOSessionStrategy> ioSessionStrategies = RegistryBuilder.<SchemeIOSessionStrategy>create().
+					register("http", NoopIOSessionStrategy.INSTANCE).
+					register("https", SSLIOSessionStrategy.getSystemDefaultStrategy()).
+					build();
+			connManager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(IOReactorConfig.DEFAULT),
+					ManagedNHttpClientConnectionFactory.INSTANCE, ioSessionStrategies, CachingDnsResolver.getInstance());
+		} catch (IOReactorException e) {
+			// Without an I/O reactor no request can be sent at all
+			logger.error("Cannot create I/O reactor for HTTP async requests", e);
+			throw new RuntimeException(e);
+		}
+		connManager.setMaxTotal(MAX_PARALLEL_REQS);
+		connManager.setDefaultMaxPerRoute(MAX_PARALLEL_REQS/5);
+		return connManager;
+	}
+
+	/**
+	 * Dereferences a single resource, following its redirections as non-blocking continuations on the client
+	 * shared by the retriever. Each hop is recorded in the status lines and responses of the resource, which is
+	 * cached once the chain terminates, either with a final response, a failure, a redirection loop or
+	 * after MAX_REDIRECT_HOPS redirections.
+	 */
+	private class RedirectionChain implements FutureCallback<HttpResponse> {
+
+		private final CloseableHttpAsyncClient httpclient;
+		private final RequestConfig requestConfig;
+		private final CachedHTTPResource resource;
+		private final String resourceTLD;
+		private final boolean acceptRDF;
+		private final boolean parseBody;
+		private final Semaphore inFlight;
+
+		private final Set<String> visited = new HashSet<String>();
+		private boolean useGet;
+		private int hops = 0;
+		private long latency = -1;
+		private String currentURI = null;
+		private String currentHost = null;
+		private int currentTimeout = TIMEOUT;
+		private BoundedContentConsumer consumer = null;
+
+		RedirectionChain(CloseableHttpAsyncClient httpclient, RequestConfig requestConfig, CachedHTTPResource resource, String resourceTLD, boolean acceptRDF, boolean parseBody, boolean useGet, Semaphore inFlight) {
+			this.httpclient = httpclient;
+			this.requestConfig = requestConfig;
+			this.resource = resource;
+			this.resourceTLD = resourceTLD;
+			this.acceptRDF = acceptRDF;
+			this.parseBody = parseBody;
+			this.useGet = useGet;
+			this.inFlight = inFlight;
+		}
+
+		void follow(String hopURI) {
+			this.currentURI = hopURI;
+			this.visited.add(hopURI);
+
+			try {
+				final HttpRequestBase request;
+				if (useGet)
+					request = new HttpGet(hopURI);
+				else
+					request = new HttpHead(hopURI);
+
+				if (acceptRDF) {
+					Header accept = new BasicHeader(HttpHeaders.ACCEPT, ACCEPT_TYPE);
+					request.addHeader(accept);
+				}
+
+				// Hosts which are known to respond quickly do not hold a connection for the whole default timeout
+				this.currentHost = request.getURI().getHost();
+				this.currentTimeout = AdaptiveTimeouts.getInstance().getTimeout(currentHost, TIMEOUT);
+				request.setConfig(RequestConfig.copy(requestConfig).
+						setSocketTimeout(currentTimeout).
+						setConnectTimeout(currentTimeout).
+						build());
+
+				final BoundedContentConsumer sent = new BoundedContentConsumer(MAX_CONTENT_LENGTH);
+				this.consumer = sent;
+				// The latency is measured from when the request is sent, rather than from when it waits for a connection
+				BasicAsyncRequestProducer producer = new BasicAsyncRequestProducer(URIUtils.extractHost(request.getURI()), request) {
+					@Override
+					public void requestCompleted(HttpContext context) {
+						super.requestCompleted(context);
+						sent.requestSent();
+					}
+				};
+				// Each request must have it's own context
+				httpclient.execute(producer, consumer, HttpClientContext.create(), this);
+			} catch(Throwable tex) {
+				// Some unexpected, nasty problems, such as bad URIs can occur when trying to build or process the request, all of which must be handled
+				logger.warn("Unexpected error building or processing request : " + hopURI, tex);
+				fail(new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), 0, "Request could not be processed: Exception detected"));
 			}
-			
-			redirectionLatch.await();
-		} finally {
-			httpclient.close();
-			System.gc(); // Called to remove any unused resources
 		}
-		return httpResponses;
+
+		public void completed(final HttpResponse response) {
+			HttpRecorder r = recorder;
+			if (r != null) r.record((useGet) ? "GET" : "HEAD", currentURI, response, consumer.getContent(), consumer.getLatency());
+
+			if ((response.getStatusLine().getStatusCode() == HttpStatus.SC_METHOD_NOT_ALLOWED) && (!useGet)) {
+				// if it was an HTTP Head with at 405 Method Not Allowed then we have to do it again with a GET :(
+				useGet = true;
+				follow(currentURI);
+				return;
+			}
+
+			if (consumer.getLatency() >= 0) AdaptiveTimeouts.getInstance().recordLatency(currentHost, consumer.getLatency());
+			if (hops == 0) latency = consumer.getLatency();
+
+			resource.addStatusLines(response.getStatusLine());
+			resource.addResponse(response);
+
+			String location = (followRedirections) ? redirectLocation(response) : null;
+			if (location != null) {
+				if (hops >= MAX_REDIRECT_HOPS) {
+					logger.debug("Redirection limit reached for URI: {}. Last location: {}", resource.getUri(), location);
+				} else if (visited.contains(location)) {
+					logger.debug("Redirection loop detected for URI: {}. Location {} already visited", resource.getUri(), location);
+				} else {
+					hops++;
+					logger.trace("Following redirection {} for URI: {} to {}", hops, resource.getUri(), location);
+					follow(location);
+					return;
+				}
+			} else {
+				// The beginning of the body is kept whether or not the body parses, to tell its actual serialisation
+				String prefix = consumer.getPrefix();
+				if ((prefix != null) && (!prefix.isEmpty())) ParsedContentCache.getInstance().putPrefix(resource.getUri(), prefix);
+
+				try {
+					String content = consumer.getContent();
+					// The content is kept whether or not it is RDF, such that the checks which follow do not fetch it again
+					if (content != null) resource.setContent(content);
+					if ((content != null) && (parseBody)) {
+						ParsedContentSummary summary = summariseContent(resource.getUri(), currentURI, content, ContentType.getOrDefault(response.getEntity()));
+						if (summary.isParseable()) resource.setParsableContent(true);
+					}
+				} catch (Exception e) {
+					logger.debug(e.getLocalizedMessage());
+				}
+			}
+
+			logger.debug("Request for URI: {} successful. {}. {} redirs. {} pending requests", resource.getUri(), response.getStatusLine(), hops, (MAX_IN_FLIGHT - inFlight.availablePermits()));
+			logger.trace("Adding resource to cache URI: {}", resource.getUri());
+			LinkedDataMetricsCacheManager.getInstance().addToCache(LinkedDataMetricsCacheManager.HTTP_RESOURCE_CACHE, resource.getUri(), resource);
+			terminate();
+			updateFailSafeCache(resourceTLD);
+			notifyRetrieval(resource, latency);
+		}
+
+		public void failed(final Exception ex) {
+			boolean timedOut = (ex instanceof TimeoutException) || (ex instanceof SocketTimeoutException);
+			HttpRecorder r = recorder;
+			if (r != null) r.recordFailure((useGet) ? "GET" : "HEAD", currentURI, String.valueOf(ex), (timedOut) ? currentTimeout : -1);
+
+			if ((timedOut) && (consumer != null) && (consumer.wasSent())) {
+				// The host did not respond within its timeout, which is accounted as the latency observed. Requests
+				// which timed out waiting for a connection tell nothing about the host
+				AdaptiveTimeouts.getInstance().recordLatency(currentHost, currentTimeout);
+			}
+
+			// Properly set the status line
+			if(ex instanceof TimeoutException) {
+				fail(new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), HttpStatus.SC_REQUEST_TIMEOUT, "Request failed: timed out"));
+			} else {
+				fail(new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), 0, "Request could not be processed"));
+			}
+			logger.debug("Failed in retreiving request : {}, with the following exception : {}. {} pending requests", currentURI, ex, (MAX_IN_FLIGHT - inFlight.availablePermits()));
+		}
+
+		public void cancelled() {
+			fail(new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), 0, "Request could not be processed: Cancelled"));
+			logger.debug("The retreival for {} was cancelled. {} pending requests", currentURI, (MAX_IN_FLIGHT - inFlight.availablePermits()));
+		}
+
+		private void fail(BasicStatusLine statusLine) {
+			resource.setDereferencabilityStatusCode(StatusCode.BAD);
+			resource.addStatusLines(statusLine);
+			resource.addResponse(new BasicHttpResponse(statusLine));
+
+			LinkedDataMetricsCacheManager.getInstance().addToCache(LinkedDataMetricsCacheManager.HTTP_RESOURCE_CACHE, resource.getUri(), resource);
+			terminate();
+			addToFailSafeDecision(resourceTLD);
+			notifyRetrieval(resource, latency);
+		}
+
+		private void terminate() {
+			stale.remove(resource.getUri());
+			httpQueue.complete(resource.getUri());
+			FetchScheduler.getInstance().release();
+			inFlight.release();
+		}
+
+		/**
+		 * Resolves the location a redirection response points to, against the URI of the current hop
+		 * @param response Response obtained for the current hop
+		 * @return The absolute location to follow, null if the response is not a redirection
+		 */
+		private String redirectLocation(HttpResponse response) {
+			if (!isRedirection(response.getStatusLine().getStatusCode())) return null;
+
+			Header location = response.getFirstHeader(HttpHeaders.LOCATION);
+			if ((location == null) || (location.getValue() == null) || location.getValue().trim().isEmpty()) return null;
+
+			try {
+				return new URI(currentURI).resolve(location.getValue().trim()).toString();
+			} catch (URISyntaxException | IllegalArgumentException e) {
+				logger.debug("Cannot resolve redirection location {} for URI: {}", location.getValue(), currentURI);
+				return null;
+			}
+		}
+	}
+
+	private static boolean isRedirection(int statusCode) {
+		switch (statusCode) {
+			case HttpStatus.SC_MOVED_PERMANENTLY : case HttpStatus.SC_MOVED_TEMPORARILY :
+			case HttpStatus.SC_SEE_OTHER : case HttpStatus.SC_TEMPORARY_REDIRECT : case 308 : return true;
+			default : return false;
+		}
 	}
 
-	private List<HttpGet> toHttpGetList(List<URI> uriRoute) {
-		List<HttpGet> requests = new ArrayList<HttpGet>();
-		for (URI uri : uriRoute) {
-			requests.add(new HttpGet(uri.toString()));
+	/**
+	 * Response consumer keeping the content of the response in memory, as long as it is not larger than
+	 * a given number of characters. Whatever its length, the beginning of the content is kept for sniffing
+	 * (see RDFFormatSniffer). The content of redirection responses is discarded.
+	 */
+	private static class BoundedContentConsumer extends AsyncCharConsumer<HttpResponse> {
+
+		// One character more than is sniffed, so that the sniffer can tell that the prefix was truncated
+		private static final int PREFIX_LENGTH = RDFFormatSniffer.SNIFF_LENGTH + 1;
+
+		private final int maxLength;
+		private final StringBuilder content = new StringBuilder();
+		private final StringBuilder prefix = new StringBuilder();
+		private volatile long requestSent = -1;
+		private long latency = -1;
+		private boolean keepContent = true;
+		private boolean isRedirection = false;
+		private HttpResponse response = null;
+
+		BoundedContentConsumer(int maxLength) {
+			this.maxLength = maxLength;
+		}
+
+		@Override
+		protected void onCharReceived(CharBuffer buf, IOControl ioctrl) throws IOException {
+			if ((!isRedirection) && (prefix.length() < PREFIX_LENGTH)) {
+				CharBuffer head = buf.duplicate();
+				if (head.remaining() > PREFIX_LENGTH - prefix.length()) head.limit(head.position() + PREFIX_LENGTH - prefix.length());
+				prefix.append(head);
+			}
+			if (keepContent) {
+				if ((content.length() + buf.remaining()) <= maxLength) {
+					content.append(buf);
+				} else {
+					keepContent = false;
+					content.setLength(0);
+				}
+			}
+			buf.position(buf.limit());
+		}
+
+		@Override
+		protected void onResponseReceived(HttpResponse response) throws HttpException, IOException {
+			this.response = response;
+			long sentAt = this.requestSent;
+			this.latency = (sentAt < 0) ? -1 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sentAt);
+			this.isRedirection = isRedirection(response.getStatusLine().getStatusCode());
+			this.keepContent = !this.isRedirection;
+			logger.debug("Response received! {}", response.getStatusLine());
+		}
+
+		@Override
+		protected HttpResponse buildResult(HttpContext context) throws Exception {
+			return response;
+		}
+
+		/**
+		 * @return The content of the response, or null if it was discarded
+		 */
+		String getContent() {
+			return (keepContent) ? content.toString() : null;
+		}
+
+		/**
+		 * @return The beginning of the content of the response, even if the content itself was discarded for being too large, 
+		 * or null if the response is a redirection
+		 */
+		String getPrefix() {
+			return (isRedirection) ? null : prefix.toString();
+		}
+
+		/**
+		 * Marks the request as sent, once a connection was obtained for it and it was written
+		 */
+		void requestSent() {
+			this.requestSent = System.nanoTime();
+		}
+
+		/**
+		 * @return True if the request was sent, rather than failing while waiting for a connection
+		 */
+		boolean wasSent() {
+			return requestSent >= 0;
 		}
 
-		return requests;
+		/**
+		 * @return Time elapsed (milliseconds) between the sending of the request and the reception of the response,
+		 * 			-1 if no response was received
+		 */
+		long getLatency() {
+			return latency;
+		}
 	}
 
 	private RequestConfig getRequestConfig(boolean followRedirects) {
@@ -517,8 +834,7 @@ public class HTTPRetriever {
 	}
 
 	public boolean isPossibleURL(String url) {
-		UrlValidator valid = new UrlValidator();
-		return valid.isValid(url);
+		return URLPlausibilityChecker.isPlausible(url);
 	}
 	
 	/**
@@ -545,6 +861,23 @@ public class HTTPRetriever {
 		followRedirections = follow;
 	}
 	
+	/**
+	 * Sets the recorder of the responses received when dereferencing resources, so that they can be replayed
+	 * offline by a ReplayServer
+	 * @param httpRecorder Recorder, or null to stop recording
+	 */
+	public static void setRecorder(HttpRecorder httpRecorder) {
+		recorder = httpRecorder;
+	}
+	
+	/**
+	 * Gets the recorder of the responses received when dereferencing resources
+	 * @return The recorder, or null if responses are not recorded
+	 */
+	public static HttpRecorder getRecorder() {
+		return recorder;
+	}
+	
 	/**
 	 * Gets the web proxy server to be used when performing HTTP requests
 	 * @param proxyUrlPort URL and port of the proxy (e.g. webcache.iai.uni-bonn.de)
@@ -584,26 +917,8 @@ public class HTTPRetriever {
 			return null;
 		}
 		
-		String tldURI = null;
-		
-		int doubleSlashIx = resourceURI.indexOf("//");
-		int pathFirstSlashIx = -1;
-		
-		// Check that the URI contains a double-slash, as the TLD is the scheme plus the authority part
-		if(doubleSlashIx > 0 && (doubleSlashIx + 1) < resourceURI.length()) {
-			
-			pathFirstSlashIx = resourceURI.indexOf('/', doubleSlashIx + 2);
-			
-			// The TLD comprises the scheme and the path
-			if(pathFirstSlashIx > (doubleSlashIx + 1)) {
-				tldURI = resourceURI.substring(0, pathFirstSlashIx);
-			} else {
-				// There's no path part in the URI
-				tldURI = resourceURI;
-			}
-		}
-		
-		return tldURI;
+		// The TLD comprises the scheme and the authority
+		return URITokenizer.local().tokenize(resourceURI).getOrigin();
 	}
 	
 	
@@ -612,23 +927,7 @@ public class HTTPRetriever {
 			return null;
 		}
 		
-		String fqnd = null;
-		
-		final String regex = "^(.*:)//([A-Za-z0-9\\-\\.]+)(:[0-9]+)?(.*)$";
-
-		final Pattern pattern = Pattern.compile(regex, Pattern.MULTILINE);
-		final Matcher matcher = pattern.matcher(targetURL);
-		
-		if (matcher.matches()) {
-			try {
-				fqnd = matcher.group(2);
-			} catch (Exception e) {
-				//there is a problem with the matcher
-				logger.error(e.getMessage());
-			}
-		}
-
-		return fqnd;
+		return URITokenizer.local().tokenize(targetURL).getHost();
 	}
 	
 	
@@ -638,214 +937,121 @@ public class HTTPRetriever {
 	
 	/**
 	 * Calculates the time required to obtain the response resulting of a request to the specified dataset URL. 
-	 * The calculation is performed by sending several requests to the dataSetUrl and adding up the times elapsed until each response is received.  
-	 * Note that the contents nor the code of the responses are taken into account.
+	 * The calculation is performed by sending several requests to the dataSetUrl, one after the other, and adding up the times 
+	 * elapsed until each response is received. Note that the contents nor the code of the responses are taken into account.
 	 * @param dataSetUrl URL to which the requests will be sent
 	 * @param numRequests total requests to be sent in the burst
 	 * @return Total delay (milliseconds) between the sending of the requests and the reception of the corresponding responses
 	 * 			-1 if any of the requests failed and thus total delay could not be calculated accurately
+	 * @see ProbeEngine
 	 */
 	public static long measureReqsBurstDelay(String dataSetUrl, int numRequests) {
-
-		// Accumulate the delay of serving all the HTTP requests sent
-		long accumDelay = 0;
-		URL targetUrl = null;
+		ProbeResult result = ProbeEngine.getInstance().probe(Collections.singletonList(dataSetUrl), numRequests, (long) TIMEOUT * numRequests);
 		
-		try {
-			// Build the target URL and abort if recognized as invalid
-			targetUrl = new URL(dataSetUrl);
-		} catch (MalformedURLException e) {
-			// Something went wrong, numbers are not accurate anymore, return -1 indicating that total delay could not be determined
-			logger.error("Error calculating parallel requests delay, invalid URL: {}. Details: {}", dataSetUrl, e);
+		if (result.getFailed() > 0) {
+			logger.error("Error calculating requests burst delay, {} of {} HTTP requests to URL {} failed", result.getFailed(), numRequests, dataSetUrl);
 			return -1;
 		}
-
-		// Send burst of numRequests, sequential HTTP GET requests
-		for(int i = 0; i < numRequests; i++) {
-			// Response received, calculate delay
-			try {
-				accumDelay += sendProbeHttpGetRequest(targetUrl);
-			} catch (IOException e) {
-				// An error occurred sending requests, return -1 as indication
-				logger.error("Error calculating parallel requests delay, I/O error sending HTTP request URL: {}. Details: {}", dataSetUrl, e);
-				return -1;
-			}
-		}
-		
-		// Return as result, the total time in seconds elapsed between requests and responses
-		return accumDelay;
+		return Math.round(result.getTotalLatency());
 	}
 	
 	/**
 	 * Calculates the time required to obtain the responses of a set of HTTP GET requests sent in parallel. 
-	 * The calculation is performed by simultaneously sending several requests to the dataSetUrl, each on 
-	 * a separate thread and counting the time elapsed until a response is received. 
+	 * The calculation is performed by simultaneously sending several requests to the dataSetUrl and counting 
+	 * the time elapsed until each response is received. 
 	 * Warning: The whole set of requests has a timeout of timeOutMillisecs seconds. 
 	 * Note that the contents nor the code of the responses are taken into account
 	 * @param dataSetUrl URL to which the requests will be sent
 	 * @param numRequests total requests to be sent in parallel
-	 * @param timeoutMillisecs maximum time to wait for all the requests to be completed, if exceeded, operation will be aborted and threads properly disposed of
+	 * @param timeoutMillisecs maximum time to wait for all the requests to be completed, if exceeded, the pending requests are cancelled
 	 * @return Total delay (milliseconds) between the sending of the requests and the reception of all the corresponding responses, 
 	 * 			-1 if any of the requests failed and thus total delay could not be calculated accurately 
+	 * @see ProbeEngine
 	 */
 	public static long measureParallelReqsDelay(String dataSetUrl, int numRequests, long timeOutMillisecs) {
-		long accumDelay = 0;
-		URL targetUrl = null;
-		ExecutorService poolRequest = null;
-		
-		try {
-			// Build the target URL and abort if recognized as invalid
-			targetUrl = new URL(dataSetUrl);
-		} catch (MalformedURLException e) {
-			// Something went wrong, numbers are not accurate anymore, return -1 indicating that total delay could not be determined
-			logger.error("Error calculating parallel requests delay, invalid URL: {}. Details: {}", dataSetUrl, e);
-			return -1;
-		}
+		ProbeResult result = ProbeEngine.getInstance().probe(Collections.nCopies(numRequests, dataSetUrl), 1, timeOutMillisecs);
 		
-		try {
-			// Hold the set of HTTP request tasks in an array, so that their resulting delays can be collected after completion
-			HttpGetRequestTask[] arrHttpRequestTasks = new HttpGetRequestTask[numRequests];
-			poolRequest = Executors.newFixedThreadPool(MAX_PARALLEL_REQS);
-			
-			for(int i = 0; i < numRequests; i++) {
-				// Create a task to be scheduled, which will send an HTTP GET request
-				arrHttpRequestTasks[i] = new HttpGetRequestTask(targetUrl);
-				
-				// Schedule the task to be executed asynchronously
-				poolRequest.execute(arrHttpRequestTasks[i]);
-			}
-			
-			// Block and wait until all requests are finish or timeout has been reached
-			poolRequest.shutdown();
-			poolRequest.awaitTermination(timeOutMillisecs, TimeUnit.MILLISECONDS);
-			
-			// Collect and accumulate delays resulting of all submitted requests
-			for(int i = 0; i < numRequests; i++) {
-				accumDelay += (arrHttpRequestTasks[i].getDelay());
-				// If any of the requests failed, the calculation would not be accurate, return -1 as indication
-				if(accumDelay < 0) {
-					return -1;
-				}
-			}
-		} catch(InterruptedException iex) {
-			// The threadpool was interrupted for some reason, which is lethal enough to prevent the delay from being determined
-			logger.error("Error calculating requests burst delay, thread-pool interrupted: {}", iex);
+		if (result.getFailed() > 0) {
+			logger.error("Error calculating parallel requests delay, {} of {} HTTP requests to URL {} failed", result.getFailed(), numRequests, dataSetUrl);
 			return -1;
-		} finally {
-			// Make absolutely sure that Thread pool gets properly shutdown
-			if(poolRequest != null) {
-				poolRequest.shutdown();
-			}
 		}
-		
-		// Return as result, the total time in seconds elapsed between requests and responses
-		return accumDelay;
+		return Math.round(result.getTotalLatency());
 	}
 	
 	/**
-	 * Sends an HTTP Get request to the target URL and measures the amount of time elapsed between the instant when the request was sent
-	 * and the instant when the respective response was received, which is returned as result
-	 * @param targetUrl URL to sent the HTTP GET request to
-	 * @return Amount of time required to serve the request, in milliseconds
-	 * @throws IOException 
+	 * Resolves the target a persistent URL redirects to, with a HEAD request unless the target is known
+	 * (see PersistentURLCache). A URL which responds successfully without redirecting is its own target, and
+	 * is remembered as such. Failures (e.g. 4xx and 5xx responses) are not remembered, as they might be transient
+	 * @param targetURL Persistent URL, including its protocol
+	 * @return The target the URL redirects to, or the URL itself if it does not redirect or cannot be reached
 	 */
-	private static long sendProbeHttpGetRequest(URL targetUrl) throws IOException {
-		// Initialize variables make sure the connection is closed at the end
-		HttpURLConnection httpConn = null;
-		InputStream responseStream = null;
-		long startTimeStamp = 0;
-		long delay = 0;
+	public static String decodePersistantURLS(String targetURL) {
+		// Persistent URLs are commonly repeated throughout a dataset, or share a prefix which is redirected uniformly
+		String cached = PersistentURLCache.getInstance().get(targetURL);
+		if (cached != null) return cached;
 		
-		try {
-			// Create a new HttpURLConnection object for each request, since each instance is intended to perform a single request (view Javadoc)
-			// note that this call does not establish the actual network connection to the target resource and thus the timer is not initiated here
-			httpConn = (HttpURLConnection)targetUrl.openConnection();
-			httpConn.setRequestProperty("Content-Type", ACCEPT_TYPE);
-			
-			// Initiate the timer, as the call to getInputStream connects to the target resource and sends GET and HEADers
-			startTimeStamp = System.currentTimeMillis();
-			// Getting the input-stream of the response actually connects to the target and retrieves contents, which won't be consumed in this case
-			responseStream = httpConn.getInputStream();
-			// Response received, calculate delay
-			delay = (System.currentTimeMillis() - startTimeStamp);
-		} catch (Exception e){
-//			System.out.println(targetUrl);
-			logger.error(e.getMessage());
-		} finally {
-			// Make sure the stream is closed, thereby freeing network resources associated to this particular trial
-			if(responseStream != null) {
-				responseStream.close();
-			}
-			// No need to reuse the connection anymore, disconnect
-			if(httpConn != null) {
-				httpConn.disconnect();
+		// If the URL was already dereferenced, the first hop of its redirection chain is in the cache
+		if (LinkedDataMetricsCacheManager.getInstance().existsInCache(LinkedDataMetricsCacheManager.HTTP_RESOURCE_CACHE, targetURL)) {
+			CachedHTTPResource resource = (CachedHTTPResource) LinkedDataMetricsCacheManager.getInstance().getFromCache(LinkedDataMetricsCacheManager.HTTP_RESOURCE_CACHE, targetURL);
+			if ((resource != null) && (resource.getResponses() != null) && (!resource.getResponses().isEmpty())) {
+				String location = resolveLocation(targetURL, resource.getResponses().get(0).getHeaders(HttpHeaders.LOCATION));
+				if (location != null) {
+					PersistentURLCache.getInstance().put(targetURL, location);
+					return location;
+				}
 			}
 		}
-		
-		// Return as result, the total time in seconds elapsed between requests and responses
-		return delay;
-	}
-	
-	public static String decodePersistantURLS(String targetURL) {
-		HttpHead head = new HttpHead(targetURL);
-		
-	    CloseableHttpClient httpclient =  HttpClientBuilder.create().disableRedirectHandling().build();
 
-	    String url = null;
+		HttpHead head;
 		try {
+			head = new HttpHead(targetURL);
+		} catch (IllegalArgumentException e) {
+			logger.debug("Cannot resolve persistent URL {}. Error: {}", targetURL, e.getMessage());
+			return targetURL;
+		}
+		head.setConfig(RequestConfig.custom().
+				setSocketTimeout(TIMEOUT).
+				setConnectTimeout(TIMEOUT).
+				setConnectionRequestTimeout(TIMEOUT).
+				build());
+
+	    String url = null;
+		try (CloseableHttpClient httpclient = HttpClientBuilder.create().setDnsResolver(CachingDnsResolver.getInstance()).disableRedirectHandling().build()) {
 			HttpResponse response = httpclient.execute(head);
-			url = response.getHeaders("Location")[0].getValue();
-			httpclient.close();
-		} catch (ArrayIndexOutOfBoundsException e) {
-			 e.printStackTrace();
-			 return targetURL;
+			int status = response.getStatusLine().getStatusCode();
+			if ((status < 200) || (status >= 400)) {
+				logger.debug("Cannot resolve persistent URL {}, which responded with status {}", targetURL, status);
+				return targetURL;
+			}
+			Header location = response.getFirstHeader(HttpHeaders.LOCATION);
+			if (location != null) url = resolveLocation(targetURL, location.getValue());
 		} catch (IOException e) {
-		      e.printStackTrace();
-		      return targetURL;
+			// Not cached, the URL might be reachable later on
+			logger.debug("Cannot resolve persistent URL {}. Error: {}", targetURL, e.getMessage());
+			return targetURL;
 		} finally {
 			head.releaseConnection();
 		}
+		
+		// Without a Location, the URL does not redirect and should not be requested again
+		if (url == null) url = targetURL;
+		PersistentURLCache.getInstance().put(targetURL, url);
 		return url;
 	}
 	
 	/**
-	 * @author slondono
-	 * A simple, runnable task (intended to be run as a separate thread) consisting of sending an HTTP GET request to 
-	 * a specific URL, and holding as result, the amount of time in milliseconds, required to serve the request
+	 * Resolves the Location header of a redirection, which might be relative, against the URL requested
+	 * @param targetURL URL requested
+	 * @param location Value of the Location header
+	 * @return The absolute URL redirected to, or null if there is no Location
 	 */
-	private static class HttpGetRequestTask implements Runnable {
-		
-		private URL targetUrl;
-		private long delay = 0;
-		
-		/**
-		 * Default constructor
-		 * @param targetUrl URL to sent the HTTP GET request to
-		 */
-		public HttpGetRequestTask(URL targetUrl) {
-			this.targetUrl = targetUrl;
-		}
-
-		/**
-		 * Run the task, which executes an HTTP GET request on the URL provided upon instantiation
-		 */
-		public void run() {
-			try {
-				delay = sendProbeHttpGetRequest(targetUrl);
-			} catch (IOException e) {
-				// An error occurred sending requests, set result to -1 as indication
-				logger.error("Error calculating parallel requests delay, I/O error sending HTTP request URL: {}. Details: {}", targetUrl, e);
-				delay = -1;
-			}
-		}
-		
-		/**
-		 * After the task has been completed, returns the amount of time elapsed between the instant when the request was sent
-		 * and the instant when the respective response was received
-		 * @return Amount of time required to serve the request
-		 */
-		public long getDelay() {
-			return delay;
+	private static String resolveLocation(String targetURL, String location) {
+		if ((location == null) || (location.trim().isEmpty())) return null;
+		try {
+			return new URI(targetURL).resolve(location.trim()).toString();
+		} catch (URISyntaxException | IllegalArgumentException e) {
+			logger.debug("Cannot resolve the location {} against {}. Error: {}", location, targetURL, e.getMessage());
+			return location.trim();
 		}
 	}
 	
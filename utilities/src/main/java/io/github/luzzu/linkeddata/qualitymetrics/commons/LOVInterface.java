@@ -20,6 +20,8 @@ import org.codehaus.jackson.map.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.CachingDnsResolver;
+
 
 /**
  * @author Jeremy Debattista
@@ -43,7 +45,7 @@ public class LOVInterface {
 		logger.debug("Searching LOV for vocabularies in the domain of {}.",domain);
 		String uriPath = LOV_API_PATH + LOV_API_VERSION2_PATH + VOCABULARY_API_PATH + "search?q="+domain;
 		
-		try(CloseableHttpClient client = HttpClients.createDefault()){
+		try(CloseableHttpClient client = HttpClients.custom().useSystemProperties().setDnsResolver(CachingDnsResolver.getInstance()).build()){
 			HttpGet get = new HttpGet(uriPath);
 			CloseableHttpResponse response = client.execute(get);
 	
@@ -0,0 +1,330 @@
+package io.github.luzzu.linkeddata.qualitymetrics.commons;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Determines the serialisation of a document from its first few
+ * kilobytes, using byte signatures and lightweight probes of the
+ * grammar of each format, rather than parsing the whole document
+ * (or fetching it again). Sniffing is a guess: a document sniffed as
+ * Turtle might still fail to parse, but a document which is not
+ * sniffed as any RDF serialisation is unlikely to parse as one.
+ */
+public class RDFFormatSniffer {
+
+	/**
+	 * Number of characters of a document which are sniffed
+	 */
+	public static int SNIFF_LENGTH = 4096;
+
+	/**
+	 * Maximum number of lines probed for N-Triples and N-Quads statements
+	 */
+	public static int MAX_PROBED_LINES = 50;
+
+	public enum Format {
+		RDFXML(LinkedDataContent.contentTypeRDFXML, true),
+		TURTLE(LinkedDataContent.contentTypeTurtle, true),
+		NTRIPLES(LinkedDataContent.contentTypeNTriples, true),
+		NQUADS(LinkedDataContent.contentTypeNQuads, true),
+		TRIG(LinkedDataContent.contentTypeTriG, true),
+		JSONLD(LinkedDataContent.contentTypeJSONLD, true),
+		RDFA("text/html", true),
+		HTML("text/html", false),
+		UNKNOWN(null, false);
+
+		private final String contentType;
+		private final boolean rdf;
+
+		private Format(String contentType, boolean rdf) {
+			this.contentType = contentType;
+			this.rdf = rdf;
+		}
+
+		/**
+		 * @return The content type of the format, null if unknown
+		 */
+		public String getContentType() {
+			return this.contentType;
+		}
+
+		/**
+		 * @return True if the format is an RDF serialisation
+		 */
+		public boolean isRDF() {
+			return this.rdf;
+		}
+	}
+
+	private static final String RDF_NAMESPACE = "http://www.w3.org/1999/02/22-rdf-syntax-ns#";
+
+	private static final Pattern ptnRDFaAttribute = Pattern.compile("\\s(property|typeof|vocab|about|prefix|resource)\\s*=", Pattern.CASE_INSENSITIVE);
+	private static final Pattern ptnTurtleDirective = Pattern.compile("^(@prefix|@base|prefix\\s|base\\s)", Pattern.CASE_INSENSITIVE);
+	private static final Pattern ptnPrefixedName = Pattern.compile("^([A-Za-z][\\w.-]*)?:[^\\s/]");
+
+	/**
+	 * Sniffs the serialisation of a document
+	 * @param bytes The document, or its first bytes
+	 * @param charset Charset of the document, null if unknown (UTF-8 and UTF-16 are told by their byte order mark, otherwise UTF-8 is assumed)
+	 * @return The format of the document
+	 */
+	public static Format sniff(byte[] bytes, Charset charset) {
+		if (bytes == null) return Format.UNKNOWN;
+
+		int offset = 0;
+		Charset cs = (charset == null) ? StandardCharsets.UTF_8 : charset;
+		if ((bytes.length >= 3) && ((bytes[0] & 0xff) == 0xef) && ((bytes[1] & 0xff) == 0xbb) && ((bytes[2] & 0xff) == 0xbf)) {
+			offset = 3;
+			cs = StandardCharsets.UTF_8;
+		} else if ((bytes.length >= 2) && ((bytes[0] & 0xff) == 0xfe) && ((bytes[1] & 0xff) == 0xff)) {
+			offset = 2;
+			cs = StandardCharsets.UTF_16BE;
+		} else if ((bytes.length >= 2) && ((bytes[0] & 0xff) == 0xff) && ((bytes[1] & 0xff) == 0xfe)) {
+			offset = 2;
+			cs = StandardCharsets.UTF_16LE;
+		}
+
+		// A character takes at most 4 bytes, a sniffing window's worth of bytes is enough
+		int length = Math.min(bytes.length - offset, SNIFF_LENGTH * 4);
+		boolean truncated = (bytes.length - offset) > length;
+		return sniff(new String(bytes, offset, length, cs), truncated);
+	}
+
+	/**
+	 * Sniffs the serialisation of a document
+	 * @param content The document
+	 * @return The format of the document
+	 */
+	public static Format sniff(String content) {
+		return sniff(content, false);
+	}
+
+	private static Format sniff(String content, boolean truncated) {
+		if (content == null) return Format.UNKNOWN;
+
+		String head = content;
+		if (head.length() > SNIFF_LENGTH) {
+			head = head.substring(0, SNIFF_LENGTH);
+			truncated = true;
+		}
+
+		int start = skipWhitespace(head, 0);
+		if ((start < head.length()) && (head.charAt(start) == '\uFEFF')) start = skipWhitespace(head, start + 1);
+		if (start >= head.length()) return Format.UNKNOWN;
+
+		char first = head.charAt(start);
+		if ((first == '{') || (first == '[')) {
+			Format json = sniffJSON(head);
+			if (json != Format.UNKNOWN) return json;
+			// '[' also starts an anonymous blank node in Turtle, but not one followed by a JSON value
+			int next = skipWhitespace(head, start + 1);
+			boolean jsonArray = (next < head.length()) && ("{\"]".indexOf(head.charAt(next)) >= 0);
+			return ((first == '[') && (!jsonArray)) ? sniffTurtleFamily(head, start) : Format.UNKNOWN;
+		}
+
+		Format lines = sniffStatements(head, start, truncated);
+		if (lines != null) return lines;
+
+		if ((first == '<') && isMarkup(head, start)) return sniffMarkup(head);
+
+		return sniffTurtleFamily(head, start);
+	}
+
+	/* ------------------------------------ JSON-LD ------------------------------------------------ */
+
+	private static Format sniffJSON(String head) {
+		if (head.contains("\"@context\"") || head.contains("\"@id\"") || head.contains("\"@graph\"") || head.contains("\"@type\"")) {
+			return Format.JSONLD;
+		}
+		return Format.UNKNOWN;
+	}
+
+	/* ------------------------------------ RDF/XML, RDFa and HTML --------------------------------- */
+
+	private static boolean isMarkup(String head, int start) {
+		if (head.startsWith("<?xml", start) || head.startsWith("<!", start)) return true;
+		// An IRI, as in <http://example.org/s>, is not a tag
+		int end = endOfIRI(head, start);
+		if ((end > 0) && (head.substring(start, end).contains(":"))) return false;
+		int i = start + 1;
+		return (i < head.length()) && (Character.isLetter(head.charAt(i)) || (head.charAt(i) == '_'));
+	}
+
+	private static Format sniffMarkup(String head) {
+		String lower = head.toLowerCase(Locale.ROOT);
+		boolean html = lower.contains("<html") || lower.contains("<!doctype html");
+
+		if (!html && (lower.contains("<rdf:rdf") || head.contains(RDF_NAMESPACE))) return Format.RDFXML;
+		if (html) return ptnRDFaAttribute.matcher(head).find() ? Format.RDFA : Format.HTML;
+		return Format.UNKNOWN;
+	}
+
+	/* ------------------------------------ N-Triples and N-Quads ---------------------------------- */
+
+	/**
+	 * Probes the first lines of the document as N-Triples or N-Quads statements, one per line
+	 * @return NTRIPLES or NQUADS if every probed line is a statement, null otherwise
+	 */
+	private static Format sniffStatements(String head, int start, boolean truncated) {
+		int probed = 0;
+		boolean quads = false;
+
+		int lineStart = start;
+		while ((lineStart < head.length()) && (probed < MAX_PROBED_LINES)) {
+			int lineEnd = head.indexOf('\n', lineStart);
+			if (lineEnd < 0) {
+				// The last line of a truncated document is likely cut short
+				if (truncated) break;
+				lineEnd = head.length();
+			}
+
+			String line = head.substring(lineStart, lineEnd).trim();
+			lineStart = lineEnd + 1;
+			if (line.isEmpty() || line.startsWith("#")) continue;
+
+			int terms = countStatementTerms(line);
+			if ((terms != 3) && (terms != 4)) return null;
+			quads |= (terms == 4);
+			probed++;
+		}
+
+		if (probed == 0) return null;
+		return quads ? Format.NQUADS : Format.NTRIPLES;
+	}
+
+	/**
+	 * @return The number of terms in a line holding a single statement, -1 if the line is not a statement
+	 */
+	private static int countStatementTerms(String line) {
+		int terms = 0;
+		int i = 0;
+		while (true) {
+			i = skipWhitespace(line, i);
+			if (i >= line.length()) return -1;
+
+			char c = line.charAt(i);
+			if (c == '.') {
+				int rest = skipWhitespace(line, i + 1);
+				return ((rest >= line.length()) || (line.charAt(rest) == '#')) ? terms : -1;
+			}
+			if (terms == 4) return -1;
+
+			if (c == '<') {
+				i = endOfIRI(line, i);
+			} else if (line.startsWith("_:", i)) {
+				i += 2;
+				int nameStart = i;
+				while ((i < line.length()) && (Character.isLetterOrDigit(line.charAt(i)) || ("_-.".indexOf(line.charAt(i)) >= 0))) i++;
+				// A blank node label does not end with a dot
+				while ((i > nameStart) && (line.charAt(i - 1) == '.')) i--;
+				if (i == nameStart) return -1;
+			} else if ((c == '"') && (terms >= 2)) {
+				i = endOfLiteral(line, i);
+			} else {
+				return -1;
+			}
+			if (i < 0) return -1;
+			terms++;
+		}
+	}
+
+	private static int endOfIRI(String line, int i) {
+		for (int j = i + 1; j < line.length(); j++) {
+			char c = line.charAt(j);
+			if (c == '>') return (j > i + 1) ? j + 1 : -1;
+			if ((c == ' ') || (c == '<') || (c == '"') || (c == '\t')) return -1;
+		}
+		return -1;
+	}
+
+	private static int endOfLiteral(String line, int i) {
+		int j = i + 1;
+		while (j < line.length()) {
+			char c = line.charAt(j);
+			if (c == '\\') {
+				j += 2;
+				continue;
+			}
+			if (c == '"') break;
+			j++;
+		}
+		if (j >= line.length()) return -1;
+		j++;
+
+		if (line.startsWith("^^", j)) {
+			if ((j + 2 >= line.length()) || (line.charAt(j + 2) != '<')) return -1;
+			return endOfIRI(line, j + 2);
+		}
+		if ((j < line.length()) && (line.charAt(j) == '@')) {
+			int k = j + 1;
+			while ((k < line.length()) && (Character.isLetterOrDigit(line.charAt(k)) || (line.charAt(k) == '-'))) k++;
+			return (k > j + 1) ? k : -1;
+		}
+		return j;
+	}
+
+	/* ------------------------------------ Turtle and TriG ---------------------------------------- */
+
+	private static Format sniffTurtleFamily(String head, int start) {
+		// The probes are anchored at the first statement, which comments may precede
+		start = skipComments(head, start);
+		if (start >= head.length()) return Format.UNKNOWN;
+		String rest = head.substring(start);
+		boolean directive = ptnTurtleDirective.matcher(rest).find();
+		char first = rest.charAt(0);
+		boolean term = (first == '<') || (first == '[') || (first == '(') || rest.startsWith("_:") || ptnPrefixedName.matcher(rest).find();
+		if (!directive && !term) return Format.UNKNOWN;
+
+		return hasGraphBlock(rest) ? Format.TRIG : Format.TURTLE;
+	}
+
+	/**
+	 * @return True if a curly bracket occurs outside of IRIs, literals and comments, which only TriG (among the Turtle family) allows
+	 */
+	private static boolean hasGraphBlock(String text) {
+		int i = 0;
+		while (i < text.length()) {
+			char c = text.charAt(i);
+			if (c == '{') return true;
+			if (c == '#') {
+				int eol = text.indexOf('\n', i);
+				i = (eol < 0) ? text.length() : eol + 1;
+			} else if (c == '<') {
+				int end = text.indexOf('>', i);
+				i = (end < 0) ? text.length() : end + 1;
+			} else if ((c == '"') || (c == '\'')) {
+				boolean isLong = text.startsWith(String.valueOf(new char[] { c, c, c }), i);
+				String quote = isLong ? String.valueOf(new char[] { c, c, c }) : String.valueOf(c);
+				int j = i + quote.length();
+				while ((j < text.length()) && (!text.startsWith(quote, j))) {
+					j += (text.charAt(j) == '\\') ? 2 : 1;
+				}
+				i = j + quote.length();
+			} else {
+				i++;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return The index of the first character which is neither whitespace nor part of a comment line
+	 */
+	private static int skipComments(String text, int i) {
+		i = skipWhitespace(text, i);
+		while ((i < text.length()) && (text.charAt(i) == '#')) {
+			int eol = text.indexOf('\n', i);
+			if (eol < 0) return text.length();
+			i = skipWhitespace(text, eol + 1);
+		}
+		return i;
+	}
+
+	private static int skipWhitespace(String text, int i) {
+		while ((i < text.length()) && (Character.isWhitespace(text.charAt(i)))) i++;
+		return i;
+	}
+}
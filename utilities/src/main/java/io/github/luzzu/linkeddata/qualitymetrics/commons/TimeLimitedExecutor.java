@@ -0,0 +1,244 @@
+/**
+ *
+ */
+package io.github.luzzu.linkeddata.qualitymetrics.commons;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A worker pool, and a timer, shared by all the operations which have to
+ * be carried out within a time limit (e.g. parsing a remote resource or
+ * loading a vocabulary), instead of creating (and tearing down) a thread
+ * for each of them.
+ *
+ * The pool holds at most WORKER_THREADS daemon threads, which are retired
+ * when idle. The time limit of an operation starts once it is submitted,
+ * so that the time spent waiting for a thread (e.g. whilst the pool is
+ * saturated) counts against it, and an operation which runs out of time
+ * before getting a thread never runs. When a running operation runs out
+ * of time it is cancelled, interrupting its thread, such that operations
+ * which respond to interrupts release their thread. Interrupts do not stop
+ * blocking socket reads, thus remote documents should be loaded through
+ * the BoundedHttpClient.
+ */
+public class TimeLimitedExecutor {
+
+	final static Logger logger = LoggerFactory.getLogger(TimeLimitedExecutor.class);
+
+	/**
+	 * Maximum number of operations running concurrently
+	 */
+	public int WORKER_THREADS = 16;
+
+	/**
+	 * Time (seconds) after which an idle worker thread is retired
+	 */
+	public long WORKER_KEEP_ALIVE = 60;
+
+	private static TimeLimitedExecutor instance = null;
+
+	private ThreadPoolExecutor workers = null;
+	private ScheduledThreadPoolExecutor timer = null;
+	private final AtomicInteger threadCount = new AtomicInteger(0);
+
+	protected TimeLimitedExecutor(){}
+
+	public static synchronized TimeLimitedExecutor getInstance(){
+		if (instance == null) {
+			instance = new TimeLimitedExecutor();
+		}
+		return instance;
+	}
+
+	/**
+	 * Runs an operation on the shared pool, without a time limit
+	 * @param task Operation to run
+	 * @return The future of the operation, which can be cancelled
+	 */
+	public <T> Future<T> submit(Callable<T> task) {
+		return this.getWorkers().submit(task);
+	}
+
+	public Future<?> submit(Runnable task) {
+		return this.getWorkers().submit(task);
+	}
+
+	/**
+	 * Runs an operation on the shared pool, returning once it has started
+	 * @param task Operation to run
+	 * @param timeout Maximum time to wait for the operation to start
+	 * @param unit Unit of the timeout
+	 * @return The future of the operation, which can be cancelled
+	 * @throws InterruptedException if interrupted while waiting for the operation to start, in which case it is cancelled
+	 * @throws TimeoutException if the operation did not start in time, in which case it is cancelled
+	 */
+	public Future<?> submitAndAwaitStart(Runnable task, long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+		CountDownLatch started = new CountDownLatch(1);
+		Future<?> running = this.getWorkers().submit(() -> {
+			started.countDown();
+			task.run();
+		});
+
+		boolean inTime;
+		try {
+			inTime = started.await(timeout, unit);
+		} catch (InterruptedException e) {
+			running.cancel(true);
+			throw e;
+		}
+		if (!inTime) {
+			running.cancel(true);
+			throw new TimeoutException("Operation did not start within " + unit.toMillis(timeout) + " ms");
+		}
+		return running;
+	}
+
+	/**
+	 * Runs an operation on the shared pool, cancelling it if it does not complete in time
+	 * @param task Operation to run
+	 * @param timeout Time limit, from the moment the operation is submitted
+	 * @param unit Unit of the time limit
+	 * @return A future completed with the outcome of the operation, or with a TimeoutException
+	 * 			once the time limit is exceeded. Cancelling it cancels the operation
+	 */
+	public <T> CompletableFuture<T> submit(Callable<T> task, long timeout, TimeUnit unit) {
+		TimedOperation<T> operation = new TimedOperation<T>(task);
+		operation.limit(timeout, unit);
+		this.getWorkers().execute(operation.running);
+
+		operation.outcome.whenComplete((result, error) -> {
+			// Once cancelled by the caller there is nothing left to run
+			if (operation.outcome.isCancelled()) operation.running.cancel(true);
+		});
+		return operation.outcome;
+	}
+
+	/**
+	 * Runs an operation on the shared pool, waiting for its outcome at most the given time limit
+	 * @param task Operation to run
+	 * @param timeout Time limit
+	 * @param unit Unit of the time limit
+	 * @return The outcome of the operation
+	 * @throws TimeoutException if the time limit is exceeded, in which case the operation is cancelled
+	 * @throws InterruptedException if interrupted while waiting, in which case the operation is cancelled
+	 * @throws Exception thrown by the operation
+	 */
+	public <T> T runWithTimeout(Callable<T> task, long timeout, TimeUnit unit) throws Exception {
+		CompletableFuture<T> outcome = this.submit(task, timeout, unit);
+		try {
+			// The operation is timed out by the timer, this only guards against the timer falling behind
+			return outcome.get(timeout, unit);
+		} catch (TimeoutException e) {
+			outcome.cancel(true);
+			throw e;
+		} catch (InterruptedException e) {
+			outcome.cancel(true);
+			Thread.currentThread().interrupt();
+			throw e;
+		} catch (ExecutionException e) {
+			// unwrap the root cause
+			Throwable t = e.getCause();
+			if (t instanceof Error) throw (Error) t;
+			if (t instanceof Exception) throw (Exception) t;
+			throw new IllegalStateException(t);
+		}
+	}
+
+	/**
+	 * Runs an action on the shared timer. Actions should be short, e.g. aborting an operation,
+	 * as they hold up every other time limit
+	 * @param action Action to run
+	 * @param delay Delay, from now
+	 * @param unit Unit of the delay
+	 * @return The future of the action, which can be cancelled
+	 */
+	public ScheduledFuture<?> schedule(Runnable action, long delay, TimeUnit unit) {
+		return this.getTimer().schedule(action, delay, unit);
+	}
+
+	/**
+	 * @return Number of operations waiting for a worker thread
+	 */
+	public int getQueued() {
+		return this.getWorkers().getQueue().size();
+	}
+
+	private synchronized ThreadPoolExecutor getWorkers() {
+		if (workers == null) {
+			workers = new ThreadPoolExecutor(WORKER_THREADS, WORKER_THREADS, WORKER_KEEP_ALIVE, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), runnable -> {
+				Thread thread = new Thread(runnable, "time-limited-worker-" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+			workers.allowCoreThreadTimeOut(true);
+		}
+		return workers;
+	}
+
+	private synchronized ScheduledThreadPoolExecutor getTimer() {
+		if (timer == null) {
+			timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+				Thread thread = new Thread(runnable, "time-limited-timer");
+				thread.setDaemon(true);
+				return thread;
+			});
+			// Most limits are cancelled as their operation completes in time, they should not linger in the queue
+			timer.setRemoveOnCancelPolicy(true);
+		}
+		return timer;
+	}
+
+	/**
+	 * An operation whose time limit is set as it is submitted
+	 */
+	private class TimedOperation<T> implements Runnable {
+		private final Callable<T> task;
+		private volatile boolean started = false;
+
+		final CompletableFuture<T> outcome = new CompletableFuture<T>();
+		final FutureTask<Void> running = new FutureTask<Void>(this, null);
+
+		TimedOperation(Callable<T> task) {
+			this.task = task;
+		}
+
+		void limit(long timeout, TimeUnit unit) {
+			ScheduledFuture<?> limit = schedule(() -> {
+				String reason = started ? "complete" : "start";
+				if (outcome.completeExceptionally(new TimeoutException("Operation did not " + reason + " within " + unit.toMillis(timeout) + " ms"))) {
+					running.cancel(true);
+				}
+			}, timeout, unit);
+			// Completed (or cancelled) in the meantime
+			outcome.whenComplete((result, error) -> limit.cancel(false));
+		}
+
+		@Override
+		public void run() {
+			// Cancelled, or timed out, whilst waiting for a thread
+			if (outcome.isDone()) return;
+			started = true;
+
+			try {
+				outcome.complete(task.call());
+			} catch (Throwable t) {
+				outcome.completeExceptionally(t);
+			}
+		}
+	}
+}
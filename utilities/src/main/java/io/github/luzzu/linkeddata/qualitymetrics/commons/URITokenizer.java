@@ -0,0 +1,413 @@
+/**
+ *
+ */
+package io.github.luzzu.linkeddata.qualitymetrics.commons;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Splits a URI into its components in a single pass, without allocating:
+ * a tokenized URI is described by the offsets (in the URI) of its scheme,
+ * authority, host, public suffix, pay-level domain (PLD), path, query and
+ * fragment. Strings are only created when a component is asked for.
+ *
+ * The public suffix of a host (e.g. co.uk for www.bbc.co.uk) is looked up
+ * in the public suffix list embedded in PUBLIC_SUFFIX_LIST, and its PLD is
+ * the public suffix together with the label preceding it (e.g. bbc.co.uk).
+ * Hosts which are IP addresses have neither.
+ *
+ * A tokenizer is reused from one URI to the next, and is not thread-safe.
+ * Each thread can reuse its own through local(), as long as it is done with
+ * the tokenized URI before tokenizing another.
+ */
+public class URITokenizer {
+
+	final static Logger logger = LoggerFactory.getLogger(URITokenizer.class);
+
+	/**
+	 * Location (in the classpath) of the embedded public suffix list
+	 */
+	public static final String PUBLIC_SUFFIX_LIST = "public_suffix_list.dat";
+
+	private static final SuffixTable SUFFIXES = SuffixTable.load(PUBLIC_SUFFIX_LIST);
+
+	private static final ThreadLocal<URITokenizer> LOCAL = ThreadLocal.withInitial(URITokenizer::new);
+
+	private CharSequence uri = null;
+	private int schemeEnd;
+	private int authorityStart;
+	private int authorityEnd;
+	private int hostStart;
+	private int hostEnd;
+	private int domainEnd;
+	private int suffixStart;
+	private int pldStart;
+	private int pathStart;
+	private int pathEnd;
+	private int queryStart;
+	private int fragmentStart;
+
+	/**
+	 * @return The tokenizer of the current thread
+	 */
+	public static URITokenizer local() {
+		return LOCAL.get();
+	}
+
+	/**
+	 * Tokenizes a URI, replacing the one tokenized before
+	 * @param uri URI to tokenize
+	 * @return This tokenizer
+	 */
+	public URITokenizer tokenize(CharSequence uri) {
+		this.uri = uri;
+		schemeEnd = authorityStart = authorityEnd = hostStart = hostEnd = domainEnd = suffixStart = pldStart = queryStart = fragmentStart = -1;
+
+		int length = uri.length();
+
+		// scheme = ALPHA *( ALPHA / DIGIT / "+" / "-" / "." ) ":"
+		if ((length > 0) && (isAlpha(uri.charAt(0)))) {
+			for (int i = 1; i < length; i++) {
+				char c = uri.charAt(i);
+				if (c == ':') {
+					schemeEnd = i;
+					break;
+				}
+				if (!(isAlpha(c) || isDigit(c) || (c == '+') || (c == '-') || (c == '.'))) break;
+			}
+		}
+
+		int pos = schemeEnd + 1;
+		if ((schemeEnd > 0) && (pos + 1 < length) && (uri.charAt(pos) == '/') && (uri.charAt(pos + 1) == '/')) {
+			authorityStart = pos + 2;
+			pos = authorityStart;
+			while ((pos < length) && (!isAuthorityEnd(uri.charAt(pos)))) pos++;
+			authorityEnd = pos;
+			this.tokenizeAuthority();
+		}
+
+		pathStart = pos;
+		while ((pos < length) && (uri.charAt(pos) != '?') && (uri.charAt(pos) != '#')) pos++;
+		pathEnd = pos;
+
+		if ((pos < length) && (uri.charAt(pos) == '?')) {
+			queryStart = ++pos;
+			while ((pos < length) && (uri.charAt(pos) != '#')) pos++;
+		}
+		if ((pos < length) && (uri.charAt(pos) == '#')) fragmentStart = pos + 1;
+
+		return this;
+	}
+
+	private void tokenizeAuthority() {
+		// authority = [ userinfo "@" ] host [ ":" port ]
+		hostStart = authorityStart;
+		for (int i = authorityEnd - 1; i >= authorityStart; i--) {
+			if (uri.charAt(i) == '@') {
+				hostStart = i + 1;
+				break;
+			}
+		}
+
+		if ((hostStart < authorityEnd) && (uri.charAt(hostStart) == '[')) {
+			// IPv6 literal
+			hostEnd = hostStart;
+			while ((hostEnd < authorityEnd) && (uri.charAt(hostEnd) != ']')) hostEnd++;
+			if (hostEnd < authorityEnd) hostEnd++;
+			return;
+		}
+
+		hostEnd = hostStart;
+		while ((hostEnd < authorityEnd) && (uri.charAt(hostEnd) != ':')) hostEnd++;
+
+		// A fully qualified host may end with a dot, which is not part of its domain
+		domainEnd = hostEnd;
+		if ((domainEnd > hostStart) && (uri.charAt(domainEnd - 1) == '.')) domainEnd--;
+		if ((domainEnd > hostStart) && (!isIPv4(hostStart, domainEnd))) this.findPublicSuffix();
+		else domainEnd = -1;
+	}
+
+	/**
+	 * The public suffix is the longest matching rule, thus labels are tried from the left.
+	 * Failing any rule, the last label is the public suffix.
+	 */
+	private void findPublicSuffix() {
+		int label = hostStart;
+		int flags = SUFFIXES.lookup(uri, label, domainEnd);
+		while (true) {
+			int next = this.nextLabel(label);
+			if (((flags & SuffixTable.EXCEPTION) != 0) && (next >= 0)) {
+				suffixStart = next;
+				break;
+			}
+			if ((flags & SuffixTable.RULE) != 0) {
+				suffixStart = label;
+				break;
+			}
+			if (next < 0) {
+				suffixStart = label;
+				break;
+			}
+			int nextFlags = SUFFIXES.lookup(uri, next, domainEnd);
+			if ((nextFlags & SuffixTable.WILDCARD) != 0) {
+				suffixStart = label;
+				break;
+			}
+			label = next;
+			flags = nextFlags;
+		}
+
+		if (suffixStart > hostStart) {
+			pldStart = suffixStart - 1;
+			while ((pldStart > hostStart) && (uri.charAt(pldStart - 1) != '.')) pldStart--;
+		}
+	}
+
+	private int nextLabel(int label) {
+		for (int i = label; i < domainEnd; i++) {
+			if (uri.charAt(i) == '.') return i + 1;
+		}
+		return -1;
+	}
+
+	private boolean isIPv4(int from, int to) {
+		for (int i = from; i < to; i++) {
+			char c = uri.charAt(i);
+			if ((c != '.') && (!isDigit(c))) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return True if the URI has an authority (i.e. its scheme is followed by //)
+	 */
+	public boolean hasAuthority() {
+		return authorityStart >= 0;
+	}
+
+	/**
+	 * @return True if the host of the URI has a pay-level domain
+	 */
+	public boolean hasPLD() {
+		return pldStart >= 0;
+	}
+
+	/**
+	 * @return Offset of the colon ending the scheme, or -1 if the URI has no scheme
+	 */
+	public int getSchemeEnd() {
+		return schemeEnd;
+	}
+
+	/**
+	 * @return Offsets of the authority, or -1 if the URI has no authority
+	 */
+	public int getAuthorityStart() {
+		return authorityStart;
+	}
+
+	public int getAuthorityEnd() {
+		return authorityEnd;
+	}
+
+	/**
+	 * @return Offsets of the host (within the authority), or -1 if the URI has no authority
+	 */
+	public int getHostStart() {
+		return hostStart;
+	}
+
+	public int getHostEnd() {
+		return hostEnd;
+	}
+
+	/**
+	 * @return Offsets of the public suffix (which ends the host, save for a trailing dot), or -1 if the host has none
+	 */
+	public int getPublicSuffixStart() {
+		return suffixStart;
+	}
+
+	public int getPublicSuffixEnd() {
+		return (suffixStart < 0) ? -1 : domainEnd;
+	}
+
+	/**
+	 * @return Offsets of the pay-level domain (which ends the host, save for a trailing dot), or -1 if the host has none
+	 */
+	public int getPLDStart() {
+		return pldStart;
+	}
+
+	public int getPLDEnd() {
+		return (pldStart < 0) ? -1 : domainEnd;
+	}
+
+	/**
+	 * @return Offsets of the path, which is empty (but not missing) if the URI has no path
+	 */
+	public int getPathStart() {
+		return pathStart;
+	}
+
+	public int getPathEnd() {
+		return pathEnd;
+	}
+
+	/**
+	 * @return Offset of the query (after the ?), or -1 if the URI has no query
+	 */
+	public int getQueryStart() {
+		return queryStart;
+	}
+
+	/**
+	 * @return Offset of the fragment (after the #), or -1 if the URI has no fragment
+	 */
+	public int getFragmentStart() {
+		return fragmentStart;
+	}
+
+	public String getScheme() {
+		return (schemeEnd < 0) ? null : this.substring(0, schemeEnd);
+	}
+
+	/**
+	 * @return The scheme and authority of the URI (e.g. http://bbc.co.uk), or null if the URI has no authority
+	 */
+	public String getOrigin() {
+		return (authorityStart < 0) ? null : this.substring(0, authorityEnd);
+	}
+
+	/**
+	 * @return The URI without its scheme (e.g. bbc.co.uk/news), or null if the URI has no authority
+	 */
+	public String getWithoutScheme() {
+		return (authorityStart < 0) ? null : this.substring(authorityStart, uri.length());
+	}
+
+	public String getHost() {
+		return ((authorityStart < 0) || (hostEnd == hostStart)) ? null : this.substring(hostStart, hostEnd);
+	}
+
+	public String getPublicSuffix() {
+		return (suffixStart < 0) ? null : this.substring(suffixStart, domainEnd);
+	}
+
+	public String getPLD() {
+		return (pldStart < 0) ? null : this.substring(pldStart, domainEnd);
+	}
+
+	public String getPath() {
+		return this.substring(pathStart, pathEnd);
+	}
+
+	private String substring(int start, int end) {
+		if (uri instanceof String) return ((String) uri).substring(start, end);
+		return uri.subSequence(start, end).toString();
+	}
+
+	private static boolean isAuthorityEnd(char c) {
+		return (c == '/') || (c == '?') || (c == '#');
+	}
+
+	private static boolean isAlpha(char c) {
+		return ((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z'));
+	}
+
+	private static boolean isDigit(char c) {
+		return (c >= '0') && (c <= '9');
+	}
+
+	/**
+	 * An open-addressing hash table of public suffix rules, looked up by a region
+	 * of a CharSequence (ignoring ASCII case) rather than by a String
+	 */
+	private static class SuffixTable {
+		static final int RULE = 1;
+		static final int WILDCARD = 2;
+		static final int EXCEPTION = 4;
+
+		private final String[] keys;
+		private final byte[] flags;
+		private final int mask;
+
+		SuffixTable(List<String> rules) {
+			int capacity = 16;
+			while (capacity < rules.size() * 2) capacity <<= 1;
+			keys = new String[capacity];
+			flags = new byte[capacity];
+			mask = capacity - 1;
+
+			for (String rule : rules) {
+				if (rule.startsWith("!")) this.add(rule.substring(1), EXCEPTION);
+				else if (rule.startsWith("*.")) this.add(rule.substring(2), WILDCARD);
+				else this.add(rule, RULE);
+			}
+		}
+
+		static SuffixTable load(String location) {
+			List<String> rules = new ArrayList<String>();
+			InputStream in = URITokenizer.class.getClassLoader().getResourceAsStream(location);
+			if (in == null) {
+				logger.warn("The public suffix list {} is missing, the last label of each host is taken as its public suffix", location);
+			} else {
+				try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+					String line;
+					while ((line = reader.readLine()) != null) {
+						line = line.trim();
+						if ((line.isEmpty()) || (line.startsWith("//"))) continue;
+						rules.add(line.toLowerCase());
+					}
+				} catch (IOException e) {
+					logger.warn("Cannot read the public suffix list {}. Error: {}", location, e.getMessage());
+				}
+			}
+			return new SuffixTable(rules);
+		}
+
+		private void add(String key, int flag) {
+			int slot = hash(key, 0, key.length()) & mask;
+			while ((keys[slot] != null) && (!keys[slot].equals(key))) slot = (slot + 1) & mask;
+			keys[slot] = key;
+			flags[slot] |= flag;
+		}
+
+		int lookup(CharSequence s, int from, int to) {
+			int slot = hash(s, from, to) & mask;
+			String key;
+			while ((key = keys[slot]) != null) {
+				if (matches(key, s, from, to)) return flags[slot];
+				slot = (slot + 1) & mask;
+			}
+			return 0;
+		}
+
+		private static boolean matches(String key, CharSequence s, int from, int to) {
+			if (key.length() != (to - from)) return false;
+			for (int i = from; i < to; i++) {
+				if (key.charAt(i - from) != toLower(s.charAt(i))) return false;
+			}
+			return true;
+		}
+
+		private static int hash(CharSequence s, int from, int to) {
+			int h = 0;
+			for (int i = from; i < to; i++) h = (31 * h) + toLower(s.charAt(i));
+			return h ^ (h >>> 16);
+		}
+
+		private static char toLower(char c) {
+			return ((c >= 'A') && (c <= 'Z')) ? (char) (c + ('a' - 'A')) : c;
+		}
+	}
+}
@@ -7,13 +7,15 @@ public class Utils {
 			return null;
 		}
 		
-		if ((targetURL.startsWith("http")) || (targetURL.startsWith("https"))){
-			try {
-				if (targetURL.contains("#")) return targetURL.substring(0, targetURL.indexOf("#"));
-				else return targetURL.substring(0, targetURL.lastIndexOf("/"));
-			} catch (StringIndexOutOfBoundsException ex) {
-				return targetURL;
+		if (targetURL.startsWith("http")){
+			URITokenizer tokens = URITokenizer.local().tokenize(targetURL);
+			if (tokens.getFragmentStart() >= 0) return targetURL.substring(0, tokens.getFragmentStart() - 1);
+			
+			// the namespace ends with the last segment of the path, or is the authority if there is no path
+			for (int i = tokens.getPathEnd() - 1; i >= tokens.getPathStart(); i--) {
+				if (targetURL.charAt(i) == '/') return targetURL.substring(0, i);
 			}
+			return (tokens.hasAuthority()) ? tokens.getOrigin() : targetURL;
 		} else
 			return targetURL;
 	}
@@ -24,8 +26,9 @@ public class Utils {
 			return null;
 		}
 		
-		if (URL.contains("://")) {
-			return URL.substring(URL.indexOf("://")+3);
+		URITokenizer tokens = URITokenizer.local().tokenize(URL);
+		if (tokens.hasAuthority()) {
+			return tokens.getWithoutScheme();
 		} else
 			return URL;
 	}
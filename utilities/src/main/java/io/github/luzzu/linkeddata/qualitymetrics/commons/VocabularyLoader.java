@@ -19,12 +19,11 @@ import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.output.StringBuilderWriter;
+import org.apache.http.client.HttpClient;
 import org.apache.jena.graph.Node;
 import org.apache.jena.query.Dataset;
 import org.apache.jena.query.DatasetFactory;
@@ -53,6 +52,7 @@ import org.slf4j.LoggerFactory;
 import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
 
 import io.github.luzzu.linkeddata.qualitymetrics.commons.cache.LinkedDataMetricsCacheManager;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.BoundedHttpClient;
 import io.github.luzzu.qualitymetrics.commons.cache.CachedVocabulary;
 import io.github.luzzu.semantics.commons.ResourceCommons;
 import io.github.luzzu.semantics.vocabularies.LMI;
@@ -75,6 +75,9 @@ public class VocabularyLoader {
 	private static Logger logger = LoggerFactory.getLogger(VocabularyLoader.class);
 	private static volatile VocabularyLoader instance = null;
 	private static Object lock = new Object();
+	
+	// Vocabularies are downloaded through a client sharing the metrics' DNS cache, which gives up on silent servers
+	private static HttpClient httpClient = BoundedHttpClient.getInstance().getHttpClient();
 
 
 	// --- Vocabulary Storage and Cache --- //
@@ -288,10 +291,9 @@ public class VocabularyLoader {
 			logger.debug("Cannot get authority for {}", ns);
 		} else if (!(this.failSafeMap.containsKey(domAuth))){
 			try{
-				ExecutorService executor = Executors.newSingleThreadExecutor();
 				Model m = null;
 				
-				final Future<Model> handler = executor.submit(new Callable<Model>() {
+				final Future<Model> handler = TimeLimitedExecutor.getInstance().submit(new Callable<Model>() {
 				    @Override
 				    public Model call() {	
 					    	logger.debug("Loading {}", ns);
@@ -300,24 +302,24 @@ public class VocabularyLoader {
 //					    		m = RDFDataMgr.loadModel(ns);
 					    		m = ModelFactory.createDefaultModel();
 					    		StreamRDF dest = StreamRDFLib.graph(m.getGraph());
-					    		RDFParser parser = RDFParser.source(ns).httpAccept("text/turtle").forceLang(Lang.TURTLE).build();
+					    		RDFParser parser = RDFParser.source(ns).httpClient(httpClient).httpAccept("text/turtle").forceLang(Lang.TURTLE).build();
 					    		parser.parse(dest);
 					    	} catch (RiotException re) {
 					    		logger.warn(ns+" cannot be fetched using text/turtle. Trying to fetch data using application/rdf+xml");
 					    		m = ModelFactory.createDefaultModel();
 					    		StreamRDF dest = StreamRDFLib.graph(m.getGraph());
-					    		RDFParser parser = RDFParser.source(ns).httpAccept("application/rdf+xml").forceLang(Lang.RDFXML).build();
+					    		RDFParser parser = RDFParser.source(ns).httpClient(httpClient).httpAccept("application/rdf+xml").forceLang(Lang.RDFXML).build();
 					    		parser.parse(dest);
 					    	} catch (Exception e) {
 					    		logger.error(ns+" cannot be fetched. Exception: "+e.getMessage());
 					    	} 
 					    	return m;
 				    }
-				});
-				executor.shutdown();
+				}, 5, TimeUnit.SECONDS);
 				
 				try {
-					m = handler.get(5, TimeUnit.SECONDS);
+					// the time limit, counted from submission, completes the handler even if the vocabulary is not loaded
+					m = handler.get();
 					dataset.addNamedModel(ns, m);
 					
 					StringBuilderWriter writer = new StringBuilderWriter();
@@ -333,7 +335,6 @@ public class VocabularyLoader {
 				} catch (Exception e)  {
 					logger.error("Vocabulary {} could not be accessed. Exception: {}",ns,e.getMessage());
 					handler.cancel(true);
-					executor.shutdownNow();
 					addToFailSafeDecision(domAuth);
 				} 
 			} catch (Exception e){
@@ -359,19 +360,18 @@ public class VocabularyLoader {
 			logger.debug("Cannot get authority for {}", ns);
 		} else if (!(this.failSafeMap.containsKey(domAuth))){
 			try{
-				ExecutorService executor = Executors.newSingleThreadExecutor();
 				Model m = null;
 				
-				final Future<Model> handler = executor.submit(new Callable<Model>() {
+				final Future<Model> handler = TimeLimitedExecutor.getInstance().submit(new Callable<Model>() {
 				    @Override
 				    public Model call() throws Exception {
 				    	logger.debug("Loading {}", ns);
 				    	Model m = null;
-				    	try{ m = RDFDataMgr.loadModel(term.getURI(), Lang.RDFXML); 	} catch (Exception e)
+				    	try{ m = downloadModel(term.getURI(), Lang.RDFXML); 	} catch (Exception e)
 				    	{
-				    		try{ m = RDFDataMgr.loadModel(term.getURI(), Lang.TURTLE); } catch (Exception e2)
+				    		try{ m = downloadModel(term.getURI(), Lang.TURTLE); } catch (Exception e2)
 				    		{
-				    			try { m = RDFDataMgr.loadModel(term.getURI(), Lang.NTRIPLES); }
+				    			try { m = downloadModel(term.getURI(), Lang.NTRIPLES); }
 				    			catch (Exception e3){
 				    				logger.error("Vocabulary {} could not be accessed after 3 attempts. ",  ns);
 					    		}
@@ -379,11 +379,10 @@ public class VocabularyLoader {
 				    	}
 				    	return m;
 				    }
-				});
-				executor.shutdown();
+				}, 5, TimeUnit.SECONDS);
 				
 				try {
-					m = handler.get(5, TimeUnit.SECONDS);
+					m = handler.get();
 					dataset.addNamedModel(ns, m);
 					
 					StringBuilderWriter writer = new StringBuilderWriter();
@@ -399,7 +398,6 @@ public class VocabularyLoader {
 				} catch (Exception e)  {
 					logger.error("Vocabulary {} could not be accessed.",ns);
 					handler.cancel(true);
-					executor.shutdownNow();
 					addToFailSafeDecision(domAuth);
 				} 
 			} catch (Exception e){
@@ -412,6 +410,12 @@ public class VocabularyLoader {
 		}
 	}
 	
+	private static Model downloadModel(String uri, Lang lang) {
+		Model m = ModelFactory.createDefaultModel();
+		RDFParser.source(uri).httpClient(httpClient).lang(lang).parse(m.getGraph());
+		return m;
+	}
+	
 	public void clearDataset(){
 		this.dataset.close();
 		this.dataset = DatasetFactory.createGeneral();
@@ -0,0 +1,321 @@
+/**
+ *
+ */
+package io.github.luzzu.linkeddata.qualitymetrics.commons.cache;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.commons.io.FileUtils;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.mapdb.HTreeMap;
+import org.mapdb.Serializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.github.luzzu.linkeddata.qualitymetrics.commons.TimeLimitedExecutor;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.FetchPriority;
+import io.github.luzzu.qualitymetrics.commons.cache.CachedHTTPResource;
+
+/**
+ * Persists the progress of a long dereferencing run (e.g. the assessment
+ * of a large dataset) to a MapDB file, such that a run which crashes or is
+ * killed can be resumed instead of dereferencing every URI once again.
+ *
+ * The checkpoint keeps every resource added to the HTTP resource cache
+ * (see LinkedDataMetricsCacheManager.setCheckpoint), and the URIs queued
+ * for dereferencing which were not dereferenced yet, with their priority.
+ * Dereferenced resources are buffered and written (serialised) in batches
+ * of WRITE_BATCH, in the background, rather than on the threads of the
+ * HTTP client which complete them. Changes are committed every
+ * CHECKPOINT_INTERVAL milliseconds, when the checkpoint is closed, and
+ * when the JVM shuts down, thus a crash loses at most the resources
+ * dereferenced since the last commit.
+ *
+ * The checkpoint of a run is identified by the run (e.g. the URI of the
+ * dataset assessed), thus opening the checkpoint of the same run again
+ * resumes it. Once a run is complete, its checkpoint should be discarded.
+ */
+public class DereferenceCheckpoint {
+
+	final static Logger logger = LoggerFactory.getLogger(DereferenceCheckpoint.class);
+
+	/**
+	 * Time (milliseconds) between commits of the changes to the checkpoint
+	 */
+	public long CHECKPOINT_INTERVAL = 60000;
+
+	/**
+	 * Number of dereferenced resources buffered before they are written to the checkpoint
+	 */
+	public int WRITE_BATCH = 200;
+
+	private final File file;
+	private final DB db;
+	private final HTreeMap<String, Object> resources;
+	private final HTreeMap<String, Integer> pending;
+
+	// Dereferenced resources not written yet, which are complete nonetheless
+	private final ConcurrentMap<String, CachedHTTPResource> unwritten = new ConcurrentHashMap<String, CachedHTTPResource>();
+	private final AtomicBoolean writing = new AtomicBoolean(false);
+
+	// Changes are applied under the read lock, concurrently, and committed under the write lock
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final AtomicLong changes = new AtomicLong(0);
+	private final Thread shutdownHook;
+	private volatile ScheduledFuture<?> nextCommit = null;
+	private volatile boolean closed = false;
+
+	/**
+	 * Opens the checkpoint of a run in the temporary directory
+	 * @see #DereferenceCheckpoint(File, String)
+	 */
+	public DereferenceCheckpoint(String run) {
+		this(new File(System.getProperty("java.io.tmpdir"), "luzzu-checkpoints"), run);
+	}
+
+	/**
+	 * Opens the checkpoint of a run, resuming it if the run was checkpointed before
+	 * @param directory Directory of the checkpoint files, created if missing
+	 * @param run Identifier of the run (e.g. the URI of the dataset assessed)
+	 */
+	@SuppressWarnings("unchecked")
+	public DereferenceCheckpoint(File directory, String run) {
+		directory.mkdirs();
+		this.file = new File(directory, "checkpoint-" + UUID.nameUUIDFromBytes(run.getBytes(StandardCharsets.UTF_8)) + ".db");
+
+		this.db = DBMaker.fileDB(this.file)
+				.fileChannelEnable()
+				.transactionEnable()
+				.make();
+		this.resources = (HTreeMap<String, Object>) db.hashMap("resources", Serializer.STRING, Serializer.JAVA).createOrOpen();
+		this.pending = db.hashMap("pending", Serializer.STRING, Serializer.INTEGER).createOrOpen();
+
+		if ((!resources.isEmpty()) || (!pending.isEmpty())) {
+			logger.info("Resuming {} from checkpoint: {} resources dereferenced, {} URIs pending", run, resources.size(), pending.size());
+		}
+
+		// Rather than closeOnJvmShutdown(), which would roll back the changes since the last commit
+		this.shutdownHook = new Thread(this::close, "dereference-checkpoint-shutdown");
+		Runtime.getRuntime().addShutdownHook(this.shutdownHook);
+		this.scheduleCommit();
+	}
+
+	/**
+	 * Records a URI queued for dereferencing, unless it was dereferenced already
+	 * @param uri URI queued
+	 * @param priority Priority class it was queued with
+	 */
+	public void queued(String uri, FetchPriority priority) {
+		lock.readLock().lock();
+		try {
+			// Resources are written before they are removed from the buffer
+			if (closed || unwritten.containsKey(uri) || resources.containsKey(uri)) return;
+			Integer current = pending.get(uri);
+			if ((current == null) || (priority.ordinal() < current)) {
+				pending.put(uri, priority.ordinal());
+				changes.incrementAndGet();
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Records a dereferenced resource, which is no longer pending. The resource is buffered, and written along
+	 * with the others once WRITE_BATCH of them are buffered
+	 * @param resource Resource dereferenced
+	 */
+	public void completed(CachedHTTPResource resource) {
+		if (closed) return;
+		unwritten.put(resource.getUri(), resource);
+		if ((unwritten.size() >= WRITE_BATCH) && (writing.compareAndSet(false, true))) {
+			TimeLimitedExecutor.getInstance().submit(() -> {
+				try {
+					this.write();
+				} catch (Exception e) {
+					logger.warn("Cannot write to the checkpoint {}. Error: {}", file.getName(), e.getMessage());
+				} finally {
+					writing.set(false);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Records a URI which was queued and is not to be dereferenced, neither in this run nor when it is resumed
+	 * (e.g. as its host failed too often), thus no longer pending
+	 * @param uri URI skipped
+	 */
+	public void skipped(String uri) {
+		lock.readLock().lock();
+		try {
+			if (closed) return;
+			if (pending.remove(uri) != null) changes.incrementAndGet();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @param uri URI of the resource
+	 * @return True if the resource was dereferenced, in this run or before it was resumed
+	 */
+	public boolean isCompleted(String uri) {
+		lock.readLock().lock();
+		try {
+			return (!closed) && (unwritten.containsKey(uri) || resources.containsKey(uri));
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @param uri URI of the resource
+	 * @return The resource dereferenced, or null if it was not dereferenced
+	 */
+	public CachedHTTPResource getResource(String uri) {
+		lock.readLock().lock();
+		try {
+			if (closed) return null;
+			CachedHTTPResource resource = unwritten.get(uri);
+			return (resource != null) ? resource : (CachedHTTPResource) resources.get(uri);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return The URIs queued and not dereferenced yet, with the priority they were queued with, highest first
+	 */
+	public Map<String, FetchPriority> getPending() {
+		Map<String, FetchPriority> byPriority = new LinkedHashMap<String, FetchPriority>();
+		this.write();
+		lock.readLock().lock();
+		try {
+			if (closed) return byPriority;
+			for (FetchPriority priority : FetchPriority.values()) {
+				for (Map.Entry<String, Integer> entry : pending.entrySet()) {
+					if (entry.getValue() == priority.ordinal()) byPriority.put(entry.getKey(), priority);
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		return byPriority;
+	}
+
+	/**
+	 * @return Number of resources dereferenced
+	 */
+	public long getCompletedCount() {
+		this.write();
+		return (closed) ? 0 : resources.sizeLong();
+	}
+
+	/**
+	 * @return Number of URIs queued and not dereferenced yet
+	 */
+	public long getPendingCount() {
+		this.write();
+		return (closed) ? 0 : pending.sizeLong();
+	}
+
+	/**
+	 * Commits the changes recorded since the last commit to the checkpoint file
+	 */
+	public void commit() {
+		this.write();
+		lock.writeLock().lock();
+		try {
+			if ((closed) || (changes.get() == 0)) return;
+			db.commit();
+			logger.debug("Checkpointed {} changes: {} resources dereferenced, {} URIs pending", changes.getAndSet(0), resources.size(), pending.size());
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Commits the pending changes and closes the checkpoint, which can be opened again to resume the run
+	 */
+	public void close() {
+		lock.writeLock().lock();
+		try {
+			if (closed) return;
+			if (nextCommit != null) nextCommit.cancel(false);
+			this.writeUnwritten();
+			db.commit();
+			db.close();
+			closed = true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+
+		try {
+			Runtime.getRuntime().removeShutdownHook(this.shutdownHook);
+		} catch (IllegalStateException e) {
+			// the JVM is shutting down, and the hook is the one closing the checkpoint
+		}
+	}
+
+	/**
+	 * Closes the checkpoint and deletes its files, once the run is complete
+	 */
+	public void discard() {
+		this.close();
+		File[] files = file.getParentFile().listFiles((dir, name) -> name.startsWith(file.getName()));
+		if (files != null) {
+			for (File f : files) FileUtils.deleteQuietly(f);
+		}
+	}
+
+	/**
+	 * Writes the dereferenced resources buffered so far
+	 */
+	private void write() {
+		lock.readLock().lock();
+		try {
+			if (!closed) this.writeUnwritten();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private void writeUnwritten() {
+		for (Map.Entry<String, CachedHTTPResource> entry : unwritten.entrySet()) {
+			resources.put(entry.getKey(), entry.getValue());
+			pending.remove(entry.getKey());
+			unwritten.remove(entry.getKey(), entry.getValue());
+			changes.incrementAndGet();
+		}
+	}
+
+	private void scheduleCommit() {
+		nextCommit = TimeLimitedExecutor.getInstance().schedule(() -> {
+			try {
+				this.commit();
+			} catch (Exception e) {
+				logger.warn("Cannot commit the checkpoint {}. Error: {}", file.getName(), e.getMessage());
+			}
+			lock.readLock().lock();
+			try {
+				if (!closed) this.scheduleCommit();
+			} finally {
+				lock.readLock().unlock();
+			}
+		}, CHECKPOINT_INTERVAL, TimeUnit.MILLISECONDS);
+	}
+}
@@ -3,8 +3,16 @@
  */
 package io.github.luzzu.linkeddata.qualitymetrics.commons.cache;
 
+import java.io.File;
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.PersistentURLCache;
 import io.github.luzzu.operations.cache.CacheManager;
 import io.github.luzzu.operations.cache.CacheObject;
+import io.github.luzzu.qualitymetrics.commons.cache.CachedHTTPResource;
 
 /**
  * @author Jeremy Debattista
@@ -12,36 +20,110 @@ import io.github.luzzu.operations.cache.CacheObject;
  * This class communicates with Luzzu's Cache Manager,
  * storing resources which might be used in the future.
  * 
+ * If a checkpoint is set, the resources added to the HTTP resource
+ * cache are also checkpointed, and those evicted from (or never loaded
+ * into) the cache are looked up in the checkpoint.
+ * 
+ * The resolved persistent URLs (see PersistentURLCache) are loaded
+ * from PERSISTENT_URL_FILE when the caches are created, and saved
+ * back when the JVM shuts down, or whenever savePersistentURLs is
+ * called, unless PERSISTENT_URL_FILE is null (e.g. in shard workers,
+ * which leave the file to the process that started them).
+ * 
  */
 public class LinkedDataMetricsCacheManager {
 
 	public static final String HTTP_RESOURCE_CACHE = "http_resource_cache";
 	public static final String VOCABULARY_CACHE = "vocabulary_cache";
 	
+	/**
+	 * File the resolved persistent URLs are kept in across assessments, to be set before the caches are created.
+	 * Null not to keep them
+	 */
+	public static File PERSISTENT_URL_FILE = new File(System.getProperty("java.io.tmpdir"), "luzzu-persistent-urls.tsv");
+	
+	final static Logger logger = LoggerFactory.getLogger(LinkedDataMetricsCacheManager.class);
+	
 	private static LinkedDataMetricsCacheManager instance = null;
 	private CacheManager luzzuCM = CacheManager.getInstance();
+	private volatile DereferenceCheckpoint checkpoint = null;
 	
 	protected LinkedDataMetricsCacheManager(){
 		luzzuCM.createNewCache(HTTP_RESOURCE_CACHE, 5000);
 		luzzuCM.createNewCache(VOCABULARY_CACHE, 5000);
+		
+		if (PERSISTENT_URL_FILE != null) {
+			try {
+				PersistentURLCache.getInstance().load(PERSISTENT_URL_FILE);
+			} catch (IOException e) {
+				logger.warn("Cannot load the resolved persistent URLs from {}. Error: {}", PERSISTENT_URL_FILE, e.getMessage());
+			}
+			Runtime.getRuntime().addShutdownHook(new Thread(this::savePersistentURLs, "persistent-url-cache-shutdown"));
+		}
 	};
 	
-	public static LinkedDataMetricsCacheManager getInstance(){
+	public static synchronized LinkedDataMetricsCacheManager getInstance(){
 		if (instance == null) {
 			instance = new LinkedDataMetricsCacheManager();
 		}
 		return instance;
 	}
 	
+	/**
+	 * Sets the checkpoint of the current dereferencing run, so that a run which is interrupted can be resumed
+	 * @param dereferenceCheckpoint Checkpoint, or null to stop checkpointing
+	 */
+	public void setCheckpoint(DereferenceCheckpoint dereferenceCheckpoint){
+		this.checkpoint = dereferenceCheckpoint;
+	}
+	
+	/**
+	 * @return The checkpoint of the current dereferencing run, or null if the run is not checkpointed
+	 */
+	public DereferenceCheckpoint getCheckpoint(){
+		return this.checkpoint;
+	}
+	
+	/**
+	 * Saves the resolved persistent URLs to PERSISTENT_URL_FILE, for the next assessments
+	 */
+	public void savePersistentURLs(){
+		File file = PERSISTENT_URL_FILE;
+		if (file == null) return;
+		try {
+			PersistentURLCache.getInstance().save(file);
+		} catch (IOException e) {
+			logger.warn("Cannot save the resolved persistent URLs to {}. Error: {}", file, e.getMessage());
+		}
+	}
+	
 	public void addToCache(String cacheName, String key, CacheObject value){
 		luzzuCM.addToCache(cacheName, key, value);
+		
+		DereferenceCheckpoint c = this.checkpoint;
+		if ((c != null) && (HTTP_RESOURCE_CACHE.equals(cacheName)) && (value instanceof CachedHTTPResource)) {
+			c.completed((CachedHTTPResource) value);
+		}
 	}
 	
 	public boolean existsInCache(String cacheName, String key){
-		return luzzuCM.existsInCache(cacheName, key);
+		if (luzzuCM.existsInCache(cacheName, key)) return true;
+		
+		DereferenceCheckpoint c = this.checkpoint;
+		return (c != null) && (HTTP_RESOURCE_CACHE.equals(cacheName)) && (c.isCompleted(key));
 	}
 	
 	public Object getFromCache(String cacheName, String key){
-		return luzzuCM.getFromCache(cacheName, key);
+		Object value = luzzuCM.getFromCache(cacheName, key);
+		
+		DereferenceCheckpoint c = this.checkpoint;
+		if ((value == null) && (c != null) && (HTTP_RESOURCE_CACHE.equals(cacheName))) {
+			CachedHTTPResource checkpointed = c.getResource(key);
+			if (checkpointed != null) {
+				luzzuCM.addToCache(cacheName, key, checkpointed);
+				value = checkpointed;
+			}
+		}
+		return value;
 	}
 }
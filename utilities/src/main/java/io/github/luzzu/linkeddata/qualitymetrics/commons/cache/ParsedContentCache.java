@@ -0,0 +1,75 @@
+/**
+ *
+ */
+package io.github.luzzu.linkeddata.qualitymetrics.commons.cache;
+
+import java.util.concurrent.ConcurrentMap;
+
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+
+import io.github.luzzu.linkeddata.qualitymetrics.commons.datatypes.ParsedContentSummary;
+
+/**
+ * Keeps the summary of the content parsed for each resource in the
+ * HTTP resource cache, by URI, alongside the cached resource itself
+ * (which has no room for it). Like the HTTP resource cache, it holds
+ * the most recently retrieved resources only.
+ *
+ * It also keeps the beginning of the content of each resource, whether
+ * or not the content parsed (and whatever its length), so that its
+ * actual serialisation can be sniffed (see RDFFormatSniffer).
+ */
+public class ParsedContentCache {
+
+	/**
+	 * Maximum number of summaries kept, as many as the HTTP resources cached
+	 */
+	public static final int MAX_ENTRIES = 5000;
+
+	private static ParsedContentCache instance = null;
+
+	private final ConcurrentMap<String, ParsedContentSummary> summaries = new ConcurrentLinkedHashMap.Builder<String, ParsedContentSummary>().maximumWeightedCapacity(MAX_ENTRIES).build();
+	private final ConcurrentMap<String, String> prefixes = new ConcurrentLinkedHashMap.Builder<String, String>().maximumWeightedCapacity(MAX_ENTRIES).build();
+
+	protected ParsedContentCache(){}
+
+	public static synchronized ParsedContentCache getInstance(){
+		if (instance == null) {
+			instance = new ParsedContentCache();
+		}
+		return instance;
+	}
+
+	public void put(ParsedContentSummary summary) {
+		summaries.put(summary.getUri(), summary);
+	}
+
+	/**
+	 * @param uri URI of the resource
+	 * @return The summary of the content retrieved for the resource, or null if it was not parsed
+	 */
+	public ParsedContentSummary get(String uri) {
+		return summaries.get(uri);
+	}
+
+	/**
+	 * @param uri URI of the resource
+	 * @param prefix Beginning of the content retrieved for the resource
+	 */
+	public void putPrefix(String uri, String prefix) {
+		prefixes.put(uri, prefix);
+	}
+
+	/**
+	 * @param uri URI of the resource
+	 * @return The beginning of the content retrieved for the resource, or null if no content was retrieved
+	 */
+	public String getPrefix(String uri) {
+		return prefixes.get(uri);
+	}
+
+	public void clear() {
+		summaries.clear();
+		prefixes.clear();
+	}
+}
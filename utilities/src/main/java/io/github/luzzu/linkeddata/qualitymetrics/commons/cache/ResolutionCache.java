@@ -0,0 +1,118 @@
+/**
+ *
+ */
+package io.github.luzzu.linkeddata.qualitymetrics.commons.cache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiPredicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.github.luzzu.linkeddata.qualitymetrics.commons.TimeLimitedExecutor;
+
+/**
+ * Caches the outcome of resolutions carried out in the background (e.g.
+ * resolving a persistent URL, or loading a license document), by key.
+ * Each key is resolved once, on the TimeLimitedExecutor, and requests
+ * for a key which is still being resolved wait for the same resolution.
+ *
+ * Only positive outcomes are kept for good. Negative outcomes (failed
+ * resolutions, and outcomes the cache is told are negative) expire after
+ * NEGATIVE_TTL, such that a transient failure is eventually retried, and
+ * resolutions which run out of time are forgotten straight away.
+ *
+ * @param <V> Outcome of a resolution
+ */
+public class ResolutionCache<V> {
+
+	final static Logger logger = LoggerFactory.getLogger(ResolutionCache.class);
+
+	/**
+	 * Time (milliseconds) a negative outcome is kept before the key is resolved once again
+	 */
+	public long NEGATIVE_TTL = 600000;
+
+	private final ConcurrentMap<String, Resolution<V>> resolutions = new ConcurrentHashMap<String, Resolution<V>>();
+	private final BiPredicate<String, V> negative;
+
+	/**
+	 * Creates a cache keeping every outcome, but for failed resolutions
+	 */
+	public ResolutionCache() {
+		this((key, value) -> false);
+	}
+
+	/**
+	 * @param negative Tells, given a key and the outcome of its resolution, whether the outcome is negative
+	 */
+	public ResolutionCache(BiPredicate<String, V> negative) {
+		this.negative = negative;
+	}
+
+	/**
+	 * Starts resolving a key, unless it was already resolved (or is being resolved) and its outcome did not expire
+	 * @param key Key to resolve
+	 * @param resolution Operation resolving the key
+	 * @param timeout Maximum time (milliseconds) the resolution may take, including the time it waits for a thread
+	 * @param fallback Outcome of the resolution if it fails, or runs out of time
+	 * @return The outcome of the resolution, once resolved
+	 */
+	public CompletableFuture<V> resolve(String key, Callable<V> resolution, long timeout, V fallback) {
+		Resolution<V> current = resolutions.get(key);
+		if ((current != null) && (!current.hasExpired())) return current.outcome;
+
+		Resolution<V> created = new Resolution<V>();
+		current = resolutions.compute(key, (k, existing) -> ((existing == null) || (existing.hasExpired())) ? created : existing);
+		if (current != created) return current.outcome;
+
+		TimeLimitedExecutor.getInstance().submit(resolution, timeout, TimeUnit.MILLISECONDS).whenComplete((value, error) -> {
+			if (error instanceof TimeoutException) {
+				// the next request for the key resolves it once again
+				resolutions.remove(key, created);
+			} else if ((error != null) || (negative.test(key, value))) {
+				created.expires = System.currentTimeMillis() + NEGATIVE_TTL;
+			}
+
+			if (error != null) logger.debug("Cannot resolve {}. Error: {}", key, error.getMessage());
+			created.outcome.complete((error == null) ? value : fallback);
+		});
+		return created.outcome;
+	}
+
+	/**
+	 * Records the outcome of a key known without resolving it, unless the key was already resolved (or is being resolved)
+	 * @param key Key
+	 * @param value Outcome
+	 */
+	public void put(String key, V value) {
+		Resolution<V> known = new Resolution<V>();
+		known.outcome.complete(value);
+		resolutions.putIfAbsent(key, known);
+	}
+
+	/**
+	 * @return Number of keys resolved, or being resolved, including those whose outcome expired
+	 */
+	public int size() {
+		return resolutions.size();
+	}
+
+	public void clear() {
+		resolutions.clear();
+	}
+
+	private static class Resolution<V> {
+		final CompletableFuture<V> outcome = new CompletableFuture<V>();
+		volatile long expires = Long.MAX_VALUE;
+
+		boolean hasExpired() {
+			return System.currentTimeMillis() >= expires;
+		}
+	}
+}
@@ -0,0 +1,92 @@
+/**
+ *
+ */
+package io.github.luzzu.linkeddata.qualitymetrics.commons.datatypes;
+
+/**
+ * A thread-safe FingerprintSet, striped so that threads adding
+ * different strings rarely contend for the same lock. The stripe
+ * of a fingerprint is chosen by its topmost bits.
+ *
+ */
+public class ConcurrentFingerprintSet {
+
+	private final FingerprintSet[] stripes;
+	private final int shift;
+
+	public ConcurrentFingerprintSet(){
+		this(1024, 64);
+	}
+
+	/**
+	 * @param expectedSize Expected number of fingerprints, over all stripes
+	 * @param concurrency Number of stripes, rounded up to a power of two
+	 */
+	public ConcurrentFingerprintSet(int expectedSize, int concurrency){
+		int count = (concurrency <= 1) ? 1 : Integer.highestOneBit(concurrency - 1) << 1;
+		this.stripes = new FingerprintSet[count];
+		for (int i = 0; i < count; i++) {
+			this.stripes[i] = new FingerprintSet(Math.max(16, expectedSize / count));
+		}
+		this.shift = 64 - Integer.numberOfTrailingZeros(count);
+	}
+
+	public boolean add(CharSequence chars){
+		return add(FingerprintSet.fingerprint(chars));
+	}
+
+	public boolean contains(CharSequence chars){
+		return contains(FingerprintSet.fingerprint(chars));
+	}
+
+	public boolean remove(CharSequence chars){
+		return remove(FingerprintSet.fingerprint(chars));
+	}
+
+	public boolean add(long fingerprint){
+		FingerprintSet stripe = stripe(fingerprint);
+		synchronized (stripe) {
+			return stripe.add(fingerprint);
+		}
+	}
+
+	public boolean contains(long fingerprint){
+		FingerprintSet stripe = stripe(fingerprint);
+		synchronized (stripe) {
+			return stripe.contains(fingerprint);
+		}
+	}
+
+	public boolean remove(long fingerprint){
+		FingerprintSet stripe = stripe(fingerprint);
+		synchronized (stripe) {
+			return stripe.remove(fingerprint);
+		}
+	}
+
+	/**
+	 * @return Number of fingerprints in the set; not a snapshot if the set is modified concurrently
+	 */
+	public long size(){
+		long size = 0;
+		for (FingerprintSet stripe : stripes) {
+			synchronized (stripe) {
+				size += stripe.size();
+			}
+		}
+		return size;
+	}
+
+	public void clear(){
+		for (FingerprintSet stripe : stripes) {
+			synchronized (stripe) {
+				stripe.clear();
+			}
+		}
+	}
+
+	private FingerprintSet stripe(long fingerprint){
+		// A shift by 64 leaves the value unchanged in Java, hence the single stripe case
+		return (stripes.length == 1) ? stripes[0] : stripes[(int) (fingerprint >>> shift)];
+	}
+}
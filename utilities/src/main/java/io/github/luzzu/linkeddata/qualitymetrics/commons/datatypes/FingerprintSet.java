@@ -0,0 +1,157 @@
+/**
+ *
+ */
+package io.github.luzzu.linkeddata.qualitymetrics.commons.datatypes;
+
+import java.util.Arrays;
+
+/**
+ * A compact set of 64-bit fingerprints, stored in a primitive
+ * open-addressing table. Strings (e.g. URIs) are kept as their
+ * fingerprint, taking 8 bytes each instead of a String object,
+ * at the cost of a negligible chance of two strings colliding.
+ *
+ * This class is not thread-safe.
+ *
+ */
+public class FingerprintSet {
+
+	private static final float LOAD_FACTOR = 0.6f;
+
+	// 0 marks an empty slot, hence a fingerprint of 0 is stored as 1
+	private long[] table;
+	private int size = 0;
+	private int threshold;
+
+	public FingerprintSet(){
+		this(1024);
+	}
+
+	public FingerprintSet(int expectedSize){
+		int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+		this.table = new long[capacity];
+		this.threshold = (int) (capacity * LOAD_FACTOR);
+	}
+
+	/**
+	 * Computes the 64-bit fingerprint of a sequence of characters (FNV-1a, followed by a final mix)
+	 * @param chars Characters to fingerprint
+	 * @return Fingerprint of the characters
+	 */
+	public static long fingerprint(CharSequence chars){
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < chars.length(); i++) {
+			char c = chars.charAt(i);
+			hash ^= (c & 0xff);
+			hash *= 0x100000001b3L;
+			hash ^= (c >>> 8);
+			hash *= 0x100000001b3L;
+		}
+		return mix(hash);
+	}
+
+	public boolean add(CharSequence chars){
+		return add(fingerprint(chars));
+	}
+
+	public boolean contains(CharSequence chars){
+		return contains(fingerprint(chars));
+	}
+
+	public boolean remove(CharSequence chars){
+		return remove(fingerprint(chars));
+	}
+
+	public boolean add(long fingerprint){
+		long fp = (fingerprint == 0) ? 1 : fingerprint;
+		int mask = table.length - 1;
+		int idx = (int) mix(fp) & mask;
+		while (table[idx] != 0) {
+			if (table[idx] == fp) return false;
+			idx = (idx + 1) & mask;
+		}
+		table[idx] = fp;
+		if (++size > threshold) resize();
+		return true;
+	}
+
+	public boolean contains(long fingerprint){
+		long fp = (fingerprint == 0) ? 1 : fingerprint;
+		int mask = table.length - 1;
+		int idx = (int) mix(fp) & mask;
+		while (table[idx] != 0) {
+			if (table[idx] == fp) return true;
+			idx = (idx + 1) & mask;
+		}
+		return false;
+	}
+
+	public boolean remove(long fingerprint){
+		long fp = (fingerprint == 0) ? 1 : fingerprint;
+		int mask = table.length - 1;
+		int idx = (int) mix(fp) & mask;
+		while (table[idx] != fp) {
+			if (table[idx] == 0) return false;
+			idx = (idx + 1) & mask;
+		}
+
+		// Shift back the entries following the removed one, so that no probe sequence is broken
+		int gap = idx;
+		int next = (gap + 1) & mask;
+		while (table[next] != 0) {
+			int home = (int) mix(table[next]) & mask;
+			if (((next - home) & mask) >= ((next - gap) & mask)) {
+				table[gap] = table[next];
+				gap = next;
+			}
+			next = (next + 1) & mask;
+		}
+		table[gap] = 0;
+		size--;
+		return true;
+	}
+
+	public int size(){
+		return size;
+	}
+
+	public boolean isEmpty(){
+		return size == 0;
+	}
+
+	public void clear(){
+		Arrays.fill(table, 0);
+		size = 0;
+	}
+
+	/**
+	 * @return The fingerprints in the set, in no particular order
+	 */
+	public long[] toArray(){
+		long[] fps = new long[size];
+		int i = 0;
+		for (long fp : table) {
+			if (fp != 0) fps[i++] = fp;
+		}
+		return fps;
+	}
+
+	private void resize(){
+		long[] old = table;
+		table = new long[old.length << 1];
+		threshold = (int) (table.length * LOAD_FACTOR);
+		size = 0;
+		for (long fp : old) {
+			if (fp != 0) add(fp);
+		}
+	}
+
+	private static long mix(long h){
+		h ^= (h >>> 33);
+		h *= 0xff51afd7ed558ccdL;
+		h ^= (h >>> 33);
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= (h >>> 33);
+		return h;
+	}
+}
@@ -0,0 +1,205 @@
+/**
+ *
+ */
+package io.github.luzzu.linkeddata.qualitymetrics.commons.datatypes;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * An Aho-Corasick automaton matching a set of ASCII keywords, ignoring
+ * (ASCII) case, against a text in a single scan, however many keywords
+ * there are. Each keyword belongs to a group (0 to 31), which tells the
+ * caller which kind of keyword was matched.
+ *
+ * Once compiled, the automaton is a DFA over ASCII characters, such that
+ * every character of the text takes one array lookup; characters outside
+ * ASCII never occur in keywords and take the automaton back to its start.
+ *
+ * Keywords are added before the automaton is compiled, after which it is
+ * immutable and can be shared by any number of threads.
+ *
+ */
+public class KeywordAutomaton {
+
+	private static final int ALPHABET = 128;
+
+	private final State root = new State(0);
+	private boolean compiled = false;
+
+	/**
+	 * Receives the keywords found while scanning a text
+	 */
+	public interface MatchVisitor {
+		/**
+		 * @param group Group of the keyword found
+		 * @param start Index of the first character of the keyword in the text
+		 * @param end Index following the last character of the keyword in the text
+		 * @return True to carry on scanning, false to stop
+		 */
+		boolean visit(int group, int start, int end);
+	}
+
+	/**
+	 * Adds a keyword to be matched
+	 * @param keyword ASCII keyword
+	 * @param group Group of the keyword, between 0 and 31
+	 * @return This automaton
+	 */
+	public KeywordAutomaton add(String keyword, int group) {
+		if (compiled) throw new IllegalStateException("Keywords cannot be added once the automaton is compiled");
+		if ((group < 0) || (group > 31)) throw new IllegalArgumentException("Group " + group + " is not between 0 and 31");
+		if ((keyword == null) || (keyword.isEmpty())) throw new IllegalArgumentException("Keywords cannot be empty");
+
+		State state = root;
+		for (int i = 0; i < keyword.length(); i++) {
+			int c = fold(keyword.charAt(i));
+			if (c < 0) throw new IllegalArgumentException("Keyword " + keyword + " is not ASCII");
+			if (state.next[c] == null) state.next[c] = new State(state.depth + 1);
+			state = state.next[c];
+		}
+		state.addOutput(group, keyword.length());
+		return this;
+	}
+
+	/**
+	 * Computes the failure transitions of the automaton, after which keywords can be matched
+	 * @return This automaton
+	 */
+	public KeywordAutomaton compile() {
+		if (compiled) return this;
+
+		Deque<State> queue = new ArrayDeque<State>();
+		for (int c = 0; c < ALPHABET; c++) {
+			State child = root.next[c];
+			if (child == null) {
+				root.next[c] = root;
+			} else {
+				child.failure = root;
+				child.prefixGroups = child.ownGroups();
+				queue.add(child);
+			}
+		}
+
+		// Breadth first, so that the failure state of every state is complete before its children are reached
+		while (!queue.isEmpty()) {
+			State state = queue.poll();
+			for (int c = 0; c < ALPHABET; c++) {
+				State child = state.next[c];
+				if (child == null) {
+					// Missing transitions follow the failure state's, turning the trie into a DFA
+					state.next[c] = state.failure.next[c];
+					continue;
+				}
+				child.failure = state.failure.next[c];
+				child.prefixGroups = state.prefixGroups | child.ownGroups();
+				child.inheritOutputs(child.failure);
+				queue.add(child);
+			}
+		}
+
+		compiled = true;
+		return this;
+	}
+
+	/**
+	 * Finds the groups of the keywords the text starts with
+	 * @param text Text to match
+	 * @return A bitmask with bit g set if a keyword of group g is a prefix of the text
+	 */
+	public int matchPrefixes(CharSequence text) {
+		checkCompiled();
+
+		// Following the trie alone (without failure transitions) only visits prefixes of the text
+		State state = root;
+		int groups = 0;
+		for (int i = 0; i < text.length(); i++) {
+			int c = fold(text.charAt(i));
+			if (c < 0) break;
+			State next = state.next[c];
+			// A transition reaching one level deeper can only be an edge of the trie
+			if (next.depth != state.depth + 1) break;
+			state = next;
+			groups = state.prefixGroups;
+		}
+		return groups;
+	}
+
+	/**
+	 * Scans the text once, reporting every occurrence of every keyword in the order in which they end
+	 * @param text Text to scan
+	 * @param visitor Visitor receiving the keywords found
+	 */
+	public void scan(CharSequence text, MatchVisitor visitor) {
+		checkCompiled();
+
+		State state = root;
+		for (int i = 0; i < text.length(); i++) {
+			int c = fold(text.charAt(i));
+			state = (c < 0) ? root : state.next[c];
+			for (int o = 0; o < state.outputCount; o++) {
+				if (!visitor.visit(state.outputGroups[o], i + 1 - state.outputLengths[o], i + 1)) return;
+			}
+		}
+	}
+
+	private void checkCompiled() {
+		if (!compiled) throw new IllegalStateException("The automaton has to be compiled before matching");
+	}
+
+	/**
+	 * @return The lower case of an ASCII character, -1 if the character is not ASCII
+	 */
+	private static int fold(char c) {
+		if (c >= ALPHABET) return -1;
+		return ((c >= 'A') && (c <= 'Z')) ? (c + ('a' - 'A')) : c;
+	}
+
+	private static class State {
+		final State[] next = new State[ALPHABET];
+		final int depth;
+		State failure = null;
+
+		// Groups of the keywords which are prefixes of, or equal to, the path to this state
+		int prefixGroups = 0;
+
+		// Keywords ending at this state, including those which are suffixes of its path
+		int[] outputGroups = new int[0];
+		int[] outputLengths = new int[0];
+		int outputCount = 0;
+		int ownOutputs = 0;
+
+		State(int depth) {
+			this.depth = depth;
+		}
+
+		void addOutput(int group, int length) {
+			for (int o = 0; o < outputCount; o++) {
+				if ((outputGroups[o] == group) && (outputLengths[o] == length)) return;
+			}
+			outputGroups = Arrays.copyOf(outputGroups, outputCount + 1);
+			outputLengths = Arrays.copyOf(outputLengths, outputCount + 1);
+			outputGroups[outputCount] = group;
+			outputLengths[outputCount] = length;
+			outputCount++;
+			ownOutputs = outputCount;
+		}
+
+		int ownGroups() {
+			int groups = 0;
+			for (int o = 0; o < ownOutputs; o++) groups |= (1 << outputGroups[o]);
+			return groups;
+		}
+
+		void inheritOutputs(State from) {
+			for (int o = 0; o < from.outputCount; o++) {
+				outputGroups = Arrays.copyOf(outputGroups, outputCount + 1);
+				outputLengths = Arrays.copyOf(outputLengths, outputCount + 1);
+				outputGroups[outputCount] = from.outputGroups[o];
+				outputLengths[outputCount] = from.outputLengths[o];
+				outputCount++;
+			}
+		}
+	}
+}
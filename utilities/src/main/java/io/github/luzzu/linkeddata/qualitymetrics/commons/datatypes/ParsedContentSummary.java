@@ -0,0 +1,146 @@
+/**
+ *
+ */
+package io.github.luzzu.linkeddata.qualitymetrics.commons.datatypes;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.sparql.core.Quad;
+
+/**
+ * A compact summary of parsing the content retrieved for a resource:
+ * whether it parsed, whether the resource occurs as a subject, the number
+ * of triples (or quads) and the first SAMPLE_SIZE of them. The content
+ * is parsed once, when retrieved, and the checks which used to parse it
+ * again read the summary instead (see ParsedContentCache).
+ */
+public class ParsedContentSummary {
+
+	/**
+	 * Maximum number of triples kept as a sample of the content
+	 */
+	public static final int SAMPLE_SIZE = 10;
+
+	private final String uri;
+	private final Lang lang;
+	private final boolean parseable;
+	private final boolean subjectFound;
+	private final long tripleCount;
+	private final List<Triple> sample;
+
+	public ParsedContentSummary(String uri, Lang lang, boolean parseable, boolean subjectFound, long tripleCount, List<Triple> sample) {
+		this.uri = uri;
+		this.lang = lang;
+		this.parseable = parseable;
+		this.subjectFound = subjectFound;
+		this.tripleCount = tripleCount;
+		this.sample = Collections.unmodifiableList(new ArrayList<Triple>(sample));
+	}
+
+	/**
+	 * Parses the content retrieved for a resource, in a single pass
+	 * @param uri URI of the resource
+	 * @param location Location the content was retrieved from, against which relative IRIs are resolved
+	 * @param content Content retrieved
+	 * @param lang Serialisation of the content
+	 * @return The summary of the content. Content which fails to parse is summarised as not
+	 * 			parseable, with the triples read before the failure
+	 */
+	public static ParsedContentSummary summarise(String uri, String location, String content, Lang lang) {
+		Summariser summariser = new Summariser(uri);
+		boolean parseable = true;
+		try {
+			RDFParser.create()
+				.source(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)))
+				.base((location == null) ? uri : location)
+				.lang(lang)
+				.parse(summariser);
+		} catch (Exception e) {
+			parseable = false;
+		}
+		return new ParsedContentSummary(uri, lang, parseable, summariser.subjectFound, summariser.count, summariser.sample);
+	}
+
+	/**
+	 * @param uri URI of the resource
+	 * @return The summary of content which is not RDF (e.g. an HTML page, or of an unknown content type), which is not parsed
+	 */
+	public static ParsedContentSummary notRDF(String uri) {
+		return new ParsedContentSummary(uri, null, false, false, 0, Collections.<Triple>emptyList());
+	}
+
+	public String getUri() {
+		return uri;
+	}
+
+	public Lang getLang() {
+		return lang;
+	}
+
+	/**
+	 * @return True if the content parsed without errors
+	 */
+	public boolean isParseable() {
+		return parseable;
+	}
+
+	/**
+	 * @return True if the content parsed without errors, and contains at least one triple
+	 */
+	public boolean hasRDF() {
+		return parseable && (tripleCount > 0);
+	}
+
+	/**
+	 * @return True if the resource itself occurs as the subject of a triple
+	 */
+	public boolean isSubjectFound() {
+		return subjectFound;
+	}
+
+	public long getTripleCount() {
+		return tripleCount;
+	}
+
+	/**
+	 * @return The first (at most SAMPLE_SIZE) triples of the content
+	 */
+	public List<Triple> getSample() {
+		return sample;
+	}
+
+	private static class Summariser extends StreamRDFBase {
+		private final String uri;
+		private final List<Triple> sample = new ArrayList<Triple>(SAMPLE_SIZE);
+		private long count = 0;
+		private boolean subjectFound = false;
+
+		Summariser(String uri) {
+			this.uri = uri;
+		}
+
+		@Override
+		public void triple(Triple triple) {
+			count++;
+			if (sample.size() < SAMPLE_SIZE) sample.add(triple);
+			if (!subjectFound) {
+				Node subject = triple.getSubject();
+				subjectFound = subject.isURI() && subject.getURI().equals(uri);
+			}
+		}
+
+		@Override
+		public void quad(Quad quad) {
+			this.triple(quad.asTriple());
+		}
+	}
+}
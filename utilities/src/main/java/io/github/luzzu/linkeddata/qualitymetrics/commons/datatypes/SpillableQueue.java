@@ -0,0 +1,181 @@
+/**
+ *
+ */
+package io.github.luzzu.linkeddata.qualitymetrics.commons.datatypes;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A first-in first-out queue of strings (e.g. URIs waiting to be
+ * dereferenced) holding at most a given number of them in memory.
+ * Beyond that, strings are appended to segment files in a temporary
+ * directory, which are read back (and deleted) in order once the
+ * strings in memory are consumed. Strings must not contain line breaks.
+ * If a string cannot be spilled, it is rather kept in memory (beyond
+ * the limit, and possibly ahead of strings spilled before it) than lost.
+ *
+ * This is the spill FIFO of every queue of URIs (e.g. the lanes of the
+ * URIWorkQueue and the queue of the FetchStream), which add their own
+ * bookkeeping on top of it.
+ *
+ * This class is thread-safe.
+ *
+ */
+public class SpillableQueue implements Closeable {
+
+	final static Logger logger = LoggerFactory.getLogger(SpillableQueue.class);
+
+	private final int memoryLimit;
+
+	private final Deque<String> memory = new ArrayDeque<String>();
+	private final Deque<File> segments = new ArrayDeque<File>();
+
+	private File directory = null;
+	private File writing = null;
+	private BufferedWriter writer = null;
+	private int written = 0;
+	private File reading = null;
+	private BufferedReader reader = null;
+
+	private long size = 0;
+	private long spilled = 0;
+
+	/**
+	 * @param memoryLimit Maximum number of strings held in memory, also the number of strings in each segment file
+	 */
+	public SpillableQueue(int memoryLimit){
+		this.memoryLimit = Math.max(1, memoryLimit);
+	}
+
+	/**
+	 * Adds a string at the tail of the queue
+	 * @param item String to be added
+	 */
+	public synchronized void add(String item) {
+		// Once strings are spilled, the following ones must be spilled as well to keep them in order
+		boolean onDisk = (writer != null) || (reader != null) || (!segments.isEmpty());
+		if (!onDisk && (memory.size() < memoryLimit)) {
+			memory.add(item);
+		} else {
+			try {
+				spill(item);
+			} catch (IOException e) {
+				logger.warn("Cannot spill queued strings to disk, keeping {} in memory. Error: {}", item, e.getMessage());
+				memory.add(item);
+			}
+		}
+		size++;
+	}
+
+	/**
+	 * Removes the string at the head of the queue
+	 * @return The string, or null if the queue is empty
+	 * @throws IOException if the spilled strings cannot be read back, in which case the queue should be closed
+	 */
+	public synchronized String poll() throws IOException {
+		if (memory.isEmpty()) refill();
+		String item = memory.poll();
+		if (item != null) size--;
+		return item;
+	}
+
+	public synchronized long size(){
+		return size;
+	}
+
+	public synchronized boolean isEmpty(){
+		return size == 0;
+	}
+
+	/**
+	 * @return Number of strings which were spilled to disk so far
+	 */
+	public synchronized long getSpilled(){
+		return spilled;
+	}
+
+	/**
+	 * Empties the queue and deletes its segment files
+	 */
+	@Override
+	public synchronized void close(){
+		memory.clear();
+		closeQuietly(writer);
+		closeQuietly(reader);
+		writer = null;
+		reader = null;
+		if (writing != null) writing.delete();
+		if (reading != null) reading.delete();
+		for (File segment : segments) segment.delete();
+		segments.clear();
+		if (directory != null) directory.delete();
+		directory = null;
+		size = 0;
+	}
+
+	private void spill(String item) throws IOException {
+		if (writer == null) {
+			if (directory == null) {
+				directory = Files.createTempDirectory("luzzu-spill").toFile();
+				logger.debug("Spilling queued strings to {}", directory);
+			}
+			writing = File.createTempFile("segment", ".txt", directory);
+			writer = Files.newBufferedWriter(writing.toPath(), StandardCharsets.UTF_8);
+		}
+		writer.write(item);
+		writer.newLine();
+		spilled++;
+		if (++written >= memoryLimit) roll();
+	}
+
+	private void roll() throws IOException {
+		writer.close();
+		segments.add(writing);
+		writer = null;
+		writing = null;
+		written = 0;
+	}
+
+	private void refill() throws IOException {
+		while (memory.size() < memoryLimit) {
+			if (reader == null) {
+				if (segments.isEmpty()) {
+					if (writer == null) return;
+					roll();
+				}
+				reading = segments.poll();
+				reader = Files.newBufferedReader(reading.toPath(), StandardCharsets.UTF_8);
+			}
+
+			String line = reader.readLine();
+			if (line == null) {
+				reader.close();
+				reading.delete();
+				reader = null;
+				reading = null;
+			} else {
+				memory.add(line);
+			}
+		}
+	}
+
+	private static void closeQuietly(Closeable closeable){
+		if (closeable == null) return;
+		try {
+			closeable.close();
+		} catch (IOException e) {
+			logger.debug("Cannot close spill segment. Error: {}", e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,124 @@
+/**
+ *
+ */
+package io.github.luzzu.linkeddata.qualitymetrics.commons.http;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentMap;
+
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+
+/**
+ * Keeps track of the response latencies observed for each host,
+ * deriving a per-host timeout from them. The timeout of a host is
+ * its 99th percentile latency multiplied by a safety factor, bounded
+ * by a minimum and a maximum. Until enough latencies are observed
+ * for a host, the fixed default timeout is used.
+ *
+ */
+public class AdaptiveTimeouts {
+
+	/**
+	 * Number of latencies required for a host before its timeout is derived from them
+	 */
+	public int MIN_SAMPLES = 20;
+
+	/**
+	 * Number of most recent latencies kept for each host
+	 */
+	public int WINDOW_SIZE = 200;
+
+	/**
+	 * Factor multiplied to the 99th percentile latency of a host
+	 */
+	public double SAFETY_FACTOR = 3.0;
+
+	/**
+	 * Bounds (in milliseconds) of any derived timeout
+	 */
+	public int MIN_TIMEOUT = 1000;
+	public int MAX_TIMEOUT = 30000;
+
+	private static AdaptiveTimeouts instance = null;
+
+	private ConcurrentMap<String, LatencyWindow> hostLatencies = new ConcurrentLinkedHashMap.Builder<String, LatencyWindow>().maximumWeightedCapacity(10000).build();
+
+	protected AdaptiveTimeouts(){}
+
+	public static synchronized AdaptiveTimeouts getInstance(){
+		if (instance == null) {
+			instance = new AdaptiveTimeouts();
+		}
+		return instance;
+	}
+
+	/**
+	 * Records the time a host took to respond to a request
+	 * @param host Host the request was sent to
+	 * @param latency Time elapsed (milliseconds) until the response was received
+	 */
+	public void recordLatency(String host, long latency){
+		if (host == null) return;
+
+		LatencyWindow window = this.hostLatencies.get(host);
+		if (window == null) {
+			LatencyWindow newWindow = new LatencyWindow(WINDOW_SIZE);
+			window = this.hostLatencies.putIfAbsent(host, newWindow);
+			if (window == null) window = newWindow;
+		}
+		window.add(latency);
+	}
+
+	/**
+	 * Gets the timeout to be used for requests to a host
+	 * @param host Host the request will be sent to
+	 * @param defaultTimeout Timeout (milliseconds) used when not enough latencies are known for the host
+	 * @return Timeout in milliseconds
+	 */
+	public int getTimeout(String host, int defaultTimeout){
+		if (host == null) return defaultTimeout;
+
+		LatencyWindow window = this.hostLatencies.get(host);
+		if ((window == null) || (window.size() < MIN_SAMPLES)) return defaultTimeout;
+
+		long timeout = (long) Math.ceil(window.percentile(0.99) * SAFETY_FACTOR);
+		return (int) Math.max(MIN_TIMEOUT, Math.min(MAX_TIMEOUT, timeout));
+	}
+
+	/**
+	 * Forgets all the latencies observed so far
+	 */
+	public void clear(){
+		this.hostLatencies.clear();
+	}
+
+	/**
+	 * A fixed-size ring of the most recent latencies of a host
+	 */
+	private static class LatencyWindow {
+		private final long[] latencies;
+		private int next = 0;
+		private int size = 0;
+
+		LatencyWindow(int capacity){
+			this.latencies = new long[capacity];
+		}
+
+		synchronized void add(long latency){
+			this.latencies[next] = latency;
+			this.next = (next + 1) % latencies.length;
+			if (size < latencies.length) size++;
+		}
+
+		synchronized int size(){
+			return size;
+		}
+
+		synchronized long percentile(double p){
+			long[] sorted = Arrays.copyOf(latencies, size);
+			Arrays.sort(sorted);
+			int idx = (int) Math.ceil(p * size) - 1;
+			return sorted[Math.max(0, Math.min(size - 1, idx))];
+		}
+	}
+}
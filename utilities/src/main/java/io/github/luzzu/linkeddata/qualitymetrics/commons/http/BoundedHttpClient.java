@@ -0,0 +1,85 @@
+/**
+ *
+ */
+package io.github.luzzu.linkeddata.qualitymetrics.commons.http;
+
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.riot.RDFParserBuilder;
+
+/**
+ * The HTTP client shared by the operations which load remote documents
+ * with a blocking client on the TimeLimitedExecutor (e.g. license
+ * documents and snapshot parsers). Cancelling such an operation does not
+ * stop a blocking read, thus every request gives up if it cannot connect
+ * within CONNECT_TIMEOUT, or if the server stays silent for READ_TIMEOUT
+ * milliseconds, so that it releases its worker thread.
+ *
+ * Changing the timeouts applies to the client created thereafter.
+ */
+public class BoundedHttpClient {
+
+	/**
+	 * Time (milliseconds) to connect (or to get a pooled connection), and between two packets of a response, respectively
+	 */
+	public int CONNECT_TIMEOUT = 10000;
+	public int READ_TIMEOUT = 10000;
+
+	/**
+	 * Maximum number of connections, across all hosts
+	 */
+	public int MAX_CONNECTIONS = 32;
+
+	private static BoundedHttpClient instance = null;
+
+	private HttpClient httpClient = null;
+
+	protected BoundedHttpClient(){}
+
+	public static synchronized BoundedHttpClient getInstance(){
+		if (instance == null) {
+			instance = new BoundedHttpClient();
+		}
+		return instance;
+	}
+
+	public synchronized HttpClient getHttpClient() {
+		if (httpClient == null) {
+			RequestConfig config = RequestConfig.custom()
+					.setConnectTimeout(CONNECT_TIMEOUT)
+					.setConnectionRequestTimeout(CONNECT_TIMEOUT)
+					.setSocketTimeout(READ_TIMEOUT)
+					.build();
+			httpClient = HttpClients.custom().useSystemProperties().setDnsResolver(CachingDnsResolver.getInstance())
+					.setDefaultRequestConfig(config).setMaxConnTotal(MAX_CONNECTIONS).setMaxConnPerRoute(MAX_CONNECTIONS).build();
+		}
+		return httpClient;
+	}
+
+	/**
+	 * @param uri URI (or location) of the document
+	 * @return A parser of the document, fetched through this client if remote
+	 */
+	public RDFParserBuilder parser(String uri) {
+		return RDFParser.source(uri).httpClient(this.getHttpClient());
+	}
+
+	/**
+	 * Loads a document, as RDFDataMgr.loadModel does
+	 * @param uri URI (or location) of the document
+	 * @param lang Language to fall back on if not told by the response, null to guess it
+	 * @return The model of the document
+	 */
+	public Model loadModel(String uri, Lang lang) {
+		Model model = ModelFactory.createDefaultModel();
+		RDFParserBuilder parser = this.parser(uri);
+		if (lang != null) parser.lang(lang);
+		parser.parse(model.getGraph());
+		return model;
+	}
+}
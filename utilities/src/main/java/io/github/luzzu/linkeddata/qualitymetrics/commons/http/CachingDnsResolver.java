@@ -0,0 +1,142 @@
+/**
+ *
+ */
+package io.github.luzzu.linkeddata.qualitymetrics.commons.http;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.impl.conn.SystemDefaultDnsResolver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+
+/**
+ * An in-process DNS cache shared by all the HTTP clients used
+ * by the metrics. Successful resolutions are kept for POSITIVE_TTL
+ * milliseconds, whilst hosts which could not be resolved are kept
+ * for NEGATIVE_TTL milliseconds, so that they are not looked up
+ * again for every URI in their domain.
+ *
+ * The actual resolution is delegated to a DnsResolver (the system's
+ * by default), which can be replaced, for example by a fake resolver
+ * in tests.
+ *
+ */
+public class CachingDnsResolver implements DnsResolver {
+
+	final static Logger logger = LoggerFactory.getLogger(CachingDnsResolver.class);
+
+	/**
+	 * Time (milliseconds) for which resolved and unresolved hosts are kept
+	 */
+	public long POSITIVE_TTL = 300000;
+	public long NEGATIVE_TTL = 30000;
+
+	private static CachingDnsResolver instance = null;
+
+	private volatile DnsResolver delegate = SystemDefaultDnsResolver.INSTANCE;
+
+	private ConcurrentMap<String, CachedResolution> resolutions = new ConcurrentLinkedHashMap.Builder<String, CachedResolution>().maximumWeightedCapacity(10000).build();
+
+	private final AtomicLong lookups = new AtomicLong(0);
+	private final AtomicLong hits = new AtomicLong(0);
+	private final AtomicLong negativeHits = new AtomicLong(0);
+	private final AtomicLong resolutionTime = new AtomicLong(0);
+
+	protected CachingDnsResolver(){}
+
+	public static synchronized CachingDnsResolver getInstance(){
+		if (instance == null) {
+			instance = new CachingDnsResolver();
+		}
+		return instance;
+	}
+
+	@Override
+	public InetAddress[] resolve(String host) throws UnknownHostException {
+		lookups.incrementAndGet();
+
+		CachedResolution cached = this.resolutions.get(host);
+		if ((cached != null) && (!cached.hasExpired())) {
+			if (cached.addresses == null) {
+				negativeHits.incrementAndGet();
+				throw new UnknownHostException(host);
+			}
+			hits.incrementAndGet();
+			return cached.addresses.clone();
+		}
+
+		long start = System.nanoTime();
+		try {
+			InetAddress[] addresses = delegate.resolve(host);
+			this.resolutions.put(host, new CachedResolution(addresses, POSITIVE_TTL));
+			return addresses.clone();
+		} catch (UnknownHostException e) {
+			logger.debug("Host {} could not be resolved", host);
+			this.resolutions.put(host, new CachedResolution(null, NEGATIVE_TTL));
+			throw e;
+		} finally {
+			resolutionTime.addAndGet(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Sets the resolver used to resolve hosts which are not cached, clearing the cache
+	 * @param resolver Resolver to delegate to, or null to use the system's resolver
+	 */
+	public void setDelegate(DnsResolver resolver){
+		this.delegate = (resolver == null) ? SystemDefaultDnsResolver.INSTANCE : resolver;
+		this.clear();
+	}
+
+	public void clear(){
+		this.resolutions.clear();
+	}
+
+	/**
+	 * @return Total number of hosts looked up
+	 */
+	public long getLookups(){
+		return lookups.get();
+	}
+
+	/**
+	 * @return Number of lookups answered from the cache with one or more addresses
+	 */
+	public long getHits(){
+		return hits.get();
+	}
+
+	/**
+	 * @return Number of lookups answered from the cache as unresolvable
+	 */
+	public long getNegativeHits(){
+		return negativeHits.get();
+	}
+
+	/**
+	 * @return Total time (milliseconds) spent by the delegate resolving hosts
+	 */
+	public long getResolutionTime(){
+		return resolutionTime.get() / 1000000;
+	}
+
+	private static class CachedResolution {
+		private final InetAddress[] addresses;
+		private final long expiry;
+
+		CachedResolution(InetAddress[] addresses, long ttl){
+			this.addresses = addresses;
+			this.expiry = System.currentTimeMillis() + ttl;
+		}
+
+		boolean hasExpired(){
+			return System.currentTimeMillis() > expiry;
+		}
+	}
+}
@@ -0,0 +1,470 @@
+/**
+ *
+ */
+package io.github.luzzu.linkeddata.qualitymetrics.commons.http;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+
+import io.github.luzzu.linkeddata.qualitymetrics.commons.HTTPRetriever;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.TimeLimitedExecutor;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.cache.DereferenceCheckpoint;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.cache.LinkedDataMetricsCacheManager;
+import io.github.luzzu.qualitymetrics.commons.cache.CachedHTTPResource;
+
+/**
+ * Coordinates the dereferencing of URIs across all the metrics of
+ * an assessment. Metrics declare which URIs they need and what they
+ * need to know about each (FetchNeed), rather than each running its
+ * own retriever and polling the cache. Requests for the same URI are
+ * merged into a single request, whose result is passed to every
+ * metric which asked for it.
+ *
+ * URIs are dereferenced by a single streaming HTTPRetriever. Each
+ * request is shaped by the needs merged for its URI by the time it
+ * is sent: RDF content types are requested in the Accept header if
+ * the content type or the body is needed, and the body is parsed only
+ * if it is needed. A URI whose request was shaped by fewer needs than
+ * those of a later request (e.g. STATUS, then PARSED_BODY) is
+ * dereferenced again for the latter. Results are dispatched to the listeners from a
+ * small pool of threads, never from the threads of the HTTP client.
+ * Metrics waiting for their results should do so through await(),
+ * which gives up once results stop arriving.
+ *
+ * The dereferencing of the assessment of a dataset is checkpointed (see
+ * DereferenceCheckpoint), keyed by the URI of the dataset: metrics join
+ * the run through beginRun() before requesting their URIs, and leave it
+ * through endRun(). An assessment which is interrupted resumes the URIs
+ * left pending when the dataset is assessed again, and the checkpoint is
+ * discarded once every metric which joined the run left it.
+ *
+ * Optionally, large batches of URIs are rather partitioned by host across
+ * WORKER_PROCESSES local processes, each running its own retriever (see
+ * ShardedDereferencer), and the resources they retrieve are merged into
+ * the cache of this process.
+ *
+ */
+public class FetchCoordinator {
+
+	final static Logger logger = LoggerFactory.getLogger(FetchCoordinator.class);
+
+	/**
+	 * Number of threads dispatching results to the listeners
+	 */
+	public int DISPATCHER_THREADS = 4;
+
+	/**
+	 * Number of worker processes across which large batches of URIs are dereferenced (see ShardedDereferencer),
+	 * 0 or 1 to dereference all the URIs within this process
+	 */
+	public int WORKER_PROCESSES = 0;
+
+	/**
+	 * Minimum number of URIs requested at once for them to be dereferenced by the worker processes
+	 */
+	public int MIN_SHARDED_BATCH = 1000;
+
+	/**
+	 * Time (milliseconds) without any result being notified after which await() gives up
+	 */
+	public long NOTIFICATION_TIMEOUT = 300000;
+
+	/**
+	 * True if the dereferencing of each assessment is checkpointed, such that an interrupted assessment can be resumed
+	 */
+	public boolean CHECKPOINT_RUNS = true;
+
+	private static FetchCoordinator instance = null;
+
+	private final LinkedDataMetricsCacheManager dcmgr = LinkedDataMetricsCacheManager.getInstance();
+
+	private HTTPRetriever retriever = null;
+	private ExecutorService dispatcher = null;
+
+	// The dataset whose assessment is checkpointed, and the number of metrics which joined its run
+	private String run = null;
+	private int participants = 0;
+
+	private final ConcurrentMap<String, Pending> pending = new ConcurrentHashMap<String, Pending>();
+	private final ConcurrentMap<String, Long> latencies = new ConcurrentLinkedHashMap.Builder<String, Long>().maximumWeightedCapacity(10000).build();
+	private final ConcurrentMap<String, Set<FetchNeed>> served = new ConcurrentLinkedHashMap.Builder<String, Set<FetchNeed>>().maximumWeightedCapacity(10000).build();
+
+	protected FetchCoordinator(){}
+
+	public static synchronized FetchCoordinator getInstance(){
+		if (instance == null) {
+			instance = new FetchCoordinator();
+		}
+		return instance;
+	}
+
+	/**
+	 * Requests a URI to be dereferenced. If the URI was already dereferenced the listener is notified straight away,
+	 * otherwise it is notified once the (possibly shared) request for the URI completes
+	 * @param uri URI to dereference
+	 * @param needs What the metric needs to know about the URI
+	 * @param priority Priority class of the request
+	 * @param listener Listener to notify with the outcome
+	 */
+	public void request(String uri, Set<FetchNeed> needs, FetchPriority priority, FetchListener listener) {
+		if (notifyIfDone(uri, needs, listener)) return;
+
+		if (this.register(uri, needs, priority, listener)) this.queue(this.startRetriever(), uri, priority);
+		this.dispatchIfCached(uri);
+	}
+
+	/**
+	 * Requests a number of URIs to be dereferenced
+	 * @see #request(String, Set, FetchPriority, FetchListener)
+	 * @return A latch which is released once the listener is notified for all the given URIs
+	 */
+	public CountDownLatch requestAll(Collection<String> uris, Set<FetchNeed> needs, FetchPriority priority, FetchListener listener) {
+		final List<String> distinct = new ArrayList<String>(new LinkedHashSet<String>(uris));
+		final CountDownLatch latch = new CountDownLatch(distinct.size());
+		FetchListener counting = result -> {
+			try {
+				listener.fetched(result);
+			} finally {
+				latch.countDown();
+			}
+		};
+		if ((WORKER_PROCESSES > 1) && (distinct.size() >= MIN_SHARDED_BATCH)) {
+			this.requestSharded(distinct, needs, priority, counting);
+		} else {
+			for (String uri : distinct) {
+				this.request(uri, needs, priority, counting);
+			}
+		}
+		return latch;
+	}
+
+	/**
+	 * Waits for the listener to be notified for all the URIs requested through requestAll(), for as long as
+	 * results keep being notified. Gives up once no result is notified for NOTIFICATION_TIMEOUT milliseconds,
+	 * so that a lost result does not hold up the metric forever
+	 * @param latch Latch returned by requestAll()
+	 * @return True if the listener was notified for all the URIs
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public boolean await(CountDownLatch latch) throws InterruptedException {
+		long remaining = latch.getCount();
+		while (!latch.await(NOTIFICATION_TIMEOUT, TimeUnit.MILLISECONDS)) {
+			if (latch.getCount() == remaining) {
+				logger.warn("No result notified for {} ms, giving up on {} URIs", NOTIFICATION_TIMEOUT, remaining);
+				return false;
+			}
+			remaining = latch.getCount();
+		}
+		return true;
+	}
+
+	/**
+	 * Dereferences the URIs which are not yet being dereferenced across WORKER_PROCESSES worker processes, in the
+	 * background on the TimeLimitedExecutor. The listeners of a URI are notified as soon as the resource is read
+	 * back from its worker, whilst the batch goes on. URIs which the workers fail to retrieve are then
+	 * dereferenced by the shared retriever
+	 */
+	private void requestSharded(List<String> uris, Set<FetchNeed> needs, FetchPriority priority, FetchListener listener) {
+		final List<String> batch = new ArrayList<String>();
+		for (String uri : uris) {
+			if (notifyIfDone(uri, needs, listener)) continue;
+			if (this.register(uri, needs, priority, listener)) batch.add(uri);
+			else this.dispatchIfCached(uri);
+		}
+		if (batch.isEmpty()) return;
+
+		TimeLimitedExecutor.getInstance().submit(() -> {
+			Map<String, CachedHTTPResource> merged = Collections.emptyMap();
+			try {
+				merged = new ShardedDereferencer(WORKER_PROCESSES).dereference(batch, priority, resource -> {
+					// the workers request every URI in full
+					served.remove(resource.getUri());
+					this.completed(resource.getUri(), resource);
+				});
+			} catch (IOException e) {
+				logger.warn("Cannot dereference across worker processes, falling back to the shared retriever. Error: {}", e.getMessage());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+
+			HTTPRetriever r = null;
+			for (String uri : batch) {
+				// the listeners of the resources retrieved were notified as they were read
+				if (merged.containsKey(uri)) continue;
+				if (r == null) r = this.startRetriever();
+				this.queue(r, uri, priority);
+				this.dispatchIfCached(uri);
+			}
+		});
+	}
+
+	/**
+	 * Registers a listener of a URI
+	 * @return True if the URI was not being dereferenced yet
+	 */
+	private boolean register(String uri, Set<FetchNeed> needs, FetchPriority priority, FetchListener listener) {
+		boolean[] first = new boolean[1];
+		pending.compute(uri, (key, current) -> {
+			if (current == null) {
+				current = new Pending(priority);
+				first[0] = true;
+			}
+			current.needs.addAll(needs);
+			current.listeners.add(listener);
+			return current;
+		});
+		return first[0];
+	}
+
+	/**
+	 * The URI might have been cached between the first check and its registration, in which case no
+	 * retrieval will ever notify the pending listeners
+	 */
+	private void dispatchIfCached(String uri) {
+		CachedHTTPResource resource = this.getCached(uri);
+		if (resource == null) return;
+
+		// unless it is cached as requested for fewer needs than those pending, which is dereferenced again
+		Pending[] done = new Pending[1];
+		pending.computeIfPresent(uri, (key, current) -> {
+			if (!(this.isServed(key, current.needs))) return current;
+			done[0] = current;
+			return null;
+		});
+		if (done[0] != null) dispatch(uri, resource, done[0]);
+	}
+
+	/**
+	 * Queues a URI which was registered, to be dereferenced again if it is cached as requested for fewer needs
+	 * than those pending
+	 */
+	private void queue(HTTPRetriever r, String uri, FetchPriority priority) {
+		Pending p = pending.get(uri);
+		if ((p != null) && (this.getCached(uri) != null) && (!this.isServed(uri, p.needs))) r.refetchResource(uri, priority);
+		else r.addResourceToQueue(uri, priority);
+	}
+
+	/**
+	 * Dispatches the resource of a URI which was dereferenced to the pending listeners, unless more was needed
+	 * by the time it was dereferenced than its request was shaped by, in which case it is dereferenced again
+	 * (once, e.g. a request which is not sent as its domain failed repeatedly is not shaped either)
+	 */
+	private void completed(String uri, CachedHTTPResource resource) {
+		Pending p = pending.remove(uri);
+		if (p == null) return;
+		if ((p.refetched) || (this.isServed(uri, p.needs))) {
+			dispatch(uri, resource, p);
+			return;
+		}
+
+		p.refetched = true;
+		pending.merge(uri, p, (current, again) -> {
+			current.needs.addAll(again.needs);
+			current.listeners.addAll(again.listeners);
+			current.refetched = true;
+			return current;
+		});
+		// Queueing may wait for room in the queue, which the threads reporting retrievals must not wait for
+		TimeLimitedExecutor.getInstance().submit(() -> this.startRetriever().refetchResource(uri, p.priority));
+	}
+
+	/**
+	 * @return True if the cached resource of a URI was requested for (at least) the given needs. Resources which
+	 * 			were not requested through the coordinator, or whose needs are no longer known, were requested in full
+	 */
+	private boolean isServed(String uri, Set<FetchNeed> needs) {
+		Set<FetchNeed> requested = served.get(uri);
+		return (requested == null) || requested.containsAll(needs);
+	}
+
+	/**
+	 * Joins the dereferencing run of the assessment of a dataset, before requesting the URIs of a metric. The first
+	 * metric to join opens the checkpoint of the dataset, and resumes the URIs left pending when the assessment of
+	 * the dataset was last interrupted
+	 * @param datasetURI URI of the dataset assessed
+	 */
+	public void beginRun(String datasetURI) {
+		if ((!CHECKPOINT_RUNS) || (datasetURI == null) || (datasetURI.isEmpty())) return;
+
+		HTTPRetriever resuming = null;
+		synchronized (this) {
+			if (datasetURI.equals(run)) {
+				participants++;
+				return;
+			}
+
+			DereferenceCheckpoint previous = dcmgr.getCheckpoint();
+			if (previous != null) previous.close();
+
+			DereferenceCheckpoint checkpoint;
+			try {
+				checkpoint = new DereferenceCheckpoint(datasetURI);
+			} catch (RuntimeException e) {
+				// e.g. the checkpoint is held by another assessment of the dataset
+				logger.warn("Cannot open the checkpoint of {}, its assessment is not checkpointed. Error: {}", datasetURI, e.getMessage());
+				dcmgr.setCheckpoint(null);
+				run = null;
+				return;
+			}
+			dcmgr.setCheckpoint(checkpoint);
+			run = datasetURI;
+			participants = 1;
+			if (checkpoint.getPendingCount() > 0) resuming = this.startRetriever();
+		}
+		// Queueing may wait for room in the queue, which requests must not wait for
+		if (resuming != null) resuming.resumeFromCheckpoint();
+	}
+
+	/**
+	 * Leaves the dereferencing run of the assessment of a dataset, once a metric has all its results. The checkpoint
+	 * of the dataset is discarded once every metric which joined the run left it
+	 * @param datasetURI URI of the dataset assessed
+	 */
+	public synchronized void endRun(String datasetURI) {
+		if ((run == null) || (!run.equals(datasetURI))) return;
+		if (--participants > 0) return;
+
+		DereferenceCheckpoint checkpoint = dcmgr.getCheckpoint();
+		dcmgr.setCheckpoint(null);
+		if (checkpoint != null) checkpoint.discard();
+		run = null;
+	}
+
+	/**
+	 * @return Number of URIs requested and not yet dereferenced
+	 */
+	public int getPendingRequests() {
+		return pending.size();
+	}
+
+	/**
+	 * Stops the shared retriever once the URIs queued so far are dereferenced. A later request starts a new one
+	 */
+	public synchronized void shutdown() {
+		if (retriever != null) retriever.stopStreaming();
+		if (dispatcher != null) dispatcher.shutdown();
+		retriever = null;
+		dispatcher = null;
+	}
+
+	/**
+	 * Stops the shared retriever if no URI is waiting to be dereferenced, e.g. once a metric has all its results,
+	 * so that its threads and connections do not outlive the assessment
+	 * @return True if the retriever was stopped
+	 */
+	public synchronized boolean shutdownIfIdle() {
+		if ((retriever == null) || (!pending.isEmpty())) return false;
+		this.shutdown();
+		return true;
+	}
+
+	private synchronized HTTPRetriever startRetriever() {
+		if (retriever == null) {
+			final AtomicInteger threadCount = new AtomicInteger();
+			dispatcher = Executors.newFixedThreadPool(DISPATCHER_THREADS, runnable -> {
+				Thread thread = new Thread(runnable, "fetch-dispatcher-" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+
+			retriever = new HTTPRetriever();
+			retriever.addRetrievalListener((resource, latency) -> {
+				if (latency >= 0) latencies.put(resource.getUri(), latency);
+				this.completed(resource.getUri(), resource);
+			});
+			retriever.setRequestNeeds(this::neededFor);
+			retriever.startStreaming(false);
+		}
+		return retriever;
+	}
+
+	/**
+	 * @return The needs merged for a URI as its request is sent, or null if the URI was not requested through the coordinator
+	 */
+	private Set<FetchNeed> neededFor(String uri) {
+		final Set<FetchNeed> needs = EnumSet.noneOf(FetchNeed.class);
+		Pending p = pending.computeIfPresent(uri, (key, current) -> {
+			needs.addAll(current.needs);
+			return current;
+		});
+		if (p == null) return null;
+
+		served.put(uri, needs);
+		return needs;
+	}
+
+	private boolean notifyIfDone(String uri, Set<FetchNeed> needs, FetchListener listener) {
+		CachedHTTPResource resource = this.getCached(uri);
+		if ((resource == null) || (!this.isServed(uri, needs))) return false;
+
+		Pending p = new Pending(null);
+		p.needs.addAll(needs);
+		p.listeners.add(listener);
+		dispatch(uri, resource, p);
+		return true;
+	}
+
+	private CachedHTTPResource getCached(String uri) {
+		CachedHTTPResource resource = (CachedHTTPResource) dcmgr.getFromCache(LinkedDataMetricsCacheManager.HTTP_RESOURCE_CACHE, uri);
+		if ((resource == null) || (resource.getStatusLines() == null)) return null;
+		return resource;
+	}
+
+	private void dispatch(String uri, CachedHTTPResource resource, Pending p) {
+		Long latency = latencies.get(uri);
+		// The needs the request was shaped by, which cover those of the listeners
+		Set<FetchNeed> needs = served.get(uri);
+		if (needs == null) needs = p.needs;
+		final FetchResult result = new FetchResult(uri, resource, (latency == null) ? -1 : latency, Collections.unmodifiableSet(needs));
+
+		ExecutorService d;
+		synchronized (this) {
+			d = dispatcher;
+		}
+		for (FetchListener listener : p.listeners) {
+			Runnable notify = () -> {
+				try {
+					listener.fetched(result);
+				} catch (Exception e) {
+					logger.warn("Fetch listener failed for {}. Error: {}", uri, e.getMessage());
+				}
+			};
+			if ((d == null) || d.isShutdown()) notify.run();
+			else d.execute(notify);
+		}
+	}
+
+	/**
+	 * The merged needs and the listeners of a URI which is being dereferenced. Only updated within
+	 * the atomic compute() of the pending map (or whilst removed from it), and read once removed from it
+	 */
+	private static class Pending {
+		private final Set<FetchNeed> needs = EnumSet.noneOf(FetchNeed.class);
+		private final List<FetchListener> listeners = new ArrayList<FetchListener>();
+		private final FetchPriority priority;
+		private boolean refetched = false;
+
+		Pending(FetchPriority priority) {
+			this.priority = priority;
+		}
+	}
+}
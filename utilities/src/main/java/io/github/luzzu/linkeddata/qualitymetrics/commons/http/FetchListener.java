@@ -0,0 +1,18 @@
+/**
+ *
+ */
+package io.github.luzzu.linkeddata.qualitymetrics.commons.http;
+
+/**
+ * Receives the outcome of the URIs requested through the FetchCoordinator.
+ * Listeners are invoked from the dispatching threads of the coordinator,
+ * possibly concurrently, thus any state they update must be thread-safe.
+ *
+ */
+public interface FetchListener {
+
+	/**
+	 * @param result The outcome of a requested URI
+	 */
+	void fetched(FetchResult result);
+}
@@ -0,0 +1,31 @@
+/**
+ *
+ */
+package io.github.luzzu.linkeddata.qualitymetrics.commons.http;
+
+/**
+ * What a metric needs to know about a dereferenced URI. The needs
+ * of all the metrics asking for the same URI are merged, so that
+ * the URI is dereferenced once in a way which satisfies all of them.
+ * The latency of the first response is always measured (see
+ * FetchResult.getLatency()).
+ *
+ */
+public enum FetchNeed {
+
+	/**
+	 * The status lines of the responses, including those of any redirection
+	 */
+	STATUS,
+
+	/**
+	 * The content type reported by the server, for which the resource is requested with RDF content types in the Accept header
+	 */
+	CONTENT_TYPE,
+
+	/**
+	 * The body of the final response, parsed once when retrieved. The summary of the parsed content
+	 * is kept in the ParsedContentCache, which the checks of the metrics read rather than parsing again
+	 */
+	PARSED_BODY
+}
@@ -0,0 +1,36 @@
+/**
+ *
+ */
+package io.github.luzzu.linkeddata.qualitymetrics.commons.http;
+
+/**
+ * Priority classes of the URIs submitted for dereferencing,
+ * from the highest to the lowest. URIs of a higher class are
+ * always served before those of a lower class.
+ *
+ */
+public enum FetchPriority {
+
+	/**
+	 * The URI is required to compute the value of a metric
+	 */
+	NEEDED_FOR_METRIC,
+
+	/**
+	 * The URI is dereferenced in advance, as it is likely to be required later on
+	 */
+	SPECULATIVE_PREFETCH,
+
+	/**
+	 * The URI was already dereferenced and is dereferenced again to keep the cache fresh
+	 */
+	BACKGROUND_REVALIDATION;
+
+	/**
+	 * @param other Priority to compare with
+	 * @return true if this priority is strictly higher than the other
+	 */
+	public boolean isHigherThan(FetchPriority other){
+		return this.ordinal() < other.ordinal();
+	}
+}
@@ -0,0 +1,55 @@
+/**
+ *
+ */
+package io.github.luzzu.linkeddata.qualitymetrics.commons.http;
+
+import java.util.Set;
+
+import io.github.luzzu.qualitymetrics.commons.cache.CachedHTTPResource;
+
+/**
+ * The outcome of a URI dereferenced by the FetchCoordinator,
+ * shared by all the metrics which requested the URI.
+ *
+ */
+public class FetchResult {
+
+	private final String uri;
+	private final CachedHTTPResource resource;
+	private final long latency;
+	private final Set<FetchNeed> needs;
+
+	FetchResult(String uri, CachedHTTPResource resource, long latency, Set<FetchNeed> needs){
+		this.uri = uri;
+		this.resource = resource;
+		this.latency = latency;
+		this.needs = needs;
+	}
+
+	public String getURI(){
+		return uri;
+	}
+
+	/**
+	 * @return The dereferenced resource, as stored in the HTTP resource cache
+	 */
+	public CachedHTTPResource getResource(){
+		return resource;
+	}
+
+	/**
+	 * @return Time elapsed (milliseconds) until the first response was received, -1 if unknown 
+	 * (the request failed, or the resource was dereferenced before the coordinator was asked for it)
+	 */
+	public long getLatency(){
+		return latency;
+	}
+
+	/**
+	 * @return The needs the request of the URI was shaped by, which cover those of the metric notified (a URI
+	 * requested for fewer needs beforehand is dereferenced again)
+	 */
+	public Set<FetchNeed> getNeeds(){
+		return needs;
+	}
+}
@@ -0,0 +1,135 @@
+/**
+ *
+ */
+package io.github.luzzu.linkeddata.qualitymetrics.commons.http;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admits the requests of all the HTTP retrievers in the process,
+ * so that at most MAX_CONCURRENT_REQUESTS are pending at any time.
+ * When the limit is reached, requests are admitted by priority: a
+ * request is only admitted when no request of a higher priority
+ * is waiting, so that URIs needed to compute a metric value are not
+ * held behind the speculative URIs of other metrics.
+ *
+ */
+public class FetchScheduler {
+
+	/**
+	 * Maximum number of requests pending across all retrievers
+	 */
+	public int MAX_CONCURRENT_REQUESTS = 150;
+
+	private static FetchScheduler instance = null;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition admission = lock.newCondition();
+	private final int[] waiting = new int[FetchPriority.values().length];
+	private int active = 0;
+
+	protected FetchScheduler(){}
+
+	public static synchronized FetchScheduler getInstance(){
+		if (instance == null) {
+			instance = new FetchScheduler();
+		}
+		return instance;
+	}
+
+	/**
+	 * Waits until a request of the given priority can be sent. Every call must be followed by a call to release()
+	 * once the request is completed
+	 * @param priority Priority of the request
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public void acquire(FetchPriority priority) throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			waiting[priority.ordinal()]++;
+			try {
+				while ((active >= MAX_CONCURRENT_REQUESTS) || higherPriorityWaiting(priority)) admission.await();
+				active++;
+			} finally {
+				waiting[priority.ordinal()]--;
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Waits until a number of requests of the given priority can be sent at once, e.g. to reserve them for the
+	 * requests of another process. Either all of them or none are admitted. Once admitted, they must be
+	 * followed by a call to release(permits)
+	 * @param priority Priority of the requests
+	 * @param permits Number of requests
+	 * @param timeout Maximum time to wait
+	 * @param unit Unit of the timeout
+	 * @return True if the requests were admitted, false if they could not be within the timeout
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public boolean tryAcquire(FetchPriority priority, int permits, long timeout, TimeUnit unit) throws InterruptedException {
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			waiting[priority.ordinal()]++;
+			try {
+				while ((active + permits > MAX_CONCURRENT_REQUESTS) || higherPriorityWaiting(priority)) {
+					if (nanos <= 0) return false;
+					nanos = admission.awaitNanos(nanos);
+				}
+				active += permits;
+				return true;
+			} finally {
+				waiting[priority.ordinal()]--;
+				// Requests of a lower priority might have been held back by this one only
+				admission.signalAll();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Signals that an admitted request was completed
+	 */
+	public void release(){
+		this.release(1);
+	}
+
+	/**
+	 * Signals that a number of admitted requests were completed
+	 * @param permits Number of requests
+	 */
+	public void release(int permits){
+		lock.lock();
+		try {
+			active = Math.max(0, active - permits);
+			admission.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return Number of requests admitted and not yet completed
+	 */
+	public int getActiveRequests(){
+		lock.lock();
+		try {
+			return active;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private boolean higherPriorityWaiting(FetchPriority priority){
+		for (int i = 0; i < priority.ordinal(); i++) {
+			if (waiting[i] > 0) return true;
+		}
+		return false;
+	}
+}
@@ -0,0 +1,193 @@
+/**
+ *
+ */
+package io.github.luzzu.linkeddata.qualitymetrics.commons.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.github.luzzu.linkeddata.qualitymetrics.commons.datatypes.ConcurrentFingerprintSet;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.datatypes.SpillableQueue;
+
+/**
+ * Submits URIs to the FetchCoordinator as they are found in a dataset,
+ * rather than once the whole dataset is processed, so that exact metrics
+ * assessing every distinct URI run in bounded memory:
+ *
+ * - URIs already added are only remembered as 64-bit fingerprints;
+ *   should queued URIs be lost (see poll), only the URIs requested so
+ *   far are remembered, so that the lost ones are added again if they
+ *   are found again in the dataset;
+ * - at most maxInFlight URIs are requested and not yet notified, each
+ *   notification freeing a slot for the next URI;
+ * - the URIs waiting for a slot are kept in a queue which spills to
+ *   disk beyond maxQueuedInMemory URIs.
+ *
+ * The listener is notified once for every distinct URI, possibly
+ * concurrently, as soon as its outcome is known.
+ *
+ */
+public class FetchStream implements Closeable {
+
+	final static Logger logger = LoggerFactory.getLogger(FetchStream.class);
+
+	private final Set<FetchNeed> needs;
+	private final FetchPriority priority;
+	private final FetchListener listener;
+	private final int maxInFlight;
+
+	private volatile ConcurrentFingerprintSet seen = new ConcurrentFingerprintSet(1 << 16, 64);
+	private final ConcurrentFingerprintSet requested = new ConcurrentFingerprintSet(1 << 16, 64);
+	private final SpillableQueue queue;
+
+	private final AtomicLong added = new AtomicLong(0);
+	private final AtomicLong notified = new AtomicLong(0);
+	private final AtomicInteger inFlight = new AtomicInteger(0);
+	private final Object done = new Object();
+
+	// Set while a thread submits queued URIs, so that results notified within request() do not recurse into it
+	private final ThreadLocal<Boolean> submitting = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+	/**
+	 * @param needs What the metric needs to know about the URIs
+	 * @param priority Priority class of the requests
+	 * @param maxInFlight Maximum number of URIs requested and not yet notified
+	 * @param maxQueuedInMemory Maximum number of URIs waiting for a slot which are held in memory, the others are spilled to disk
+	 * @param listener Listener to notify with the outcome of every URI
+	 */
+	public FetchStream(Set<FetchNeed> needs, FetchPriority priority, int maxInFlight, int maxQueuedInMemory, FetchListener listener) {
+		this.needs = needs;
+		this.priority = priority;
+		this.listener = listener;
+		this.maxInFlight = Math.max(1, maxInFlight);
+		this.queue = new SpillableQueue(maxQueuedInMemory);
+	}
+
+	/**
+	 * Adds a URI to be dereferenced, unless it was already added
+	 * @param uri URI to dereference
+	 * @return True if the URI was not added before
+	 */
+	public boolean add(String uri) {
+		if (!seen.add(uri)) return false;
+
+		added.incrementAndGet();
+		queue.add(uri);
+		this.submit();
+		return true;
+	}
+
+	/**
+	 * @return Number of distinct URIs added
+	 */
+	public long getAdded() {
+		return added.get();
+	}
+
+	/**
+	 * @return Number of URIs whose listener was notified
+	 */
+	public long getNotified() {
+		return notified.get();
+	}
+
+	/**
+	 * Waits until the listener is notified for every URI added so far, for as long as results keep being
+	 * notified. Gives up once no result is notified for FetchCoordinator.NOTIFICATION_TIMEOUT milliseconds
+	 * @return True if the listener was notified for every URI added
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public boolean await() throws InterruptedException {
+		this.submit();
+		long timeout = FetchCoordinator.getInstance().NOTIFICATION_TIMEOUT;
+		long lastNotified = notified.get();
+		long lastProgress = System.currentTimeMillis();
+		synchronized (done) {
+			while (notified.get() < added.get()) {
+				done.wait(1000);
+
+				long now = System.currentTimeMillis();
+				if (notified.get() != lastNotified) {
+					lastNotified = notified.get();
+					lastProgress = now;
+				} else if (now - lastProgress >= timeout) {
+					logger.warn("No result notified for {} ms, giving up on {} URIs", timeout, added.get() - notified.get());
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Discards the URIs still queued and deletes any of them spilled to disk
+	 */
+	@Override
+	public void close() {
+		if (queue.getSpilled() > 0) logger.info("{} URIs were queued on disk", queue.getSpilled());
+		queue.close();
+	}
+
+	/**
+	 * Requests queued URIs while fewer than maxInFlight are outstanding
+	 */
+	private void submit() {
+		if (submitting.get()) return;
+		submitting.set(Boolean.TRUE);
+		try {
+			while (true) {
+				int current = inFlight.get();
+				if (current >= maxInFlight) return;
+				if (!inFlight.compareAndSet(current, current + 1)) continue;
+
+				String uri = this.poll();
+				if (uri == null) {
+					inFlight.decrementAndGet();
+					// Another thread might have queued a URI while the slot was held, and left it to this one
+					if (queue.isEmpty()) return;
+					continue;
+				}
+				requested.add(uri);
+				FetchCoordinator.getInstance().request(uri, needs, priority, this::fetched);
+			}
+		} finally {
+			submitting.set(Boolean.FALSE);
+		}
+	}
+
+	private String poll() {
+		try {
+			return queue.poll();
+		} catch (IOException e) {
+			// The URIs still queued are lost, they are discounted so that nobody waits for them, and forgotten
+			// so that they are not taken for duplicates of URIs which were assessed
+			long lost = queue.size();
+			logger.error("Cannot read queued URIs back from disk, {} URIs are not dereferenced unless found again. Error: {}", lost, e.getMessage());
+			seen = requested;
+			queue.close();
+			added.addAndGet(-lost);
+			return null;
+		}
+	}
+
+	private void fetched(FetchResult result) {
+		try {
+			listener.fetched(result);
+		} finally {
+			inFlight.decrementAndGet();
+			this.submit();
+
+			if (notified.incrementAndGet() >= added.get()) {
+				synchronized (done) {
+					done.notifyAll();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,183 @@
+/**
+ *
+ */
+package io.github.luzzu.linkeddata.qualitymetrics.commons.http;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records the requests sent by the HTTPRetriever, together with
+ * their responses (status, headers, body and latency), to a file
+ * with one JSON object per line. Recordings are replayed by the
+ * ReplayServer, so that the accessibility metrics can be run and
+ * benchmarked without access to the web.
+ *
+ * Recording is enabled through HTTPRetriever.setRecorder(). The
+ * responses passed by the retriever are written by a thread of the
+ * recorder, in the order received, such that the threads handling the
+ * responses do not wait for the file; flush() and close() wait for the
+ * responses received until then to be written.
+ *
+ */
+public class HttpRecorder implements Closeable {
+
+	final static Logger logger = LoggerFactory.getLogger(HttpRecorder.class);
+
+	private static final ObjectMapper mapper = new ObjectMapper();
+
+	/**
+	 * Whether the latency of the responses is recorded
+	 */
+	public boolean RECORD_LATENCY = true;
+
+	private final File file;
+	private final Writer writer;
+	private long recorded = 0;
+
+	private final ExecutorService writes = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "http-recorder");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * @param file File to record to, the exchanges are appended if the file exists
+	 * @throws IOException if the file cannot be opened
+	 */
+	public HttpRecorder(File file) throws IOException {
+		this.file = file;
+		this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Records a response, in the background
+	 * @param method Method of the request
+	 * @param uri URI requested
+	 * @param response Response received
+	 * @param body Decoded body of the response, or null
+	 * @param latency Time elapsed (milliseconds) until the response was received
+	 */
+	public void record(String method, String uri, HttpResponse response, String body, long latency) {
+		RecordedExchange exchange = new RecordedExchange();
+		exchange.setMethod(method);
+		exchange.setUri(uri);
+		exchange.setStatus(response.getStatusLine().getStatusCode());
+		exchange.setReason(response.getStatusLine().getReasonPhrase());
+		for (Header header : response.getAllHeaders()) {
+			exchange.addHeader(header.getName(), header.getValue());
+		}
+		exchange.setBody(body);
+		if (RECORD_LATENCY) exchange.setLatency(latency);
+		this.recordLater(exchange);
+	}
+
+	/**
+	 * Records a request which failed without a response, in the background
+	 * @param method Method of the request
+	 * @param uri URI requested
+	 * @param reason Reason of the failure
+	 * @param latency Time elapsed (milliseconds) until the request failed
+	 */
+	public void recordFailure(String method, String uri, String reason, long latency) {
+		RecordedExchange exchange = new RecordedExchange();
+		exchange.setMethod(method);
+		exchange.setUri(uri);
+		exchange.setStatus(0);
+		exchange.setReason(reason);
+		if (RECORD_LATENCY) exchange.setLatency(latency);
+		this.recordLater(exchange);
+	}
+
+	private void recordLater(RecordedExchange exchange) {
+		try {
+			writes.execute(() -> this.record(exchange));
+		} catch (RejectedExecutionException e) {
+			logger.warn("Cannot record the response of {}, the recorder is closed", exchange.getUri());
+		}
+	}
+
+	public synchronized void record(RecordedExchange exchange) {
+		try {
+			writer.write(mapper.writeValueAsString(exchange));
+			writer.write('\n');
+			recorded++;
+		} catch (IOException e) {
+			logger.warn("Cannot record the response of {} to {}. Error: {}", exchange.getUri(), file.getAbsolutePath(), e.getMessage());
+		}
+	}
+
+	/**
+	 * @return Number of exchanges recorded
+	 */
+	public synchronized long getRecorded() {
+		return recorded;
+	}
+
+	public void flush() throws IOException {
+		try {
+			writes.submit(() -> {}).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted whilst waiting for the responses to be recorded", e);
+		} catch (ExecutionException | RejectedExecutionException e) {
+			// closed, nothing left to be written
+		}
+		synchronized (this) {
+			writer.flush();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		writes.shutdown();
+		try {
+			if (!writes.awaitTermination(1, TimeUnit.MINUTES)) logger.warn("Not all the responses were recorded to {}", file.getAbsolutePath());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		synchronized (this) {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Loads a recording
+	 * @param file File recorded to
+	 * @return The recorded exchanges, in the order they were recorded
+	 * @throws IOException if the file cannot be read or is malformed
+	 */
+	public static List<RecordedExchange> load(File file) throws IOException {
+		List<RecordedExchange> exchanges = new ArrayList<RecordedExchange>();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.trim().isEmpty()) continue;
+				exchanges.add(mapper.readValue(line, RecordedExchange.class));
+			}
+		}
+		return exchanges;
+	}
+}
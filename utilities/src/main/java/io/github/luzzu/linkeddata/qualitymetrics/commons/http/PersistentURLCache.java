@@ -0,0 +1,263 @@
+/**
+ *
+ */
+package io.github.luzzu.linkeddata.qualitymetrics.commons.http;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+
+/**
+ * A bounded cache of the targets persistent URLs (e.g. purl.org,
+ * w3id.org and doi.org URLs) redirect to, shared by all the metrics
+ * so that a persistent URL repeated throughout a dataset is only
+ * resolved once.
+ *
+ * Many persistent URL services redirect a whole path prefix uniformly,
+ * e.g. every http://purl.org/example/{x} to http://example.org/ns/{x}.
+ * When the target of a resolved URL ends with the same path as the URL
+ * itself, the rewriting of the prefix is learnt, and once it is confirmed
+ * by PREFIX_CONFIRMATIONS resolved URLs (and contradicted by none) it is
+ * used to answer URLs under the prefix which were never resolved.
+ *
+ * URLs found not to redirect are cached as their own target, without
+ * learning anything about their prefixes.
+ *
+ * The resolved URLs can be saved to (and loaded from) a file, so that
+ * the cache survives across assessments (see LinkedDataMetricsCacheManager).
+ *
+ */
+public class PersistentURLCache {
+
+	final static Logger logger = LoggerFactory.getLogger(PersistentURLCache.class);
+
+	/**
+	 * Number of resolved URLs which have to agree on the rewriting of a prefix before it is used
+	 */
+	public int PREFIX_CONFIRMATIONS = 3;
+
+	private static PersistentURLCache instance = null;
+
+	private final ConcurrentMap<String, String> targets;
+	private final ConcurrentMap<String, PrefixRule> rules;
+
+	private final AtomicLong hits = new AtomicLong(0);
+	private final AtomicLong prefixHits = new AtomicLong(0);
+	private final AtomicLong misses = new AtomicLong(0);
+
+	protected PersistentURLCache(){
+		this(100000, 10000);
+	}
+
+	/**
+	 * @param maxURLs Maximum number of resolved URLs kept, the least recently used are evicted
+	 * @param maxPrefixes Maximum number of prefix rewritings kept, the least recently used are evicted
+	 */
+	protected PersistentURLCache(int maxURLs, int maxPrefixes){
+		this.targets = new ConcurrentLinkedHashMap.Builder<String, String>().maximumWeightedCapacity(maxURLs).build();
+		this.rules = new ConcurrentLinkedHashMap.Builder<String, PrefixRule>().maximumWeightedCapacity(maxPrefixes).build();
+	}
+
+	public static synchronized PersistentURLCache getInstance(){
+		if (instance == null) {
+			instance = new PersistentURLCache();
+		}
+		return instance;
+	}
+
+	/**
+	 * @param url Persistent URL
+	 * @return The target the URL redirects to, either because it was resolved or because a confirmed prefix rewriting applies to it. Null if unknown
+	 */
+	public String get(String url) {
+		if (url == null) return null;
+
+		String target = targets.get(url);
+		if (target != null) {
+			hits.incrementAndGet();
+			return target;
+		}
+
+		for (String prefix : prefixes(url)) {
+			PrefixRule rule = rules.get(prefix);
+			if ((rule != null) && (rule.isConfirmed(PREFIX_CONFIRMATIONS))) {
+				prefixHits.incrementAndGet();
+				return rule.apply(url, prefix);
+			}
+		}
+
+		misses.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Records the target a persistent URL was resolved to, and learns from it how its prefixes are rewritten
+	 * @param url Persistent URL
+	 * @param target Target the URL redirects to, or the URL itself if it does not redirect
+	 */
+	public void put(String url, String target) {
+		if ((url == null) || (target == null)) return;
+		targets.put(url, target);
+		if (url.equals(target)) return;
+
+		List<String> prefixes = prefixes(url);
+		for (String prefix : prefixes) {
+			PrefixRule rule = rules.get(prefix);
+			if (rule == null) continue;
+			if (target.equals(rule.apply(url, prefix))) rule.confirm();
+			else rule.contradict();
+		}
+
+		// The longest path both share at their end is assumed to be carried over by the redirection
+		for (int i = prefixes.size() - 1; i >= 0; i--) {
+			String prefix = prefixes.get(i);
+			String path = url.substring(prefix.length());
+			if ((path.isEmpty()) || (!target.endsWith("/" + path))) continue;
+
+			PrefixRule learnt = new PrefixRule(target.substring(0, target.length() - path.length()));
+			learnt.confirm();
+			rules.putIfAbsent(prefix, learnt);
+			break;
+		}
+	}
+
+	/**
+	 * @return Number of lookups answered by a resolved URL
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return Number of lookups answered by a prefix rewriting
+	 */
+	public long getPrefixHits() {
+		return prefixHits.get();
+	}
+
+	/**
+	 * @return Number of lookups which could not be answered
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return Number of resolved URLs kept
+	 */
+	public int size() {
+		return targets.size();
+	}
+
+	public void clear() {
+		targets.clear();
+		rules.clear();
+	}
+
+	/**
+	 * Saves the resolved URLs to a file, one tab-separated URL and target per line. The URLs are written to a
+	 * temporary file which then replaces the file, such that a process loading it never reads a partial file
+	 * @param file File to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public void save(File file) throws IOException {
+		File directory = file.getAbsoluteFile().getParentFile();
+		File written = File.createTempFile(file.getName(), ".tmp", directory);
+		try {
+			try (BufferedWriter writer = Files.newBufferedWriter(written.toPath(), StandardCharsets.UTF_8)) {
+				for (Map.Entry<String, String> entry : targets.entrySet()) {
+					writer.write(entry.getKey());
+					writer.write('\t');
+					writer.write(entry.getValue());
+					writer.newLine();
+				}
+			}
+			try {
+				Files.move(written.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(written.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			written.delete();
+		}
+		logger.debug("Saved {} resolved persistent URLs to {}", targets.size(), file);
+	}
+
+	/**
+	 * Loads resolved URLs saved to a file, learning the prefix rewritings once again
+	 * @param file File to read, nothing is loaded if it does not exist
+	 * @throws IOException if the file cannot be read
+	 */
+	public void load(File file) throws IOException {
+		if (!file.exists()) return;
+
+		int loaded = 0;
+		try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				int tab = line.indexOf('\t');
+				if (tab <= 0) continue;
+				this.put(line.substring(0, tab), line.substring(tab + 1));
+				loaded++;
+			}
+		}
+		logger.debug("Loaded {} resolved persistent URLs from {}", loaded, file);
+	}
+
+	/**
+	 * @return The prefixes of the URL ending with a slash, from the longest to the shortest, excluding its host
+	 */
+	private static List<String> prefixes(String url) {
+		List<String> prefixes = new ArrayList<String>();
+
+		int scheme = url.indexOf("://");
+		int host = url.indexOf('/', (scheme < 0) ? 0 : scheme + 3);
+		if (host < 0) return prefixes;
+
+		for (int i = url.lastIndexOf('/'); i > host; i = url.lastIndexOf('/', i - 1)) {
+			prefixes.add(url.substring(0, i + 1));
+		}
+		return prefixes;
+	}
+
+	private static class PrefixRule {
+		private final String targetPrefix;
+		private volatile int confirmations = 0;
+		private volatile boolean contradicted = false;
+
+		PrefixRule(String targetPrefix) {
+			this.targetPrefix = targetPrefix;
+		}
+
+		String apply(String url, String prefix) {
+			return targetPrefix + url.substring(prefix.length());
+		}
+
+		synchronized void confirm() {
+			confirmations++;
+		}
+
+		void contradict() {
+			contradicted = true;
+		}
+
+		boolean isConfirmed(int required) {
+			return (!contradicted) && (confirmations >= required);
+		}
+	}
+}
@@ -0,0 +1,98 @@
+/**
+ *
+ */
+package io.github.luzzu.linkeddata.qualitymetrics.commons.http;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.github.luzzu.linkeddata.qualitymetrics.commons.HTTPRetriever;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.Utils;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.cache.ResolutionCache;
+
+/**
+ * Resolves persistent URLs (e.g. purl.org, w3id.org and doi.org URLs) to the
+ * dataset namespace they redirect to, in the background, so that
+ * metrics can start resolving them whilst processing quads and only
+ * wait for the outcome when it is needed.
+ *
+ * Persistent URLs in the same namespace are assumed to redirect to
+ * the same target namespace, thus only one of them is resolved. The
+ * outcome is shared by all the metrics, and requests for a namespace
+ * which is still being resolved wait for the same resolution. The
+ * redirections themselves are cached by the PersistentURLCache.
+ * Resolutions run on the TimeLimitedExecutor, each within RESOLUTION_TIMEOUT.
+ *
+ */
+public class PersistentURLResolver {
+
+	final static Logger logger = LoggerFactory.getLogger(PersistentURLResolver.class);
+
+	/**
+	 * Hosts serving persistent URLs
+	 */
+	public String[] PERSISTENT_URL_HOSTS = new String[] { "purl.org", "w3id.org", "doi.org" };
+
+	/**
+	 * Maximum time (milliseconds) to resolve a persistent URL, after which its own namespace is assumed
+	 */
+	public long RESOLUTION_TIMEOUT = 30000;
+
+	private static PersistentURLResolver instance = null;
+
+	// A namespace resolved to itself could not be resolved, and is resolved once again later on
+	private final ResolutionCache<String> resolutions = new ResolutionCache<String>((namespace, target) -> namespace.equals(target));
+
+	protected PersistentURLResolver(){}
+
+	public static synchronized PersistentURLResolver getInstance(){
+		if (instance == null) {
+			instance = new PersistentURLResolver();
+		}
+		return instance;
+	}
+
+	/**
+	 * @param url URL, with or without protocol
+	 * @return True if the URL is served by one of the persistent URL hosts
+	 */
+	public boolean isPersistentURL(String url) {
+		if (url == null) return false;
+		for (String host : PERSISTENT_URL_HOSTS) {
+			if (url.contains(host)) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Starts resolving the namespace a persistent URL redirects to, unless its namespace is already resolved (or being resolved)
+	 * @param url Persistent URL, including its protocol
+	 * @return The namespace the URL redirects to, once resolved. If the URL cannot be resolved, its own namespace
+	 */
+	public CompletableFuture<String> resolve(String url) {
+		String namespace = Utils.extractDatasetNS(url);
+		if (namespace == null) return CompletableFuture.completedFuture(null);
+
+		return resolutions.resolve(namespace, () -> {
+			String target = HTTPRetriever.decodePersistantURLS(url);
+			String targetNamespace = (target == null) ? null : Utils.extractDatasetNS(target);
+			return (targetNamespace == null) ? namespace : targetNamespace;
+		}, RESOLUTION_TIMEOUT, namespace);
+	}
+
+	/**
+	 * @return Number of persistent URL namespaces resolved, or being resolved
+	 */
+	public int getResolved() {
+		return resolutions.size();
+	}
+
+	/**
+	 * Forgets all the resolved namespaces
+	 */
+	public void clear() {
+		resolutions.clear();
+	}
+}
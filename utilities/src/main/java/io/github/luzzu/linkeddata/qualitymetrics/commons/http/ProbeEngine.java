@@ -0,0 +1,412 @@
+/**
+ *
+ */
+package io.github.luzzu.linkeddata.qualitymetrics.commons.http;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.SynchronizedHistogram;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.ManagedNHttpClientConnectionFactory;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.client.methods.AsyncByteConsumer;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.protocol.HttpContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+
+import io.github.luzzu.linkeddata.qualitymetrics.commons.HTTPRetriever;
+
+/**
+ * Measures the latency of servers by sending probe requests (HTTP GET)
+ * on an async client. The probes of each target are sent one after the
+ * other, while the targets are probed concurrently, so that a pass takes
+ * about as long as the slowest target rather than the sum of all of them.
+ * Latencies are measured with System.nanoTime(), from the moment a probe
+ * is sent until its response is received, and kept in an HDR histogram.
+ *
+ * The probe pass of a dataset is shared: the metrics measuring the
+ * performance of a dataset (e.g. LowLatency and HighThroughput) obtain
+ * their values from the same pass, which is run once by the first metric
+ * asking for it and reused by the others. Passes are identified by the
+ * hosts probed rather than by the URI of the dataset, which is often
+ * unknown (empty) and would otherwise mix up the passes of different
+ * datasets.
+ *
+ */
+public class ProbeEngine {
+
+	final static Logger logger = LoggerFactory.getLogger(ProbeEngine.class);
+
+	/**
+	 * Maximum number of targets probed at the same time
+	 */
+	public int MAX_CONCURRENT_PROBES = 20;
+
+	/**
+	 * Number of probes sent to each of the sampled resources of a dataset
+	 */
+	public int DATASET_PROBES_PER_RESOURCE = 5;
+
+	/**
+	 * Maximum number of resources of a dataset that are probed
+	 */
+	public int DATASET_SAMPLE_SIZE = 100;
+
+	/**
+	 * Time (milliseconds) allowed for a probe pass to complete, probes not completed by then are accounted as failed
+	 */
+	public long PASS_TIMEOUT = 60000;
+
+	/**
+	 * Time (milliseconds) during which the probe pass of a dataset is reused
+	 */
+	public long DATASET_RESULT_TTL = 600000;
+
+	/**
+	 * Number of bytes of the response of a probe which are read before closing the connection
+	 */
+	private static final int MAX_PROBE_BYTES = 65536;
+
+	private static final String ACCEPT_TYPE = "application/rdf+xml, text/turtle, application/n-triples, application/ld+json, */*;q=0.1";
+
+	private static ProbeEngine instance = null;
+
+	private CloseableHttpAsyncClient client = null;
+
+	private final ConcurrentMap<String, DatasetPass> datasetPasses = new ConcurrentLinkedHashMap.Builder<String, DatasetPass>().maximumWeightedCapacity(10000).build();
+
+	protected ProbeEngine(){}
+
+	public static synchronized ProbeEngine getInstance(){
+		if (instance == null) {
+			instance = new ProbeEngine();
+		}
+		return instance;
+	}
+
+	/**
+	 * Probes the resources of a dataset, or returns the result of a recent pass over the same hosts. If a pass over
+	 * the same hosts is already running, waits for it to complete
+	 * @param datasetURI URI of the dataset, used to identify the pass only if no host can be told from the sample
+	 * @param sample Resources of the dataset to probe, of which at most DATASET_SAMPLE_SIZE are probed
+	 * @return The result of the pass
+	 */
+	public ProbeResult probeDataset(String datasetURI, Collection<String> sample) {
+		DatasetPass pass = datasetPasses.compute(passKey(datasetURI, sample), (key, current) -> {
+			if ((current != null) && (!current.isExpired())) return current;
+			List<String> targets = new ArrayList<String>(sample);
+			if (targets.size() > DATASET_SAMPLE_SIZE) {
+				Collections.shuffle(targets);
+				targets = targets.subList(0, DATASET_SAMPLE_SIZE);
+			}
+			final List<String> probed = targets;
+			return new DatasetPass(() -> this.probe(probed, DATASET_PROBES_PER_RESOURCE, PASS_TIMEOUT));
+		});
+
+		pass.task.run(); // no-op if already run, or running in another thread
+		try {
+			return pass.task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return new ProbeResult(new Histogram(3), sample.size(), 0);
+		} catch (ExecutionException e) {
+			logger.error("Probe pass of dataset {} failed. Error: {}", datasetURI, e.getCause().getMessage());
+			return new ProbeResult(new Histogram(3), sample.size(), 0);
+		}
+	}
+
+	/**
+	 * @return The hosts of the sampled resources, sorted, or the dataset URI if none of them has a host
+	 */
+	static String passKey(String datasetURI, Collection<String> sample) {
+		SortedSet<String> hosts = new TreeSet<String>();
+		for (String uri : sample) {
+			try {
+				String host = new URI(uri).getHost();
+				if (host != null) hosts.add(host.toLowerCase());
+			} catch (URISyntaxException e) {
+				logger.debug("Cannot tell the host of {}", uri);
+			}
+		}
+		return (hosts.isEmpty()) ? ((datasetURI == null) ? "" : datasetURI) : String.join(" ", hosts);
+	}
+
+	/**
+	 * Probes a number of targets concurrently. The same target can be given more than once, in which case its
+	 * probes are sent concurrently with each other
+	 * @param targets URIs to probe
+	 * @param probesPerTarget Number of probes sent to each target, one after the other
+	 * @param timeoutMillis Time allowed for the pass to complete
+	 * @return The latencies measured
+	 */
+	public ProbeResult probe(List<String> targets, int probesPerTarget, long timeoutMillis) {
+		final SynchronizedHistogram histogram = new SynchronizedHistogram(3);
+		final AtomicLong failed = new AtomicLong(0);
+		final CountDownLatch done = new CountDownLatch(targets.size());
+		final Semaphore permits = new Semaphore(MAX_CONCURRENT_PROBES);
+		final List<ProbeChain> chains = new ArrayList<ProbeChain>(targets.size());
+
+		long start = System.nanoTime();
+		long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		RequestConfig requestConfig = this.getRequestConfig((int) Math.min(Integer.MAX_VALUE, timeoutMillis));
+		CloseableHttpAsyncClient httpclient = this.getClient();
+
+		try {
+			for (String target : targets) {
+				if (!permits.tryAcquire(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) break;
+				ProbeChain chain = new ProbeChain(httpclient, requestConfig, target, probesPerTarget, histogram, failed, () -> {
+					permits.release();
+					done.countDown();
+				});
+				chains.add(chain);
+				chain.next();
+			}
+			done.await(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		// Probes still pending, or not sent at all, are accounted as failed
+		long pending = 0;
+		for (ProbeChain chain : chains) pending += chain.abort();
+		pending += (long) (targets.size() - chains.size()) * probesPerTarget;
+
+		ProbeResult result = new ProbeResult(histogram.copy(), failed.get() + pending, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		logger.debug("Probed {} targets: {}", targets.size(), result);
+		return result;
+	}
+
+	private synchronized CloseableHttpAsyncClient getClient() {
+		if (client == null) {
+			PoolingNHttpClientConnectionManager connManager;
+			try {
+				Registry<SchemeIOSessionStrategy> ioSessionStrategies = RegistryBuilder.<SchemeIOSessionStrategy>create().
+						register("http", NoopIOSessionStrategy.INSTANCE).
+						register("https", SSLIOSessionStrategy.getSystemDefaultStrategy()).
+						build();
+				connManager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(IOReactorConfig.DEFAULT),
+						ManagedNHttpClientConnectionFactory.INSTANCE, ioSessionStrategies, CachingDnsResolver.getInstance());
+			} catch (IOReactorException e) {
+				logger.error("Cannot create I/O reactor for HTTP probes", e);
+				throw new RuntimeException(e);
+			}
+			// Probes must never wait for a connection, otherwise the wait would be accounted as latency
+			connManager.setMaxTotal(MAX_CONCURRENT_PROBES);
+			connManager.setDefaultMaxPerRoute(MAX_CONCURRENT_PROBES);
+
+			client = HttpAsyncClients.custom().setConnectionManager(connManager).build();
+			client.start();
+		}
+		return client;
+	}
+
+	private RequestConfig getRequestConfig(int timeout) {
+		RequestConfig.Builder configBuilder = RequestConfig.custom().
+				setSocketTimeout(timeout).
+				setConnectTimeout(timeout).
+				setConnectionRequestTimeout(timeout).
+				setRedirectsEnabled(false).
+				setAuthenticationEnabled(false);
+
+		if (HTTPRetriever.getWebProxy() != null && !HTTPRetriever.getWebProxy().trim().equals("") && HTTPRetriever.getWebProxyPort() != null) {
+			configBuilder.setProxy(new HttpHost(HTTPRetriever.getWebProxy(), HTTPRetriever.getWebProxyPort()));
+		}
+		return configBuilder.build();
+	}
+
+	/**
+	 * Sends the probes of a target, one after the other
+	 */
+	private static class ProbeChain implements FutureCallback<Long> {
+
+		private final CloseableHttpAsyncClient httpclient;
+		private final RequestConfig requestConfig;
+		private final String target;
+		private final SynchronizedHistogram histogram;
+		private final AtomicLong failed;
+		private final Runnable onDone;
+
+		private int remaining;
+		private boolean finished = false;
+		private boolean inFlight = false;
+		private Future<Long> current = null;
+		private ProbeConsumer consumer = null;
+
+		ProbeChain(CloseableHttpAsyncClient httpclient, RequestConfig requestConfig, String target, int probes,
+				SynchronizedHistogram histogram, AtomicLong failed, Runnable onDone) {
+			this.httpclient = httpclient;
+			this.requestConfig = requestConfig;
+			this.target = target;
+			this.remaining = probes;
+			this.histogram = histogram;
+			this.failed = failed;
+			this.onDone = onDone;
+		}
+
+		synchronized void next() {
+			if (finished) return;
+			if (remaining == 0) {
+				finish();
+				return;
+			}
+			remaining--;
+			try {
+				HttpGet request = new HttpGet(target);
+				request.setHeader(HttpHeaders.ACCEPT, ACCEPT_TYPE);
+				request.setConfig(requestConfig);
+				// The probe is in flight before it is executed, as its callback can run (and send the next probe)
+				// before execute() returns
+				final ProbeConsumer sent = new ProbeConsumer();
+				consumer = sent;
+				inFlight = true;
+				current = null;
+				Future<Long> future = httpclient.execute(HttpAsyncMethods.create(request), sent, HttpClientContext.create(), this);
+				if ((inFlight) && (consumer == sent)) current = future;
+			} catch (Throwable e) {
+				logger.debug("Cannot probe {}. Error: {}", target, e.getMessage());
+				failed.addAndGet(remaining + 1);
+				remaining = 0;
+				inFlight = false;
+				finish();
+			}
+		}
+
+		/**
+		 * Stops the chain
+		 * @return Number of probes of the chain which were not completed
+		 */
+		synchronized long abort() {
+			if (finished) return 0;
+			long pending = remaining + ((inFlight) ? 1 : 0);
+			remaining = 0;
+			finished = true;
+			if (current != null) current.cancel(true);
+			return pending;
+		}
+
+		public void completed(Long latency) {
+			record(latency);
+		}
+
+		public void failed(Exception ex) {
+			// The connection is closed on purpose once enough of the response is read
+			record(consumer.getLatency());
+		}
+
+		public void cancelled() {
+			synchronized (this) {
+				if (finished) return;
+				failed.incrementAndGet();
+				inFlight = false;
+				current = null;
+			}
+			next();
+		}
+
+		private void record(long latency) {
+			synchronized (this) {
+				if (finished) return;
+				if (latency >= 0) histogram.recordValue(TimeUnit.NANOSECONDS.toMicros(latency));
+				else failed.incrementAndGet();
+				inFlight = false;
+				current = null;
+			}
+			next();
+		}
+
+		private void finish() {
+			finished = true;
+			onDone.run();
+		}
+	}
+
+	/**
+	 * Measures the time elapsed until the response is received, discarding its content
+	 */
+	private static class ProbeConsumer extends AsyncByteConsumer<Long> {
+
+		private final long requestStart = System.nanoTime();
+		private volatile long latency = -1;
+		private int read = 0;
+
+		@Override
+		protected void onResponseReceived(HttpResponse response) throws HttpException, IOException {
+			this.latency = System.nanoTime() - requestStart;
+		}
+
+		@Override
+		protected void onByteReceived(ByteBuffer buf, IOControl ioctrl) throws IOException {
+			read += buf.remaining();
+			buf.position(buf.limit());
+			if (read > MAX_PROBE_BYTES) ioctrl.shutdown();
+		}
+
+		@Override
+		protected Long buildResult(HttpContext context) throws Exception {
+			return latency;
+		}
+
+		/**
+		 * @return Time elapsed (nanoseconds) until the response was received, -1 if it was not
+		 */
+		long getLatency() {
+			return latency;
+		}
+	}
+
+	/**
+	 * A probe pass over a dataset, run once and shared by the metrics of the dataset
+	 */
+	private class DatasetPass {
+		private final FutureTask<ProbeResult> task;
+		private final long created = System.currentTimeMillis();
+
+		DatasetPass(Callable<ProbeResult> pass) {
+			this.task = new FutureTask<ProbeResult>(pass);
+		}
+
+		boolean isExpired() {
+			return task.isDone() && ((System.currentTimeMillis() - created) > DATASET_RESULT_TTL);
+		}
+	}
+}
@@ -0,0 +1,91 @@
+/**
+ *
+ */
+package io.github.luzzu.linkeddata.qualitymetrics.commons.http;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * The latencies measured by a pass of the ProbeEngine, that is,
+ * the time elapsed between sending each probe request and receiving
+ * its response, kept in an HDR histogram with microsecond resolution.
+ *
+ */
+public class ProbeResult {
+
+	private final Histogram histogram;
+	private final long failed;
+	private final long wallTime;
+
+	ProbeResult(Histogram histogram, long failed, long wallTime){
+		this.histogram = histogram;
+		this.failed = failed;
+		this.wallTime = wallTime;
+	}
+
+	/**
+	 * @return Number of probes which received a response
+	 */
+	public long getSuccessful(){
+		return histogram.getTotalCount();
+	}
+
+	/**
+	 * @return Number of probes which failed or did not complete in time
+	 */
+	public long getFailed(){
+		return failed;
+	}
+
+	/**
+	 * @return Mean latency (milliseconds) of the successful probes, NaN if none was successful
+	 */
+	public double getMeanLatency(){
+		if (histogram.getTotalCount() == 0) return Double.NaN;
+		return histogram.getMean() / 1000.0;
+	}
+
+	/**
+	 * @param percentile Percentile, in the range (0, 100]
+	 * @return Latency (milliseconds) at the given percentile of the successful probes, NaN if none was successful
+	 */
+	public double getLatencyAtPercentile(double percentile){
+		if (histogram.getTotalCount() == 0) return Double.NaN;
+		return histogram.getValueAtPercentile(percentile) / 1000.0;
+	}
+
+	/**
+	 * @return Sum of the latencies (milliseconds) of the successful probes
+	 */
+	public double getTotalLatency(){
+		return (histogram.getMean() * histogram.getTotalCount()) / 1000.0;
+	}
+
+	/**
+	 * @return Number of requests served per millisecond by the probed servers, when sent one after the other
+	 */
+	public double getServedPerMillisecond(){
+		double total = this.getTotalLatency();
+		return (total > 0) ? histogram.getTotalCount() / total : 0.0;
+	}
+
+	/**
+	 * @return Time elapsed (milliseconds) to complete the whole pass
+	 */
+	public long getWallTime(){
+		return wallTime;
+	}
+
+	/**
+	 * @return A copy of the histogram of latencies, in microseconds
+	 */
+	public Histogram getHistogram(){
+		return histogram.copy();
+	}
+
+	@Override
+	public String toString(){
+		return String.format("%d probes (%d failed) in %d ms; latency mean %.2f ms, p50 %.2f ms, p95 %.2f ms, p99 %.2f ms", 
+				getSuccessful() + failed, failed, wallTime, getMeanLatency(), getLatencyAtPercentile(50), getLatencyAtPercentile(95), getLatencyAtPercentile(99));
+	}
+}
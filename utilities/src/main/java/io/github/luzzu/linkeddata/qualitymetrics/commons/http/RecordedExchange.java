@@ -0,0 +1,97 @@
+/**
+ *
+ */
+package io.github.luzzu.linkeddata.qualitymetrics.commons.http;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A request sent by the HTTPRetriever, together with the response
+ * received, as recorded by the HttpRecorder and replayed by the
+ * ReplayServer. A status of 0 stands for a request which failed
+ * without a response (e.g. timed out or refused).
+ *
+ */
+public class RecordedExchange {
+
+	private String method;
+	private String uri;
+	private int status;
+	private String reason;
+	private List<List<String>> headers = new ArrayList<List<String>>();
+	private String body;
+	private long latency = -1;
+
+	public String getMethod() {
+		return method;
+	}
+
+	public void setMethod(String method) {
+		this.method = method;
+	}
+
+	public String getUri() {
+		return uri;
+	}
+
+	public void setUri(String uri) {
+		this.uri = uri;
+	}
+
+	public int getStatus() {
+		return status;
+	}
+
+	public void setStatus(int status) {
+		this.status = status;
+	}
+
+	public String getReason() {
+		return reason;
+	}
+
+	public void setReason(String reason) {
+		this.reason = reason;
+	}
+
+	/**
+	 * @return The headers of the response, as [name, value] pairs in the order they were received
+	 */
+	public List<List<String>> getHeaders() {
+		return headers;
+	}
+
+	public void setHeaders(List<List<String>> headers) {
+		this.headers = headers;
+	}
+
+	public void addHeader(String name, String value) {
+		List<String> header = new ArrayList<String>(2);
+		header.add(name);
+		header.add(value);
+		this.headers.add(header);
+	}
+
+	/**
+	 * @return The (decoded) body of the response, null if it was not kept (e.g. redirections, HEAD requests)
+	 */
+	public String getBody() {
+		return body;
+	}
+
+	public void setBody(String body) {
+		this.body = body;
+	}
+
+	/**
+	 * @return Time elapsed (milliseconds) until the response was received, -1 if unknown
+	 */
+	public long getLatency() {
+		return latency;
+	}
+
+	public void setLatency(long latency) {
+		this.latency = latency;
+	}
+}
@@ -0,0 +1,252 @@
+/**
+ *
+ */
+package io.github.luzzu.linkeddata.qualitymetrics.commons.http;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.HttpHeaders;
+import org.apache.http.entity.ContentType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.github.luzzu.linkeddata.qualitymetrics.commons.HTTPRetriever;
+
+/**
+ * An embedded HTTP server replaying the exchanges recorded by the
+ * HttpRecorder. The server acts as a web proxy: once set as the
+ * proxy of the HTTPRetriever (see useAsProxy()), every plain HTTP
+ * request is answered with the recorded response of its URI, so
+ * that the accessibility metrics are assessed offline and with
+ * reproducible response times.
+ *
+ * Responses are delayed by their recorded latency (scaled by
+ * LATENCY_SCALE) plus EXTRA_LATENCY. A fraction of the requests
+ * (FAILURE_RATE) is failed on purpose, either with FAILURE_STATUS
+ * or, if it is 0, by closing the connection without a response.
+ * Random failures are drawn from a seeded generator, so that runs
+ * with the same seed fail the same requests in the same order.
+ *
+ * Requests for URIs which were not recorded are answered with
+ * 404 Not Found. HTTPS URIs cannot be replayed, as they are
+ * tunnelled through the proxy.
+ *
+ */
+public class ReplayServer implements Closeable {
+
+	final static Logger logger = LoggerFactory.getLogger(ReplayServer.class);
+
+	/**
+	 * Factor applied to the recorded latencies, e.g. 0 to reply immediately or 2 to simulate slower servers
+	 */
+	public double LATENCY_SCALE = 1.0;
+
+	/**
+	 * Latency (milliseconds) added to every response
+	 */
+	public long EXTRA_LATENCY = 0;
+
+	/**
+	 * Fraction of the requests failed on purpose
+	 */
+	public double FAILURE_RATE = 0.0;
+
+	/**
+	 * Status of the requests failed on purpose, 0 to close the connection without a response
+	 */
+	public int FAILURE_STATUS = 503;
+
+	private final Map<String, RecordedExchange> exchanges = new ConcurrentHashMap<String, RecordedExchange>();
+	private Random random = new Random(0);
+
+	private HttpServer server = null;
+	private ExecutorService executor = null;
+
+	private final AtomicLong served = new AtomicLong(0);
+	private final AtomicLong failed = new AtomicLong(0);
+
+	/**
+	 * @param recording File recorded by an HttpRecorder
+	 * @throws IOException if the recording cannot be read
+	 */
+	public ReplayServer(File recording) throws IOException {
+		this(HttpRecorder.load(recording));
+	}
+
+	/**
+	 * @param recorded Exchanges to replay. The last exchange recorded for a method and URI is the one replayed
+	 */
+	public ReplayServer(List<RecordedExchange> recorded) {
+		for (RecordedExchange exchange : recorded) {
+			this.exchanges.put(key(exchange.getMethod(), exchange.getUri()), exchange);
+		}
+	}
+
+	/**
+	 * Sets the seed of the random failures
+	 * @param seed Seed
+	 */
+	public synchronized void setSeed(long seed) {
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * Starts the server on the loopback interface
+	 * @param port Port to listen to, 0 for any free port
+	 * @return The port the server listens to
+	 * @throws IOException if the server cannot be started
+	 */
+	public int start(int port) throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+		// Delayed responses must not hold back the others
+		executor = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "replay-server");
+			thread.setDaemon(true);
+			return thread;
+		});
+		server.setExecutor(executor);
+		server.createContext("/", this::handle);
+		server.start();
+		logger.info("Replaying {} recorded exchanges on port {}", exchanges.size(), getPort());
+		return getPort();
+	}
+
+	/**
+	 * @return The port the server listens to
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Sets the server as the web proxy of the HTTPRetriever
+	 */
+	public void useAsProxy() {
+		HTTPRetriever.setWebProxy("127.0.0.1");
+		HTTPRetriever.setWebProxyPort(getPort());
+	}
+
+	/**
+	 * @return Number of requests answered with a recorded response
+	 */
+	public long getServed() {
+		return served.get();
+	}
+
+	/**
+	 * @return Number of requests failed, whether on purpose or as recorded
+	 */
+	public long getFailed() {
+		return failed.get();
+	}
+
+	public void stop() {
+		if (server != null) server.stop(0);
+		if (executor != null) executor.shutdownNow();
+		server = null;
+		executor = null;
+	}
+
+	@Override
+	public void close() {
+		this.stop();
+	}
+
+	private void handle(HttpExchange http) throws IOException {
+		try {
+			String method = http.getRequestMethod();
+			String uri = requestedURI(http);
+
+			RecordedExchange exchange = exchanges.get(key(method, uri));
+			// A HEAD request can be answered with the headers of a recorded GET
+			if ((exchange == null) && ("HEAD".equals(method))) exchange = exchanges.get(key("GET", uri));
+
+			if (exchange == null) {
+				logger.debug("No recorded exchange for {} {}", method, uri);
+				http.sendResponseHeaders(404, -1);
+				return;
+			}
+
+			long delay = EXTRA_LATENCY + ((exchange.getLatency() > 0) ? Math.round(exchange.getLatency() * LATENCY_SCALE) : 0);
+			if (delay > 0) Thread.sleep(delay);
+
+			if (failOnPurpose()) {
+				failed.incrementAndGet();
+				if (FAILURE_STATUS > 0) http.sendResponseHeaders(FAILURE_STATUS, -1);
+				return;
+			}
+
+			if (exchange.getStatus() == 0) {
+				// recorded failure, the connection is closed without a response
+				failed.incrementAndGet();
+				return;
+			}
+
+			for (List<String> header : exchange.getHeaders()) {
+				String name = header.get(0);
+				if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name) || HttpHeaders.TRANSFER_ENCODING.equalsIgnoreCase(name)
+						|| HttpHeaders.CONNECTION.equalsIgnoreCase(name) || HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase(name)) continue;
+				http.getResponseHeaders().add(name, header.get(1));
+			}
+
+			byte[] body = ((exchange.getBody() == null) || ("HEAD".equals(method))) ? null : exchange.getBody().getBytes(charset(exchange));
+			http.sendResponseHeaders(exchange.getStatus(), (body == null) ? -1 : body.length);
+			if (body != null) {
+				try (OutputStream out = http.getResponseBody()) {
+					out.write(body);
+				}
+			}
+			served.incrementAndGet();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			http.close();
+		}
+	}
+
+	private synchronized boolean failOnPurpose() {
+		return (FAILURE_RATE > 0) && (random.nextDouble() < FAILURE_RATE);
+	}
+
+	private static String requestedURI(HttpExchange http) {
+		// Requests sent to a proxy carry the absolute URI, otherwise it is rebuilt from the Host header
+		String uri = http.getRequestURI().toString();
+		if (http.getRequestURI().isAbsolute()) return uri;
+		String host = http.getRequestHeaders().getFirst(HttpHeaders.HOST);
+		return "http://" + host + uri;
+	}
+
+	private static Charset charset(RecordedExchange exchange) {
+		for (List<String> header : exchange.getHeaders()) {
+			if (HttpHeaders.CONTENT_TYPE.equalsIgnoreCase(header.get(0))) {
+				try {
+					Charset charset = ContentType.parse(header.get(1)).getCharset();
+					if (charset != null) return charset;
+				} catch (Exception e) {
+					logger.debug("Cannot parse content type {}", header.get(1));
+				}
+			}
+		}
+		return StandardCharsets.UTF_8;
+	}
+
+	private static String key(String method, String uri) {
+		return method + " " + uri;
+	}
+}
@@ -0,0 +1,250 @@
+/**
+ *
+ */
+package io.github.luzzu.linkeddata.qualitymetrics.commons.http;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.serialization.ValidatingObjectInputStream;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.out.NodeFmtLib;
+import org.apache.jena.sparql.util.NodeFactoryExtra;
+
+import io.github.luzzu.linkeddata.qualitymetrics.commons.datatypes.ParsedContentSummary;
+import io.github.luzzu.qualitymetrics.commons.cache.CachedHTTPResource;
+
+/**
+ * The records a ShardWorker writes for each resource it retrieves, read
+ * back by the ShardedDereferencer. The output of a worker starts with
+ * HEADER, followed by one length-prefixed record per resource, holding:
+ * its URI, the resource itself (serialised), the beginning of its body
+ * and the summary of its parsed content (see ParsedContentCache), such
+ * that the resources merged from the workers are as complete as those
+ * retrieved within the process.
+ *
+ * Only the classes a cached resource is made of are deserialised, and a
+ * record whose resource does not match its URI is rejected. A record cut
+ * short (e.g. as the worker is stopped) ends the output. As each record is
+ * flushed once written, the output can be read while the worker runs: a
+ * record not yet wholly written is read once the output grows.
+ */
+final class ShardRecords {
+
+	static final String HEADER = "luzzu-shard-records/1";
+
+	/**
+	 * Classes (patterns) a serialised resource may be made of, including the status lines of its responses
+	 */
+	private static final String[] RESOURCE_CLASSES = new String[] { "io.github.luzzu.*", "java.lang.*", "java.util.*",
+			"[B", "[Ljava.lang.*", "[Ljava.util.*", "[Lio.github.luzzu.*", "org.apache.http.message.BasicStatusLine",
+			"org.apache.http.ProtocolVersion", "org.apache.http.HttpVersion" };
+
+	private ShardRecords(){}
+
+	/**
+	 * Thrown for a record which cannot be read back, whereas the records following it can
+	 */
+	static class InvalidRecordException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		InvalidRecordException(String message, Throwable cause) {
+			super(message, cause);
+		}
+	}
+
+	static class Record {
+		final CachedHTTPResource resource;
+		final String prefix;
+		final ParsedContentSummary summary;
+
+		Record(CachedHTTPResource resource, String prefix, ParsedContentSummary summary) {
+			this.resource = resource;
+			this.prefix = prefix;
+			this.summary = summary;
+		}
+	}
+
+	static class Writer implements Closeable {
+		private final DataOutputStream out;
+
+		Writer(File file) throws IOException {
+			this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+			this.out.writeUTF(HEADER);
+			this.out.flush();
+		}
+
+		/**
+		 * Writes the record of a resource, flushing it such that it survives the worker being stopped
+		 */
+		synchronized void write(CachedHTTPResource resource, String prefix, ParsedContentSummary summary) throws IOException {
+			ByteArrayOutputStream record = new ByteArrayOutputStream();
+			try (DataOutputStream data = new DataOutputStream(record)) {
+				writeString(data, resource.getUri());
+
+				ByteArrayOutputStream serialised = new ByteArrayOutputStream();
+				try (ObjectOutputStream object = new ObjectOutputStream(serialised)) {
+					object.writeObject(resource);
+				}
+				data.writeInt(serialised.size());
+				serialised.writeTo(data);
+
+				writeString(data, prefix);
+
+				data.writeBoolean(summary != null);
+				if (summary != null) {
+					writeString(data, summary.getUri());
+					writeString(data, (summary.getLang() == null) ? null : summary.getLang().getName());
+					data.writeBoolean(summary.isParseable());
+					data.writeBoolean(summary.isSubjectFound());
+					data.writeLong(summary.getTripleCount());
+					data.writeInt(summary.getSample().size());
+					for (Triple triple : summary.getSample()) {
+						writeString(data, NodeFmtLib.str(triple.getSubject()));
+						writeString(data, NodeFmtLib.str(triple.getPredicate()));
+						writeString(data, NodeFmtLib.str(triple.getObject()));
+					}
+				}
+			}
+
+			out.writeInt(record.size());
+			record.writeTo(out);
+			out.flush();
+		}
+
+		@Override
+		public synchronized void close() throws IOException {
+			out.close();
+		}
+	}
+
+	static class Reader implements Closeable {
+		private final DataInputStream in;
+
+		/**
+		 * @throws IOException if the file cannot be read, or is not the output of a worker
+		 */
+		Reader(File file) throws IOException {
+			this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			String header;
+			try {
+				header = in.readUTF();
+			} catch (IOException e) {
+				in.close();
+				throw new IOException("Cannot read the header of " + file.getName(), e);
+			}
+			if (!(HEADER.equals(header))) {
+				in.close();
+				throw new IOException(file.getName() + " is not the output of a shard worker");
+			}
+		}
+
+		/**
+		 * @return The next record, or null if the output ends (or was cut short) before the next record, which is
+		 * 			read by a later call if it is still being written
+		 * @throws InvalidRecordException if the record is invalid, in which case the following records can still be read
+		 * @throws IOException if the output cannot be read any further
+		 */
+		Record next() throws IOException {
+			byte[] record;
+			in.mark(Integer.BYTES);
+			try {
+				int length = in.readInt();
+				if (length < 0) throw new IOException("Invalid record length " + length);
+				// what is left of the output is shorter than the record, which was cut short (or is being written)
+				if (length > in.available()) {
+					in.reset();
+					return null;
+				}
+				record = new byte[length];
+				in.readFully(record);
+			} catch (EOFException e) {
+				in.reset();
+				return null;
+			}
+
+			String uri = null;
+			try (DataInputStream data = new DataInputStream(new ByteArrayInputStream(record))) {
+				uri = readString(data);
+
+				byte[] serialised = new byte[checkLength(data, data.readInt())];
+				data.readFully(serialised);
+				CachedHTTPResource resource;
+				try (ValidatingObjectInputStream object = new ValidatingObjectInputStream(new ByteArrayInputStream(serialised))) {
+					object.accept(RESOURCE_CLASSES);
+					resource = (CachedHTTPResource) object.readObject();
+				}
+				if ((uri == null) || (!uri.equals(resource.getUri()))) throw new IllegalStateException("The resource is " + resource.getUri());
+
+				String prefix = readString(data);
+
+				ParsedContentSummary summary = null;
+				if (data.readBoolean()) {
+					String summarised = readString(data);
+					String lang = readString(data);
+					boolean parseable = data.readBoolean();
+					boolean subjectFound = data.readBoolean();
+					long tripleCount = data.readLong();
+					int samples = data.readInt();
+					List<Triple> sample = new ArrayList<Triple>(Math.min(samples, ParsedContentSummary.SAMPLE_SIZE));
+					for (int i = 0; i < samples; i++) {
+						sample.add(Triple.create(readNode(data), readNode(data), readNode(data)));
+					}
+					summary = new ParsedContentSummary(summarised, (lang == null) ? null : RDFLanguages.nameToLang(lang), parseable, subjectFound, tripleCount, sample);
+				}
+				return new Record(resource, prefix, summary);
+			} catch (IOException | ClassNotFoundException | RuntimeException e) {
+				// e.g. a class which is not accepted, or a record which does not match its resource
+				throw new InvalidRecordException("Invalid record of " + uri + ": " + e.getMessage(), e);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) return null;
+		byte[] bytes = new byte[checkLength(in, length)];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static int checkLength(DataInputStream in, int length) throws IOException {
+		if ((length < 0) || (length > in.available())) throw new EOFException("Invalid length " + length);
+		return length;
+	}
+
+	private static Node readNode(DataInputStream in) throws IOException {
+		return NodeFactoryExtra.parseNode(readString(in));
+	}
+}
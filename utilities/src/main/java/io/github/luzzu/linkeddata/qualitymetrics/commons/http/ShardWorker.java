@@ -0,0 +1,143 @@
+/**
+ *
+ */
+package io.github.luzzu.linkeddata.qualitymetrics.commons.http;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.github.luzzu.linkeddata.qualitymetrics.commons.HTTPRetriever;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.cache.LinkedDataMetricsCacheManager;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.cache.ParsedContentCache;
+import io.github.luzzu.qualitymetrics.commons.cache.CachedHTTPResource;
+
+/**
+ * The entry point of a worker process launched by the ShardedDereferencer.
+ * The worker dereferences the URIs of its shard with its own HTTPRetriever,
+ * at the priority of the batch and within the share of requests granted to
+ * it (see FetchScheduler), and writes the record of each dereferenced
+ * resource, with the summary of its parsed content, to its output file as
+ * soon as it is retrieved (see ShardRecords), such that the resources
+ * retrieved before a worker fails or is stopped are not lost.
+ *
+ * Usage: ShardWorker input output [--content-type] [--no-redirects] [--proxy host:port] [--timeout millis]
+ * 			[--priority name] [--max-requests n]
+ * where input holds the URIs of the shard, one per line.
+ *
+ * The worker exits with EXIT_DONE once every URI is retrieved, EXIT_TIMEOUT
+ * if the timeout elapses first, and EXIT_FAILED if it cannot run at all.
+ */
+public class ShardWorker {
+
+	final static Logger logger = LoggerFactory.getLogger(ShardWorker.class);
+
+	public static final int EXIT_DONE = 0;
+	public static final int EXIT_FAILED = 1;
+	public static final int EXIT_TIMEOUT = 2;
+
+	private final ShardRecords.Writer out;
+	private long written = 0;
+
+	private ShardWorker(File output) throws IOException {
+		this.out = new ShardRecords.Writer(output);
+	}
+
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			System.err.println("Usage: ShardWorker input output [--content-type] [--no-redirects] [--proxy host:port] [--timeout millis] [--priority name] [--max-requests n]");
+			System.exit(EXIT_FAILED);
+		}
+
+		// The resolved persistent URLs are saved by the process which started the worker
+		LinkedDataMetricsCacheManager.PERSISTENT_URL_FILE = null;
+
+		boolean requiresContentType = false;
+		long timeout = Long.MAX_VALUE;
+		FetchPriority priority = FetchPriority.NEEDED_FOR_METRIC;
+		for (int i = 2; i < args.length; i++) {
+			switch (args[i]) {
+				case "--content-type":
+					requiresContentType = true;
+					break;
+				case "--no-redirects":
+					HTTPRetriever.setFollowRedirections(false);
+					break;
+				case "--proxy":
+					String proxy = args[++i];
+					HTTPRetriever.setWebProxy(proxy.substring(0, proxy.lastIndexOf(':')));
+					HTTPRetriever.setWebProxyPort(Integer.parseInt(proxy.substring(proxy.lastIndexOf(':') + 1)));
+					break;
+				case "--timeout":
+					timeout = Long.parseLong(args[++i]);
+					break;
+				case "--priority":
+					priority = FetchPriority.valueOf(args[++i]);
+					break;
+				case "--max-requests":
+					FetchScheduler.getInstance().MAX_CONCURRENT_REQUESTS = Integer.parseInt(args[++i]);
+					break;
+				default:
+					logger.warn("Ignoring unknown option {}", args[i]);
+			}
+		}
+
+		int status;
+		try {
+			List<String> uris = new ArrayList<String>(new LinkedHashSet<String>(Files.readAllLines(new File(args[0]).toPath(), StandardCharsets.UTF_8)));
+			uris.removeIf(String::isEmpty);
+
+			ShardWorker worker = new ShardWorker(new File(args[1]));
+			status = worker.dereference(uris, priority, requiresContentType, timeout) ? EXIT_DONE : EXIT_TIMEOUT;
+			worker.close();
+		} catch (Exception e) {
+			logger.error("Shard worker failed", e);
+			status = EXIT_FAILED;
+		}
+		// The threads of the HTTP client would otherwise keep the process alive
+		System.exit(status);
+	}
+
+	private boolean dereference(List<String> uris, FetchPriority priority, boolean requiresContentType, long timeout) throws InterruptedException {
+		logger.info("Dereferencing {} URIs", uris.size());
+		final CountDownLatch remaining = new CountDownLatch(uris.size());
+
+		HTTPRetriever retriever = new HTTPRetriever();
+		retriever.addRetrievalListener((resource, latency) -> {
+			this.write(resource);
+			remaining.countDown();
+		});
+		retriever.startStreaming(requiresContentType);
+		retriever.addListOfResourceToQueue(uris, priority);
+		retriever.stopStreaming();
+
+		boolean done = remaining.await(timeout, TimeUnit.MILLISECONDS);
+		logger.info("Dereferenced {} of {} URIs", uris.size() - remaining.getCount(), uris.size());
+		return done;
+	}
+
+	private synchronized void write(CachedHTTPResource resource) {
+		// The retriever summarises the content before notifying its listeners
+		ParsedContentCache parsed = ParsedContentCache.getInstance();
+		try {
+			out.write(resource, parsed.getPrefix(resource.getUri()), parsed.get(resource.getUri()));
+			written++;
+		} catch (IOException e) {
+			logger.warn("Cannot write the resource {}. Error: {}", resource.getUri(), e.getMessage());
+		}
+	}
+
+	private synchronized void close() throws IOException {
+		out.close();
+		logger.info("Wrote {} resources", written);
+	}
+}
@@ -0,0 +1,308 @@
+/**
+ *
+ */
+package io.github.luzzu.linkeddata.qualitymetrics.commons.http;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.github.luzzu.linkeddata.qualitymetrics.commons.HTTPRetriever;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.URITokenizer;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.cache.LinkedDataMetricsCacheManager;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.cache.ParsedContentCache;
+import io.github.luzzu.qualitymetrics.commons.cache.CachedHTTPResource;
+
+/**
+ * Dereferences a batch of URIs across a number of local worker processes
+ * (see ShardWorker), each running its own HTTPRetriever, such that the
+ * number of concurrent connections is not bound by what a single JVM can
+ * hold. URIs are partitioned by the hash of their host, thus all the URIs
+ * of a host are dereferenced by the same worker, which keeps on applying
+ * the politeness and fail-safe decisions of its retriever to the host.
+ *
+ * A batch is admitted by the FetchScheduler of this JVM at its priority:
+ * the requests the workers may have pending (WORKER_REQUEST_SHARE of the
+ * global limit, split across the workers) are reserved at once for as
+ * long as the workers run, and each worker dereferences its URIs at the
+ * priority of the batch within its part of the reservation. A batch which
+ * is not admitted within ADMISSION_TIMEOUT is not dereferenced by the
+ * workers, its URIs being left to the retriever of this JVM.
+ *
+ * Workers are started with the classpath of this JVM, and pass the web
+ * proxy of the HTTPRetriever on, so that they can be pointed at a local
+ * stand-in server (see ReplayServer). The resources retrieved by the
+ * workers are merged into the HTTP resource cache of this JVM, and the
+ * summaries of their parsed content into the ParsedContentCache, as the
+ * workers write them: their outputs are read every POLL_INTERVAL while
+ * they run, such that the resources can be used before the batch ends.
+ */
+public class ShardedDereferencer {
+
+	final static Logger logger = LoggerFactory.getLogger(ShardedDereferencer.class);
+
+	/**
+	 * Number of worker processes
+	 */
+	public int WORKERS;
+
+	/**
+	 * Time (milliseconds) after which the workers are stopped, keeping what they retrieved
+	 */
+	public long WORKER_TIMEOUT = 1800000;
+
+	/**
+	 * Options of the JVMs of the workers (e.g. -Xmx1g)
+	 */
+	public List<String> JVM_OPTIONS = new ArrayList<String>();
+
+	/**
+	 * True if the resources should be requested with RDF content types in the Accept header
+	 */
+	public boolean REQUIRES_CONTENT_TYPE = true;
+
+	/**
+	 * Share of the requests admitted by the FetchScheduler which the workers of a batch may have pending
+	 */
+	public double WORKER_REQUEST_SHARE = 0.5;
+
+	/**
+	 * Time (milliseconds) to wait for the requests of the workers to be admitted by the FetchScheduler
+	 */
+	public long ADMISSION_TIMEOUT = 60000;
+
+	/**
+	 * Time (milliseconds) between two reads of the outputs of the workers whilst they run
+	 */
+	public long POLL_INTERVAL = 1000;
+
+	private final LinkedDataMetricsCacheManager dcmgr = LinkedDataMetricsCacheManager.getInstance();
+
+	public ShardedDereferencer(int workers) {
+		if (workers < 1) throw new IllegalArgumentException("At least one worker is required");
+		this.WORKERS = workers;
+	}
+
+	/**
+	 * @param uri URI to dereference
+	 * @param shards Number of shards
+	 * @return The shard of the URI, which is the same for all the URIs of a host
+	 */
+	public static int shardOf(String uri, int shards) {
+		String host = URITokenizer.local().tokenize(uri).getHost();
+		int hash = (host == null) ? uri.hashCode() : host.toLowerCase().hashCode();
+		return Math.floorMod(hash, shards);
+	}
+
+	/**
+	 * Dereferences the URIs across the workers, as needed for a metric
+	 * @see #dereference(Collection, FetchPriority)
+	 */
+	public Map<String, CachedHTTPResource> dereference(Collection<String> uris) throws IOException, InterruptedException {
+		return this.dereference(uris, FetchPriority.NEEDED_FOR_METRIC);
+	}
+
+	/**
+	 * Dereferences the URIs across the workers, waiting for all of them to terminate
+	 * @param uris URIs to dereference
+	 * @param priority Priority of the batch, at which it is admitted by the FetchScheduler
+	 * @return The resources retrieved, by URI, which are also added to the HTTP resource cache. URIs whose
+	 * 			worker failed or timed out before retrieving them are missing, as are all the URIs if the batch
+	 * 			was not admitted within ADMISSION_TIMEOUT
+	 * @throws IOException if the work of the shards cannot be written
+	 * @throws InterruptedException if interrupted while waiting for admission or for the workers, which are then stopped
+	 */
+	public Map<String, CachedHTTPResource> dereference(Collection<String> uris, FetchPriority priority) throws IOException, InterruptedException {
+		return this.dereference(uris, priority, resource -> {});
+	}
+
+	/**
+	 * Dereferences the URIs across the workers, waiting for all of them to terminate
+	 * @param uris URIs to dereference
+	 * @param priority Priority of the batch, at which it is admitted by the FetchScheduler
+	 * @param retrieved Called with each resource as soon as it is read from the output of its worker (and cached),
+	 * 			on the thread dereferencing the batch
+	 * @return The resources retrieved, by URI
+	 * @see #dereference(Collection, FetchPriority)
+	 */
+	public Map<String, CachedHTTPResource> dereference(Collection<String> uris, FetchPriority priority, Consumer<CachedHTTPResource> retrieved)
+			throws IOException, InterruptedException {
+		FetchScheduler scheduler = FetchScheduler.getInstance();
+		int perWorker = Math.max(1, (int) (scheduler.MAX_CONCURRENT_REQUESTS * WORKER_REQUEST_SHARE) / WORKERS);
+		int reserved = Math.min(scheduler.MAX_CONCURRENT_REQUESTS, perWorker * WORKERS);
+
+		if (!scheduler.tryAcquire(priority, reserved, ADMISSION_TIMEOUT, TimeUnit.MILLISECONDS)) {
+			logger.warn("The requests of the workers were not admitted within {} ms, {} URIs are left to this process", ADMISSION_TIMEOUT, uris.size());
+			return Collections.emptyMap();
+		}
+		try {
+			return this.dereference(uris, priority, perWorker, retrieved);
+		} finally {
+			scheduler.release(reserved);
+		}
+	}
+
+	private Map<String, CachedHTTPResource> dereference(Collection<String> uris, FetchPriority priority, int perWorker,
+			Consumer<CachedHTTPResource> retrieved) throws IOException, InterruptedException {
+		List<List<String>> shards = new ArrayList<List<String>>();
+		for (int i = 0; i < WORKERS; i++) shards.add(new ArrayList<String>());
+		for (String uri : new LinkedHashSet<String>(uris)) {
+			shards.get(shardOf(uri, WORKERS)).add(uri);
+		}
+
+		File workDir = Files.createTempDirectory("luzzu-shards").toFile();
+		List<Process> workers = new ArrayList<Process>();
+		List<WorkerOutput> outputs = new ArrayList<WorkerOutput>();
+		Map<String, CachedHTTPResource> merged = new HashMap<String, CachedHTTPResource>();
+		boolean keepWorkDir = false;
+		try {
+			for (int i = 0; i < WORKERS; i++) {
+				if (shards.get(i).isEmpty()) continue;
+
+				File input = new File(workDir, "shard-" + i + ".txt");
+				File output = new File(workDir, "shard-" + i + ".bin");
+				Files.write(input.toPath(), shards.get(i), StandardCharsets.UTF_8);
+
+				ProcessBuilder builder = new ProcessBuilder(this.command(input, output, priority, perWorker));
+				builder.redirectErrorStream(true);
+				builder.redirectOutput(new File(workDir, "shard-" + i + ".log"));
+				workers.add(builder.start());
+				outputs.add(new WorkerOutput(output));
+				logger.debug("Started worker {} with {} URIs", i, shards.get(i).size());
+			}
+
+			long deadline = System.currentTimeMillis() + WORKER_TIMEOUT;
+			while (true) {
+				boolean running = false;
+				for (Process worker : workers) running |= worker.isAlive();
+				// once the workers terminated, what is read is the rest of their outputs
+				for (WorkerOutput output : outputs) output.merge(merged, retrieved);
+				if (!running) break;
+
+				long left = deadline - System.currentTimeMillis();
+				if (left <= 0) {
+					logger.warn("Not all the workers terminated within {} ms, they are stopped", WORKER_TIMEOUT);
+					for (Process worker : workers) {
+						if (worker.isAlive()) worker.destroyForcibly().waitFor();
+					}
+				} else {
+					Thread.sleep(Math.min(left, POLL_INTERVAL));
+				}
+			}
+			for (Process worker : workers) {
+				if (worker.exitValue() != ShardWorker.EXIT_DONE) keepWorkDir = true;
+			}
+		} finally {
+			for (Process worker : workers) {
+				if (worker.isAlive()) worker.destroyForcibly();
+			}
+			for (WorkerOutput output : outputs) output.close();
+		}
+
+		if (keepWorkDir) {
+			logger.warn("Not all the workers completed, their logs are kept in {}", workDir);
+		} else {
+			FileUtils.deleteQuietly(workDir);
+		}
+		logger.info("Dereferenced {} of {} URIs across {} workers", merged.size(), uris.size(), workers.size());
+		return merged;
+	}
+
+	private List<String> command(File input, File output, FetchPriority priority, int maxRequests) {
+		List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		command.addAll(JVM_OPTIONS);
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(ShardWorker.class.getName());
+		command.add(input.getAbsolutePath());
+		command.add(output.getAbsolutePath());
+		command.add("--timeout");
+		command.add(String.valueOf(WORKER_TIMEOUT));
+		command.add("--priority");
+		command.add(priority.name());
+		command.add("--max-requests");
+		command.add(String.valueOf(maxRequests));
+		if (REQUIRES_CONTENT_TYPE) command.add("--content-type");
+		if (!HTTPRetriever.getFollowRedirections()) command.add("--no-redirects");
+		if ((HTTPRetriever.getWebProxy() != null) && (!HTTPRetriever.getWebProxy().trim().isEmpty()) && (HTTPRetriever.getWebProxyPort() != null)) {
+			command.add("--proxy");
+			command.add(HTTPRetriever.getWebProxy() + ":" + HTTPRetriever.getWebProxyPort());
+		}
+		return command;
+	}
+
+	/**
+	 * The output of a worker, read as the worker writes it
+	 */
+	private class WorkerOutput {
+		private final File file;
+		private ShardRecords.Reader in = null;
+		private boolean failed = false;
+
+		WorkerOutput(File file) {
+			this.file = file;
+		}
+
+		/**
+		 * Reads the records written by the worker since the last call, up to where its output ends (or was cut short)
+		 */
+		void merge(Map<String, CachedHTTPResource> merged, Consumer<CachedHTTPResource> retrieved) {
+			if (failed) return;
+			// the worker might not have written its header yet
+			if ((in == null) && (file.length() < 2 + ShardRecords.HEADER.length())) return;
+
+			ParsedContentCache parsed = ParsedContentCache.getInstance();
+			try {
+				if (in == null) in = new ShardRecords.Reader(file);
+				while (true) {
+					ShardRecords.Record record;
+					try {
+						record = in.next();
+					} catch (ShardRecords.InvalidRecordException e) {
+						// The record is rejected, the following ones are intact
+						logger.warn("Skipping an invalid record of {}. Error: {}", file.getName(), e.getMessage());
+						continue;
+					}
+					if (record == null) break;
+
+					String uri = record.resource.getUri();
+					// The summary is in place before the resource is seen in the cache
+					if (record.summary != null) parsed.put(record.summary);
+					if (record.prefix != null) parsed.putPrefix(uri, record.prefix);
+					merged.put(uri, record.resource);
+					dcmgr.addToCache(LinkedDataMetricsCacheManager.HTTP_RESOURCE_CACHE, uri, record.resource);
+					retrieved.accept(record.resource);
+				}
+			} catch (IOException e) {
+				logger.warn("Cannot read the resources of {}. Error: {}", file.getName(), e.getMessage());
+				failed = true;
+				this.close();
+			}
+		}
+
+		void close() {
+			if (in == null) return;
+			try {
+				in.close();
+			} catch (IOException e) {
+				logger.debug("Cannot close {}. Error: {}", file.getName(), e.getMessage());
+			}
+			in = null;
+		}
+	}
+}
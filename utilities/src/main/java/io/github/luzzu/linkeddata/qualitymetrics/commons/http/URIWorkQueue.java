@@ -0,0 +1,307 @@
+/**
+ *
+ */
+package io.github.luzzu.linkeddata.qualitymetrics.commons.http;
+
+import java.io.IOException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.github.luzzu.linkeddata.qualitymetrics.commons.datatypes.FingerprintSet;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.datatypes.SpillableQueue;
+
+/**
+ * A bounded queue of URIs waiting to be dereferenced, with one
+ * FIFO lane per FetchPriority. URIs are always taken from the
+ * highest priority lane which is not empty.
+ *
+ * URIs which are already queued (with the same or a higher
+ * priority), in flight (taken but not yet completed) or already
+ * done (according to a given predicate, e.g. whether the URI is
+ * cached) are dropped when offered. A URI queued with a lower
+ * priority is promoted when offered with a higher one.
+ *
+ * Up to a number of URIs are kept in memory by each lane. Further
+ * URIs are spilled to disk (see SpillableQueue) and read back in
+ * order as the in-memory URIs are consumed. Once the total number of queued
+ * URIs reaches the maximum size of the queue, producers block until
+ * URIs are consumed.
+ *
+ */
+public class URIWorkQueue {
+
+	final static Logger logger = LoggerFactory.getLogger(URIWorkQueue.class);
+
+	private final int memoryCapacity;
+	private final long maxSize;
+	private final Predicate<String> isDone;
+
+	private final Lane[] lanes;
+	private final FingerprintSet inFlight = new FingerprintSet();
+	private long size = 0;
+
+	private boolean closed = false;
+	private Consumer<String> doneListener = null;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notFull = lock.newCondition();
+	private final Condition notEmpty = lock.newCondition();
+
+	/**
+	 * @param memoryCapacity Number of URIs kept in memory by each lane before spilling to disk
+	 * @param maxSize Maximum number of URIs queued, after which producers block
+	 * @param isDone Predicate telling whether a URI was already dereferenced
+	 */
+	public URIWorkQueue(int memoryCapacity, long maxSize, Predicate<String> isDone){
+		this.memoryCapacity = memoryCapacity;
+		this.maxSize = Math.max(maxSize, memoryCapacity);
+		this.isDone = isDone;
+
+		this.lanes = new Lane[FetchPriority.values().length];
+		for (int i = 0; i < lanes.length; i++) lanes[i] = new Lane();
+	}
+
+	/**
+	 * Sets a listener notified with the URIs dropped when taken from the queue, since they were dereferenced 
+	 * after being queued. The listener is invoked while holding the lock of the queue, thus it should not block
+	 * @param doneListener Listener to notify
+	 */
+	public void setDoneListener(Consumer<String> doneListener){
+		this.doneListener = doneListener;
+	}
+
+	/**
+	 * Adds a URI to the queue with the highest priority (FetchPriority.NEEDED_FOR_METRIC)
+	 * @see #offer(String, FetchPriority)
+	 */
+	public boolean offer(String uri) throws InterruptedException {
+		return offer(uri, FetchPriority.NEEDED_FOR_METRIC);
+	}
+
+	/**
+	 * Adds a URI to the queue, waiting for space to become available if the queue is full
+	 * @param uri URI to queue
+	 * @param priority Priority class of the URI
+	 * @return true if the URI was queued (or promoted), false if it was dropped as a duplicate
+	 * @throws InterruptedException if interrupted while waiting for space
+	 */
+	public boolean offer(String uri, FetchPriority priority) throws InterruptedException {
+		if ((uri == null) || isDone.test(uri)) return false;
+
+		long fp = FingerprintSet.fingerprint(uri);
+		lock.lockInterruptibly();
+		try {
+			// The URI might have been queued, taken or dereferenced by others while waiting for space
+			boolean waited = false;
+			while (true) {
+				if (inFlight.contains(fp)) return false;
+				for (int i = 0; i <= priority.ordinal(); i++) {
+					if (lanes[i].queued.contains(fp)) return false;
+				}
+				if ((waited) && (isDone.test(uri))) return false;
+				if (size < maxSize) break;
+
+				notFull.await();
+				waited = true;
+			}
+
+			// A copy left in a lower lane is no longer marked as queued there, and is skipped when reached
+			for (int i = priority.ordinal() + 1; i < lanes.length; i++) {
+				lanes[i].queued.remove(fp);
+			}
+
+			lanes[priority.ordinal()].add(uri, fp);
+			size++;
+			notEmpty.signal();
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Retrieves the next URI to dereference, marking it as in flight until it is completed
+	 * @return The next URI, or null if the queue is empty
+	 */
+	public Entry poll(){
+		lock.lock();
+		try {
+			return next();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Retrieves the next URI to dereference, waiting for one to be offered if the queue is empty
+	 * @return The next URI, or null if the queue is empty and closed
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public Entry take() throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			Entry entry;
+			while (((entry = next()) == null) && (!closed)) notEmpty.await();
+			return entry;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Marks an in flight URI as completed, so that it can be queued again
+	 * @param uri URI which was dereferenced
+	 */
+	public void complete(String uri){
+		lock.lock();
+		try {
+			inFlight.remove(uri);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Closes the queue, so that consumers waiting for URIs are released once the queue is empty
+	 */
+	public void close(){
+		lock.lock();
+		try {
+			closed = true;
+			notEmpty.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return Number of URIs queued, whether in memory or on disk
+	 */
+	public long size(){
+		lock.lock();
+		try {
+			return size;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @param priority Priority class
+	 * @return Number of URIs queued with the given priority
+	 */
+	public long size(FetchPriority priority){
+		lock.lock();
+		try {
+			return lanes[priority.ordinal()].size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public boolean isEmpty(){
+		return size() == 0;
+	}
+
+	/**
+	 * Drops all the queued URIs
+	 */
+	public void clear(){
+		lock.lock();
+		try {
+			for (Lane lane : lanes) lane.clear();
+			size = 0;
+			notFull.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private Entry next(){
+		for (int i = 0; i < lanes.length; i++) {
+			Lane lane = lanes[i];
+			String uri;
+			while ((uri = lane.poll()) != null) {
+				size--;
+				notFull.signal();
+
+				long fp = FingerprintSet.fingerprint(uri);
+				// a stale copy of a URI which was promoted to a higher lane
+				if (!lane.queued.remove(fp)) continue;
+
+				// the URI might have been dereferenced since it was queued
+				if (inFlight.contains(fp)) continue;
+				if (isDone.test(uri)) {
+					if (doneListener != null) doneListener.accept(uri);
+					continue;
+				}
+
+				inFlight.add(fp);
+				return new Entry(uri, FetchPriority.values()[i]);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * A URI taken from the queue, together with the priority it was queued with
+	 */
+	public static class Entry {
+		private final String uri;
+		private final FetchPriority priority;
+
+		Entry(String uri, FetchPriority priority){
+			this.uri = uri;
+			this.priority = priority;
+		}
+
+		public String getURI(){
+			return uri;
+		}
+
+		public FetchPriority getPriority(){
+			return priority;
+		}
+	}
+
+	/**
+	 * A FIFO of URIs spilling to disk beyond the memory capacity of the queue, with the fingerprints of the URIs
+	 * it holds which were not promoted to a higher lane
+	 */
+	private class Lane {
+		private final SpillableQueue fifo = new SpillableQueue(memoryCapacity);
+		private final FingerprintSet queued = new FingerprintSet();
+
+		void add(String uri, long fp){
+			fifo.add(uri);
+			queued.add(fp);
+		}
+
+		String poll(){
+			try {
+				return fifo.poll();
+			} catch (IOException e) {
+				long lost = fifo.size();
+				logger.error("Cannot read URI queue spilled to disk, {} URIs are lost. Error: {}", lost, e.getMessage());
+				size -= lost;
+				notFull.signalAll();
+				fifo.close();
+				return null;
+			}
+		}
+
+		long size(){
+			return fifo.size();
+		}
+
+		void clear(){
+			fifo.close();
+			queued.clear();
+		}
+	}
+}
@@ -0,0 +1,199 @@
+/**
+ *
+ */
+package io.github.luzzu.linkeddata.qualitymetrics.commons.http;
+
+/**
+ * Decides, in a linear scan and without allocating, whether a URI is a URL
+ * the HTTP retriever can fetch: an http or https URL with a well-formed
+ * host (a domain name with a non-numeric top-level label, an IPv4 address,
+ * or an IPv6 literal), an optional port, and a path, query and fragment
+ * free of characters which are not allowed in a URL.
+ *
+ * URIs of other schemes (e.g. urn: or mailto:), single-label hosts (e.g.
+ * localhost), blank or overlong labels, and labels starting or ending with
+ * a hyphen are rejected. Whether the top-level domain exists is not checked.
+ *
+ * The checker is stateless, and thus thread-safe.
+ */
+public class URLPlausibilityChecker {
+
+	private static final int MAX_LABEL_LENGTH = 63;
+	private static final int MAX_HOST_LENGTH = 253;
+	private static final int MAX_PORT = 65535;
+
+	// Character classes of RFC 3986, for the ASCII characters
+	private static final byte UNRESERVED = 1;
+	private static final byte SUB_DELIM = 2;
+	private static final byte PCHAR_EXTRA = 4; // ":" and "@"
+
+	private static final byte[] CLASSES = new byte[128];
+	static {
+		for (char c = 'a'; c <= 'z'; c++) CLASSES[c] = UNRESERVED;
+		for (char c = 'A'; c <= 'Z'; c++) CLASSES[c] = UNRESERVED;
+		for (char c = '0'; c <= '9'; c++) CLASSES[c] = UNRESERVED;
+		for (char c : "-._~".toCharArray()) CLASSES[c] = UNRESERVED;
+		for (char c : "!$&'()*+,;=".toCharArray()) CLASSES[c] = SUB_DELIM;
+		CLASSES[':'] = PCHAR_EXTRA;
+		CLASSES['@'] = PCHAR_EXTRA;
+	}
+
+	protected URLPlausibilityChecker(){}
+
+	/**
+	 * @param url URL to check
+	 * @return True if the URL can be fetched by the HTTP retriever
+	 */
+	public static boolean isPlausible(CharSequence url) {
+		if (url == null) return false;
+		int length = url.length();
+
+		// scheme: http:// or https://
+		if (!(regionMatchesIgnoreCase(url, 0, "http"))) return false;
+		int pos = ((length > 4) && ((url.charAt(4) == 's') || (url.charAt(4) == 'S'))) ? 5 : 4;
+		if (!(regionMatchesIgnoreCase(url, pos, "://"))) return false;
+		pos += 3;
+
+		// authority = [ userinfo "@" ] host [ ":" port ]
+		int authorityStart = pos;
+		int at = -1;
+		while ((pos < length) && (url.charAt(pos) != '/') && (url.charAt(pos) != '?') && (url.charAt(pos) != '#')) {
+			if (url.charAt(pos) == '@') {
+				if (at >= 0) return false;
+				at = pos;
+			}
+			pos++;
+		}
+		if ((at >= 0) && (!isValidUserinfo(url, authorityStart, at))) return false;
+		if (!isValidHostAndPort(url, (at >= 0) ? at + 1 : authorityStart, pos)) return false;
+
+		// path, query and fragment
+		boolean inFragment = false;
+		for (; pos < length; pos++) {
+			char c = url.charAt(pos);
+			if (c == '%') {
+				if (!isPercentEncoded(url, pos)) return false;
+				pos += 2;
+			} else if (c == '#') {
+				if (inFragment) return false;
+				inFragment = true;
+			} else if (c < 128) {
+				if ((c != '/') && (c != '?') && (CLASSES[c] == 0)) return false;
+			} else if ((Character.isISOControl(c)) || (Character.isSpaceChar(c))) {
+				// other (non-ASCII) characters are accepted as they are, as in an IRI
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isValidUserinfo(CharSequence url, int from, int to) {
+		for (int i = from; i < to; i++) {
+			char c = url.charAt(i);
+			if (c == '%') {
+				if (!isPercentEncoded(url, i)) return false;
+				i += 2;
+			} else if ((c >= 128) || (((CLASSES[c] & (UNRESERVED | SUB_DELIM)) == 0) && (c != ':'))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isValidHostAndPort(CharSequence url, int from, int to) {
+		if (from == to) return false;
+
+		if (url.charAt(from) == '[') {
+			// IPv6 literal
+			int close = from + 1;
+			while ((close < to) && (url.charAt(close) != ']')) {
+				char c = url.charAt(close);
+				if (!(isHexDigit(c) || (c == ':') || (c == '.'))) return false;
+				close++;
+			}
+			return (close < to) && (close > from + 1) && isValidPort(url, close + 1, to);
+		}
+
+		int hostEnd = from;
+		while ((hostEnd < to) && (url.charAt(hostEnd) != ':')) hostEnd++;
+		if ((!isValidPort(url, hostEnd, to)) || (hostEnd - from > MAX_HOST_LENGTH)) return false;
+
+		// A fully qualified domain name may end with a dot
+		int end = hostEnd;
+		boolean trailingDot = (end > from) && (url.charAt(end - 1) == '.');
+		if (trailingDot) end--;
+		if (end == from) return false;
+
+		int labels = 0, numericLabels = 0;
+		boolean octetsValid = true;
+		boolean labelNumeric = true, tldNumeric = false, tldStartsWithLetter = false;
+		int labelStart = from, octet = 0;
+		for (int i = from; i <= end; i++) {
+			char c = (i == end) ? '.' : url.charAt(i);
+			if (c == '.') {
+				int labelLength = i - labelStart;
+				if ((labelLength == 0) || (labelLength > MAX_LABEL_LENGTH)) return false;
+				if ((url.charAt(labelStart) == '-') || (url.charAt(i - 1) == '-')) return false;
+				labels++;
+				tldNumeric = labelNumeric;
+				tldStartsWithLetter = isAlpha(url.charAt(labelStart));
+				if (labelNumeric) {
+					numericLabels++;
+					if ((labelLength > 3) || (octet > 255)) octetsValid = false;
+				}
+				labelStart = i + 1;
+				labelNumeric = true;
+				octet = 0;
+			} else if (isDigit(c)) {
+				if (octet < 1000) octet = (octet * 10) + (c - '0');
+			} else if (isAlpha(c) || (c == '-')) {
+				labelNumeric = false;
+			} else {
+				return false;
+			}
+		}
+
+		// an IPv4 address, or a domain name whose top-level label starts with a letter
+		if (numericLabels == labels) return (labels == 4) && octetsValid && (!trailingDot);
+		return (labels >= 2) && (!tldNumeric) && tldStartsWithLetter;
+	}
+
+	private static boolean isValidPort(CharSequence url, int from, int to) {
+		if (from == to) return true;
+		if ((url.charAt(from) != ':') || (to - from - 1 > 5)) return false;
+
+		int port = 0;
+		for (int i = from + 1; i < to; i++) {
+			char c = url.charAt(i);
+			if (!isDigit(c)) return false;
+			port = (port * 10) + (c - '0');
+		}
+		return port <= MAX_PORT;
+	}
+
+	private static boolean isPercentEncoded(CharSequence url, int pos) {
+		return (pos + 2 < url.length()) && isHexDigit(url.charAt(pos + 1)) && isHexDigit(url.charAt(pos + 2));
+	}
+
+	private static boolean regionMatchesIgnoreCase(CharSequence s, int from, String expected) {
+		if (s.length() < from + expected.length()) return false;
+		for (int i = 0; i < expected.length(); i++) {
+			char c = s.charAt(from + i);
+			if ((c >= 'A') && (c <= 'Z')) c = (char) (c + ('a' - 'A'));
+			if (c != expected.charAt(i)) return false;
+		}
+		return true;
+	}
+
+	private static boolean isAlpha(char c) {
+		return ((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z'));
+	}
+
+	private static boolean isDigit(char c) {
+		return (c >= '0') && (c <= '9');
+	}
+
+	private static boolean isHexDigit(char c) {
+		return isDigit(c) || ((c >= 'a') && (c <= 'f')) || ((c >= 'A') && (c <= 'F'));
+	}
+}
@@ -0,0 +1,152 @@
+/**
+ *
+ */
+package io.github.luzzu.linkeddata.qualitymetrics.commons.sampling;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Estimates a proportion (e.g. the ratio of dereferenceable URIs)
+ * from outcomes observed one at a time, overall and per stratum, with
+ * Wilson score confidence intervals. Used for sequential early stopping:
+ * sampling can stop as soon as the intervals are tighter than a target,
+ * rather than once the whole sample is observed.
+ *
+ * This class is thread-safe.
+ *
+ */
+public class SequentialProportionEstimator {
+
+	/**
+	 * Minimum number of outcomes observed before the estimate is considered precise, whatever its interval
+	 */
+	public int MIN_OBSERVATIONS = 30;
+
+	private final double z;
+
+	private long observations = 0;
+	private long successes = 0;
+	private long expected = 0;
+
+	// stratum -> {observations, successes, expected observations}
+	private final Map<String, long[]> strata = new HashMap<String, long[]>();
+
+	/**
+	 * @param z Standard score of the confidence level (e.g. 1.96 for 95%, 2.576 for 99%)
+	 */
+	public SequentialProportionEstimator(double z){
+		this.z = z;
+	}
+
+	/**
+	 * Declares the number of outcomes of a stratum which can be observed at most, that is, its sample size
+	 * @param stratum Stratum
+	 * @param size Sample size of the stratum
+	 */
+	public synchronized void expect(String stratum, long size){
+		long[] counts = counts(stratum);
+		expected += size - counts[2];
+		counts[2] = size;
+	}
+
+	/**
+	 * Records an observed outcome
+	 * @param stratum Stratum of the outcome, or null if no strata are used
+	 * @param success Whether the outcome is a success
+	 */
+	public synchronized void record(String stratum, boolean success){
+		observations++;
+		if (success) successes++;
+
+		if (stratum != null) {
+			long[] counts = counts(stratum);
+			counts[0]++;
+			if (success) counts[1]++;
+		}
+	}
+
+	public synchronized long getObservations(){
+		return observations;
+	}
+
+	public synchronized long getSuccesses(){
+		return successes;
+	}
+
+	/**
+	 * @return The estimated proportion, NaN if nothing was observed
+	 */
+	public synchronized double getProportion(){
+		return (observations == 0) ? Double.NaN : (double) successes / (double) observations;
+	}
+
+	/**
+	 * @return The overall Wilson score interval, as {lower bound, upper bound}
+	 */
+	public synchronized double[] getInterval(){
+		return wilson(successes, observations, z);
+	}
+
+	/**
+	 * @param stratum Stratum
+	 * @return The Wilson score interval of the stratum, as {lower bound, upper bound}
+	 */
+	public synchronized double[] getInterval(String stratum){
+		long[] counts = strata.get(stratum);
+		if (counts == null) return new double[] { 0.0, 1.0 };
+		return wilson(counts[1], counts[0], z);
+	}
+
+	/**
+	 * Tells whether sampling can stop. That is the case when the overall interval is tighter than the target and,
+	 * for every stratum accounting for at least minStratumWeight of the expected sample, the interval of the stratum
+	 * is tighter than the target or all of its sample was observed
+	 * @param targetHalfWidth Target half-width of the intervals
+	 * @param minStratumWeight Minimum weight of the strata whose intervals must be tight, 1.0 to ignore strata
+	 * @return true if the estimate is precise enough
+	 */
+	public synchronized boolean isPrecise(double targetHalfWidth, double minStratumWeight){
+		if (observations < MIN_OBSERVATIONS) return false;
+		if (halfWidth(wilson(successes, observations, z)) > targetHalfWidth) return false;
+
+		for (long[] counts : strata.values()) {
+			boolean exhausted = counts[0] >= counts[2];
+			boolean weighty = (expected > 0) && (((double) counts[2] / (double) expected) >= minStratumWeight);
+			if (weighty && !exhausted && (halfWidth(wilson(counts[1], counts[0], z)) > targetHalfWidth)) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Computes the Wilson score interval of a proportion
+	 * @param successes Number of successes
+	 * @param n Number of observations
+	 * @param z Standard score of the confidence level
+	 * @return The interval, as {lower bound, upper bound}, or {0, 1} if nothing was observed
+	 */
+	public static double[] wilson(long successes, long n, double z){
+		if (n == 0) return new double[] { 0.0, 1.0 };
+
+		double p = (double) successes / (double) n;
+		double z2 = z * z;
+		double denominator = 1.0 + (z2 / n);
+		double centre = (p + (z2 / (2.0 * n))) / denominator;
+		double margin = (z * Math.sqrt(((p * (1.0 - p)) / n) + (z2 / (4.0 * n * n)))) / denominator;
+
+		return new double[] { Math.max(0.0, centre - margin), Math.min(1.0, centre + margin) };
+	}
+
+	private static double halfWidth(double[] interval){
+		return (interval[1] - interval[0]) / 2.0;
+	}
+
+	private long[] counts(String stratum){
+		long[] counts = strata.get(stratum);
+		if (counts == null) {
+			counts = new long[3];
+			strata.put(stratum, counts);
+		}
+		return counts;
+	}
+}
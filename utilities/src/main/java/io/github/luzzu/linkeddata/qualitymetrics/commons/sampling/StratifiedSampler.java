@@ -0,0 +1,333 @@
+/**
+ *
+ */
+package io.github.luzzu.linkeddata.qualitymetrics.commons.sampling;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Samples a stream of items partitioned into strata (e.g. URIs by their
+ * top-level or pay-level domain), within a global memory budget.
+ *
+ * Every stratum keeps a count of the items added to it (its population)
+ * and a uniform random sample (a reservoir) of its distinct items. The
+ * budget is shared among the strata in proportion to their populations,
+ * so that an arriving item is retained with a probability of roughly
+ * capacity / total population, whatever its stratum. When the retained
+ * items exceed the capacity, every reservoir is trimmed (at random) to
+ * its share. Strata accounting for less than 1 / capacity of the
+ * population are counted but might retain no items.
+ *
+ * Samples are then drawn from the reservoirs with proportional or
+ * Neyman allocation.
+ *
+ * This class is thread-safe.
+ *
+ */
+public class StratifiedSampler<T> {
+
+	/**
+	 * How a sample size is allocated across strata
+	 */
+	public enum Allocation {
+		/**
+		 * In proportion to the population of the strata
+		 */
+		PROPORTIONAL,
+		/**
+		 * In proportion to the population of the strata times their standard deviation
+		 */
+		NEYMAN
+	}
+
+	/**
+	 * Fraction of the capacity the reservoirs are trimmed to when the capacity is exceeded,
+	 * leaving room for further items before they have to be trimmed again
+	 */
+	public double REBALANCE_HEADROOM = 0.9;
+
+	private final int capacity;
+	private final int stratumCapacity;
+
+	private final Map<String, Stratum<T>> strata = new ConcurrentHashMap<String, Stratum<T>>();
+	private final AtomicLong population = new AtomicLong(0);
+	private final AtomicInteger retained = new AtomicInteger(0);
+	private final ReentrantLock rebalancing = new ReentrantLock();
+
+	/**
+	 * @param capacity Maximum number of items retained over all strata
+	 */
+	public StratifiedSampler(int capacity) {
+		this(capacity, capacity);
+	}
+
+	/**
+	 * @param capacity Maximum number of items retained over all strata
+	 * @param stratumCapacity Maximum number of items retained for a single stratum
+	 */
+	public StratifiedSampler(int capacity, int stratumCapacity) {
+		this.capacity = Math.max(1, capacity);
+		this.stratumCapacity = Math.max(1, Math.min(stratumCapacity, this.capacity));
+	}
+
+	/**
+	 * Adds an item to a stratum
+	 * @param key Stratum of the item
+	 * @param item Item to be added
+	 * @return True if the item was retained, false otherwise (either because it is already retained or was discarded)
+	 */
+	public boolean add(String key, T item) {
+		Stratum<T> stratum = strata.get(key);
+		if (stratum == null) stratum = strata.computeIfAbsent(key, k -> new Stratum<T>());
+
+		long total = population.incrementAndGet();
+		boolean added = false;
+
+		synchronized (stratum) {
+			stratum.population++;
+			if (!stratum.positions.containsKey(item)) {
+				int share = share(stratum.population, total, capacity);
+				// Algorithm R, with the share of the stratum as the size of its reservoir
+				boolean enters = (stratum.population <= share) || (ThreadLocalRandom.current().nextLong(stratum.population) < share);
+				if (enters) {
+					if (stratum.items.size() < share) {
+						stratum.append(item);
+						retained.incrementAndGet();
+					} else {
+						stratum.replace(ThreadLocalRandom.current().nextInt(stratum.items.size()), item);
+					}
+					added = true;
+				}
+			}
+		}
+
+		if (retained.get() > capacity) rebalance();
+		return added;
+	}
+
+	/**
+	 * @return Number of items added, over all strata
+	 */
+	public long getPopulation() {
+		return population.get();
+	}
+
+	/**
+	 * @param key Stratum
+	 * @return Number of items added to the stratum
+	 */
+	public long getPopulation(String key) {
+		Stratum<T> stratum = strata.get(key);
+		if (stratum == null) return 0;
+		synchronized (stratum) {
+			return stratum.population;
+		}
+	}
+
+	/**
+	 * @return Number of items currently retained, over all strata
+	 */
+	public int getRetained() {
+		return retained.get();
+	}
+
+	/**
+	 * @return The strata an item was added to
+	 */
+	public Set<String> getStrata() {
+		return Collections.unmodifiableSet(strata.keySet());
+	}
+
+	/**
+	 * @param key Stratum
+	 * @return The items retained for the stratum
+	 */
+	public List<T> getItems(String key) {
+		Stratum<T> stratum = strata.get(key);
+		if (stratum == null) return new ArrayList<T>();
+		synchronized (stratum) {
+			return new ArrayList<T>(stratum.items);
+		}
+	}
+
+	/**
+	 * @return The items retained, over all strata
+	 */
+	public List<T> getItems() {
+		List<T> items = new ArrayList<T>(retained.get());
+		for (Stratum<T> stratum : strata.values()) {
+			synchronized (stratum) {
+				items.addAll(stratum.items);
+			}
+		}
+		return items;
+	}
+
+	/**
+	 * Draws a sample with proportional allocation
+	 * @param size Sample size
+	 * @return The sample, which is smaller than the requested size if fewer items are retained
+	 */
+	public List<T> sample(int size) {
+		return sample(size, Allocation.PROPORTIONAL, null);
+	}
+
+	/**
+	 * Draws a sample. The share of a stratum which does not retain enough items is reallocated to the others
+	 * @param size Sample size
+	 * @param allocation Allocation of the sample size across strata
+	 * @param deviation Standard deviation of each stratum, required by Neyman allocation (e.g. sqrt(p(1-p)) for a proportion p);
+	 * if null, all strata are assumed to have the same deviation
+	 * @return The sample, which is smaller than the requested size if fewer items are retained
+	 */
+	public List<T> sample(int size, Allocation allocation, ToDoubleFunction<String> deviation) {
+		Map<String, List<T>> items = new LinkedHashMap<String, List<T>>();
+		Map<String, Double> weights = new HashMap<String, Double>();
+		for (Map.Entry<String, Stratum<T>> entry : strata.entrySet()) {
+			Stratum<T> stratum = entry.getValue();
+			synchronized (stratum) {
+				if (stratum.items.isEmpty()) continue;
+				items.put(entry.getKey(), new ArrayList<T>(stratum.items));
+				weights.put(entry.getKey(), (double) stratum.population);
+			}
+		}
+
+		if ((allocation == Allocation.NEYMAN) && (deviation != null)) {
+			double total = 0.0;
+			Map<String, Double> neyman = new HashMap<String, Double>();
+			for (Map.Entry<String, Double> weight : weights.entrySet()) {
+				double w = weight.getValue() * Math.max(0.0, deviation.applyAsDouble(weight.getKey()));
+				neyman.put(weight.getKey(), w);
+				total += w;
+			}
+			// If no stratum deviates, every allocation is as good as the proportional one
+			if (total > 0.0) weights = neyman;
+		}
+
+		Map<String, Integer> allocated = allocate(size, items, weights);
+
+		List<T> sample = new ArrayList<T>(size);
+		for (Map.Entry<String, Integer> entry : allocated.entrySet()) {
+			List<T> candidates = items.get(entry.getKey());
+			int n = entry.getValue();
+			// Partial Fisher-Yates shuffle, the first n candidates are a uniform sample of the retained items
+			for (int i = 0; i < n; i++) {
+				Collections.swap(candidates, i, i + ThreadLocalRandom.current().nextInt(candidates.size() - i));
+				sample.add(candidates.get(i));
+			}
+		}
+		return sample;
+	}
+
+	private static <T> Map<String, Integer> allocate(int size, Map<String, List<T>> items, Map<String, Double> weights) {
+		Map<String, Integer> allocated = new HashMap<String, Integer>();
+		List<String> open = new ArrayList<String>();
+		int available = 0;
+		for (Map.Entry<String, List<T>> entry : items.entrySet()) {
+			allocated.put(entry.getKey(), 0);
+			if (weights.get(entry.getKey()) > 0.0) open.add(entry.getKey());
+			available += entry.getValue().size();
+		}
+
+		int remaining = Math.min(size, available);
+		while ((remaining > 0) && (!open.isEmpty())) {
+			double total = 0.0;
+			for (String key : open) total += weights.get(key);
+
+			int given = 0;
+			for (String key : open) {
+				int spare = items.get(key).size() - allocated.get(key);
+				int share = Math.min(spare, (int) Math.floor(remaining * (weights.get(key) / total)));
+				allocated.put(key, allocated.get(key) + share);
+				given += share;
+			}
+
+			if (given == 0) {
+				// Rounding left every share at 0, the heaviest strata take one item each
+				open.sort((a, b) -> Double.compare(weights.get(b), weights.get(a)));
+				for (int i = 0; (i < open.size()) && (given < remaining); i++) {
+					allocated.put(open.get(i), allocated.get(open.get(i)) + 1);
+					given++;
+				}
+			}
+
+			remaining -= given;
+			open.removeIf(key -> allocated.get(key) >= items.get(key).size());
+		}
+		return allocated;
+	}
+
+	/**
+	 * Trims every reservoir to its share of the capacity (less the headroom). Only one thread rebalances at a time,
+	 * the others carry on adding items
+	 */
+	private void rebalance() {
+		if (!rebalancing.tryLock()) return;
+		try {
+			long total = population.get();
+			int budget = (int) Math.max(1, Math.floor(capacity * REBALANCE_HEADROOM));
+			for (Stratum<T> stratum : strata.values()) {
+				synchronized (stratum) {
+					int share = share(stratum.population, total, budget);
+					int removed = 0;
+					while (stratum.items.size() > share) {
+						stratum.remove(ThreadLocalRandom.current().nextInt(stratum.items.size()));
+						removed++;
+					}
+					if (removed > 0) retained.addAndGet(-removed);
+				}
+			}
+		} finally {
+			rebalancing.unlock();
+		}
+	}
+
+	private int share(long stratumPopulation, long total, int budget) {
+		if (total <= 0) return stratumCapacity;
+		return (int) Math.min(stratumCapacity, (long) Math.floor((double) budget * ((double) stratumPopulation / (double) total)));
+	}
+
+	/**
+	 * The population count and reservoir of a stratum, indexed so that lookups and removals are O(1).
+	 * Guarded by its own monitor
+	 */
+	private static class Stratum<T> {
+		private long population = 0;
+		private final List<T> items = new ArrayList<T>();
+		private final Map<T, Integer> positions = new HashMap<T, Integer>();
+
+		private void append(T item) {
+			positions.put(item, items.size());
+			items.add(item);
+		}
+
+		private void replace(int position, T item) {
+			positions.remove(items.get(position));
+			items.set(position, item);
+			positions.put(item, position);
+		}
+
+		private void remove(int position) {
+			T last = items.remove(items.size() - 1);
+			if (position < items.size()) {
+				positions.remove(items.get(position));
+				items.set(position, last);
+				positions.put(last, position);
+			} else {
+				positions.remove(last);
+			}
+		}
+	}
+}
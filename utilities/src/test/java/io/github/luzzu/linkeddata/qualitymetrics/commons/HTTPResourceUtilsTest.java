@@ -0,0 +1,52 @@
+package io.github.luzzu.linkeddata.qualitymetrics.commons;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.github.luzzu.linkeddata.qualitymetrics.commons.cache.ParsedContentCache;
+import io.github.luzzu.qualitymetrics.commons.cache.CachedHTTPResource;
+
+public class HTTPResourceUtilsTest extends Assert {
+
+	@After
+	public void tearDown() {
+		ParsedContentCache.getInstance().clear();
+	}
+
+	@Test
+	public void misreportedContentIsSniffedFromItsPrefix() {
+		// Turtle served as text/html: it does not parse as declared, thus the resource has no content
+		CachedHTTPResource resource = new CachedHTTPResource();
+		resource.setUri("http://example.org/data.rdf");
+		ParsedContentCache.getInstance().putPrefix(resource.getUri(), "@prefix ex: <http://example.org/> .\nex:s ex:p \"o\" .");
+
+		assertNull(resource.getContent());
+		// rather than application/rdf+xml, as the extension of the URI would suggest
+		assertEquals(LinkedDataContent.contentTypeTurtle, HTTPResourceUtils.determineActualContentType(resource));
+	}
+
+	@Test
+	public void truncatedPrefixIsSniffed() {
+		StringBuilder nTriples = new StringBuilder();
+		while (nTriples.length() <= RDFFormatSniffer.SNIFF_LENGTH) {
+			nTriples.append("<http://example.org/s> <http://example.org/p> \"a rather long literal value\" .\n");
+		}
+
+		CachedHTTPResource resource = new CachedHTTPResource();
+		resource.setUri("http://example.org/dump");
+		ParsedContentCache.getInstance().putPrefix(resource.getUri(), nTriples.substring(0, RDFFormatSniffer.SNIFF_LENGTH + 1));
+
+		assertEquals(LinkedDataContent.contentTypeNTriples, HTTPResourceUtils.determineActualContentType(resource));
+	}
+
+	@Test
+	public void extensionIsGuessedWithoutContent() {
+		CachedHTTPResource resource = new CachedHTTPResource();
+		resource.setUri("http://example.org/data.rdf");
+		assertEquals(LinkedDataContent.contentTypeRDFXML, HTTPResourceUtils.determineActualContentType(resource));
+
+		resource.setUri("http://example.org/data");
+		assertEquals("Unknown", HTTPResourceUtils.determineActualContentType(resource));
+	}
+}
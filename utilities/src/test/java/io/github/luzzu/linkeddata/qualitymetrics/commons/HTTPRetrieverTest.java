@@ -0,0 +1,70 @@
+package io.github.luzzu.linkeddata.qualitymetrics.commons;
+
+import java.net.ServerSocket;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.github.luzzu.qualitymetrics.commons.cache.CachedHTTPResource;
+
+public class HTTPRetrieverTest extends Assert {
+
+	private String previousProxy;
+	private Integer previousProxyPort;
+
+	@Before
+	public void setUp() throws Exception {
+		previousProxy = HTTPRetriever.getWebProxy();
+		previousProxyPort = HTTPRetriever.getWebProxyPort();
+
+		// Every request fails, as nothing listens to the proxy port
+		int port;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		HTTPRetriever.setWebProxy("127.0.0.1");
+		HTTPRetriever.setWebProxyPort(port);
+	}
+
+	@After
+	public void tearDown() {
+		HTTPRetriever.setWebProxy(previousProxy);
+		if (previousProxyPort != null) HTTPRetriever.setWebProxyPort(previousProxyPort);
+	}
+
+	@Test
+	public void domainFailingRepeatedlyIsNoLongerRequested() throws Exception {
+		Map<String, String> reasons = new ConcurrentHashMap<String, String>();
+		CountDownLatch failing = new CountDownLatch(4);
+		CountDownLatch skipped = new CountDownLatch(5);
+
+		HTTPRetriever retriever = new HTTPRetriever();
+		retriever.addRetrievalListener((resource, latency) -> {
+			reasons.put(resource.getUri(), reason(resource));
+			failing.countDown();
+			skipped.countDown();
+		});
+		retriever.startStreaming(false);
+		try {
+			for (int i = 0; i < 4; i++) retriever.addResourceToQueue("http://failing.example.org/resource/" + i);
+			assertTrue(failing.await(30, TimeUnit.SECONDS));
+			assertFalse(reasons.get("http://failing.example.org/resource/0").contains("fail-safe"));
+
+			retriever.addResourceToQueue("http://failing.example.org/resource/4");
+			assertTrue(skipped.await(30, TimeUnit.SECONDS));
+			assertTrue(reasons.get("http://failing.example.org/resource/4").contains("fail-safe"));
+		} finally {
+			retriever.stopStreaming();
+		}
+	}
+
+	private static String reason(CachedHTTPResource resource) {
+		return resource.getStatusLines().get(resource.getStatusLines().size() - 1).getReasonPhrase();
+	}
+}
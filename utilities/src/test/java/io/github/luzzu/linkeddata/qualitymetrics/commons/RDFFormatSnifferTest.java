@@ -0,0 +1,68 @@
+package io.github.luzzu.linkeddata.qualitymetrics.commons;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.github.luzzu.linkeddata.qualitymetrics.commons.RDFFormatSniffer.Format;
+
+public class RDFFormatSnifferTest extends Assert {
+
+	@Test
+	public void rdfXml() {
+		assertEquals(Format.RDFXML, RDFFormatSniffer.sniff("<?xml version=\"1.0\"?>\n<rdf:RDF xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\">\n</rdf:RDF>"));
+	}
+
+	@Test
+	public void turtle() {
+		assertEquals(Format.TURTLE, RDFFormatSniffer.sniff("@prefix ex: <http://example.org/> .\nex:s ex:p \"o\" ."));
+		assertEquals(Format.TURTLE, RDFFormatSniffer.sniff("PREFIX ex: <http://example.org/>\nex:s ex:p \"o\" ."));
+		assertEquals(Format.TURTLE, RDFFormatSniffer.sniff("<http://example.org/s> a <http://example.org/C> ;\n\t<http://example.org/p> 1 ."));
+	}
+
+	@Test
+	public void leadingCommentsAreSkipped() {
+		assertEquals(Format.TURTLE, RDFFormatSniffer.sniff("# Generated\n\n# by hand\n@prefix ex: <http://example.org/> .\nex:s ex:p \"o\" ."));
+		assertEquals(Format.TURTLE, RDFFormatSniffer.sniff("# Generated\nex:s ex:p ex:o ;\n\tex:q \"o\" ."));
+		assertEquals(Format.TRIG, RDFFormatSniffer.sniff("# Generated\nPREFIX ex: <http://example.org/>\nex:g { ex:s ex:p ex:o }"));
+		assertEquals(Format.UNKNOWN, RDFFormatSniffer.sniff("# only a comment\n# and another"));
+	}
+
+	@Test
+	public void nTriplesAndNQuads() {
+		assertEquals(Format.NTRIPLES, RDFFormatSniffer.sniff("# comment\n<http://example.org/s> <http://example.org/p> \"o\"@en .\n_:b1 <http://example.org/p> _:b2 .\n"));
+		assertEquals(Format.NQUADS, RDFFormatSniffer.sniff("<http://example.org/s> <http://example.org/p> \"1\"^^<http://www.w3.org/2001/XMLSchema#int> <http://example.org/g> .\n"));
+	}
+
+	@Test
+	public void trig() {
+		assertEquals(Format.TRIG, RDFFormatSniffer.sniff("@prefix ex: <http://example.org/> .\nex:g { ex:s ex:p \"not a {\" . }"));
+		assertEquals(Format.TURTLE, RDFFormatSniffer.sniff("@prefix ex: <http://example.org/> .\nex:s ex:p \"not a { graph\" ."));
+	}
+
+	@Test
+	public void jsonLd() {
+		assertEquals(Format.JSONLD, RDFFormatSniffer.sniff("{ \"@context\": \"http://schema.org/\", \"@type\": \"Person\" }"));
+		assertEquals(Format.UNKNOWN, RDFFormatSniffer.sniff("[ { \"name\": \"not linked data\" } ]"));
+	}
+
+	@Test
+	public void rdfaAndHtml() {
+		assertEquals(Format.RDFA, RDFFormatSniffer.sniff("<!DOCTYPE html>\n<html><body><div vocab=\"http://schema.org/\" typeof=\"Person\"></div></body></html>"));
+		assertEquals(Format.HTML, RDFFormatSniffer.sniff("<!DOCTYPE html>\n<html><body><p>Hello</p></body></html>"));
+	}
+
+	@Test
+	public void byteOrderMarkIsSkipped() {
+		byte[] body = "\uFEFF<http://example.org/s> <http://example.org/p> <http://example.org/o> .".getBytes(StandardCharsets.UTF_8);
+		assertEquals(Format.NTRIPLES, RDFFormatSniffer.sniff(body, null));
+	}
+
+	@Test
+	public void plainTextIsNotRdf() {
+		assertEquals(Format.UNKNOWN, RDFFormatSniffer.sniff("Hello world, this is plain text."));
+		assertEquals(Format.UNKNOWN, RDFFormatSniffer.sniff(""));
+		assertFalse(Format.HTML.isRDF());
+	}
+}
@@ -0,0 +1,121 @@
+package io.github.luzzu.linkeddata.qualitymetrics.commons;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TimeLimitedExecutorTest extends Assert {
+
+	@Test
+	public void queuedOperationsTimeOutWhilstWaiting() throws Exception {
+		TimeLimitedExecutor executor = new TimeLimitedExecutor();
+		executor.WORKER_THREADS = 1;
+
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<Boolean> busy = executor.submit(() -> release.await(5, TimeUnit.SECONDS), 5, TimeUnit.SECONDS);
+		// waits for the only thread far longer than its own time limit
+		AtomicBoolean ran = new AtomicBoolean(false);
+		CompletableFuture<Boolean> queued = executor.submit(() -> ran.getAndSet(true), 100, TimeUnit.MILLISECONDS);
+
+		try {
+			queued.get(5, TimeUnit.SECONDS);
+			fail("The operation should have timed out");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof TimeoutException);
+		}
+
+		release.countDown();
+		assertTrue(busy.get(5, TimeUnit.SECONDS));
+		executor.submit(() -> true, 5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+		assertFalse(ran.get());
+	}
+
+	@Test
+	public void overrunningOperationsAreInterrupted() throws Exception {
+		TimeLimitedExecutor executor = new TimeLimitedExecutor();
+
+		CountDownLatch interrupted = new CountDownLatch(1);
+		CompletableFuture<Void> overrunning = executor.submit(() -> {
+			try {
+				Thread.sleep(10000);
+			} catch (InterruptedException e) {
+				interrupted.countDown();
+			}
+			return null;
+		}, 100, TimeUnit.MILLISECONDS);
+
+		try {
+			overrunning.get(5, TimeUnit.SECONDS);
+			fail("The operation should have timed out");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof TimeoutException);
+		}
+		assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void operationsCancelledWhilstQueuedNeverRun() throws Exception {
+		TimeLimitedExecutor executor = new TimeLimitedExecutor();
+		executor.WORKER_THREADS = 1;
+
+		CountDownLatch release = new CountDownLatch(1);
+		executor.submit(() -> release.await(5, TimeUnit.SECONDS), 5, TimeUnit.SECONDS);
+
+		AtomicBoolean ran = new AtomicBoolean(false);
+		CompletableFuture<Boolean> queued = executor.submit(() -> ran.getAndSet(true), 5, TimeUnit.SECONDS);
+		assertTrue(queued.cancel(true));
+
+		release.countDown();
+		executor.submit(() -> true, 5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+		assertFalse(ran.get());
+	}
+
+	@Test
+	public void awaitingTheStartOfAnOperation() throws Exception {
+		TimeLimitedExecutor executor = new TimeLimitedExecutor();
+
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicBoolean started = new AtomicBoolean(false);
+		Future<?> running = executor.submitAndAwaitStart(() -> {
+			started.set(true);
+			try {
+				release.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}, 5, TimeUnit.SECONDS);
+
+		assertFalse(running.isDone());
+		release.countDown();
+		running.get(5, TimeUnit.SECONDS);
+		assertTrue(started.get());
+	}
+
+	@Test
+	public void awaitingTheStartOfAnOperationGivesUp() throws Exception {
+		TimeLimitedExecutor executor = new TimeLimitedExecutor();
+		executor.WORKER_THREADS = 1;
+
+		CountDownLatch release = new CountDownLatch(1);
+		executor.submit(() -> release.await(5, TimeUnit.SECONDS), 5, TimeUnit.SECONDS);
+
+		AtomicBoolean ran = new AtomicBoolean(false);
+		try {
+			executor.submitAndAwaitStart(() -> ran.set(true), 100, TimeUnit.MILLISECONDS);
+			fail("The operation should not have started");
+		} catch (TimeoutException e) {
+			// cancelled, it never runs
+		}
+
+		release.countDown();
+		executor.submit(() -> true, 5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+		assertFalse(ran.get());
+	}
+}
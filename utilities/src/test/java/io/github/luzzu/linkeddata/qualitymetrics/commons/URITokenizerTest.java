@@ -0,0 +1,73 @@
+package io.github.luzzu.linkeddata.qualitymetrics.commons;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class URITokenizerTest extends Assert {
+
+	@Test
+	public void componentsAreFoundInOnePass() {
+		URITokenizer tokens = new URITokenizer().tokenize("https://user@www.BBC.co.uk:8080/news/world?q=a/b#top");
+
+		assertTrue(tokens.hasAuthority());
+		assertEquals("https", tokens.getScheme());
+		assertEquals("https://user@www.BBC.co.uk:8080", tokens.getOrigin());
+		assertEquals("www.BBC.co.uk", tokens.getHost());
+		assertEquals("co.uk", tokens.getPublicSuffix());
+		assertEquals("BBC.co.uk", tokens.getPLD());
+		assertEquals("/news/world", tokens.getPath());
+		assertEquals("q=a/b#top", "https://user@www.BBC.co.uk:8080/news/world?q=a/b#top".substring(tokens.getQueryStart()));
+		assertEquals("top", "https://user@www.BBC.co.uk:8080/news/world?q=a/b#top".substring(tokens.getFragmentStart()));
+	}
+
+	@Test
+	public void publicSuffixRulesAreApplied() {
+		URITokenizer tokens = new URITokenizer();
+
+		assertEquals("dbpedia.org", tokens.tokenize("http://dbpedia.org/resource/Malta").getPLD());
+		assertEquals("luzzu.github.io", tokens.tokenize("http://luzzu.github.io/").getPLD());
+		// wildcard, and exception to the wildcard
+		assertEquals("foo.bar.ck", tokens.tokenize("http://www.foo.bar.ck/").getPLD());
+		assertEquals("www.ck", tokens.tokenize("http://www.ck/").getPLD());
+		// a host missing from the list is taken to end with its public suffix
+		assertEquals("example.unknowntld", tokens.tokenize("http://a.example.unknowntld./").getPLD());
+		// a public suffix on its own has no PLD
+		assertFalse(tokens.tokenize("http://co.uk/").hasPLD());
+		assertEquals("co.uk", tokens.getPublicSuffix());
+	}
+
+	@Test
+	public void addressesAndURIsWithoutAuthorityHaveNoPLD() {
+		URITokenizer tokens = new URITokenizer();
+
+		assertEquals("127.0.0.1", tokens.tokenize("http://127.0.0.1:8890/sparql").getHost());
+		assertFalse(tokens.hasPLD());
+		assertEquals("[::1]", tokens.tokenize("http://[::1]:80/").getHost());
+		assertFalse(tokens.hasPLD());
+
+		tokens.tokenize("urn:isbn:0451450523");
+		assertFalse(tokens.hasAuthority());
+		assertEquals("urn", tokens.getScheme());
+		assertEquals("isbn:0451450523", tokens.getPath());
+		assertNull(tokens.getHost());
+
+		tokens.tokenize("dbpedia.org/resource/Malta");
+		assertFalse(tokens.hasAuthority());
+		assertNull(tokens.getScheme());
+	}
+
+	@Test
+	public void utilitiesShareTheTokenizer() {
+		assertEquals("http://bbc.co.uk", HTTPRetriever.extractTopLevelDomainURI("http://bbc.co.uk/news"));
+		assertEquals("http://bbc.co.uk", HTTPRetriever.extractTopLevelDomainURI("http://bbc.co.uk"));
+		assertNull(HTTPRetriever.extractTopLevelDomainURI("urn:isbn:0451450523"));
+		assertEquals("bbc.co.uk", HTTPRetriever.extractFQDN("http://bbc.co.uk:80/news"));
+
+		assertEquals("bbc.co.uk/news", Utils.removeProtocol("http://bbc.co.uk/news"));
+		assertEquals("bbc.co.uk/news", Utils.removeProtocol("bbc.co.uk/news"));
+
+		assertEquals("http://bbc.co.uk/news", Utils.extractDatasetNS("http://bbc.co.uk/news/world"));
+		assertEquals("http://bbc.co.uk/news", Utils.extractDatasetNS("http://bbc.co.uk/news#world"));
+		assertEquals("http://bbc.co.uk", Utils.extractDatasetNS("http://bbc.co.uk"));
+	}
+}
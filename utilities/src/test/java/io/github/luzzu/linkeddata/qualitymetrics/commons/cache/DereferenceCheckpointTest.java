@@ -0,0 +1,143 @@
+package io.github.luzzu.linkeddata.qualitymetrics.commons.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.github.luzzu.linkeddata.qualitymetrics.commons.HTTPRetriever;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.http.FetchPriority;
+import io.github.luzzu.qualitymetrics.commons.cache.CachedHTTPResource;
+import io.github.luzzu.qualitymetrics.commons.datatypes.HTTPDereference.StatusCode;
+
+public class DereferenceCheckpointTest extends Assert {
+
+	@Test
+	public void closedRunIsResumed() throws IOException {
+		File directory = Files.createTempDirectory("checkpoint-test").toFile();
+		try {
+			DereferenceCheckpoint checkpoint = new DereferenceCheckpoint(directory, "http://example.org/dataset");
+			checkpoint.queued("http://example.org/a", FetchPriority.SPECULATIVE_PREFETCH);
+			checkpoint.queued("http://example.org/b", FetchPriority.SPECULATIVE_PREFETCH);
+			checkpoint.queued("http://example.org/b", FetchPriority.NEEDED_FOR_METRIC);
+			checkpoint.queued("http://example.org/c", FetchPriority.NEEDED_FOR_METRIC);
+
+			CachedHTTPResource resource = new CachedHTTPResource();
+			resource.setUri("http://example.org/c");
+			resource.setDereferencabilityStatusCode(StatusCode.BAD);
+			checkpoint.completed(resource);
+			checkpoint.close();
+
+			checkpoint = new DereferenceCheckpoint(directory, "http://example.org/dataset");
+			assertTrue(checkpoint.isCompleted("http://example.org/c"));
+			assertEquals(StatusCode.BAD, checkpoint.getResource("http://example.org/c").getDereferencabilityStatusCode());
+			assertNull(checkpoint.getResource("http://example.org/a"));
+
+			Map<String, FetchPriority> pending = checkpoint.getPending();
+			assertEquals(2, pending.size());
+			assertEquals("http://example.org/b", pending.keySet().iterator().next());
+			assertEquals(FetchPriority.NEEDED_FOR_METRIC, pending.get("http://example.org/b"));
+			assertEquals(FetchPriority.SPECULATIVE_PREFETCH, pending.get("http://example.org/a"));
+
+			// completed URIs are not pending again
+			checkpoint.queued("http://example.org/c", FetchPriority.NEEDED_FOR_METRIC);
+			assertEquals(2, checkpoint.getPendingCount());
+
+			checkpoint.discard();
+			assertEquals(0, directory.list().length);
+		} finally {
+			FileUtils.deleteQuietly(directory);
+		}
+	}
+
+	@Test
+	public void bufferedResourcesAreComplete() throws IOException {
+		File directory = Files.createTempDirectory("checkpoint-test").toFile();
+		try {
+			DereferenceCheckpoint checkpoint = new DereferenceCheckpoint(directory, "http://example.org/dataset");
+			checkpoint.WRITE_BATCH = 100;
+			checkpoint.queued("http://example.org/a", FetchPriority.NEEDED_FOR_METRIC);
+			checkpoint.queued("http://example.org/b", FetchPriority.NEEDED_FOR_METRIC);
+
+			CachedHTTPResource resource = new CachedHTTPResource();
+			resource.setUri("http://example.org/a");
+			checkpoint.completed(resource);
+
+			// not written yet
+			assertTrue(checkpoint.isCompleted("http://example.org/a"));
+			assertSame(resource, checkpoint.getResource("http://example.org/a"));
+			checkpoint.queued("http://example.org/a", FetchPriority.NEEDED_FOR_METRIC);
+			assertEquals(1, checkpoint.getPendingCount());
+			assertEquals(1, checkpoint.getCompletedCount());
+			checkpoint.discard();
+		} finally {
+			FileUtils.deleteQuietly(directory);
+		}
+	}
+
+	@Test
+	public void skippedURIsAreNoLongerPending() throws IOException {
+		File directory = Files.createTempDirectory("checkpoint-test").toFile();
+		try {
+			DereferenceCheckpoint checkpoint = new DereferenceCheckpoint(directory, "http://example.org/dataset");
+			checkpoint.queued("http://example.org/a", FetchPriority.NEEDED_FOR_METRIC);
+			checkpoint.queued("http://example.org/b", FetchPriority.NEEDED_FOR_METRIC);
+			checkpoint.skipped("http://example.org/a");
+			checkpoint.close();
+
+			checkpoint = new DereferenceCheckpoint(directory, "http://example.org/dataset");
+			assertEquals(1, checkpoint.getPendingCount());
+			assertFalse(checkpoint.isCompleted("http://example.org/a"));
+			checkpoint.discard();
+		} finally {
+			FileUtils.deleteQuietly(directory);
+		}
+	}
+
+	@Test
+	public void onlyTheURIsQueuedAreCountedAsResumed() throws IOException {
+		File directory = Files.createTempDirectory("checkpoint-test").toFile();
+		LinkedDataMetricsCacheManager dcmgr = LinkedDataMetricsCacheManager.getInstance();
+		try {
+			DereferenceCheckpoint checkpoint = new DereferenceCheckpoint(directory, "http://example.org/dataset");
+			checkpoint.queued("http://example.org/a", FetchPriority.NEEDED_FOR_METRIC);
+			checkpoint.queued("http://example.org/b", FetchPriority.SPECULATIVE_PREFETCH);
+			checkpoint.close();
+
+			checkpoint = new DereferenceCheckpoint(directory, "http://example.org/dataset");
+			dcmgr.setCheckpoint(checkpoint);
+
+			// not started, thus the URIs stay in its queue
+			HTTPRetriever retriever = new HTTPRetriever();
+			retriever.addResourceToQueue("http://example.org/a", FetchPriority.NEEDED_FOR_METRIC);
+			assertEquals(1, retriever.resumeFromCheckpoint());
+			assertEquals(0, retriever.resumeFromCheckpoint());
+
+			dcmgr.setCheckpoint(null);
+			checkpoint.discard();
+		} finally {
+			dcmgr.setCheckpoint(null);
+			FileUtils.deleteQuietly(directory);
+		}
+	}
+
+	@Test
+	public void runsAreKeptApart() throws IOException {
+		File directory = Files.createTempDirectory("checkpoint-test").toFile();
+		try {
+			DereferenceCheckpoint first = new DereferenceCheckpoint(directory, "http://example.org/first");
+			first.queued("http://example.org/a", FetchPriority.NEEDED_FOR_METRIC);
+			first.close();
+
+			DereferenceCheckpoint second = new DereferenceCheckpoint(directory, "http://example.org/second");
+			assertEquals(0, second.getPendingCount());
+			second.discard();
+		} finally {
+			FileUtils.deleteQuietly(directory);
+		}
+	}
+}
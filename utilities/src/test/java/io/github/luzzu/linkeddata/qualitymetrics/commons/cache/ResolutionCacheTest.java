@@ -0,0 +1,98 @@
+package io.github.luzzu.linkeddata.qualitymetrics.commons.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ResolutionCacheTest extends Assert {
+
+	@Test
+	public void keyIsResolvedOnce() throws Exception {
+		ResolutionCache<String> cache = new ResolutionCache<String>();
+		AtomicInteger resolutions = new AtomicInteger(0);
+		CountDownLatch release = new CountDownLatch(1);
+
+		CompletableFuture<String> first = cache.resolve("key", () -> {
+			resolutions.incrementAndGet();
+			release.await(5, TimeUnit.SECONDS);
+			return "value";
+		}, 5000, "fallback");
+		// requested again whilst still being resolved
+		CompletableFuture<String> second = cache.resolve("key", () -> {
+			resolutions.incrementAndGet();
+			return "other";
+		}, 5000, "fallback");
+		assertSame(first, second);
+
+		release.countDown();
+		assertEquals("value", first.get(5, TimeUnit.SECONDS));
+		assertEquals("value", cache.resolve("key", () -> "other", 5000, "fallback").get(5, TimeUnit.SECONDS));
+		assertEquals(1, resolutions.get());
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void failuresCompleteWithTheFallback() throws Exception {
+		ResolutionCache<String> cache = new ResolutionCache<String>();
+
+		assertEquals("fallback", cache.resolve("failing", () -> {
+			throw new IllegalStateException("unreachable");
+		}, 5000, "fallback").get(5, TimeUnit.SECONDS));
+
+		assertEquals("fallback", cache.resolve("hanging", () -> {
+			Thread.sleep(10000);
+			return "value";
+		}, 100, "fallback").get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void negativeOutcomesExpire() throws Exception {
+		ResolutionCache<Boolean> cache = new ResolutionCache<Boolean>((key, value) -> !value);
+		cache.NEGATIVE_TTL = 200;
+
+		assertFalse(cache.resolve("negative", () -> false, 5000, false).get(5, TimeUnit.SECONDS));
+		assertFalse(cache.resolve("failing", () -> {
+			throw new IllegalStateException("unreachable");
+		}, 5000, false).get(5, TimeUnit.SECONDS));
+		assertTrue(cache.resolve("positive", () -> true, 5000, false).get(5, TimeUnit.SECONDS));
+
+		// kept until they expire
+		assertFalse(cache.resolve("negative", () -> true, 5000, false).get(5, TimeUnit.SECONDS));
+		assertFalse(cache.resolve("failing", () -> true, 5000, false).get(5, TimeUnit.SECONDS));
+
+		Thread.sleep(300);
+		assertTrue(cache.resolve("negative", () -> true, 5000, false).get(5, TimeUnit.SECONDS));
+		assertTrue(cache.resolve("failing", () -> true, 5000, false).get(5, TimeUnit.SECONDS));
+		assertTrue(cache.resolve("positive", () -> false, 5000, false).get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void timedOutResolutionsAreForgotten() throws Exception {
+		ResolutionCache<String> cache = new ResolutionCache<String>();
+
+		CompletableFuture<String> hanging = cache.resolve("key", () -> {
+			Thread.sleep(10000);
+			return "value";
+		}, 100, "fallback");
+		assertEquals("fallback", hanging.get(5, TimeUnit.SECONDS));
+		assertEquals(0, cache.size());
+
+		assertEquals("value", cache.resolve("key", () -> "value", 5000, "fallback").get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void knownOutcomesAreNotResolved() throws Exception {
+		ResolutionCache<Boolean> cache = new ResolutionCache<Boolean>();
+		cache.put("known", true);
+
+		assertTrue(cache.resolve("known", () -> false, 5000, false).get(5, TimeUnit.SECONDS));
+
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertFalse(cache.resolve("known", () -> false, 5000, true).get(5, TimeUnit.SECONDS));
+	}
+}
@@ -0,0 +1,54 @@
+package io.github.luzzu.linkeddata.qualitymetrics.commons.datatypes;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class KeywordAutomatonTest extends Assert {
+
+	@Test
+	public void everyOccurrenceIsFoundInOneScan() {
+		KeywordAutomaton automaton = new KeywordAutomaton().add("he", 0).add("she", 1).add("his", 0).add("hers", 1).compile();
+
+		List<String> found = new ArrayList<String>();
+		automaton.scan("uSHErs", (group, start, end) -> found.add(group + ":" + start + "-" + end));
+
+		// "she" and its suffix "he" end together, then "hers" ends
+		assertEquals(3, found.size());
+		assertTrue(found.subList(0, 2).contains("1:1-4"));
+		assertTrue(found.subList(0, 2).contains("0:2-4"));
+		assertEquals("1:2-6", found.get(2));
+	}
+
+	@Test
+	public void scanStopsWhenTheVisitorSaysSo() {
+		KeywordAutomaton automaton = new KeywordAutomaton().add("a", 0).compile();
+
+		List<Integer> found = new ArrayList<Integer>();
+		automaton.scan("aaaa", (group, start, end) -> found.add(start) && (found.size() < 2));
+		assertEquals(2, found.size());
+	}
+
+	@Test
+	public void prefixesAreMatchedIgnoringCase() {
+		KeywordAutomaton automaton = new KeywordAutomaton()
+				.add("http://creativecommons.org/licenses/by/", 0)
+				.add("http://creativecommons.org/licenses/by-sa/", 1)
+				.add("http://creativecommons.org/", 2)
+				.compile();
+
+		assertEquals((1 << 0) | (1 << 2), automaton.matchPrefixes("HTTP://CreativeCommons.org/licenses/by/4.0/"));
+		assertEquals((1 << 1) | (1 << 2), automaton.matchPrefixes("http://creativecommons.org/licenses/by-sa/3.0/"));
+		assertEquals(1 << 2, automaton.matchPrefixes("http://creativecommons.org/licenses/by-nc/"));
+		// A keyword occurring further in the text is not a prefix
+		assertEquals(0, automaton.matchPrefixes("see http://creativecommons.org/licenses/by/"));
+		assertEquals(0, automaton.matchPrefixes("http://cr\u00e9ativecommons.org/"));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void keywordsCannotBeAddedOnceCompiled() {
+		new KeywordAutomaton().add("a", 0).compile().add("b", 0);
+	}
+}
@@ -0,0 +1,49 @@
+package io.github.luzzu.linkeddata.qualitymetrics.commons.datatypes;
+
+import org.apache.jena.riot.Lang;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ParsedContentSummaryTest extends Assert {
+
+	@Test
+	public void contentIsSummarisedInOnePass() {
+		StringBuilder content = new StringBuilder("@prefix ex: <http://example.org/> .\n<http://example.org/thing> a ex:Thing .\n");
+		for (int i = 0; i < 20; i++) {
+			content.append("ex:other").append(i).append(" ex:index ").append(i).append(" .\n");
+		}
+
+		ParsedContentSummary summary = ParsedContentSummary.summarise("http://example.org/thing", null, content.toString(), Lang.TURTLE);
+		assertTrue(summary.isParseable());
+		assertTrue(summary.hasRDF());
+		assertTrue(summary.isSubjectFound());
+		assertEquals(21, summary.getTripleCount());
+		assertEquals(ParsedContentSummary.SAMPLE_SIZE, summary.getSample().size());
+	}
+
+	@Test
+	public void relativeIRIsAreResolvedAgainstTheLocation() {
+		ParsedContentSummary summary = ParsedContentSummary.summarise("http://example.org/id/thing", "http://example.org/doc/", "<../id/thing> <p> <o> .", Lang.TURTLE);
+		assertTrue(summary.isSubjectFound());
+		assertEquals("http://example.org/doc/p", summary.getSample().get(0).getPredicate().getURI());
+	}
+
+	@Test
+	public void brokenContentKeepsWhatWasReadBeforeTheError() {
+		ParsedContentSummary summary = ParsedContentSummary.summarise("http://example.org/thing", null, "<http://example.org/a> <http://example.org/p> <http://example.org/o> .\n<broken", Lang.TURTLE);
+		assertFalse(summary.isParseable());
+		assertFalse(summary.hasRDF());
+		assertFalse(summary.isSubjectFound());
+		assertEquals(1, summary.getTripleCount());
+	}
+
+	@Test
+	public void contentWhichIsNotRDFIsSummarisedAsSuch() {
+		ParsedContentSummary summary = ParsedContentSummary.notRDF("http://example.org/page");
+		assertEquals("http://example.org/page", summary.getUri());
+		assertNull(summary.getLang());
+		assertFalse(summary.isParseable());
+		assertFalse(summary.hasRDF());
+		assertTrue(summary.getSample().isEmpty());
+	}
+}
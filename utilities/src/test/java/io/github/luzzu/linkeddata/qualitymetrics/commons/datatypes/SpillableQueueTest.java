@@ -0,0 +1,30 @@
+package io.github.luzzu.linkeddata.qualitymetrics.commons.datatypes;
+
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SpillableQueueTest extends Assert {
+
+	@Test
+	public void stringsAreKeptInOrderAcrossSpills() throws IOException {
+		try (SpillableQueue queue = new SpillableQueue(10)) {
+			int added = 0;
+			int polled = 0;
+			for (int round = 0; round < 50; round++) {
+				for (int i = 0; i < 7; i++) queue.add("http://example.org/" + (added++));
+				for (int i = 0; i < 3; i++) assertEquals("http://example.org/" + (polled++), queue.poll());
+			}
+			assertTrue(queue.getSpilled() > 0);
+			assertEquals(added - polled, queue.size());
+
+			String uri;
+			while ((uri = queue.poll()) != null) {
+				assertEquals("http://example.org/" + (polled++), uri);
+			}
+			assertEquals(added, polled);
+			assertTrue(queue.isEmpty());
+		}
+	}
+}
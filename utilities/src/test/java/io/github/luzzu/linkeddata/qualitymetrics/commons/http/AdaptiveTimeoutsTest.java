@@ -0,0 +1,74 @@
+package io.github.luzzu.linkeddata.qualitymetrics.commons.http;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AdaptiveTimeoutsTest extends Assert {
+
+	@Test
+	public void defaultTimeoutIsUsedUntilWarmedUp() {
+		AdaptiveTimeouts timeouts = new AdaptiveTimeouts();
+
+		assertEquals(10000, timeouts.getTimeout("example.org", 10000));
+		assertEquals(10000, timeouts.getTimeout(null, 10000));
+
+		for (int i = 1; i < timeouts.MIN_SAMPLES; i++) {
+			timeouts.recordLatency("example.org", 500);
+		}
+		assertEquals(10000, timeouts.getTimeout("example.org", 10000));
+
+		timeouts.recordLatency("example.org", 500);
+		assertEquals(1500, timeouts.getTimeout("example.org", 10000));
+		// the latencies of a host do not warm up the others
+		assertEquals(10000, timeouts.getTimeout("example.com", 10000));
+	}
+
+	@Test
+	public void timeoutFollowsThe99thPercentile() {
+		AdaptiveTimeouts timeouts = new AdaptiveTimeouts();
+
+		// 99 fast responses and one slow outlier: the 99th percentile is the slowest of the fast ones
+		for (int i = 1; i <= 99; i++) {
+			timeouts.recordLatency("example.org", 400 + i);
+		}
+		timeouts.recordLatency("example.org", 9000);
+		assertEquals((int) Math.ceil(499 * timeouts.SAFETY_FACTOR), timeouts.getTimeout("example.org", 10000));
+
+		// a second outlier falls within the percentile
+		timeouts.recordLatency("example.org", 8000);
+		assertEquals(24000, timeouts.getTimeout("example.org", 10000));
+	}
+
+	@Test
+	public void timeoutIsClampedToItsBounds() {
+		AdaptiveTimeouts timeouts = new AdaptiveTimeouts();
+
+		for (int i = 0; i < timeouts.MIN_SAMPLES; i++) {
+			timeouts.recordLatency("fast.example.org", 10);
+			timeouts.recordLatency("slow.example.org", 20000);
+		}
+		assertEquals(timeouts.MIN_TIMEOUT, timeouts.getTimeout("fast.example.org", 10000));
+		assertEquals(timeouts.MAX_TIMEOUT, timeouts.getTimeout("slow.example.org", 10000));
+
+		timeouts.MIN_TIMEOUT = 50;
+		timeouts.MAX_TIMEOUT = 5000;
+		assertEquals(50, timeouts.getTimeout("fast.example.org", 10000));
+		assertEquals(5000, timeouts.getTimeout("slow.example.org", 10000));
+	}
+
+	@Test
+	public void oldLatenciesLeaveTheWindow() {
+		AdaptiveTimeouts timeouts = new AdaptiveTimeouts();
+		timeouts.WINDOW_SIZE = timeouts.MIN_SAMPLES;
+
+		for (int i = 0; i < timeouts.MIN_SAMPLES; i++) {
+			timeouts.recordLatency("example.org", 9000);
+		}
+		assertEquals(27000, timeouts.getTimeout("example.org", 10000));
+
+		for (int i = 0; i < timeouts.MIN_SAMPLES; i++) {
+			timeouts.recordLatency("example.org", 1000);
+		}
+		assertEquals(3000, timeouts.getTimeout("example.org", 10000));
+	}
+}
@@ -0,0 +1,65 @@
+package io.github.luzzu.linkeddata.qualitymetrics.commons.http;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.conn.DnsResolver;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CachingDnsResolverTest extends Assert {
+
+	private CachingDnsResolver resolver;
+	private final AtomicInteger delegateCalls = new AtomicInteger(0);
+
+	@Before
+	public void setUp() {
+		resolver = new CachingDnsResolver();
+		resolver.setDelegate(new DnsResolver() {
+			@Override
+			public InetAddress[] resolve(String host) throws UnknownHostException {
+				delegateCalls.incrementAndGet();
+				if (host.endsWith(".invalid")) throw new UnknownHostException(host);
+				return new InetAddress[] { InetAddress.getByAddress(host, new byte[] { 127, 0, 0, 1 }) };
+			}
+		});
+	}
+
+	@Test
+	public void resolvedHostsAreCached() throws UnknownHostException {
+		InetAddress[] first = resolver.resolve("example.org");
+		InetAddress[] second = resolver.resolve("example.org");
+
+		assertArrayEquals(first, second);
+		assertEquals(1, delegateCalls.get());
+		assertEquals(2, resolver.getLookups());
+		assertEquals(1, resolver.getHits());
+	}
+
+	@Test
+	public void unresolvedHostsAreCached() {
+		for (int i = 0; i < 2; i++) {
+			try {
+				resolver.resolve("host.invalid");
+				fail("Host should not be resolved");
+			} catch (UnknownHostException e) {
+				// expected
+			}
+		}
+
+		assertEquals(1, delegateCalls.get());
+		assertEquals(1, resolver.getNegativeHits());
+	}
+
+	@Test
+	public void expiredResolutionsAreResolvedAgain() throws UnknownHostException {
+		resolver.POSITIVE_TTL = -1;
+		resolver.resolve("example.org");
+		resolver.resolve("example.org");
+
+		assertEquals(2, delegateCalls.get());
+		assertEquals(0, resolver.getHits());
+	}
+}
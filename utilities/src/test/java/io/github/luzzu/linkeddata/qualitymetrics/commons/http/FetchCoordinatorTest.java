@@ -0,0 +1,91 @@
+package io.github.luzzu.linkeddata.qualitymetrics.commons.http;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.github.luzzu.linkeddata.qualitymetrics.commons.HTTPRetriever;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.cache.DereferenceCheckpoint;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.cache.LinkedDataMetricsCacheManager;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.cache.ParsedContentCache;
+
+public class FetchCoordinatorTest extends Assert {
+
+	@Test
+	public void checkpointIsKeptUntilEveryMetricLeftTheRun() {
+		FetchCoordinator coordinator = FetchCoordinator.getInstance();
+		LinkedDataMetricsCacheManager dcmgr = LinkedDataMetricsCacheManager.getInstance();
+		String dataset = "http://example.org/dataset/" + System.nanoTime();
+
+		coordinator.beginRun(dataset);
+		DereferenceCheckpoint checkpoint = dcmgr.getCheckpoint();
+		assertNotNull(checkpoint);
+		// a second metric joins the same run
+		coordinator.beginRun(dataset);
+		assertSame(checkpoint, dcmgr.getCheckpoint());
+
+		// leaving a run which is not the current one changes nothing
+		coordinator.endRun("http://example.org/other");
+		coordinator.endRun(dataset);
+		assertSame(checkpoint, dcmgr.getCheckpoint());
+
+		coordinator.endRun(dataset);
+		assertNull(dcmgr.getCheckpoint());
+	}
+
+	@Test
+	public void uriRequestedForFewerNeedsIsDereferencedAgain() throws Exception {
+		String uri = "http://needs.example.org/resource/" + System.nanoTime();
+		RecordedExchange exchange = new RecordedExchange();
+		exchange.setMethod("GET");
+		exchange.setUri(uri);
+		exchange.setStatus(200);
+		exchange.setReason("OK");
+		exchange.addHeader("Content-Type", "text/turtle");
+		exchange.setBody("<" + uri + "> <http://example.org/p> \"o\" .");
+
+		String previousProxy = HTTPRetriever.getWebProxy();
+		Integer previousProxyPort = HTTPRetriever.getWebProxyPort();
+		ReplayServer server = new ReplayServer(Collections.singletonList(exchange));
+		server.start(0);
+		server.useAsProxy();
+		FetchCoordinator coordinator = FetchCoordinator.getInstance();
+		coordinator.shutdown();
+		try {
+			BlockingQueue<FetchResult> results = new LinkedBlockingQueue<FetchResult>();
+			coordinator.request(uri, EnumSet.of(FetchNeed.STATUS), FetchPriority.NEEDED_FOR_METRIC, results::add);
+			FetchResult status = results.poll(30, TimeUnit.SECONDS);
+			assertEquals(EnumSet.of(FetchNeed.STATUS), status.getNeeds());
+			// the body was not parsed
+			assertNull(ParsedContentCache.getInstance().get(uri));
+
+			// served from the cache
+			coordinator.request(uri, EnumSet.of(FetchNeed.STATUS), FetchPriority.NEEDED_FOR_METRIC, results::add);
+			assertNotNull(results.poll(30, TimeUnit.SECONDS));
+			assertEquals(1, server.getServed());
+
+			coordinator.request(uri, EnumSet.of(FetchNeed.PARSED_BODY), FetchPriority.NEEDED_FOR_METRIC, results::add);
+			FetchResult parsed = results.poll(30, TimeUnit.SECONDS);
+			assertTrue(parsed.getNeeds().contains(FetchNeed.PARSED_BODY));
+			assertTrue(ParsedContentCache.getInstance().get(uri).hasRDF());
+			assertEquals(2, server.getServed());
+		} finally {
+			coordinator.shutdown();
+			server.stop();
+			HTTPRetriever.setWebProxy(previousProxy);
+			if (previousProxyPort != null) HTTPRetriever.setWebProxyPort(previousProxyPort);
+		}
+	}
+
+	@Test
+	public void assessmentsWithoutDatasetAreNotCheckpointed() {
+		FetchCoordinator.getInstance().beginRun("");
+		assertNull(LinkedDataMetricsCacheManager.getInstance().getCheckpoint());
+		FetchCoordinator.getInstance().endRun("");
+	}
+}
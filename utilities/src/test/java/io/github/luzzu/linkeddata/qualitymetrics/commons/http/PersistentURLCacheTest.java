@@ -0,0 +1,105 @@
+package io.github.luzzu.linkeddata.qualitymetrics.commons.http;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PersistentURLCacheTest extends Assert {
+
+	private PersistentURLCache cache;
+
+	@Before
+	public void setUp() {
+		cache = new PersistentURLCache(100, 100);
+		cache.PREFIX_CONFIRMATIONS = 2;
+	}
+
+	@Test
+	public void resolvedURLsAreCached() {
+		assertNull(cache.get("http://purl.org/dc/terms/title"));
+		cache.put("http://purl.org/dc/terms/title", "http://dublincore.org/2012/06/14/dcterms.rdf");
+
+		assertEquals("http://dublincore.org/2012/06/14/dcterms.rdf", cache.get("http://purl.org/dc/terms/title"));
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	public void confirmedPrefixesAreRewritten() {
+		cache.put("http://purl.org/example/a", "http://example.org/ns/a");
+		// A single resolution is not enough to trust the prefix
+		assertNull(cache.get("http://purl.org/example/b"));
+
+		cache.put("http://purl.org/example/c", "http://example.org/ns/c");
+		assertEquals("http://example.org/ns/b", cache.get("http://purl.org/example/b"));
+		assertEquals("http://example.org/ns/d/e", cache.get("http://purl.org/example/d/e"));
+		assertEquals(2, cache.getPrefixHits());
+
+		assertNull(cache.get("http://purl.org/other/a"));
+	}
+
+	@Test
+	public void contradictedPrefixesAreNotRewritten() {
+		cache.put("http://purl.org/example/a", "http://example.org/ns/a");
+		cache.put("http://purl.org/example/c", "http://example.org/ns/c");
+		cache.put("http://purl.org/example/x", "http://elsewhere.org/x.rdf");
+
+		assertNull(cache.get("http://purl.org/example/b"));
+		assertEquals("http://elsewhere.org/x.rdf", cache.get("http://purl.org/example/x"));
+	}
+
+	@Test
+	public void urlsWhichDoNotRedirectTeachNothing() {
+		cache.put("http://purl.org/example/a", "http://purl.org/example/a");
+		cache.put("http://purl.org/example/c", "http://purl.org/example/c");
+
+		assertEquals("http://purl.org/example/a", cache.get("http://purl.org/example/a"));
+		assertNull(cache.get("http://purl.org/example/b"));
+	}
+
+	@Test
+	public void resolvedURLsSurviveSaveAndLoad() throws IOException {
+		cache.put("http://w3id.org/example/a", "http://example.org/ns/a");
+		cache.put("http://w3id.org/example/c", "http://example.org/ns/c");
+
+		File file = File.createTempFile("purls", ".tsv");
+		try {
+			cache.save(file);
+
+			PersistentURLCache loaded = new PersistentURLCache(100, 100);
+			loaded.PREFIX_CONFIRMATIONS = 2;
+			loaded.load(file);
+			assertEquals(2, loaded.size());
+			assertEquals("http://example.org/ns/a", loaded.get("http://w3id.org/example/a"));
+			assertEquals("http://example.org/ns/b", loaded.get("http://w3id.org/example/b"));
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void savingReplacesTheFileWholly() throws IOException {
+		File directory = Files.createTempDirectory("purls").toFile();
+		File file = new File(directory, "purls.tsv");
+		try {
+			Files.write(file.toPath(), "http://w3id.org/example/old\thttp://example.org/ns/old\n".getBytes(StandardCharsets.UTF_8));
+			cache.put("http://w3id.org/example/a", "http://example.org/ns/a");
+			cache.save(file);
+
+			PersistentURLCache loaded = new PersistentURLCache(100, 100);
+			loaded.load(file);
+			assertEquals(1, loaded.size());
+			assertEquals("http://example.org/ns/a", loaded.get("http://w3id.org/example/a"));
+			// the temporary file was renamed
+			assertEquals(1, directory.listFiles().length);
+		} finally {
+			file.delete();
+			directory.delete();
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package io.github.luzzu.linkeddata.qualitymetrics.commons.http;
+
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.github.luzzu.linkeddata.qualitymetrics.commons.HTTPRetriever;
+
+public class PersistentURLResolverTest extends Assert {
+
+	@After
+	public void tearDown() {
+		PersistentURLCache.getInstance().clear();
+	}
+
+	@Test
+	public void namespaceIsResolvedOnce() throws Exception {
+		// the redirection is already known, thus nothing is sent
+		PersistentURLCache.getInstance().put("http://purl.org/example/a", "http://example.org/ns/a");
+
+		PersistentURLResolver resolver = new PersistentURLResolver();
+		CompletableFuture<String> resolution = resolver.resolve("http://purl.org/example/a");
+		assertEquals("http://example.org/ns", resolution.get(5, TimeUnit.SECONDS));
+
+		// any other URL of the namespace shares its resolution
+		assertSame(resolution, resolver.resolve("http://purl.org/example/b"));
+		assertEquals(1, resolver.getResolved());
+	}
+
+	@Test
+	public void relativeLocationsAreResolvedAndPlainURLsCached() throws Exception {
+		int port;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		String base = "http://localhost:" + port;
+
+		List<RecordedExchange> exchanges = new ArrayList<RecordedExchange>();
+		RecordedExchange redirection = new RecordedExchange();
+		redirection.setMethod("GET");
+		redirection.setUri(base + "/purl/a");
+		redirection.setStatus(302);
+		redirection.setReason("Found");
+		redirection.addHeader("Location", "/ns/a");
+		exchanges.add(redirection);
+
+		RecordedExchange plain = new RecordedExchange();
+		plain.setMethod("GET");
+		plain.setUri(base + "/purl/plain");
+		plain.setStatus(200);
+		plain.setReason("OK");
+		exchanges.add(plain);
+
+		RecordedExchange unavailable = new RecordedExchange();
+		unavailable.setMethod("GET");
+		unavailable.setUri(base + "/purl/unavailable");
+		unavailable.setStatus(503);
+		unavailable.setReason("Service Unavailable");
+		exchanges.add(unavailable);
+
+		ReplayServer server = new ReplayServer(exchanges);
+		server.start(port);
+		try {
+			assertEquals(base + "/ns/a", HTTPRetriever.decodePersistantURLS(base + "/purl/a"));
+			assertEquals(base + "/purl/plain", HTTPRetriever.decodePersistantURLS(base + "/purl/plain"));
+			assertEquals(2, server.getServed());
+
+			// neither is requested again
+			assertEquals(base + "/ns/a", HTTPRetriever.decodePersistantURLS(base + "/purl/a"));
+			assertEquals(base + "/purl/plain", HTTPRetriever.decodePersistantURLS(base + "/purl/plain"));
+			assertEquals(2, server.getServed());
+
+			// a failure might be transient, it is requested again
+			assertEquals(base + "/purl/unavailable", HTTPRetriever.decodePersistantURLS(base + "/purl/unavailable"));
+			assertEquals(base + "/purl/unavailable", HTTPRetriever.decodePersistantURLS(base + "/purl/unavailable"));
+			assertEquals(4, server.getServed());
+			assertNull(PersistentURLCache.getInstance().get(base + "/purl/unavailable"));
+		} finally {
+			server.stop();
+		}
+	}
+
+	@Test
+	public void persistentURLsAreRecognisedWithOrWithoutProtocol() {
+		PersistentURLResolver resolver = new PersistentURLResolver();
+
+		assertTrue(resolver.isPersistentURL("http://purl.org/dc/terms/title"));
+		assertTrue(resolver.isPersistentURL("w3id.org/example"));
+		assertFalse(resolver.isPersistentURL("http://example.org/resource"));
+		assertFalse(resolver.isPersistentURL(null));
+	}
+}
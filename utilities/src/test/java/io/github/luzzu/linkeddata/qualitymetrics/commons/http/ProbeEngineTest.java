@@ -0,0 +1,89 @@
+package io.github.luzzu.linkeddata.qualitymetrics.commons.http;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.github.luzzu.linkeddata.qualitymetrics.commons.HTTPRetriever;
+
+public class ProbeEngineTest extends Assert {
+
+	private ReplayServer server;
+	private String previousProxy;
+	private Integer previousProxyPort;
+
+	@Before
+	public void setUp() throws Exception {
+		List<RecordedExchange> exchanges = new ArrayList<RecordedExchange>();
+		for (String uri : Arrays.asList("http://first.example.org/resource", "http://second.example.org/resource")) {
+			RecordedExchange exchange = new RecordedExchange();
+			exchange.setMethod("GET");
+			exchange.setUri(uri);
+			exchange.setStatus(200);
+			exchange.setReason("OK");
+			exchange.addHeader("Content-Type", "text/turtle");
+			exchange.setBody("<" + uri + "> <http://example.org/p> \"o\" .");
+			exchange.setLatency(20);
+			exchanges.add(exchange);
+		}
+
+		previousProxy = HTTPRetriever.getWebProxy();
+		previousProxyPort = HTTPRetriever.getWebProxyPort();
+		server = new ReplayServer(exchanges);
+		server.start(0);
+		server.useAsProxy();
+	}
+
+	@After
+	public void tearDown() {
+		server.stop();
+		HTTPRetriever.setWebProxy(previousProxy);
+		if (previousProxyPort != null) HTTPRetriever.setWebProxyPort(previousProxyPort);
+	}
+
+	@Test
+	public void passesAreKeptApartByHost() {
+		ProbeEngine engine = new ProbeEngine();
+		engine.DATASET_PROBES_PER_RESOURCE = 3;
+
+		// Neither dataset URI is known, yet the passes probe different hosts
+		ProbeResult first = engine.probeDataset("", Collections.singletonList("http://first.example.org/resource"));
+		assertEquals(3, first.getSuccessful());
+		assertEquals(3, server.getServed());
+
+		ProbeResult second = engine.probeDataset("", Collections.singletonList("http://second.example.org/resource"));
+		assertNotSame(first, second);
+		assertEquals(3, second.getSuccessful());
+		assertEquals(6, server.getServed());
+
+		// Another sample of the same host reuses its pass
+		assertSame(first, engine.probeDataset("", Collections.singletonList("http://FIRST.example.org/resource")));
+		assertEquals(6, server.getServed());
+	}
+
+	@Test
+	public void probesOfATargetAreSentOneAfterTheOther() {
+		ProbeEngine engine = new ProbeEngine();
+		ProbeResult result = engine.probe(Collections.singletonList("http://first.example.org/resource"), 5, 10000);
+
+		assertEquals(5, result.getSuccessful());
+		assertEquals(0, result.getFailed());
+		assertEquals(5, server.getServed());
+		// every probe waits for the recorded latency
+		assertTrue(result.getHistogram().getMinValue() >= 20000);
+	}
+
+	@Test
+	public void passKeyIsMadeOfTheSortedHosts() {
+		assertEquals("a.example.org b.example.org", ProbeEngine.passKey("",
+				Arrays.asList("http://b.example.org/x", "http://A.example.org/y", "http://b.example.org/z")));
+		assertEquals("http://example.org/dataset", ProbeEngine.passKey("http://example.org/dataset", Collections.<String>emptyList()));
+		assertEquals("", ProbeEngine.passKey(null, Collections.singletonList("not a uri")));
+	}
+}
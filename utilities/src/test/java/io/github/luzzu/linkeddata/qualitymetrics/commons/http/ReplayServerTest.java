@@ -0,0 +1,129 @@
+package io.github.luzzu.linkeddata.qualitymetrics.commons.http;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Scanner;
+
+import org.apache.http.HttpVersion;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReplayServerTest extends Assert {
+
+	private File recording;
+	private ReplayServer server;
+
+	@Before
+	public void setUp() throws IOException {
+		recording = File.createTempFile("luzzu-recording", ".jsonl");
+
+		try (HttpRecorder recorder = new HttpRecorder(recording)) {
+			RecordedExchange redirect = new RecordedExchange();
+			redirect.setMethod("GET");
+			redirect.setUri("http://example.org/resource");
+			redirect.setStatus(303);
+			redirect.setReason("See Other");
+			redirect.addHeader("Location", "http://example.org/data");
+			redirect.setLatency(5);
+			recorder.record(redirect);
+
+			RecordedExchange data = new RecordedExchange();
+			data.setMethod("GET");
+			data.setUri("http://example.org/data");
+			data.setStatus(200);
+			data.setReason("OK");
+			data.addHeader("Content-Type", "text/turtle");
+			data.setBody("<http://example.org/s> <http://example.org/p> \"o\" .");
+			recorder.record(data);
+		}
+	}
+
+	@After
+	public void tearDown() {
+		if (server != null) server.stop();
+		recording.delete();
+	}
+
+	@Test
+	public void recordingIsLoadedInOrder() throws IOException {
+		List<RecordedExchange> exchanges = HttpRecorder.load(recording);
+		assertEquals(2, exchanges.size());
+		assertEquals(303, exchanges.get(0).getStatus());
+		assertEquals("http://example.org/data", exchanges.get(0).getHeaders().get(0).get(1));
+		assertEquals(5, exchanges.get(0).getLatency());
+		assertEquals(-1, exchanges.get(1).getLatency());
+	}
+
+	@Test
+	public void responsesAreRecordedInTheOrderReceived() throws IOException {
+		try (HttpRecorder recorder = new HttpRecorder(recording)) {
+			for (int i = 0; i < 100; i++) {
+				BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+				response.addHeader("Content-Type", "text/turtle");
+				recorder.record("GET", "http://example.org/recorded/" + i, response, "", 1);
+			}
+			recorder.recordFailure("GET", "http://example.org/failed", "timed out", 10);
+			recorder.flush();
+			assertEquals(101, recorder.getRecorded());
+		}
+
+		List<RecordedExchange> exchanges = HttpRecorder.load(recording);
+		assertEquals(103, exchanges.size());
+		for (int i = 0; i < 100; i++) {
+			assertEquals("http://example.org/recorded/" + i, exchanges.get(2 + i).getUri());
+		}
+		assertEquals(0, exchanges.get(102).getStatus());
+	}
+
+	@Test
+	public void recordedResponsesAreReplayed() throws IOException {
+		server = new ReplayServer(recording);
+		server.start(0);
+
+		HttpURLConnection redirect = open("http://example.org/resource");
+		assertEquals(303, redirect.getResponseCode());
+		assertEquals("http://example.org/data", redirect.getHeaderField("Location"));
+
+		HttpURLConnection data = open("http://example.org/data");
+		assertEquals(200, data.getResponseCode());
+		assertEquals("text/turtle", data.getContentType());
+		assertEquals("<http://example.org/s> <http://example.org/p> \"o\" .", read(data.getInputStream()));
+
+		assertEquals(404, open("http://example.org/unknown").getResponseCode());
+		assertEquals(2, server.getServed());
+	}
+
+	@Test
+	public void failuresAreInjected() throws IOException {
+		server = new ReplayServer(recording);
+		server.FAILURE_RATE = 1.0;
+		server.FAILURE_STATUS = 503;
+		server.start(0);
+
+		assertEquals(503, open("http://example.org/data").getResponseCode());
+		assertEquals(1, server.getFailed());
+	}
+
+	private HttpURLConnection open(String uri) throws IOException {
+		Proxy proxy = new Proxy(Proxy.Type.HTTP, new InetSocketAddress("127.0.0.1", server.getPort()));
+		HttpURLConnection connection = (HttpURLConnection) new URL(uri).openConnection(proxy);
+		connection.setInstanceFollowRedirects(false);
+		return connection;
+	}
+
+	private static String read(InputStream in) {
+		try (Scanner scanner = new Scanner(in, StandardCharsets.UTF_8.name())) {
+			return scanner.useDelimiter("\\A").next();
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package io.github.luzzu.linkeddata.qualitymetrics.commons.http;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import org.apache.http.HttpVersion;
+import org.apache.http.message.BasicStatusLine;
+
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.Lang;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.github.luzzu.linkeddata.qualitymetrics.commons.datatypes.ParsedContentSummary;
+import io.github.luzzu.qualitymetrics.commons.cache.CachedHTTPResource;
+import io.github.luzzu.qualitymetrics.commons.datatypes.HTTPDereference.StatusCode;
+
+public class ShardRecordsTest extends Assert {
+
+	private File output;
+
+	@Before
+	public void setUp() throws IOException {
+		output = File.createTempFile("shard-records", ".bin");
+	}
+
+	@After
+	public void tearDown() {
+		output.delete();
+	}
+
+	@Test
+	public void recordsAreReadBack() throws IOException {
+		Triple triple = Triple.create(NodeFactory.createURI("http://example.org/a"), NodeFactory.createURI("http://example.org/p"),
+				NodeFactory.createLiteral("\u00e9t\u00e9", "fr"));
+		try (ShardRecords.Writer writer = new ShardRecords.Writer(output)) {
+			writer.write(resource("http://example.org/a"), "<http://example.org/a>",
+					new ParsedContentSummary("http://example.org/a", Lang.TURTLE, true, true, 1, Collections.singletonList(triple)));
+			writer.write(resource("http://example.org/b"), null, null);
+		}
+
+		try (ShardRecords.Reader reader = new ShardRecords.Reader(output)) {
+			ShardRecords.Record first = reader.next();
+			assertEquals("http://example.org/a", first.resource.getUri());
+			assertEquals(StatusCode.SEE_OTHER, first.resource.getDereferencabilityStatusCode());
+			assertEquals(303, first.resource.getStatusLines().get(0).getStatusCode());
+			assertEquals("<http://example.org/a>", first.prefix);
+			assertEquals(Lang.TURTLE, first.summary.getLang());
+			assertTrue(first.summary.hasRDF());
+			assertTrue(first.summary.isSubjectFound());
+			assertEquals(Collections.singletonList(triple), first.summary.getSample());
+
+			ShardRecords.Record second = reader.next();
+			assertEquals("http://example.org/b", second.resource.getUri());
+			assertNull(second.prefix);
+			assertNull(second.summary);
+
+			assertNull(reader.next());
+		}
+	}
+
+	@Test
+	public void recordNotMatchingItsResourceIsSkipped() throws IOException {
+		try (ShardRecords.Writer writer = new ShardRecords.Writer(output)) {
+			writer.write(resource("http://example.org/a"), null, null);
+			writer.write(resource("http://example.org/b"), null, null);
+		}
+		// the URI of the first record no longer matches the resource written with it
+		byte[] bytes = Files.readAllBytes(output.toPath());
+		int at = new String(bytes, StandardCharsets.ISO_8859_1).indexOf("http://example.org/a");
+		bytes[at + "http://example.org/".length()] = 'x';
+		Files.write(output.toPath(), bytes);
+
+		try (ShardRecords.Reader reader = new ShardRecords.Reader(output)) {
+			try {
+				reader.next();
+				fail("The record should be rejected");
+			} catch (ShardRecords.InvalidRecordException e) {
+				// the following records can still be read
+			}
+			assertEquals("http://example.org/b", reader.next().resource.getUri());
+			assertNull(reader.next());
+		}
+	}
+
+	@Test
+	public void outputCutShortEndsAtTheLastWholeRecord() throws IOException {
+		try (ShardRecords.Writer writer = new ShardRecords.Writer(output)) {
+			writer.write(resource("http://example.org/a"), null, null);
+			writer.write(resource("http://example.org/b"), null, null);
+		}
+		try (RandomAccessFile file = new RandomAccessFile(output, "rw")) {
+			file.setLength(file.length() - 10);
+		}
+
+		try (ShardRecords.Reader reader = new ShardRecords.Reader(output)) {
+			assertEquals("http://example.org/a", reader.next().resource.getUri());
+			assertNull(reader.next());
+		}
+	}
+
+	@Test
+	public void recordBeingWrittenIsReadOnceWritten() throws IOException {
+		try (ShardRecords.Writer writer = new ShardRecords.Writer(output)) {
+			writer.write(resource("http://example.org/a"), null, null);
+			writer.write(resource("http://example.org/b"), null, null);
+		}
+		byte[] bytes = Files.readAllBytes(output.toPath());
+		int cut = bytes.length - 10;
+		try (RandomAccessFile file = new RandomAccessFile(output, "rw")) {
+			file.setLength(cut);
+		}
+
+		try (ShardRecords.Reader reader = new ShardRecords.Reader(output)) {
+			assertEquals("http://example.org/a", reader.next().resource.getUri());
+			assertNull(reader.next());
+
+			// the rest of the record is written
+			try (RandomAccessFile file = new RandomAccessFile(output, "rw")) {
+				file.seek(cut);
+				file.write(bytes, cut, bytes.length - cut);
+			}
+			assertEquals("http://example.org/b", reader.next().resource.getUri());
+			assertNull(reader.next());
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void otherFilesAreNotRead() throws IOException {
+		Files.write(output.toPath(), "http://example.org/a\n".getBytes(StandardCharsets.UTF_8));
+		new ShardRecords.Reader(output).close();
+	}
+
+	private static CachedHTTPResource resource(String uri) {
+		CachedHTTPResource resource = new CachedHTTPResource();
+		resource.setUri(uri);
+		resource.setDereferencabilityStatusCode(StatusCode.SEE_OTHER);
+		resource.addStatusLines(new BasicStatusLine(HttpVersion.HTTP_1_1, 303, "See Other"));
+		return resource;
+	}
+}
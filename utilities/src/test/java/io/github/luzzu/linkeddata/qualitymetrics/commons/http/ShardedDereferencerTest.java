@@ -0,0 +1,119 @@
+package io.github.luzzu.linkeddata.qualitymetrics.commons.http;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.github.luzzu.linkeddata.qualitymetrics.commons.HTTPRetriever;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.cache.ParsedContentCache;
+import io.github.luzzu.linkeddata.qualitymetrics.commons.datatypes.ParsedContentSummary;
+import io.github.luzzu.qualitymetrics.commons.cache.CachedHTTPResource;
+
+public class ShardedDereferencerTest extends Assert {
+
+	@Test
+	public void urisOfAHostShareTheirShard() {
+		int shard = ShardedDereferencer.shardOf("http://dbpedia.org/resource/Malta", 8);
+
+		assertTrue((shard >= 0) && (shard < 8));
+		assertEquals(shard, ShardedDereferencer.shardOf("http://dbpedia.org/ontology/Country", 8));
+		assertEquals(shard, ShardedDereferencer.shardOf("https://DBpedia.org:443/sparql?query=ASK", 8));
+	}
+
+	@Test
+	public void urisWithoutHostAreSharded() {
+		int shard = ShardedDereferencer.shardOf("urn:isbn:0451450523", 3);
+
+		assertTrue((shard >= 0) && (shard < 3));
+		assertEquals(0, ShardedDereferencer.shardOf("http://dbpedia.org/resource/Malta", 1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void atLeastOneWorkerIsRequired() {
+		new ShardedDereferencer(0);
+	}
+
+	@Test
+	public void batchWhichIsNotAdmittedIsLeftToThisProcess() throws Exception {
+		FetchScheduler scheduler = FetchScheduler.getInstance();
+		int limit = scheduler.MAX_CONCURRENT_REQUESTS;
+		// every request is taken, but one
+		assertTrue(scheduler.tryAcquire(FetchPriority.NEEDED_FOR_METRIC, limit - 1, 1, TimeUnit.SECONDS));
+		try {
+			ShardedDereferencer dereferencer = new ShardedDereferencer(2);
+			dereferencer.ADMISSION_TIMEOUT = 100;
+
+			Map<String, CachedHTTPResource> merged = dereferencer.dereference(Arrays.asList("http://example.org/resource/0"), FetchPriority.SPECULATIVE_PREFETCH);
+			assertTrue(merged.isEmpty());
+			// nothing was reserved, not even the request left
+			assertEquals(limit - 1, scheduler.getActiveRequests());
+		} finally {
+			scheduler.release(limit - 1);
+		}
+		assertEquals(0, scheduler.getActiveRequests());
+	}
+
+	@Test
+	public void resourcesOfTheWorkersAreMerged() throws Exception {
+		List<String> uris = new ArrayList<String>();
+		List<RecordedExchange> exchanges = new ArrayList<RecordedExchange>();
+		for (String host : Arrays.asList("first.example.org", "second.example.org", "third.example.org", "fourth.example.org")) {
+			for (int i = 0; i < 2; i++) {
+				String uri = "http://" + host + "/resource/" + i;
+				RecordedExchange exchange = new RecordedExchange();
+				exchange.setMethod("GET");
+				exchange.setUri(uri);
+				exchange.setStatus(200);
+				exchange.setReason("OK");
+				exchange.addHeader("Content-Type", "text/turtle");
+				exchange.setBody("<" + uri + "> <http://example.org/p> \"o\" .");
+				exchanges.add(exchange);
+				uris.add(uri);
+			}
+		}
+
+		String previousProxy = HTTPRetriever.getWebProxy();
+		Integer previousProxyPort = HTTPRetriever.getWebProxyPort();
+		ReplayServer server = new ReplayServer(exchanges);
+		server.start(0);
+		server.useAsProxy();
+		try {
+			ParsedContentCache.getInstance().clear();
+			ShardedDereferencer dereferencer = new ShardedDereferencer(2);
+			dereferencer.WORKER_TIMEOUT = 60000;
+
+			Set<String> retrieved = ConcurrentHashMap.newKeySet();
+			Map<String, CachedHTTPResource> merged = dereferencer.dereference(uris, FetchPriority.SPECULATIVE_PREFETCH,
+					resource -> retrieved.add(resource.getUri()));
+			assertEquals(uris.size(), merged.size());
+			// each resource was handed over as it was read
+			assertEquals(merged.keySet(), retrieved);
+			assertEquals(uris.size(), server.getServed());
+			// the requests reserved for the workers are given back
+			assertEquals(0, FetchScheduler.getInstance().getActiveRequests());
+
+			for (String uri : uris) {
+				assertEquals(uri, merged.get(uri).getUri());
+
+				// parsed by the workers, not again in this JVM
+				ParsedContentSummary summary = ParsedContentCache.getInstance().get(uri);
+				assertNotNull(summary);
+				assertTrue(summary.hasRDF());
+				assertTrue(summary.isSubjectFound());
+				assertNotNull(ParsedContentCache.getInstance().getPrefix(uri));
+			}
+		} finally {
+			server.stop();
+			HTTPRetriever.setWebProxy(previousProxy);
+			if (previousProxyPort != null) HTTPRetriever.setWebProxyPort(previousProxyPort);
+			ParsedContentCache.getInstance().clear();
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package io.github.luzzu.linkeddata.qualitymetrics.commons.http;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class URIWorkQueueTest extends Assert {
+
+	private final Set<String> done = new HashSet<String>();
+
+	@Test
+	public void duplicatesAreDropped() throws InterruptedException {
+		URIWorkQueue queue = new URIWorkQueue(10, 100, uri -> done.contains(uri));
+		done.add("http://example.org/cached");
+
+		assertTrue(queue.offer("http://example.org/a"));
+		assertFalse(queue.offer("http://example.org/a"));
+		assertFalse(queue.offer("http://example.org/cached"));
+
+		assertEquals("http://example.org/a", queue.poll().getURI());
+		// in flight
+		assertFalse(queue.offer("http://example.org/a"));
+
+		queue.complete("http://example.org/a");
+		assertTrue(queue.offer("http://example.org/a"));
+	}
+
+	@Test
+	public void spilledURIsKeepTheirOrder() throws InterruptedException {
+		URIWorkQueue queue = new URIWorkQueue(5, 1000, uri -> false);
+		for (int i = 0; i < 100; i++) {
+			assertTrue(queue.offer("http://example.org/" + i));
+		}
+		assertEquals(100, queue.size());
+
+		for (int i = 0; i < 100; i++) {
+			assertEquals("http://example.org/" + i, queue.poll().getURI());
+		}
+		assertNull(queue.poll());
+	}
+
+	@Test
+	public void higherPrioritiesAreServedFirst() throws InterruptedException {
+		URIWorkQueue queue = new URIWorkQueue(10, 100, uri -> false);
+		queue.offer("http://example.org/prefetch", FetchPriority.SPECULATIVE_PREFETCH);
+		queue.offer("http://example.org/revalidate", FetchPriority.BACKGROUND_REVALIDATION);
+		queue.offer("http://example.org/needed", FetchPriority.NEEDED_FOR_METRIC);
+		// promoted from a lower lane
+		assertTrue(queue.offer("http://example.org/revalidate", FetchPriority.NEEDED_FOR_METRIC));
+		assertFalse(queue.offer("http://example.org/needed", FetchPriority.SPECULATIVE_PREFETCH));
+
+		URIWorkQueue.Entry entry = queue.poll();
+		assertEquals("http://example.org/needed", entry.getURI());
+		assertEquals(FetchPriority.NEEDED_FOR_METRIC, entry.getPriority());
+		assertEquals("http://example.org/revalidate", queue.poll().getURI());
+		assertEquals("http://example.org/prefetch", queue.poll().getURI());
+		// the stale copy of the promoted URI is skipped
+		assertNull(queue.poll());
+	}
+
+	@Test
+	public void producersBlockWhenFull() throws InterruptedException {
+		final URIWorkQueue queue = new URIWorkQueue(2, 2, uri -> false);
+		queue.offer("http://example.org/1");
+		queue.offer("http://example.org/2");
+
+		final CountDownLatch offered = new CountDownLatch(1);
+		Thread producer = new Thread(() -> {
+			try {
+				queue.offer("http://example.org/3");
+				offered.countDown();
+			} catch (InterruptedException e) {
+				// ignore
+			}
+		});
+		producer.start();
+
+		assertFalse(offered.await(200, TimeUnit.MILLISECONDS));
+		assertEquals("http://example.org/1", queue.poll().getURI());
+		assertTrue(offered.await(5, TimeUnit.SECONDS));
+		assertEquals(2, queue.size());
+	}
+
+	@Test
+	public void blockedProducersDoNotQueueDuplicates() throws InterruptedException {
+		final URIWorkQueue queue = new URIWorkQueue(1, 1, uri -> false);
+		queue.offer("http://example.org/1");
+
+		final AtomicInteger queued = new AtomicInteger(0);
+		Thread[] producers = new Thread[2];
+		for (int i = 0; i < producers.length; i++) {
+			producers[i] = new Thread(() -> {
+				try {
+					if (queue.offer("http://example.org/2")) queued.incrementAndGet();
+				} catch (InterruptedException e) {
+					// ignore
+				}
+			});
+			producers[i].start();
+		}
+		for (Thread producer : producers) {
+			while (producer.getState() != Thread.State.WAITING) Thread.sleep(10);
+		}
+
+		assertEquals("http://example.org/1", queue.poll().getURI());
+		assertEquals("http://example.org/2", queue.take().getURI());
+		for (Thread producer : producers) producer.join(5000);
+
+		assertEquals(1, queued.get());
+		assertEquals(0, queue.size());
+	}
+}
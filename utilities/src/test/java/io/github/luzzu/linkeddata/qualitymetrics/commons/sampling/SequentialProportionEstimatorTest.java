@@ -0,0 +1,84 @@
+package io.github.luzzu.linkeddata.qualitymetrics.commons.sampling;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SequentialProportionEstimatorTest extends Assert {
+
+	private static final double Z = 1.96;
+	private static final double DELTA = 1e-9;
+
+	@Test
+	public void nothingObservedIsTheWidestInterval() {
+		assertArrayEquals(new double[] { 0.0, 1.0 }, SequentialProportionEstimator.wilson(0, 0, Z), DELTA);
+
+		SequentialProportionEstimator estimator = new SequentialProportionEstimator(Z);
+		assertTrue(Double.isNaN(estimator.getProportion()));
+		assertArrayEquals(new double[] { 0.0, 1.0 }, estimator.getInterval(), DELTA);
+		assertArrayEquals(new double[] { 0.0, 1.0 }, estimator.getInterval("unknown"), DELTA);
+		assertFalse(estimator.isPrecise(1.0, 1.0));
+	}
+
+	@Test
+	public void noSuccessesStayWithinBounds() {
+		// With p = 0 the upper bound reduces to z^2 / (n + z^2)
+		double[] interval = SequentialProportionEstimator.wilson(0, 10, Z);
+		assertEquals(0.0, interval[0], DELTA);
+		assertEquals((Z * Z) / (10 + Z * Z), interval[1], DELTA);
+	}
+
+	@Test
+	public void allSuccessesStayWithinBounds() {
+		// With p = 1 the lower bound reduces to n / (n + z^2)
+		double[] interval = SequentialProportionEstimator.wilson(10, 10, Z);
+		assertEquals(10 / (10 + Z * Z), interval[0], DELTA);
+		assertEquals(1.0, interval[1], DELTA);
+
+		interval = SequentialProportionEstimator.wilson(1, 1, Z);
+		assertEquals(1 / (1 + Z * Z), interval[0], DELTA);
+		assertEquals(1.0, interval[1], DELTA);
+	}
+
+	@Test
+	public void smallSamplesAreNeverPrecise() {
+		SequentialProportionEstimator estimator = new SequentialProportionEstimator(Z);
+		for (int i = 1; i < estimator.MIN_OBSERVATIONS; i++) {
+			estimator.record(null, true);
+			assertFalse(estimator.isPrecise(1.0, 1.0));
+		}
+		estimator.record(null, true);
+		assertTrue(estimator.isPrecise(1.0, 1.0));
+		assertEquals(1.0, estimator.getProportion(), DELTA);
+	}
+
+	@Test
+	public void precisionFollowsTheIntervalHalfWidth() {
+		SequentialProportionEstimator estimator = new SequentialProportionEstimator(Z);
+		for (int i = 0; i < 30; i++) estimator.record(null, false);
+
+		// the half-width of the interval of 0 successes out of 30 is 3.8416 / 33.8416 / 2, about 0.0568
+		double halfWidth = ((Z * Z) / (30 + Z * Z)) / 2.0;
+		assertTrue(estimator.isPrecise(halfWidth + 0.001, 1.0));
+		assertFalse(estimator.isPrecise(halfWidth - 0.001, 1.0));
+		assertEquals(0.0, estimator.getProportion(), DELTA);
+	}
+
+	@Test
+	public void weightyStrataMustBePreciseUnlessExhausted() {
+		SequentialProportionEstimator estimator = new SequentialProportionEstimator(Z);
+		estimator.MIN_OBSERVATIONS = 1;
+		estimator.expect("big", 1000);
+		estimator.expect("small", 10);
+
+		for (int i = 0; i < 1000; i++) estimator.record("big", true);
+		estimator.record("small", false);
+		// the interval of the small stratum is wide, but it accounts for less than 5% of the sample
+		assertTrue(estimator.isPrecise(0.05, 0.05));
+		// it does not once every stratum matters
+		assertFalse(estimator.isPrecise(0.05, 0.0));
+
+		// a stratum whose sample was observed in full cannot get any more precise
+		for (int i = 1; i < 10; i++) estimator.record("small", false);
+		assertTrue(estimator.isPrecise(0.05, 0.0));
+	}
+}
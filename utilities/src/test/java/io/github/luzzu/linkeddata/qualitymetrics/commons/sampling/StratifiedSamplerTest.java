@@ -0,0 +1,74 @@
+package io.github.luzzu.linkeddata.qualitymetrics.commons.sampling;
+
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StratifiedSamplerTest extends Assert {
+
+	@Test
+	public void everythingIsRetainedWithinCapacity() {
+		StratifiedSampler<String> sampler = new StratifiedSampler<String>(100);
+		for (int i = 0; i < 30; i++) sampler.add("http://a.org", "http://a.org/" + i);
+		for (int i = 0; i < 20; i++) sampler.add("http://b.org", "http://b.org/" + i);
+		sampler.add("http://b.org", "http://b.org/0");
+
+		assertEquals(51, sampler.getPopulation());
+		assertEquals(21, sampler.getPopulation("http://b.org"));
+		assertEquals(50, sampler.getRetained());
+		assertEquals(20, sampler.getItems("http://b.org").size());
+	}
+
+	@Test
+	public void capacityIsNeverExceeded() {
+		StratifiedSampler<String> sampler = new StratifiedSampler<String>(1000, 300);
+		for (int i = 0; i < 100000; i++) {
+			String stratum = "http://s" + (i % 7) + ".org";
+			sampler.add(stratum, stratum + "/" + i);
+			assertTrue(sampler.getRetained() <= 1000);
+		}
+
+		for (String stratum : sampler.getStrata()) {
+			List<String> items = sampler.getItems(stratum);
+			assertTrue(items.size() <= 300);
+			assertEquals(items.size(), new HashSet<String>(items).size());
+		}
+		assertEquals(sampler.getRetained(), sampler.getItems().size());
+	}
+
+	@Test
+	public void proportionalAllocationFollowsPopulation() {
+		StratifiedSampler<String> sampler = new StratifiedSampler<String>(10000);
+		for (int i = 0; i < 750; i++) sampler.add("http://a.org", "http://a.org/" + i);
+		for (int i = 0; i < 250; i++) sampler.add("http://b.org", "http://b.org/" + i);
+
+		List<String> sample = sampler.sample(100);
+		assertEquals(100, sample.size());
+		assertEquals(75, sample.stream().filter(uri -> uri.startsWith("http://a.org")).count());
+	}
+
+	@Test
+	public void neymanAllocationFavoursDeviatingStrata() {
+		StratifiedSampler<String> sampler = new StratifiedSampler<String>(10000);
+		for (int i = 0; i < 500; i++) sampler.add("http://a.org", "http://a.org/" + i);
+		for (int i = 0; i < 500; i++) sampler.add("http://b.org", "http://b.org/" + i);
+
+		List<String> sample = sampler.sample(100, StratifiedSampler.Allocation.NEYMAN, stratum -> stratum.equals("http://a.org") ? 0.3 : 0.1);
+		assertEquals(100, sample.size());
+		assertEquals(75, sample.stream().filter(uri -> uri.startsWith("http://a.org")).count());
+	}
+
+	@Test
+	public void shortStrataAreMadeUpByOthers() {
+		StratifiedSampler<String> sampler = new StratifiedSampler<String>(10000);
+		for (int i = 0; i < 5; i++) sampler.add("http://a.org", "http://a.org/" + i);
+		for (int i = 0; i < 5; i++) sampler.add("http://a.org", "http://a.org/0");
+		for (int i = 0; i < 90; i++) sampler.add("http://b.org", "http://b.org/" + i);
+
+		List<String> sample = sampler.sample(80);
+		assertEquals(80, sample.size());
+		assertEquals(75, sample.stream().filter(uri -> uri.startsWith("http://b.org")).count());
+	}
+}